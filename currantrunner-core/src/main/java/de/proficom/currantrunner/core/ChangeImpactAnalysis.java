@@ -0,0 +1,128 @@
+package de.proficom.currantrunner.core;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToLongFunction;
+
+/**
+ * Detection of tests that are affected by changed classes. The ids of all
+ * classes in the footprints of tests (see {@link FootprintIndex}) are compared
+ * with the ids of the classes of the current build. A class with a different
+ * id (CRC64 of bytecode) has been changed since the ids have been stored, no
+ * version control is needed.<br/>
+ * <br/>
+ * Tests that have executed a changed class get a boost of their failure
+ * probability <code>p</code>:
+ *
+ * <pre>
+ * p + (1 - p) * boost
+ * </pre>
+ *
+ * The boost is set by environment parameter
+ * <code>currantRunner.impactBoost</code> (default 0.5, 0 disables the
+ * analysis). A test that is likely to fail stays in front of an affected test
+ * that has never failed.<br/>
+ * <br/>
+ * Classes that aren't found in class path anymore are not treated as changed,
+ * the tests executing them are affected by changes of their callers.
+ */
+class ChangeImpactAnalysis {
+	static final String PARAM_IMPACT_BOOST = "currantRunner.impactBoost";
+	private static final double DEFAULT_IMPACT_BOOST = 0.5;
+
+	private final double boost;
+
+	/**
+	 * Current ids of the changed classes by name
+	 */
+	private final Map<String, Long> changedClasses = new HashMap<String, Long>();
+
+	/**
+	 * Tests that have executed at least one changed class
+	 */
+	private final Set<String> impactedTests = new HashSet<String>();
+
+	/**
+	 * Compare the classes of all footprints with the current build
+	 *
+	 * @param db             store with footprints of all tests
+	 * @param currentClassId function to get the id of a class in class path, 0 if
+	 *                       the class isn't found
+	 */
+	ChangeImpactAnalysis(IMetricStore db, ToLongFunction<String> currentClassId) {
+		this.boost = getImpactBoost();
+		if (this.boost <= 0.0) {
+			return;
+		}
+		FootprintIndex index = db.getFootprintIndex();
+		if (index.getNoOfClasses() == 0) {
+			return;
+		}
+
+		Instant tmStarted = Instant.now();
+		int noOfClasses = 0;
+		for (int classIdx = 0; classIdx < index.getNoOfClasses(); classIdx++) {
+			String className = index.getClassName(classIdx);
+			if (className == null) {
+				continue;
+			}
+			noOfClasses++;
+			long classId = currentClassId.applyAsLong(className);
+			if (classId != 0 && classId != index.getClassId(classIdx)) {
+				changedClasses.put(className, classId);
+				impactedTests.addAll(index.getTestsOfClass(className));
+			}
+		}
+		System.out.println("[CurrantRunner] Impact analysis: " + changedClasses.size() + " of " + noOfClasses + " classes changed, "
+				+ impactedTests.size() + " tests affected (" + Duration.between(tmStarted, Instant.now()).toMillis() + " ms)");
+	}
+
+	/**
+	 * @param testname name of test case
+	 * @return TRUE if the test has executed a changed class
+	 */
+	boolean isImpacted(String testname) {
+		return impactedTests.contains(testname);
+	}
+
+	/**
+	 * @return TRUE if at least one test is affected by changed classes
+	 */
+	boolean hasImpactedTests() {
+		return !impactedTests.isEmpty();
+	}
+
+	/**
+	 * Combine the failure probability of a test with the boost for changed
+	 * classes
+	 *
+	 * @param testname           name of test case
+	 * @param failureProbability probability of the ML model
+	 * @return boosted probability if the test is affected, otherwise the given one
+	 */
+	double getProbability(String testname, double failureProbability) {
+		if (!isImpacted(testname)) {
+			return failureProbability;
+		}
+		return failureProbability + (1.0 - failureProbability) * boost;
+	}
+
+	/**
+	 * @return current ids of changed classes by name, to be stored when the run
+	 *         is finished
+	 */
+	Map<String, Long> getChangedClasses() {
+		return changedClasses;
+	}
+
+	private static double getImpactBoost() {
+		if (System.getProperty(PARAM_IMPACT_BOOST) != null) {
+			return Math.min(1.0, Double.parseDouble(System.getProperty(PARAM_IMPACT_BOOST)));
+		}
+		return DEFAULT_IMPACT_BOOST;
+	}
+}
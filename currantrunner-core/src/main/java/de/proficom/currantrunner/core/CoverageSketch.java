@@ -0,0 +1,150 @@
+package de.proficom.currantrunner.core;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * MinHash sketch of the probes executed by a test. The sketch has a fixed size
+ * of 64 values, every value is the minimum of another hash function over all
+ * probes (class index and probe index, see {@link ProbeBitmap}). The share of
+ * equal values of two sketches estimates the Jaccard similarity of their
+ * probes:
+ *
+ * <pre>
+ * |intersection(A, B)| / |union(A, B)|
+ * </pre>
+ *
+ * The estimate has a standard error of about 0.06, which is enough to tell
+ * redundant tests from different ones. A sketch needs 256 bytes regardless of
+ * the number of probes, so the sketches of all tests are kept in memory by
+ * {@link FootprintIndex}.<br/>
+ * <br/>
+ * To find similar tests without comparing all pairs, the sketch is split into
+ * 16 bands of 4 values. Tests with a similarity of 0.5 share at least one band
+ * with a probability of 64%, with 0.8 almost always.
+ */
+public class CoverageSketch {
+	/**
+	 * Number of values in sketch
+	 */
+	public static final int SIZE = 64;
+
+	/**
+	 * Number of bands and values per band
+	 */
+	public static final int BANDS = 16;
+	private static final int ROWS = SIZE / BANDS;
+
+	/**
+	 * Parameters of the hash functions (upper 32 bits of <code>a * x + b</code>),
+	 * generated with a fixed seed, so sketches of different processes are
+	 * comparable
+	 */
+	private static final long[] MULTIPLIERS = new long[SIZE];
+	private static final long[] ADDENDS = new long[SIZE];
+	static {
+		long seed = 0x43757272616e7452L;
+		for (int idxHash = 0; idxHash < SIZE; idxHash++) {
+			seed += 0x9E3779B97F4A7C15L;
+			MULTIPLIERS[idxHash] = mix(seed) | 1L;
+			seed += 0x9E3779B97F4A7C15L;
+			ADDENDS[idxHash] = mix(seed);
+		}
+	}
+
+	private CoverageSketch() {
+		// static methods only
+	}
+
+	/**
+	 * Calculate the sketch of a set of probes
+	 *
+	 * @param probes executed probes of a test
+	 * @return sketch or null if no probe has been executed
+	 */
+	public static int[] compute(ProbeBitmap probes) {
+		if (probes.getCardinality() == 0) {
+			return null;
+		}
+		long[] minima = new long[SIZE];
+		Arrays.fill(minima, Long.MAX_VALUE);
+		probes.forEach(probe -> {
+			long hash = mix(probe);
+			for (int idxHash = 0; idxHash < SIZE; idxHash++) {
+				long value = (MULTIPLIERS[idxHash] * hash + ADDENDS[idxHash]) >>> 32;
+				if (value < minima[idxHash]) {
+					minima[idxHash] = value;
+				}
+			}
+		});
+		int[] sketch = new int[SIZE];
+		for (int idxHash = 0; idxHash < SIZE; idxHash++) {
+			sketch[idxHash] = (int) minima[idxHash];
+		}
+		return sketch;
+	}
+
+	/**
+	 * Estimate the Jaccard similarity of two sets of probes
+	 *
+	 * @param sketch      sketch of first set
+	 * @param otherSketch sketch of second set
+	 * @return similarity between 0 (disjoint) and 1 (equal)
+	 */
+	public static double similarity(int[] sketch, int[] otherSketch) {
+		int equalValues = 0;
+		for (int idxHash = 0; idxHash < SIZE; idxHash++) {
+			if (sketch[idxHash] == otherSketch[idxHash]) {
+				equalValues++;
+			}
+		}
+		return (double) equalValues / SIZE;
+	}
+
+	/**
+	 * Get the key of a band, equal sets of probes have equal keys in all bands
+	 *
+	 * @param sketch sketch of a set
+	 * @param band   number of band, 0 to {@link #BANDS} - 1
+	 * @return key of band, contains the number of band
+	 */
+	public static long getBandKey(int[] sketch, int band) {
+		int hash = 1;
+		for (int idxHash = band * ROWS; idxHash < (band + 1) * ROWS; idxHash++) {
+			hash = 31 * hash + sketch[idxHash];
+		}
+		return ((long) band << 32) | (hash & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * @param sketch sketch of a set
+	 * @return sketch as bytes for the store
+	 */
+	static byte[] encode(int[] sketch) {
+		ByteBuffer encoded = ByteBuffer.allocate(4 * SIZE);
+		encoded.asIntBuffer().put(sketch);
+		return encoded.array();
+	}
+
+	/**
+	 * @param encoded bytes written by {@link #encode(int[])}
+	 * @return sketch or null if the bytes aren't a sketch
+	 */
+	static int[] decode(byte[] encoded) {
+		if (encoded == null || encoded.length != 4 * SIZE) {
+			return null;
+		}
+		int[] sketch = new int[SIZE];
+		ByteBuffer.wrap(encoded).asIntBuffer().get(sketch);
+		return sketch;
+	}
+
+	/**
+	 * Finalizer of SplitMix64, spreads the bits of a value
+	 */
+	private static long mix(long value) {
+		value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+		value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+		return value ^ (value >>> 31);
+	}
+}
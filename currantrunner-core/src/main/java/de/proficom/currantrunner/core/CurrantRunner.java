@@ -2,17 +2,28 @@ package de.proficom.currantrunner.core;
 
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.UUID;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import de.proficom.currantrunner.coverage.CoverageAnalysisCache;
 import de.proficom.currantrunner.handler.HandlerLastResult;
 import de.proficom.currantrunner.handler.HandlerMissingCounter;
 import de.proficom.currantrunner.handler.ITestCaseHandler;
 import de.proficom.currantrunner.handler.ITestSuiteHandler;
 import de.proficom.currantrunner.metrics.MetricsBase;
+import de.proficom.currantrunner.prioritization.AdditionalCoverageStrategy;
+import de.proficom.currantrunner.prioritization.DiversityStrategy;
+import de.proficom.currantrunner.prioritization.IPrioritizationStrategy;
+import de.proficom.currantrunner.prioritization.SuiteMinimization;
 
 /**
  * This class contains the basic logic of CurrantRunner. It provides handlers
@@ -28,7 +39,8 @@ import de.proficom.currantrunner.metrics.MetricsBase;
  * </ul>
  * <br/>
  * <i>Implementation detail:</i> If the metrics are changed during
- * implementation of CurrantRunner please reset the DB!</li>
+ * implementation of CurrantRunner the columns in DB are updated automatically.
+ * Values of unchanged metrics are kept.
  */
 public class CurrantRunner implements ITestCaseGenerator {
 
@@ -39,10 +51,107 @@ public class CurrantRunner implements ITestCaseGenerator {
 	private List<ITestCaseHandler> testcaseHandlers = null;
 	private List<ITestSuiteHandler> testsuiteHandlers = null;
 
+	/**
+	 * Environment parameter to select the storage of test case data and ML model
+	 * ("sql" or "mvstore")
+	 */
+	private final static String PARAM_STORAGE = "currantRunner.storage";
+
+	/**
+	 * Environment parameters for several processes (e.g. surefire forks) sharing
+	 * the same DB. All processes of a build must use the same build id. The build
+	 * is finalized when all started test suites have finished, the number of forks
+	 * is the minimal number of test suites that are expected for the build.
+	 */
+	static final String PARAM_MULTI_PROCESS = "currantRunner.multiProcess";
+	private final static String PARAM_BUILD_ID = "currantRunner.buildId";
+	private final static String PARAM_FORK_COUNT = "currantRunner.forkCount";
+
+	/**
+	 * Environment parameter to execute tests alone if a handler requires it (e.g.
+	 * to measure coverage), while the other tests still run in parallel
+	 */
+	private final static String PARAM_EXECUTION_GATE = "currantRunner.executionGate";
+
+	/**
+	 * Environment parameter to select the order of known tests, see
+	 * {@link IPrioritizationStrategy}
+	 */
+	private final static String PARAM_PRIORITIZATION = "currantRunner.prioritization";
+
+	/**
+	 * Environment parameter to select the run mode: <code>full</code> (default)
+	 * or <code>minimized</code> to skip redundant tests, see
+	 * {@link SuiteMinimization}
+	 */
+	private final static String PARAM_RUN_MODE = "currantRunner.runMode";
+
+	/**
+	 * Environment parameter to skip tests that are correlated with a failed test,
+	 * e.g. for fast feedback builds, see {@link FailureCorrelation}
+	 */
+	private final static String PARAM_SKIP_CORRELATED = "currantRunner.skipCorrelated";
+
+	/**
+	 * Identifier of build in multi process mode
+	 */
+	private String buildId = null;
+
+	/**
+	 * FALSE if the test suite of this process is finished but other processes of
+	 * the build are still running. Only the last process trains the model.
+	 */
+	private boolean isBuildFinalizer = true;
+
 	/**
 	 * Internal DB connection to store ML model and test case data
 	 */
-	private DatabaseConnector db = null;
+	private IMetricStore db = null;
+
+	/**
+	 * ML model loaded from DB and its version. The model is loaded again only if
+	 * the version in DB has changed.
+	 */
+	private MLModel mlModel = null;
+	private long mlModelVersion = 0;
+
+	/**
+	 * Tests may be executed in parallel by several threads. Every thread has the
+	 * context of it's running test, all running tests are remembered to detect
+	 * concurrent executions.
+	 */
+	private final ThreadLocal<TestInvocation> currentInvocation = new ThreadLocal<TestInvocation>();
+	private final Set<TestInvocation> runningInvocations = new HashSet<TestInvocation>();
+
+	/**
+	 * Locks for updates of a single test case. A test case is locked by the hash
+	 * of it's name, so different tests are updated in parallel.
+	 */
+	private static final int NUMBER_OF_TEST_LOCKS = 64;
+	private final Object[] testLocks = new Object[NUMBER_OF_TEST_LOCKS];
+
+	/**
+	 * Gate for tests that must be executed alone, null if it's disabled
+	 */
+	private ExecutionGate executionGate = null;
+
+	/**
+	 * Changed classes detected by the last prioritization. Their ids are stored
+	 * when the test suite is finished.
+	 */
+	private ChangeImpactAnalysis impactAnalysis = null;
+
+	/**
+	 * Tests skipped by a minimized run. They still exist, so they don't count as
+	 * missing when the test suite is finished.
+	 */
+	private final Set<String> skippedRedundantTests = new HashSet<String>();
+
+	/**
+	 * Tests correlated with failed tests of the current test suite, null if they
+	 * aren't skipped
+	 */
+	private FailureCorrelation failureCorrelation = null;
 
 	/**
 	 * Constructor for CurrantRunner
@@ -58,19 +167,24 @@ public class CurrantRunner implements ITestCaseGenerator {
 		// These are the built-in handlers
 		//   * Last result
 		//   * Counter for missing executions
-		// NOTE: Don't forget to reset DB if list of handlers are changed - either in
-		// this class or in handlers!!
+		// NOTE: If list of handlers are changed - either in this class or in handlers -
+		// the DB columns are added or removed on next start.
 		this.testcaseHandlers.add(new HandlerLastResult());
 		this.testsuiteHandlers.add(new HandlerMissingCounter());
 
 		// Append the other handlers
 		this.testcaseHandlers.addAll(_testcaseHandler);
 		this.testsuiteHandlers.addAll(_testsuiteHandler);
+
+		for (int idxLock = 0; idxLock < NUMBER_OF_TEST_LOCKS; idxLock++) {
+			this.testLocks[idxLock] = new Object();
+		}
 	}
 
 	/**
 	 * Initialize CurrantRunner This will load the model from DB and must therefore
-	 * be executed before any test can be prioritized
+	 * be executed before any test can be prioritized. In session mode all test
+	 * cases are loaded into memory here.
 	 * 
 	 * It's separated from constructor to allow later multiple prioritizations for
 	 * different test suites.
@@ -79,8 +193,37 @@ public class CurrantRunner implements ITestCaseGenerator {
 		// Initialize DB for model
 		String dbDirectory = Directories.GetDatabaseDirectory();
 
+		// Several processes need a DB that can be shared
+		boolean isMultiProcess = Boolean.parseBoolean(System.getProperty(PARAM_MULTI_PROCESS));
+		if (isMultiProcess) {
+			this.buildId = System.getProperty(PARAM_BUILD_ID);
+			if (this.buildId == null || this.buildId.isEmpty()) {
+				this.buildId = UUID.randomUUID().toString();
+				System.out.println("[CurrantRunner] WARNING: " + PARAM_BUILD_ID + " is not set, suites of other processes can't be joined");
+			}
+			if (getForkCount() == 0) {
+				System.out.println("[CurrantRunner] WARNING: " + PARAM_FORK_COUNT + " is not set, a test suite that is started after all other "
+						+ "suites of the build have finished will finalize the build again");
+			}
+			if ("mvstore".equalsIgnoreCase(System.getProperty(PARAM_STORAGE))) {
+				System.out.println("[CurrantRunner] WARNING: mvstore can't be shared by several processes, using sql storage");
+			}
+		}
+		this.isBuildFinalizer = true;
+
+		if (Boolean.parseBoolean(System.getProperty(PARAM_EXECUTION_GATE)) && this.executionGate == null) {
+			this.executionGate = new ExecutionGate();
+		}
+		if (Boolean.parseBoolean(System.getProperty(PARAM_SKIP_CORRELATED)) && this.failureCorrelation == null) {
+			this.failureCorrelation = new FailureCorrelation();
+		}
+
 		// Remember DB connection
-		this.db = new DatabaseConnector(dbDirectory, getAllMetrics(), this);
+		if (!isMultiProcess && "mvstore".equalsIgnoreCase(System.getProperty(PARAM_STORAGE))) {
+			this.db = new MVStoreConnector(dbDirectory, getAllMetrics(), this);
+		} else {
+			this.db = new DatabaseConnector(dbDirectory, getAllMetrics(), this);
+		}
 	}
 
 	/**
@@ -88,7 +231,9 @@ public class CurrantRunner implements ITestCaseGenerator {
 	 * end of test execution
 	 */
 	public void deinit() {
+		drainHandlers();
 		this.db.closeDatabase();
+		this.mlModel = null;
 	}
 
 	/**
@@ -124,15 +269,52 @@ public class CurrantRunner implements ITestCaseGenerator {
 	/**
 	 * Call this function when a new test has been started.
 	 * This will add the test case to CurrantRunners DB.
+	 * It may be called by several threads at once, the test is finished by
+	 * {@link #onTestFinished} in the same thread.
 	 * 
 	 * @param testcaseName name of test case that is about to be start
 	 */
 	public void onTestStarted(String testcaseName) {
-		TestCase tc = this.db.getTestCaseFromDB(testcaseName);
-		for (ITestCaseHandler curHandler : this.testcaseHandlers) {
-			curHandler.onTestStarted(tc);
+		// A test of this thread that hasn't been finished must not block the others
+		TestInvocation staleInvocation = this.currentInvocation.get();
+		if (staleInvocation != null) {
+			finishInvocation(staleInvocation);
+		}
+
+		if (this.failureCorrelation != null) {
+			this.failureCorrelation.onTestStarted(testcaseName);
+		}
+
+		TestInvocation invocation = new TestInvocation(testcaseName, this);
+		if (this.executionGate != null) {
+			boolean isExclusive = false;
+			synchronized (getTestLock(testcaseName)) {
+				TestCase tc = this.db.getTestCaseFromDB(testcaseName);
+				for (ITestCaseHandler curHandler : this.testcaseHandlers) {
+					isExclusive |= curHandler.isExclusiveExecutionRequired(tc, invocation);
+				}
+			}
+			// Wait without test lock, running tests need it to finish
+			this.executionGate.enter(invocation, isExclusive);
+		}
+		this.currentInvocation.set(invocation);
+		synchronized (this.runningInvocations) {
+			if (!this.runningInvocations.isEmpty()) {
+				invocation.markConcurrent();
+				for (TestInvocation runningInvocation : this.runningInvocations) {
+					runningInvocation.markConcurrent();
+				}
+			}
+			this.runningInvocations.add(invocation);
+		}
+
+		synchronized (getTestLock(testcaseName)) {
+			TestCase tc = this.db.getTestCaseFromDB(testcaseName);
+			for (ITestCaseHandler curHandler : this.testcaseHandlers) {
+				curHandler.onTestStarted(tc, invocation);
+			}
+			this.db.updateMetricsInDB(tc);
 		}
-		this.db.updateMetricsInDB(tc);
 	}
 
 	/**
@@ -143,11 +325,60 @@ public class CurrantRunner implements ITestCaseGenerator {
 	 * @param tmExecution	Duration of test execution
 	 */
 	public void onTestFinished(String testcaseName, TestCase.Results result, Duration tmExecution) {
-		TestCase tc = this.db.getTestCaseFromDB(testcaseName);
-		for (ITestCaseHandler curHandler : this.testcaseHandlers) {
-			curHandler.onTestFinished(tc, result, tmExecution);
+		// Without a started test in this thread a new context is used
+		TestInvocation invocation = this.currentInvocation.get();
+		this.currentInvocation.remove();
+		if (invocation == null || !invocation.getTestname().equals(testcaseName)) {
+			invocation = new TestInvocation(testcaseName, this);
+		}
+
+		synchronized (getTestLock(testcaseName)) {
+			TestCase tc = this.db.getTestCaseFromDB(testcaseName);
+			for (ITestCaseHandler curHandler : this.testcaseHandlers) {
+				curHandler.onTestFinished(tc, result, tmExecution, invocation);
+			}
+			this.db.updateMetricsInDB(tc);
+		}
+		finishInvocation(invocation);
+
+		// Keep the result in history of current run
+		this.db.recordResult(testcaseName, result, tmExecution);
+
+		// Tests with the same footprint are likely to fail as well
+		if (this.failureCorrelation != null && result == TestCase.Results.FAILED) {
+			this.failureCorrelation.onTestFailed(testcaseName, this.db.getFootprintIndex());
+		}
+	}
+
+	/**
+	 * Check if a test must be skipped because a correlated test has failed, see
+	 * {@link FailureCorrelation}. Must be called before the test is started,
+	 * a skipped test is neither started nor finished and it's result isn't
+	 * stored.
+	 *
+	 * @param testcaseName name of test case that is about to be started
+	 * @return name of failed test that is correlated with the test or null if the
+	 *         test must be executed
+	 */
+	public String getCorrelatedFailure(String testcaseName) {
+		if (this.failureCorrelation == null) {
+			return null;
+		}
+		return this.failureCorrelation.skip(testcaseName);
+	}
+
+	/**
+	 * Remove a test from the running tests and let waiting tests pass the gate
+	 *
+	 * @param invocation test that has been finished
+	 */
+	private void finishInvocation(TestInvocation invocation) {
+		synchronized (this.runningInvocations) {
+			this.runningInvocations.remove(invocation);
+		}
+		if (this.executionGate != null) {
+			this.executionGate.leave(invocation);
 		}
-		this.db.updateMetricsInDB(tc);
 	}
 
 	/**
@@ -158,28 +389,49 @@ public class CurrantRunner implements ITestCaseGenerator {
 	 * @param allTestsInSuite	List of all tests that will be executed
 	 */
 	public void onTestsetStarted(List<String> allTestsInSuite) {
-		// Create a DB entry for each of the test case names
-		for (String test : allTestsInSuite) {
-			this.db.getTestCaseFromDB(test);
+		// With several processes the build is finalized when all started suites have finished
+		if (this.buildId != null) {
+			int startedSuites = this.db.startSuiteOfBuild(this.buildId, getForkCount());
+			if (startedSuites == 0) {
+				System.out.println("[CurrantRunner] WARNING: Build " + this.buildId + " has already been finalized, check " + PARAM_FORK_COUNT);
+			} else if (getForkCount() > 0 && startedSuites == getForkCount() + 1) {
+				System.out.println("[CurrantRunner] WARNING: More test suites than " + PARAM_FORK_COUNT + " (" + getForkCount() + ") have been "
+						+ "started for build " + this.buildId + ", it's finalized when all of them have finished");
+			}
 		}
 
+		// All results of this test suite belong to a new run
+		this.db.beginRun();
+		if (this.executionGate != null) {
+			this.executionGate.resetStatistics();
+		}
+		if (this.failureCorrelation != null) {
+			this.failureCorrelation.reset();
+		}
+
+		// Create a DB entry for each of the new test case names
+		this.db.registerTestCases(allTestsInSuite);
+
 		// First inform all handlers that a new test set will be started
 		List<TestCase> allTestcases = this.db.getTestCases();
 		for (ITestSuiteHandler curHandler : this.testsuiteHandlers) {
-			curHandler.onTestsetStarted(allTestsInSuite);
+			curHandler.onTestsetStarted(allTestsInSuite, this.db);
 		}
 
 		// Secondly inform all test cases that a new test set is about to be started
+		List<TestCase> changedTestcases = new ArrayList<TestCase>();
 		for (TestCase tc : allTestcases) {
 			boolean hasChanged = false;
 			for (ITestSuiteHandler curHandler : this.testsuiteHandlers) {
 				hasChanged |= curHandler.onTestsetStarted(tc, allTestsInSuite);
 			}
-			// Write changes to DB
 			if (hasChanged) {
-				this.db.updateMetricsInDB(tc);
+				changedTestcases.add(tc);
 			}
 		}
+
+		// Write changes to DB
+		this.db.updateMetricsInDB(changedTestcases);
 	}
 
 	/**
@@ -192,18 +444,122 @@ public class CurrantRunner implements ITestCaseGenerator {
 	 * @param allExecutedTests List of all tests that have been executed
 	 */
 	public void onTestsetFinished(List<String> allTestsInSuite, List<String> allExecutedTests) {
+		ChangeImpactAnalysis impactAnalysis = this.impactAnalysis;
+		this.impactAnalysis = null;
+
+		// Tests skipped by a minimized run must not be removed as missing tests
+		if (!this.skippedRedundantTests.isEmpty()) {
+			allExecutedTests = new ArrayList<String>(allExecutedTests);
+			allExecutedTests.addAll(this.skippedRedundantTests);
+			this.skippedRedundantTests.clear();
+		}
+
+		// Results of handlers that are still calculated belong to this test suite
+		drainHandlers();
+		for (ITestCaseHandler curHandler : this.testcaseHandlers) {
+			curHandler.onTestsetFinished();
+		}
+		if (this.executionGate != null) {
+			this.executionGate.printStatistics();
+		}
+		if (this.failureCorrelation != null) {
+			this.failureCorrelation.printStatistics();
+		}
+
+		// Store the run with results of all executed tests
+		this.db.endRun();
+
+		// With several processes the last one updates the metrics for the whole build
+		if (this.buildId != null) {
+			this.db.flush();
+			this.isBuildFinalizer = this.db.finishSuiteOfBuild(this.buildId, getForkCount(), allTestsInSuite, allExecutedTests);
+			if (!this.isBuildFinalizer) {
+				System.out.println("[CurrantRunner] Test suite of build " + this.buildId + " finished, waiting for other processes");
+				return;
+			}
+			this.db.refresh();
+			allTestsInSuite = this.db.getTestsOfBuild(this.buildId, false);
+			allExecutedTests = this.db.getTestsOfBuild(this.buildId, true);
+		}
+
 		List<TestCase> allTestcases = this.db.getTestCases();
+		List<TestCase> changedTestcases = new ArrayList<TestCase>();
 		for (TestCase tc : allTestcases) {
 			// Inform every test in DB that a test set with some tests are finished
 			boolean hasChanged = false;
 			for (ITestSuiteHandler curHandler : this.testsuiteHandlers) {
 				hasChanged |= curHandler.onTestsetFinished(tc, allTestsInSuite, allExecutedTests);
 			}
-			// Write changes to DB
 			if (hasChanged) {
-				this.db.updateMetricsInDB(tc);
+				changedTestcases.add(tc);
 			}
 		}
+
+		// Write changes to DB
+		this.db.updateMetricsInDB(changedTestcases);
+
+		// Changed classes are known now, the next build is compared with this one
+		if (impactAnalysis != null) {
+			this.db.updateClassIds(impactAnalysis.getChangedClasses());
+		}
+
+		// Write all pending changes of this test suite to DB
+		this.db.flush();
+	}
+
+	/**
+	 * Update a test case after it has been finished, see
+	 * {@link TestInvocation#updateTestCase(Consumer)}
+	 *
+	 * @param testcaseName name of test case
+	 * @param update       update of the test case metrics
+	 */
+	void updateTestCase(String testcaseName, Consumer<TestCase> update) {
+		synchronized (getTestLock(testcaseName)) {
+			TestCase tc = this.db.getTestCaseFromDB(testcaseName);
+			update.accept(tc);
+			this.db.updateMetricsInDB(tc);
+		}
+	}
+
+	/**
+	 * Store the footprint of a test after it has been finished, see
+	 * {@link TestInvocation#updateFootprint(SortedMap, Map)}
+	 *
+	 * @param testcaseName   name of test case
+	 * @param touchedClasses ids of executed classes by name
+	 * @param executedProbes probes of executed classes by name
+	 */
+	void updateFootprint(String testcaseName, SortedMap<String, Long> touchedClasses, Map<String, boolean[]> executedProbes) {
+		this.db.updateFootprint(testcaseName, touchedClasses, executedProbes);
+	}
+
+	/**
+	 * Wait until all handlers have written their pending updates
+	 */
+	private void drainHandlers() {
+		for (ITestCaseHandler curHandler : this.testcaseHandlers) {
+			curHandler.drain();
+		}
+	}
+
+	/**
+	 * @param testcaseName name of test case
+	 * @return lock for updates of the test case
+	 */
+	private Object getTestLock(String testcaseName) {
+		return this.testLocks[(testcaseName.hashCode() & 0x7fffffff) % NUMBER_OF_TEST_LOCKS];
+	}
+
+	/**
+	 * @return minimal number of test suites (processes) of a build in multi
+	 *         process mode, 0 if it isn't set
+	 */
+	private static int getForkCount() {
+		if (System.getProperty(PARAM_FORK_COUNT) != null) {
+			return Math.max(0, Integer.parseInt(System.getProperty(PARAM_FORK_COUNT)));
+		}
+		return 0;
 	}
 
 	// ============================================
@@ -215,7 +571,7 @@ public class CurrantRunner implements ITestCaseGenerator {
 	 */
 	public void printCurrentMetrics() {
 		System.out.println("[CurrantRunner] Test case metrics:\n");
-		this.db.printDatabase(getAllMetrics());
+		MetricStorePrinter.print(this.db, getAllMetrics());
 	}
 
 	/**
@@ -223,6 +579,14 @@ public class CurrantRunner implements ITestCaseGenerator {
 	 * tests.
 	 */
 	public void trainModel() {
+		// The model is trained only once per build
+		if (!this.isBuildFinalizer) {
+			return;
+		}
+
+		// The model must see the results of all executed tests
+		drainHandlers();
+
 		// Look for test cases that can be removed now
 		List<TestCase> allTestCases = db.getTestCases();
 		for (TestCase tc : allTestCases) {
@@ -232,8 +596,26 @@ public class CurrantRunner implements ITestCaseGenerator {
 		}
 
 		// With cleaned data: Retrain the model with the newest test results and metrics
-		MLModel mlmodel = new MLModel(this.db);
+		MLModel mlmodel = getModel();
 		mlmodel.train(this.db.getTestCases(), this.db);
+
+		// The model in memory is the one that has just been stored
+		this.mlModelVersion = this.db.getModelVersion();
+	}
+
+	/**
+	 * Get the ML model. It's loaded from DB on first use and whenever the model in
+	 * DB has been changed.
+	 * 
+	 * @return the ML model
+	 */
+	private MLModel getModel() {
+		long currentVersion = this.db.getModelVersion();
+		if (this.mlModel == null || currentVersion != this.mlModelVersion) {
+			this.mlModel = new MLModel(this.db);
+			this.mlModelVersion = currentVersion;
+		}
+		return this.mlModel;
 	}
 
 	/**
@@ -243,8 +625,8 @@ public class CurrantRunner implements ITestCaseGenerator {
 	 * @return prioritized list of test cases based on all metrics
 	 */
 	public List<PrioritizationData> prioritize(List<String> allTestcases) {
-		// Load model from database
-		MLModel ml = new MLModel(db);
+		// Load model from database (if it has been changed)
+		MLModel ml = getModel();
 		
 		// Get a list of all test cases stored in DB
 		List<TestCase> allTestsInDB = db.getTestCases();
@@ -275,9 +657,21 @@ public class CurrantRunner implements ITestCaseGenerator {
 		if (testsToPrioritize.size() >= 1) {
 			// Calculate the probability that a test will FAIL again based on past results
 			HashMap<TestCase, Double> failureProbability = ml.getFailureProbability(testsToPrioritize);
+
+			// Tests that have executed changed classes are more likely to fail
+			ChangeImpactAnalysis impactAnalysis = new ChangeImpactAnalysis(this.db, new CoverageAnalysisCache()::getClassId);
+			for (TestCase test : testsToPrioritize) {
+				failureProbability.put(test, impactAnalysis.getProbability(test.getTestname(), failureProbability.get(test)));
+			}
+			this.impactAnalysis = impactAnalysis;
 			
 			// Now we have all information to sort the known tests
-			ArrayList<TestCase> prioritzedTests = ml.prioritize(testsToPrioritize, failureProbability);
+			List<TestCase> prioritzedTests = getPrioritizationStrategy(ml).prioritize(testsToPrioritize, failureProbability, this.db);
+
+			// Without a model all tests are equal, affected tests are executed first
+			if (!ml.hasModel() && impactAnalysis.hasImpactedTests()) {
+				prioritzedTests.sort(Comparator.comparing((TestCase test) -> !impactAnalysis.isImpacted(test.getTestname())));
+			}
 			 
 			// Add the tests after the unknown tests
 			for (TestCase test : prioritzedTests) {
@@ -289,4 +683,87 @@ public class CurrantRunner implements ITestCaseGenerator {
 		return orderedTests;
 	}
 
+	/**
+	 * @return TRUE if environment parameter <code>currantRunner.runMode</code> is
+	 *         set to <code>minimized</code>, e.g. for builds of pull requests
+	 */
+	public boolean isMinimizedRun() {
+		String runMode = System.getProperty(PARAM_RUN_MODE, "full");
+		if ("minimized".equalsIgnoreCase(runMode)) {
+			return true;
+		}
+		if (!"full".equalsIgnoreCase(runMode)) {
+			System.out.println("[CurrantRunner] WARNING: Unknown " + PARAM_RUN_MODE + " '" + runMode + "', running all tests");
+		}
+		return false;
+	}
+
+	/**
+	 * Remove the tests whose coverage is covered by other tests, see
+	 * {@link SuiteMinimization}. New tests, tests without measured coverage and
+	 * tests affected by changed classes (found by {@link #prioritize(List)}) are
+	 * always kept.
+	 *
+	 * @param prioritizedTests tests about to be executed, see
+	 *                         {@link #prioritize(List)}
+	 * @return tests to be executed in the given order
+	 */
+	public List<PrioritizationData> removeRedundantTests(List<PrioritizationData> prioritizedTests) {
+		Map<String, TestCase> mapTestcaseName = db.getTestCases().stream()
+				.collect(Collectors.toMap(TestCase::getTestname, Function.identity()));
+		List<TestCase> knownTests = new ArrayList<TestCase>();
+		for (PrioritizationData test : prioritizedTests) {
+			TestCase tc = mapTestcaseName.get(test.getTestcaseName());
+			if (tc != null && tc.hasPastResults()) {
+				knownTests.add(tc);
+			}
+		}
+
+		ChangeImpactAnalysis impactAnalysis = this.impactAnalysis;
+		SuiteMinimization minimization = new SuiteMinimization(knownTests, this.db,
+				testname -> impactAnalysis != null && impactAnalysis.isImpacted(testname));
+		this.skippedRedundantTests.addAll(minimization.getRedundantTests());
+		List<PrioritizationData> keptTests = new ArrayList<PrioritizationData>();
+		for (PrioritizationData test : prioritizedTests) {
+			if (!minimization.getRedundantTests().contains(test.getTestcaseName())) {
+				keptTests.add(test);
+			}
+		}
+		System.out.println("[CurrantRunner] Minimized run: " + minimization.getRedundantTests().size() + " of " + prioritizedTests.size()
+				+ " tests skipped as redundant, estimated " + SuiteMinimization.formatTime(minimization.getSavedTime()) + " saved");
+		return keptTests;
+	}
+
+	/**
+	 * Print the redundant tests of all test cases in store and the time that would
+	 * be saved by a minimized run, see {@link SuiteMinimization}. Tests affected by
+	 * changed classes are kept like in a minimized run.
+	 */
+	public void printMinimizationReport() {
+		List<TestCase> knownTests = db.getTestCases().stream().filter(TestCase::hasPastResults).collect(Collectors.toList());
+		ChangeImpactAnalysis impactAnalysis = new ChangeImpactAnalysis(this.db, new CoverageAnalysisCache()::getClassId);
+		new SuiteMinimization(knownTests, this.db, impactAnalysis::isImpacted).printReport();
+	}
+
+	/**
+	 * Get the strategy selected by environment parameter
+	 * <code>currantRunner.prioritization</code>
+	 * 
+	 * @param ml ML model for the default strategy
+	 * @return strategy to order the known tests
+	 */
+	private static IPrioritizationStrategy getPrioritizationStrategy(MLModel ml) {
+		String strategy = System.getProperty(PARAM_PRIORITIZATION, "probability");
+		if ("additionalCoverage".equalsIgnoreCase(strategy)) {
+			return new AdditionalCoverageStrategy();
+		}
+		if ("diversity".equalsIgnoreCase(strategy)) {
+			return new DiversityStrategy();
+		}
+		if (!"probability".equalsIgnoreCase(strategy)) {
+			System.out.println("[CurrantRunner] WARNING: Unknown " + PARAM_PRIORITIZATION + " '" + strategy + "', using probability");
+		}
+		return (testcases, failureProbability, db) -> ml.prioritize(testcases, failureProbability);
+	}
+
 }
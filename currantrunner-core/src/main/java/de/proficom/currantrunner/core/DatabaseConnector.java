@@ -1,13 +1,25 @@
 package de.proficom.currantrunner.core;
 
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
 
 import de.proficom.currantrunner.metrics.MetricsBase;
 import de.proficom.currantrunner.metrics.MetricsBaseDouble;
@@ -16,40 +28,113 @@ import de.proficom.currantrunner.metrics.MetricsBaseString;
 
 /**
  * Class to interact with the database and store and retrieve metric information
- * for test cases. The database has tables called TESTRESULTS and MODEL.
+ * for test cases. The database has tables called TESTRESULTS, MODEL,
+ * CONFIGURATION, RUNS, RESULTS, BUILDS, BUILD_TESTS, CLASSES and FOOTPRINTS.
  * 
- * Don't create the class by yourself, use {@link DatabaseAccessSingleton}!
+ * All public methods are synchronized, the connection and it's statements are
+ * shared by all threads executing tests.
  */
-public class DatabaseConnector {
+public class DatabaseConnector implements IMetricStore {
 	/**
 	 * Name of DB tables
 	 */
 	static final String TABLE_TESTRESULTS = "TESTRESULTS";
 	static final String TABLE_MODEL = "MODEL";
+	static final String TABLE_CONFIGURATION = "CONFIGURATION";
+	static final String TABLE_RUNS = "RUNS";
+	static final String TABLE_RESULTS = "RESULTS";
+	static final String TABLE_BUILDS = "BUILDS";
+	static final String TABLE_BUILD_TESTS = "BUILD_TESTS";
+	static final String TABLE_CLASSES = "CLASSES";
+	static final String TABLE_FOOTPRINTS = "FOOTPRINTS";
+	static final String TABLE_TOKENS = "TOKENS";
+	static final String TABLE_NAME_TOKENS = "NAME_TOKENS";
 	static final String COLUMN_TESTNAME = "testname";
+	static final String COLUMN_MODEL_CONTENT = "content";
+	static final String COLUMN_MODEL_TYPE = "BLOB";
+	static final String COLUMN_MODEL_VERSION = "version";
 	static final String MODEL_ML_TYPE = "Hoeffding";
 
 	/**
-	 * Prepared statements for querying the database.
+	 * Entries in table CONFIGURATION to detect changes of metrics
+	 */
+	static final String CONFIG_SCHEMA_VERSION = "schemaVersion";
+	static final String CONFIG_SCHEMA_SIGNATURE = "schemaSignature";
+
+	/**
+	 * Environment parameters to enable the in-memory session cache and to adjust
+	 * the number of modified test cases before they are written to DB
+	 */
+	private final static String PARAM_SESSION_CACHE = "currantRunner.sessionCache";
+	private final static String PARAM_FLUSH_THRESHOLD = "currantRunner.flushThreshold";
+
+	/**
+	 * Environment parameter to adjust the number of statements sent to DB within a
+	 * single JDBC batch
+	 */
+	private final static String PARAM_BATCH_SIZE = "currantRunner.dbBatchSize";
+
+	/**
+	 * Time in ms to wait for locks held by other processes in multi process mode
+	 */
+	private final static int MULTI_PROCESS_LOCK_TIMEOUT = 60000;
+
+	/**
+	 * Statements to create every table by name of table. The first statement
+	 * creates the table, the following ones add indices and columns of newer
+	 * versions to existing tables.
 	 */
-	private PreparedStatement createTableTestresults;
-	private PreparedStatement createModelTable;
+	private final Map<String, String[]> tableDdl = new LinkedHashMap<String, String[]>();
 
+	/**
+	 * Prepared statements for querying the database.
+	 */
 	private PreparedStatement getTableContent;
 	private PreparedStatement getTestCaseContent;
 	private PreparedStatement getTestCaseNames;
 	private PreparedStatement getModelContent;
+	private PreparedStatement getModelVersion;
+	private PreparedStatement getConfigurationContent;
+	private PreparedStatement getTestsOfBuild;
+	private PreparedStatement getExecutedTestsOfBuild;
+	private PreparedStatement getBuild;
+	private PreparedStatement getUnfinalizedBuilds;
+	private PreparedStatement getClasses;
+	private PreparedStatement getClassIndex;
+	private PreparedStatement getFootprints;
+	private PreparedStatement getProbes;
+	private PreparedStatement getTokens;
+	private PreparedStatement getTokenIndex;
+	private PreparedStatement getNameTokens;
+	private PreparedStatement getLastResults;
+	private PreparedStatement getStoredHistory;
 
 	private PreparedStatement insertNewTest;
-	private PreparedStatement insertNewModel;
+	private PreparedStatement insertNewRun;
+	private PreparedStatement insertNewResult;
 
-	private HashMap<String, PreparedStatement> updateMetricsMap;
-	private PreparedStatement updateModelContent;
+	private HashMap<Long, PreparedStatement> mergeMetricsMap;
+	private PreparedStatement mergeModelContent;
+	private PreparedStatement mergeConfigurationContent;
+	private PreparedStatement startBuildSuite;
+	private PreparedStatement mergeBuild;
+	private PreparedStatement mergeBuildTest;
+	private PreparedStatement claimBuild;
+	private PreparedStatement mergeClass;
+	private PreparedStatement updateClassId;
+	private PreparedStatement mergeFootprint;
+	private PreparedStatement updateProbes;
+	private PreparedStatement mergeToken;
+	private PreparedStatement mergeNameTokens;
 
 	private PreparedStatement deleteTestcase;
-
-	private PreparedStatement resetTableTestresults;
-	private PreparedStatement resetTableModel;
+	private PreparedStatement deleteOldRuns;
+	private PreparedStatement deleteOldResults;
+	private PreparedStatement deletePassedResults;
+	private PreparedStatement deleteOldBuildTests;
+	private PreparedStatement deleteOldBuilds;
+	private PreparedStatement deleteFootprint;
+	private PreparedStatement deleteNameTokens;
 
 	/**
 	 * hold the connection to DB
@@ -60,6 +145,92 @@ public class DatabaseConnector {
 	 * Interface to create a {@link TestCase} class based on data in DB
 	 */
 	private ITestCaseGenerator testcaseGenerator;
+
+	/**
+	 * List of all metrics stored in DB. The order is identical to the metrics of
+	 * every {@link TestCase}.
+	 */
+	private List<MetricsBase<?>> allAvailableMetrics;
+
+	/**
+	 * In-memory working set of all test cases (session mode). It is loaded once
+	 * from DB and serves all reads. Modified test cases are written back to DB by
+	 * {@link #flush()}. If session mode is disabled this map is null.<br/>
+	 * <br/>
+	 * The values of modified test cases are taken when they are updated, while the
+	 * caller holds the lock of the test case. {@link #flush()} only writes these
+	 * values and doesn't read the test cases, which may be modified by other
+	 * threads at the same time.
+	 */
+	private Map<String, TestCase> sessionTestcases = null;
+	private Set<String> sessionNewTestcases = new LinkedHashSet<String>();
+	private Map<String, ModifiedMetrics> sessionModifiedMetrics = new LinkedHashMap<String, ModifiedMetrics>();
+	private int flushThreshold = 1000;
+
+	/**
+	 * Values of the modified metrics of a test case that haven't been written to
+	 * DB yet
+	 */
+	private static class ModifiedMetrics {
+		private final String testname;
+		private final Object[] values;
+		private long modifiedMetrics = 0;
+
+		ModifiedMetrics(String testname, int noOfMetrics) {
+			this.testname = testname;
+			this.values = new Object[noOfMetrics];
+		}
+
+		/**
+		 * Take the current values of some metrics of a test case. Values taken
+		 * before are replaced.
+		 *
+		 * @param tc           test case
+		 * @param modifiedMask bitmask of metrics, see
+		 *                     {@link TestCase#getModifiedMetrics()}
+		 */
+		void take(TestCase tc, long modifiedMask) {
+			int idxMetric = 0;
+			for (MetricsBase<?> curMetric : tc.getAllMetrics()) {
+				if (isMetricModified(modifiedMask, idxMetric)) {
+					values[idxMetric] = curMetric.getMetricValue();
+				}
+				idxMetric++;
+			}
+			modifiedMetrics |= modifiedMask;
+		}
+	}
+
+	/**
+	 * Maximum number of statements within a single JDBC batch
+	 */
+	private int batchSize = 500;
+
+	/**
+	 * Results of current test run, written by {@link #endRun()}
+	 */
+	private TestRun currentRun = null;
+
+	/**
+	 * Last results of all tests for the history metrics, read on first use
+	 */
+	private ResultHistory resultHistory = null;
+
+	/**
+	 * Footprints of all tests, read on first use. Changed footprints and classes
+	 * are written by {@link #flush()}.
+	 */
+	private FootprintIndex footprintIndex = null;
+	private Set<String> pendingFootprints = new LinkedHashSet<String>();
+	private Set<Integer> pendingClasses = new LinkedHashSet<Integer>();
+	private Map<String, byte[]> pendingProbes = new LinkedHashMap<String, byte[]>();
+
+	/**
+	 * Tokens of all test names, read on first use. Changed tokens of tests are
+	 * written by {@link #flush()}.
+	 */
+	private NameTokenIndex nameTokenIndex = null;
+	private Set<String> pendingNameTokens = new LinkedHashSet<String>();
 	
 	/**
 	 * Constructor that authenticates and opens a connection to the database. Is
@@ -73,18 +244,21 @@ public class DatabaseConnector {
 	public DatabaseConnector(String databaseDirectory, List<MetricsBase<?>> allAvailableMetrics, ITestCaseGenerator _testcaseGenerator) {
 		// Remember to generator class
 		testcaseGenerator = _testcaseGenerator;
+		this.allAvailableMetrics = allAvailableMetrics;
 
 		// create a Database at the appropriate directory
 		String url = "jdbc:h2:" + databaseDirectory + "/Database";
 
+		// Several processes (e.g. surefire forks) share the DB file, the first one
+		// starts a server that is used by the other ones
+		if (Boolean.parseBoolean(System.getProperty(CurrantRunner.PARAM_MULTI_PROCESS))) {
+			url += ";AUTO_SERVER=TRUE;LOCK_TIMEOUT=" + MULTI_PROCESS_LOCK_TIMEOUT;
+		}
+
 		try {
 			// connection to the database with credentials
 			conn = DriverManager.getConnection(url, "currantrunner", "!proficomMLTestNG!");
 
-			// statements to reset tables
-			resetTableTestresults = conn.prepareStatement("DROP TABLE " + TABLE_TESTRESULTS);
-			resetTableModel = conn.prepareStatement("DROP TABLE " + TABLE_MODEL);
-
 			// statements to create tables for testcases and it's metrics
 			// columns 'testname' is added fixed
 			String sqlCreateStatement = "CREATE TABLE " + TABLE_TESTRESULTS + " (";
@@ -94,28 +268,75 @@ public class DatabaseConnector {
 			}
 
 			sqlCreateStatement += "UNIQUE (" + COLUMN_TESTNAME + "))";
-			createTableTestresults = conn.prepareStatement(sqlCreateStatement);
+			tableDdl.put(TABLE_TESTRESULTS, new String[] { sqlCreateStatement });
+
+			// table schema to store the ml model in bytes, see ModelCodec
+			tableDdl.put(TABLE_MODEL, new String[] { "CREATE TABLE " + TABLE_MODEL + " (type VARCHAR(255)," + COLUMN_MODEL_CONTENT + " "
+					+ COLUMN_MODEL_TYPE + "," + COLUMN_MODEL_VERSION + " BIGINT DEFAULT 0,UNIQUE (type));" });
+
+			// table to store internal settings of DB, e.g. the schema version
+			tableDdl.put(TABLE_CONFIGURATION, new String[] {
+					"CREATE TABLE " + TABLE_CONFIGURATION + " (property VARCHAR(255),content VARCHAR(4096),UNIQUE (property));" });
+
+			// tables to store every test run and the results of all executed tests,
+			// result is stored as ordinal of TestCase.Results (0 = PASSED, 1 = FAILED, 2 = SKIPPED)
+			tableDdl.put(TABLE_RUNS, new String[] { "CREATE TABLE " + TABLE_RUNS
+					+ " (run_id BIGINT AUTO_INCREMENT PRIMARY KEY,started TIMESTAMP,finished TIMESTAMP,tests INTEGER,failed INTEGER);" });
+			tableDdl.put(TABLE_RESULTS, new String[] {
+					"CREATE TABLE " + TABLE_RESULTS + " (run_id BIGINT NOT NULL," + COLUMN_TESTNAME + " VARCHAR(255) NOT NULL,result TINYINT,duration BIGINT);",
+					"CREATE INDEX IF NOT EXISTS IDX_RESULTS_RUN ON " + TABLE_RESULTS + " (run_id)",
+					"CREATE INDEX IF NOT EXISTS IDX_RESULTS_TESTNAME ON " + TABLE_RESULTS + " (" + COLUMN_TESTNAME + ", run_id)" });
+
+			// tables to coordinate several processes (test suites) of a single build,
+			// started suites are counted since the table has been created
+			tableDdl.put(TABLE_BUILDS, new String[] {
+					"CREATE TABLE " + TABLE_BUILDS + " (build_id VARCHAR(255) PRIMARY KEY,"
+							+ "expected_suites INTEGER,started_suites INTEGER,finished_suites INTEGER,finalized BOOLEAN,started TIMESTAMP);",
+					"ALTER TABLE " + TABLE_BUILDS + " ADD COLUMN IF NOT EXISTS started_suites INTEGER DEFAULT 0" });
+			tableDdl.put(TABLE_BUILD_TESTS, new String[] { "CREATE TABLE " + TABLE_BUILD_TESTS + " (build_id VARCHAR(255) NOT NULL,"
+					+ COLUMN_TESTNAME + " VARCHAR(255) NOT NULL,executed BOOLEAN,PRIMARY KEY (build_id, " + COLUMN_TESTNAME + "));" });
 
-			// table schema to store the ml model in bytes
-			createModelTable = conn.prepareStatement(
-					"CREATE TABLE " + TABLE_MODEL + " (type VARCHAR(255),content JAVA_OBJECT,UNIQUE (type));");
+			// tables for the coverage footprints of tests: every executed class gets a
+			// small index, the footprint contains the varint encoded indices (see FootprintIndex)
+			// and the executed probes (see ProbeBitmap) with their sketch (see CoverageSketch)
+			tableDdl.put(TABLE_CLASSES, new String[] { "CREATE TABLE " + TABLE_CLASSES + " (class_idx INTEGER AUTO_INCREMENT PRIMARY KEY,"
+					+ "name VARCHAR(1024) NOT NULL,class_id BIGINT,UNIQUE (name));" });
+			tableDdl.put(TABLE_FOOTPRINTS, new String[] { "CREATE TABLE " + TABLE_FOOTPRINTS + " (" + COLUMN_TESTNAME
+					+ " VARCHAR(255) PRIMARY KEY,classes VARBINARY,probes VARBINARY,sketch VARBINARY);" });
+
+			// tables for the tokens of test names: every token gets a small index, the
+			// tokens of a test are stored as varint encoded indices (see NameTokenIndex)
+			tableDdl.put(TABLE_TOKENS, new String[] { "CREATE TABLE " + TABLE_TOKENS + " (token_idx INTEGER AUTO_INCREMENT PRIMARY KEY,"
+					+ "token VARCHAR(255) NOT NULL,UNIQUE (token));" });
+			tableDdl.put(TABLE_NAME_TOKENS, new String[] { "CREATE TABLE " + TABLE_NAME_TOKENS + " (" + COLUMN_TESTNAME
+					+ " VARCHAR(255) PRIMARY KEY,tokens VARBINARY);" });
 
 			/*
-			 * Activate the next statement if you have added some metrics
-			 * This will reset all DB tables
+			 * Activate the next statement to reset all DB tables.
+			 * NOTE: This is not needed anymore when metrics are added, removed or changed.
+			 * Columns of table TESTRESULTS are updated by updateSchema().
 			 */
 			// resetAllTables();
 
 			// initialize database / create all tables
 			databaseInit();
 
+			// statements to read and write internal settings
+			getConfigurationContent = conn.prepareStatement("SELECT content FROM " + TABLE_CONFIGURATION + " WHERE property = ?");
+			mergeConfigurationContent = conn.prepareStatement("MERGE INTO " + TABLE_CONFIGURATION + " (property, content) KEY(property) VALUES (?, ?)");
+
+			// add or remove columns of changed metrics
+			updateSchema();
+
 			// get all test cases or only the names
 			getTableContent = conn.prepareStatement("SELECT * FROM " + TABLE_TESTRESULTS);
 			getTestCaseContent = conn.prepareStatement("SELECT * FROM " + TABLE_TESTRESULTS + " WHERE " + COLUMN_TESTNAME + " = ?");
 			getTestCaseNames = conn.prepareStatement("SELECT " + COLUMN_TESTNAME + " FROM " + TABLE_TESTRESULTS);
 
-			// a new test case with only it's name is added to the database
-			String sqlInsertNewStatement = "INSERT INTO " + TABLE_TESTRESULTS + " (";
+			// a new test case with only it's name is added to the database, an existing
+			// test case is kept (it may have been added by another process meanwhile)
+			String sqlInsertNewStatement = "MERGE INTO " + TABLE_TESTRESULTS + " t USING (VALUES (CAST(? AS VARCHAR(255)))) s("
+					+ COLUMN_TESTNAME + ") ON t." + COLUMN_TESTNAME + " = s." + COLUMN_TESTNAME + " WHEN NOT MATCHED THEN INSERT (";
 			sqlInsertNewStatement += COLUMN_TESTNAME + ",";
 			for (MetricsBase<?> curMetric : allAvailableMetrics) {
 				sqlInsertNewStatement += curMetric.getDBColumnName() + ",";
@@ -125,7 +346,7 @@ public class DatabaseConnector {
 				sqlInsertNewStatement = sqlInsertNewStatement.substring(0, sqlInsertNewStatement.length() - 1);
 			}
 			sqlInsertNewStatement += ") VALUES (";
-			sqlInsertNewStatement += "?,"; // 'test name' will be replaced later
+			sqlInsertNewStatement += "s." + COLUMN_TESTNAME + ","; // 'test name' will be replaced later
 			for (MetricsBase<?> curMetric : allAvailableMetrics) {
 				sqlInsertNewStatement += curMetric.getDBDefaultValue() + ",";
 			}
@@ -136,93 +357,487 @@ public class DatabaseConnector {
 			sqlInsertNewStatement += ")";
 			insertNewTest = conn.prepareStatement(sqlInsertNewStatement);
 
-			// statements to update single test case metric values
-			updateMetricsMap = new HashMap<String, PreparedStatement>();
-			for (MetricsBase<?> curMetric : allAvailableMetrics) {
-				String updateStatement = "UPDATE " + TABLE_TESTRESULTS;
-				updateStatement += " SET " + curMetric.getDBColumnName() + " = ? WHERE " + COLUMN_TESTNAME + " = ?";
-				updateMetricsMap.put(curMetric.getDBColumnName(), conn.prepareStatement(updateStatement));
-			}
+			// statements to update test case metric values are created on demand, one
+			// for every combination of modified metrics
+			mergeMetricsMap = new HashMap<Long, PreparedStatement>();
 
 			// delete a test case
 			deleteTestcase = conn.prepareStatement("DELETE FROM " + TABLE_TESTRESULTS + " WHERE " + COLUMN_TESTNAME + " = ?");
 
+			// store test runs and their results
+			insertNewRun = conn.prepareStatement("INSERT INTO " + TABLE_RUNS + " (started, finished, tests, failed) VALUES (?, ?, ?, ?)",
+					Statement.RETURN_GENERATED_KEYS);
+			insertNewResult = conn.prepareStatement(
+					"INSERT INTO " + TABLE_RESULTS + " (run_id, " + COLUMN_TESTNAME + ", result, duration) VALUES (?, ?, ?, ?)");
+
+			// retention of test runs: remove old runs, keep only failures of older runs
+			deleteOldRuns = conn.prepareStatement("DELETE FROM " + TABLE_RUNS + " WHERE run_id <= ?");
+			deleteOldResults = conn.prepareStatement("DELETE FROM " + TABLE_RESULTS + " WHERE run_id <= ?");
+			// the last results of every test (except SKIPPED) are the history of the test, they're
+			// read at once and never removed by downsampling
+			String sqlLastResults = "SELECT " + COLUMN_TESTNAME + ", run_id, result, _ROWID_ AS row_id, ROW_NUMBER() OVER (PARTITION BY "
+					+ COLUMN_TESTNAME + " ORDER BY run_id DESC, _ROWID_ DESC) AS row_no FROM " + TABLE_RESULTS + " WHERE result <> "
+					+ TestCase.Results.SKIPPED.ordinal();
+			getLastResults = conn.prepareStatement("SELECT " + COLUMN_TESTNAME + ", run_id, result FROM (" + sqlLastResults
+					+ ") WHERE row_no <= ? ORDER BY " + COLUMN_TESTNAME + ", run_id, row_id");
+			// stored value of the deepest history metric, it holds older results than
+			// table RESULTS if the DB has been created before runs were stored
+			MetricsBase<?> deepestHistoryMetric = ResultHistory.getDeepestMetric(allAvailableMetrics);
+			if (deepestHistoryMetric != null) {
+				getStoredHistory = conn.prepareStatement("SELECT " + COLUMN_TESTNAME + ", " + deepestHistoryMetric.getDBColumnName()
+						+ " AS history FROM " + TABLE_TESTRESULTS);
+			}
+			deletePassedResults = conn.prepareStatement("DELETE FROM " + TABLE_RESULTS + " WHERE run_id <= ? AND result <> "
+					+ TestCase.Results.FAILED.ordinal() + " AND _ROWID_ NOT IN (SELECT row_id FROM (" + sqlLastResults + ") WHERE row_no <= ?)");
+
+			// coordination of test suites of a build: count started and finished suites,
+			// collect their tests and let the last one finalize the build
+			startBuildSuite = conn.prepareStatement("MERGE INTO " + TABLE_BUILDS + " b USING (VALUES (CAST(? AS VARCHAR(255)), CAST(? AS INTEGER))) "
+					+ "s(build_id, expected_suites) ON b.build_id = s.build_id "
+					+ "WHEN MATCHED THEN UPDATE SET started_suites = b.started_suites + 1, expected_suites = GREATEST(b.expected_suites, s.expected_suites) "
+					+ "WHEN NOT MATCHED THEN INSERT (build_id, expected_suites, started_suites, finished_suites, finalized, started) "
+					+ "VALUES (s.build_id, s.expected_suites, 1, 0, FALSE, CURRENT_TIMESTAMP)");
+			mergeBuild = conn.prepareStatement("MERGE INTO " + TABLE_BUILDS + " b USING (VALUES (CAST(? AS VARCHAR(255)), CAST(? AS INTEGER))) "
+					+ "s(build_id, expected_suites) ON b.build_id = s.build_id "
+					+ "WHEN MATCHED THEN UPDATE SET finished_suites = b.finished_suites + 1, started_suites = GREATEST(b.started_suites, b.finished_suites + 1) "
+					+ "WHEN NOT MATCHED THEN INSERT (build_id, expected_suites, started_suites, finished_suites, finalized, started) "
+					+ "VALUES (s.build_id, s.expected_suites, 1, 1, FALSE, CURRENT_TIMESTAMP)");
+			getBuild = conn.prepareStatement("SELECT expected_suites, started_suites, finished_suites, finalized FROM " + TABLE_BUILDS + " WHERE build_id = ?");
+			getUnfinalizedBuilds = conn.prepareStatement("SELECT build_id, started_suites, finished_suites, started FROM " + TABLE_BUILDS
+					+ " WHERE build_id <> ? AND NOT finalized");
+			mergeBuildTest = conn.prepareStatement("MERGE INTO " + TABLE_BUILD_TESTS + " t USING (VALUES (CAST(? AS VARCHAR(255)), "
+					+ "CAST(? AS VARCHAR(255)), CAST(? AS BOOLEAN))) s(build_id, " + COLUMN_TESTNAME + ", executed) "
+					+ "ON t.build_id = s.build_id AND t." + COLUMN_TESTNAME + " = s." + COLUMN_TESTNAME + " "
+					+ "WHEN MATCHED THEN UPDATE SET executed = t.executed OR s.executed "
+					+ "WHEN NOT MATCHED THEN INSERT (build_id, " + COLUMN_TESTNAME + ", executed) VALUES (s.build_id, s." + COLUMN_TESTNAME + ", s.executed)");
+			claimBuild = conn.prepareStatement("UPDATE " + TABLE_BUILDS + " SET finalized = TRUE "
+					+ "WHERE build_id = ? AND finished_suites >= expected_suites AND finished_suites >= started_suites");
+			getTestsOfBuild = conn.prepareStatement("SELECT " + COLUMN_TESTNAME + " FROM " + TABLE_BUILD_TESTS + " WHERE build_id = ?");
+			getExecutedTestsOfBuild = conn.prepareStatement(
+					"SELECT " + COLUMN_TESTNAME + " FROM " + TABLE_BUILD_TESTS + " WHERE build_id = ? AND executed");
+
+			// builds that are finalized or have been started a day ago are removed
+			String sqlOldBuilds = "SELECT build_id FROM " + TABLE_BUILDS + " WHERE build_id <> ? AND (finalized OR started < DATEADD('DAY', -1, CURRENT_TIMESTAMP))";
+			deleteOldBuildTests = conn.prepareStatement("DELETE FROM " + TABLE_BUILD_TESTS + " WHERE build_id IN (" + sqlOldBuilds + ")");
+			deleteOldBuilds = conn.prepareStatement("DELETE FROM " + TABLE_BUILDS + " WHERE build_id IN (" + sqlOldBuilds + ")");
+
+			// footprints of tests: a new class is added at once to get it's index from DB,
+			// the index is shared by all processes
+			getClasses = conn.prepareStatement("SELECT class_idx, name, class_id FROM " + TABLE_CLASSES);
+			getClassIndex = conn.prepareStatement("SELECT class_idx FROM " + TABLE_CLASSES + " WHERE name = ?");
+			getFootprints = conn.prepareStatement("SELECT " + COLUMN_TESTNAME + ", classes, sketch FROM " + TABLE_FOOTPRINTS);
+			mergeClass = conn.prepareStatement("MERGE INTO " + TABLE_CLASSES + " c USING (VALUES (CAST(? AS VARCHAR(1024)), CAST(? AS BIGINT))) "
+					+ "s(name, class_id) ON c.name = s.name WHEN NOT MATCHED THEN INSERT (name, class_id) VALUES (s.name, s.class_id)");
+			updateClassId = conn.prepareStatement("UPDATE " + TABLE_CLASSES + " SET class_id = ? WHERE class_idx = ?");
+			mergeFootprint = conn.prepareStatement("MERGE INTO " + TABLE_FOOTPRINTS + " (" + COLUMN_TESTNAME + ", classes) KEY("
+					+ COLUMN_TESTNAME + ") VALUES (?, ?)");
+			getProbes = conn.prepareStatement("SELECT " + COLUMN_TESTNAME + ", probes FROM " + TABLE_FOOTPRINTS + " WHERE probes IS NOT NULL");
+			updateProbes = conn.prepareStatement("UPDATE " + TABLE_FOOTPRINTS + " SET probes = ?, sketch = ? WHERE " + COLUMN_TESTNAME + " = ?");
+			deleteFootprint = conn.prepareStatement("DELETE FROM " + TABLE_FOOTPRINTS + " WHERE " + COLUMN_TESTNAME + " = ?");
+
+			// tokens of test names: a new token is added at once to get it's index from DB
+			getTokens = conn.prepareStatement("SELECT token_idx, token FROM " + TABLE_TOKENS);
+			getTokenIndex = conn.prepareStatement("SELECT token_idx FROM " + TABLE_TOKENS + " WHERE token = ?");
+			getNameTokens = conn.prepareStatement("SELECT " + COLUMN_TESTNAME + ", tokens FROM " + TABLE_NAME_TOKENS);
+			mergeToken = conn.prepareStatement("MERGE INTO " + TABLE_TOKENS + " t USING (VALUES (CAST(? AS VARCHAR(255)))) "
+					+ "s(token) ON t.token = s.token WHEN NOT MATCHED THEN INSERT (token) VALUES (s.token)");
+			mergeNameTokens = conn.prepareStatement("MERGE INTO " + TABLE_NAME_TOKENS + " (" + COLUMN_TESTNAME + ", tokens) KEY("
+					+ COLUMN_TESTNAME + ") VALUES (?, ?)");
+			deleteNameTokens = conn.prepareStatement("DELETE FROM " + TABLE_NAME_TOKENS + " WHERE " + COLUMN_TESTNAME + " = ?");
+
 			/*
 			 * Statements to save and retrieve the ml models byte representation. Because we
 			 * only have one ML model, the type is fixed.
 			 */
-			// insert model content
-			insertNewModel = conn
-					.prepareStatement("INSERT INTO " + TABLE_MODEL + " (type, content) VALUES " + "('" + MODEL_ML_TYPE + "', ?);");
-
-			// insert model content
-			updateModelContent = conn.prepareStatement("UPDATE " + TABLE_MODEL + " SET content = ? WHERE type = '" + MODEL_ML_TYPE + "'");
+			// insert or update model content, each update increases the version of model
+			mergeModelContent = conn.prepareStatement("MERGE INTO " + TABLE_MODEL + " m USING (VALUES ('" + MODEL_ML_TYPE + "')) s(type) "
+					+ "ON m.type = s.type "
+					+ "WHEN MATCHED THEN UPDATE SET " + COLUMN_MODEL_CONTENT + " = ?, " + COLUMN_MODEL_VERSION + " = m." + COLUMN_MODEL_VERSION + " + 1 "
+					+ "WHEN NOT MATCHED THEN INSERT (type, " + COLUMN_MODEL_CONTENT + ", " + COLUMN_MODEL_VERSION + ") VALUES (s.type, ?, 1)");
 
 			// get model content
-			getModelContent = conn.prepareStatement("SELECT * FROM " + TABLE_MODEL + " WHERE type = '" + MODEL_ML_TYPE + "'");
+			getModelContent = conn.prepareStatement("SELECT " + COLUMN_MODEL_CONTENT + " FROM " + TABLE_MODEL + " WHERE type = '" + MODEL_ML_TYPE + "'");
+
+			// get model version without reading the content
+			getModelVersion = conn.prepareStatement("SELECT " + COLUMN_MODEL_VERSION + " FROM " + TABLE_MODEL + " WHERE type = '" + MODEL_ML_TYPE + "'");
 
+			// Load all test cases into memory if session mode is enabled (default)
+			if (System.getProperty(PARAM_BATCH_SIZE) != null) {
+				batchSize = Math.max(1, Integer.parseInt(System.getProperty(PARAM_BATCH_SIZE)));
+			}
+			if (System.getProperty(PARAM_FLUSH_THRESHOLD) != null) {
+				flushThreshold = Integer.parseInt(System.getProperty(PARAM_FLUSH_THRESHOLD));
+			}
+			if (System.getProperty(PARAM_SESSION_CACHE) == null || Boolean.parseBoolean(System.getProperty(PARAM_SESSION_CACHE))) {
+				loadSession();
+			}
 		} catch (SQLException sqlexp) {
 			System.out.println(sqlexp.getMessage());
 		}
 	}
 
 	/**
-	 * Creates all tables. TESTRESULTS, MODEL, CONFIGURATION
+	 * Read the whole table TESTRESULTS with a single scan into the session cache.
+	 * 
+	 * @throws SQLException
 	 */
-	private void databaseInit() {
-		/*
-		 * The reset SQL statements are executed in separate try-catch blocks, because
-		 * if one throws an Exception, the other ones are not executed.
-		 */
+	private void loadSession() throws SQLException {
+		getResultHistory();
+		sessionTestcases = new LinkedHashMap<String, TestCase>();
+		ResultSet results = getTableContent.executeQuery();
+		while (results.next()) {
+			TestCase tc = createTestCaseFromSqlResult(results);
+			sessionTestcases.put(tc.getTestname(), tc);
+		}
+		results.close();
+	}
+
+	/**
+	 * Write all test cases that have been added or modified in session mode to DB.
+	 * All changes are written within a single transaction. Without session mode
+	 * only the changed footprints need to be written.
+	 */
+	public synchronized void flush() {
+		writeFootprintsToDB();
+		writeNameTokensToDB();
+		if (sessionTestcases == null || (sessionNewTestcases.isEmpty() && sessionModifiedMetrics.isEmpty())) {
+			return;
+		}
+
+		// Values that couldn't be written are kept for the next try
+		if (writeTestcasesToDB(sessionNewTestcases, sessionModifiedMetrics.values())) {
+			sessionNewTestcases.clear();
+			sessionModifiedMetrics.clear();
+		}
+	}
+
+	/**
+	 * Write new and modified test cases to DB. All statements are sent as JDBC
+	 * batches within a single transaction.
+	 *
+	 * @param newTestnames      names of test cases that don't exist in DB yet
+	 * @param modifiedTestcases values of modified metrics to be written
+	 * @return TRUE if the transaction has been committed
+	 */
+	private boolean writeTestcasesToDB(Collection<String> newTestnames, Collection<ModifiedMetrics> modifiedTestcases) {
+		Instant tmStarted = Instant.now();
+		int noOfStatements = 0;
+		int noOfBatches = 0;
+		boolean isCommitted = false;
 		try {
-			createTableTestresults.executeUpdate();
-			createTableTestresults.close();
+			conn.setAutoCommit(false);
+
+			// First create rows for new test cases, afterwards write their values
+			int batchedStatements = 0;
+			for (String testname : newTestnames) {
+				insertNewTest.setString(1, testname);
+				insertNewTest.addBatch();
+				noOfStatements++;
+				batchedStatements++;
+				if (batchedStatements >= batchSize) {
+					insertNewTest.executeBatch();
+					noOfBatches++;
+					batchedStatements = 0;
+				}
+			}
+			if (batchedStatements > 0) {
+				insertNewTest.executeBatch();
+				noOfBatches++;
+			}
+
+			// Test cases are grouped by their modified metrics, every group has it's own
+			// statement and therefore it's own batch
+			HashMap<PreparedStatement, Integer> pendingBatches = new HashMap<PreparedStatement, Integer>();
+			for (ModifiedMetrics modified : modifiedTestcases) {
+				if (modified.modifiedMetrics == 0) {
+					continue;
+				}
+				PreparedStatement metricsMergeStatement = getMergeStatement(modified.modifiedMetrics);
+				setMergeParameters(metricsMergeStatement, modified);
+				metricsMergeStatement.addBatch();
+				noOfStatements++;
+
+				batchedStatements = pendingBatches.getOrDefault(metricsMergeStatement, 0) + 1;
+				if (batchedStatements >= batchSize) {
+					metricsMergeStatement.executeBatch();
+					noOfBatches++;
+					batchedStatements = 0;
+				}
+				pendingBatches.put(metricsMergeStatement, batchedStatements);
+			}
+			for (Map.Entry<PreparedStatement, Integer> pendingBatch : pendingBatches.entrySet()) {
+				if (pendingBatch.getValue() > 0) {
+					pendingBatch.getKey().executeBatch();
+					noOfBatches++;
+				}
+			}
+			conn.commit();
+			isCommitted = true;
 		} catch (SQLException sqlexp) {
-			// if the table is created yet, the exception is not interesting...
-			// 42101 = TABLE_OR_VIEW_ALREADY_EXISTS_1
-			if (sqlexp.getErrorCode() != 42101) {
-				System.out.println("Fehler beim Anlegen der Tabelle:\n" + sqlexp.getMessage());
+			System.err.println("Error while writing test cases to DB:\n" + sqlexp.getMessage() + "\n------------");
+			try {
+				conn.rollback();
+			} catch (SQLException e) {
+				System.err.println(e.getMessage());
+			}
+		} finally {
+			try {
+				conn.setAutoCommit(true);
+			} catch (SQLException e) {
+				System.err.println(e.getMessage());
+			}
+		}
+
+		if (isCommitted && noOfStatements > 0) {
+			System.out.println("[CurrantRunner] Wrote " + noOfStatements + " statements in " + noOfBatches + " batches to DB ("
+					+ Duration.between(tmStarted, Instant.now()).toMillis() + " ms)");
+		}
+		return isCommitted;
+	}
+
+	/**
+	 * Compare the columns of table TESTRESULTS with the current list of metrics.
+	 * Columns of new metrics are added and filled with their default value,
+	 * columns of removed metrics are deleted and columns with a changed type are
+	 * converted. Existing values of all other metrics are kept.
+	 * 
+	 * The list of metrics is stored as signature in table CONFIGURATION. As long as
+	 * the signature is unchanged the columns are not checked again.
+	 * 
+	 * @throws SQLException
+	 */
+	private void updateSchema() throws SQLException {
+		// Nothing to do if the metrics haven't changed since the last check
+		String schemaSignature = getSchemaSignature();
+		if (schemaSignature.equals(readConfiguration(CONFIG_SCHEMA_SIGNATURE))) {
+			return;
+		}
+
+		// Get the current columns and their types in DB
+		HashMap<String, String> columnsInDB = getColumnTypes(TABLE_TESTRESULTS);
+
+		// Add new metrics and convert metrics with changed type
+		Set<String> columnsOfMetrics = new HashSet<String>();
+		columnsOfMetrics.add(COLUMN_TESTNAME.toUpperCase());
+		for (MetricsBase<?> curMetric : allAvailableMetrics) {
+			String columnName = curMetric.getDBColumnName();
+			columnsOfMetrics.add(columnName.toUpperCase());
+			if (!columnsInDB.containsKey(columnName.toUpperCase())) {
+				System.out.println("[CurrantRunner] Add column " + columnName + " to DB...");
+				addMetricColumn(curMetric);
+			} else if (!normalizeColumnType(curMetric.getDBColumnType()).equals(columnsInDB.get(columnName.toUpperCase()))) {
+				System.out.println("[CurrantRunner] Change type of column " + columnName + " to " + curMetric.getDBColumnType() + "...");
+				try {
+					executeStatement("ALTER TABLE " + TABLE_TESTRESULTS + " ALTER COLUMN " + columnName + " SET DATA TYPE "
+							+ curMetric.getDBColumnType());
+				} catch (SQLException sqlexp) {
+					// Values can't be converted, start again with default values
+					executeStatement("ALTER TABLE " + TABLE_TESTRESULTS + " DROP COLUMN " + columnName);
+					addMetricColumn(curMetric);
+				}
+			}
+		}
+
+		// Remove columns of metrics that don't exist anymore
+		for (String columnName : columnsInDB.keySet()) {
+			if (!columnsOfMetrics.contains(columnName)) {
+				System.out.println("[CurrantRunner] Remove column " + columnName.toLowerCase() + " from DB...");
+				executeStatement("ALTER TABLE " + TABLE_TESTRESULTS + " DROP COLUMN " + columnName);
+			}
+		}
+
+		// Older versions stored the model as JAVA_OBJECT, it's converted to bytes
+		// which are still readable by ModelCodec
+		HashMap<String, String> modelColumnsInDB = getColumnTypes(TABLE_MODEL);
+		if ("JAVA_OBJECT".equals(modelColumnsInDB.get(COLUMN_MODEL_CONTENT.toUpperCase()))) {
+			System.out.println("[CurrantRunner] Change type of model column to " + COLUMN_MODEL_TYPE + "...");
+			executeStatement("ALTER TABLE " + TABLE_MODEL + " ALTER COLUMN " + COLUMN_MODEL_CONTENT + " SET DATA TYPE " + COLUMN_MODEL_TYPE);
+		}
+
+		// Version of model is used to detect changes without reading the model
+		if (!modelColumnsInDB.containsKey(COLUMN_MODEL_VERSION.toUpperCase())) {
+			System.out.println("[CurrantRunner] Add column " + COLUMN_MODEL_VERSION + " to model table...");
+			executeStatement("ALTER TABLE " + TABLE_MODEL + " ADD COLUMN " + COLUMN_MODEL_VERSION + " BIGINT DEFAULT 0");
+		}
+
+		// Remember the new schema
+		int schemaVersion = 0;
+		String strSchemaVersion = readConfiguration(CONFIG_SCHEMA_VERSION);
+		if (strSchemaVersion != null) {
+			schemaVersion = Integer.parseInt(strSchemaVersion);
+		}
+		schemaVersion++;
+		writeConfiguration(CONFIG_SCHEMA_VERSION, Integer.toString(schemaVersion));
+		writeConfiguration(CONFIG_SCHEMA_SIGNATURE, schemaSignature);
+		System.out.println("[CurrantRunner] DB schema version: " + schemaVersion);
+	}
+
+	/**
+	 * Get all columns of a table and their types from INFORMATION_SCHEMA
+	 * 
+	 * @param tableName name of table
+	 * @return map from column name (upper case) to type of column
+	 * @throws SQLException
+	 */
+	private HashMap<String, String> getColumnTypes(String tableName) throws SQLException {
+		HashMap<String, String> columnTypes = new HashMap<String, String>();
+		PreparedStatement getColumns = conn.prepareStatement("SELECT COLUMN_NAME, DATA_TYPE, CHARACTER_MAXIMUM_LENGTH "
+				+ "FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_SCHEMA = SCHEMA() AND TABLE_NAME = ?");
+		getColumns.setString(1, tableName);
+		ResultSet results = getColumns.executeQuery();
+		while (results.next()) {
+			String columnType = results.getString("DATA_TYPE");
+			if (results.getObject("CHARACTER_MAXIMUM_LENGTH") != null && columnType.startsWith("CHARACTER")) {
+				columnType += "(" + results.getLong("CHARACTER_MAXIMUM_LENGTH") + ")";
+			}
+			columnTypes.put(results.getString("COLUMN_NAME").toUpperCase(), columnType);
+		}
+		getColumns.close();
+		return columnTypes;
+	}
+
+	/**
+	 * Add a column for a metric to table TESTRESULTS. Existing test cases get the
+	 * default value of the metric.
+	 * 
+	 * @param metric metric to be added
+	 * @throws SQLException
+	 */
+	private void addMetricColumn(MetricsBase<?> metric) throws SQLException {
+		executeStatement("ALTER TABLE " + TABLE_TESTRESULTS + " ADD COLUMN " + metric.getDBColumnName() + " " + metric.getDBColumnType());
+		if (!metric.getDBDefaultValue().equalsIgnoreCase("NULL")) {
+			executeStatement("UPDATE " + TABLE_TESTRESULTS + " SET " + metric.getDBColumnName() + " = " + metric.getDBDefaultValue());
+		}
+	}
+
+	/**
+	 * Get a signature of all metric columns and the model column. It will change
+	 * whenever a metric is added, removed or changed.
+	 * 
+	 * @return signature of table TESTRESULTS
+	 */
+	private String getSchemaSignature() {
+		String schemaSignature = COLUMN_TESTNAME;
+		for (MetricsBase<?> curMetric : allAvailableMetrics) {
+			schemaSignature += "," + curMetric.getDBColumnName() + " " + curMetric.getDBColumnType() + " " + curMetric.getDBDefaultValue();
+		}
+		schemaSignature += ";" + TABLE_MODEL + " " + COLUMN_MODEL_CONTENT + " " + COLUMN_MODEL_TYPE + "," + COLUMN_MODEL_VERSION;
+		return schemaSignature;
+	}
+
+	/**
+	 * Convert a column type into the notation of INFORMATION_SCHEMA, e.g.
+	 * VARCHAR(255) to CHARACTER VARYING(255)
+	 * 
+	 * @param columnType type of column, see {@link MetricsBase#getDBColumnType()}
+	 * @return type of column in INFORMATION_SCHEMA
+	 */
+	private static String normalizeColumnType(String columnType) {
+		String normalizedType = columnType.trim().toUpperCase();
+		if (normalizedType.startsWith("VARCHAR")) {
+			normalizedType = "CHARACTER VARYING" + normalizedType.substring("VARCHAR".length()).trim();
+		} else if (normalizedType.equals("DOUBLE")) {
+			normalizedType = "DOUBLE PRECISION";
+		} else if (normalizedType.equals("INT")) {
+			normalizedType = "INTEGER";
+		}
+		return normalizedType;
+	}
+
+	/**
+	 * Execute a single SQL statement without parameters
+	 * 
+	 * @param sqlStatement statement to be executed
+	 * @throws SQLException
+	 */
+	private void executeStatement(String sqlStatement) throws SQLException {
+		PreparedStatement statement = conn.prepareStatement(sqlStatement);
+		statement.executeUpdate();
+		statement.close();
+	}
+
+	/**
+	 * Read an internal setting from table CONFIGURATION
+	 * 
+	 * @param property name of setting
+	 * @return value of setting or null if not found
+	 * @throws SQLException
+	 */
+	private String readConfiguration(String property) throws SQLException {
+		String content = null;
+		getConfigurationContent.setString(1, property);
+		ResultSet results = getConfigurationContent.executeQuery();
+		if (results.next()) {
+			content = results.getString("content");
+		}
+		results.close();
+		return content;
+	}
+
+	/**
+	 * Write an internal setting to table CONFIGURATION
+	 * 
+	 * @param property name of setting
+	 * @param content  value of setting
+	 * @throws SQLException
+	 */
+	private void writeConfiguration(String property, String content) throws SQLException {
+		mergeConfigurationContent.setString(1, property);
+		mergeConfigurationContent.setString(2, content);
+		mergeConfigurationContent.executeUpdate();
+	}
+
+	/**
+	 * Creates all tables, see {@link #tableDdl}. Tables that already exist are
+	 * kept.
+	 */
+	private void databaseInit() {
+		for (Map.Entry<String, String[]> ddlOfTable : tableDdl.entrySet()) {
+			for (String sqlStatement : ddlOfTable.getValue()) {
+				executeDdl(ddlOfTable.getKey(), sqlStatement);
 			}
 		}
+	}
 
+	/**
+	 * Execute a statement that creates, changes or removes a table. Every
+	 * statement is executed on it's own, so an error doesn't stop the statements
+	 * of the other tables.
+	 * 
+	 * @param table        name of table
+	 * @param sqlStatement statement to be executed
+	 */
+	private void executeDdl(String table, String sqlStatement) {
 		try {
-			createModelTable.executeUpdate();
-			createModelTable.close();
+			executeStatement(sqlStatement);
 		} catch (SQLException sqlexp) {
 			// if the table is created yet, the exception is not interesting...
+			// 42101 = TABLE_OR_VIEW_ALREADY_EXISTS_1
 			if (sqlexp.getErrorCode() != 42101) {
-				System.out.println("Fehler beim Anlegen der Tabelle:\n" + sqlexp.getMessage());
+				System.err.println("Error while changing table " + table + ":\n" + sqlexp.getMessage() + "\n------------");
 			}
 		}
 	}
 
 	/**
-	 * Execute this method to delete all contents of all tables. This is static to
-	 * give direct access to the reset SQL statements without initializing
-	 * everything in case, that the database is faulty.
+	 * Execute this method to delete all contents of all tables. The tables are
+	 * dropped and created again.
 	 * 
-	 * Tables: TESTRESULTS, MODEL, CONFIGURATION
+	 * Tables: TESTRESULTS, MODEL, CONFIGURATION, RUNS, RESULTS, BUILDS, BUILD_TESTS,
+	 * CLASSES, FOOTPRINTS, TOKENS, NAME_TOKENS
 	 */
-	public void resetAllTables() throws SQLException {
-		/*
-		 * Reset all tables separately in try-catch blocks to make sure that all tables
-		 * will be reset and the control flow is not interrupted by Exceptions.
-		 */
-		try {
-			System.out.println("Deleting table " + TABLE_TESTRESULTS);
-			resetTableTestresults.executeUpdate();
-			resetTableTestresults.close();
-		} catch (SQLException e) {
-			System.err.println(e.getMessage());
-		}
-
-		try {
-			System.out.println("Deleting table " + TABLE_MODEL);
-			resetTableModel.executeUpdate();
-			resetTableModel.close();
-		} catch (SQLException e) {
-			System.err.println(e.getMessage());
+	public synchronized void resetAllTables() throws SQLException {
+		for (String table : tableDdl.keySet()) {
+			System.out.println("Deleting table " + table);
+			executeDdl(table, "DROP TABLE " + table);
 		}
+		footprintIndex = null;
+		pendingFootprints.clear();
+		pendingClasses.clear();
+		pendingProbes.clear();
+		nameTokenIndex = null;
+		pendingNameTokens.clear();
+		resultHistory = null;
 
 		// recreate the tables
 		databaseInit();
@@ -231,7 +846,9 @@ public class DatabaseConnector {
 	/**
 	 * Close the database connection.
 	 */
-	public void closeDatabase() {
+	public synchronized void closeDatabase() {
+		// Don't lose any changes of session mode
+		flush();
 		try {
 			conn.close();
 		} catch (SQLException e) {
@@ -255,43 +872,225 @@ public class DatabaseConnector {
 	}
 
 	/**
-	 * Updates the metrics values in database
+	 * Make sure that all given test cases exist in DB. The names are compared with
+	 * the set of known test cases and only missing test cases are added. Without
+	 * session mode they are written to DB with JDBC batches, otherwise they are
+	 * written by the next {@link #flush()}.
 	 * 
+	 * @param testnames names of test cases
+	 */
+	public synchronized void registerTestCases(List<String> testnames) {
+		// Get the names of all test cases that are not known yet
+		Set<String> knownTestnames;
+		if (sessionTestcases != null) {
+			knownTestnames = sessionTestcases.keySet();
+		} else {
+			knownTestnames = new HashSet<String>(getTestCaseNames());
+		}
+		Set<String> newTestnames = new LinkedHashSet<String>();
+		for (String testname : testnames) {
+			if (!knownTestnames.contains(testname)) {
+				newTestnames.add(testname);
+			}
+		}
+		if (newTestnames.isEmpty()) {
+			return;
+		}
+
+		// Add them to DB
+		if (sessionTestcases != null) {
+			for (String testname : newTestnames) {
+				sessionTestcases.put(testname, createNewTestcase(testname));
+				sessionNewTestcases.add(testname);
+			}
+			if (sessionModifiedMetrics.size() + sessionNewTestcases.size() >= flushThreshold) {
+				flush();
+			}
+		} else {
+			writeTestcasesToDB(newTestnames, new ArrayList<ModifiedMetrics>());
+		}
+	}
+
+	/**
+	 * Updates the metrics values in database. In session mode the values of the
+	 * modified metrics are taken now and written later by {@link #flush()}. The
+	 * caller must hold the lock of the test case.
+	 *
 	 * @param tc test case to be dumped
 	 */
-	public void updateMetricsInDB(TestCase tc) {
-		List<MetricsBase<?>> allMetrics = tc.getAllMetrics();
-		for (MetricsBase<?> curMetric : allMetrics) {
-			try {
-				PreparedStatement metricsUpdateStatement = this.updateMetricsMap.get(curMetric.getDBColumnName());
-
-				// First parameter is type dependent (STRING / DOUBLE / INT)
-				if (curMetric instanceof MetricsBaseString) {
-					String metricsValue = ((MetricsBaseString) curMetric).getStringValue();
-					metricsUpdateStatement.setString(1, metricsValue);
-				} else if (curMetric instanceof MetricsBaseDouble) {
-					double metricsValue = ((MetricsBaseDouble) curMetric).getDoubleValue();
-					metricsUpdateStatement.setDouble(1, metricsValue);
-				} else if (curMetric instanceof MetricsBaseInteger) {
-					int metricsValue = ((MetricsBaseInteger) curMetric).getIntegerValue();
-					metricsUpdateStatement.setInt(1, metricsValue);
+	public synchronized void updateMetricsInDB(TestCase tc) {
+		if (sessionTestcases != null) {
+			long modifiedMask = tc.getModifiedMetrics();
+			if (modifiedMask == 0) {
+				return;
+			}
+			ModifiedMetrics modified = sessionModifiedMetrics.get(tc.getTestname());
+			if (modified == null) {
+				modified = new ModifiedMetrics(tc.getTestname(), tc.getAllMetrics().size());
+				sessionModifiedMetrics.put(tc.getTestname(), modified);
+			}
+			modified.take(tc, modifiedMask);
+			tc.clearModifiedMetrics(modifiedMask);
+			if (sessionModifiedMetrics.size() + sessionNewTestcases.size() >= flushThreshold) {
+				flush();
+			}
+			return;
+		}
+		writeMetricsToDB(tc);
+	}
+
+	/**
+	 * Updates the metrics values of several test cases in database. Without
+	 * session mode all modified test cases are written with JDBC batches.
+	 *
+	 * @param testcases test cases to be dumped
+	 */
+	public synchronized void updateMetricsInDB(List<TestCase> testcases) {
+		if (sessionTestcases != null) {
+			for (TestCase tc : testcases) {
+				updateMetricsInDB(tc);
+			}
+			return;
+		}
+
+		Map<TestCase, ModifiedMetrics> modifiedTestcases = new LinkedHashMap<TestCase, ModifiedMetrics>();
+		for (TestCase tc : testcases) {
+			long modifiedMask = tc.getModifiedMetrics();
+			if (modifiedMask != 0) {
+				ModifiedMetrics modified = new ModifiedMetrics(tc.getTestname(), tc.getAllMetrics().size());
+				modified.take(tc, modifiedMask);
+				modifiedTestcases.put(tc, modified);
+			}
+		}
+		if (writeTestcasesToDB(new ArrayList<String>(), modifiedTestcases.values())) {
+			// Only the written metrics are identical to DB now
+			for (Map.Entry<TestCase, ModifiedMetrics> modifiedTestcase : modifiedTestcases.entrySet()) {
+				modifiedTestcase.getKey().clearModifiedMetrics(modifiedTestcase.getValue().modifiedMetrics);
+			}
+		}
+	}
+
+	/**
+	 * Write all modified metric values of a test case to DB. All values are
+	 * written with a single MERGE statement.
+	 *
+	 * @param tc test case to be dumped
+	 */
+	private void writeMetricsToDB(TestCase tc) {
+		long modifiedMask = tc.getModifiedMetrics();
+		if (modifiedMask == 0) {
+			return;
+		}
+
+		try {
+			ModifiedMetrics modified = new ModifiedMetrics(tc.getTestname(), tc.getAllMetrics().size());
+			modified.take(tc, modifiedMask);
+			PreparedStatement metricsMergeStatement = getMergeStatement(modifiedMask);
+			setMergeParameters(metricsMergeStatement, modified);
+			metricsMergeStatement.executeUpdate();
+			tc.clearModifiedMetrics(modifiedMask);
+		} catch (SQLException sqlexp) {
+			System.err.println("Error while updating a testcase:\n" + sqlexp.getMessage() + "\n------------");
+		}
+	}
+
+	/**
+	 * Get the MERGE statement to write the given set of modified metrics. The
+	 * statement is created when the set of metrics is used the first time.
+	 * 
+	 * @param modifiedMetrics bitmask of modified metrics, see
+	 *                        {@link TestCase#getModifiedMetrics()}
+	 * @return prepared statement with parameters for test name and all modified
+	 *         metrics
+	 * @throws SQLException
+	 */
+	private PreparedStatement getMergeStatement(long modifiedMetrics) throws SQLException {
+		PreparedStatement mergeStatement = mergeMetricsMap.get(modifiedMetrics);
+		if (mergeStatement == null) {
+			String sqlMergeStatement = "MERGE INTO " + TABLE_TESTRESULTS + " (" + COLUMN_TESTNAME;
+			String sqlMergeValues = "?";
+			int idxMetric = 0;
+			for (MetricsBase<?> curMetric : allAvailableMetrics) {
+				if (isMetricModified(modifiedMetrics, idxMetric)) {
+					sqlMergeStatement += "," + curMetric.getDBColumnName();
+					sqlMergeValues += ",?";
 				}
+				idxMetric++;
+			}
+			sqlMergeStatement += ") KEY(" + COLUMN_TESTNAME + ") VALUES (" + sqlMergeValues + ")";
+			mergeStatement = conn.prepareStatement(sqlMergeStatement);
+			mergeMetricsMap.put(modifiedMetrics, mergeStatement);
+		}
+		return mergeStatement;
+	}
 
-				// Second parameter of UPDATE statement is test name
-				metricsUpdateStatement.setString(2, tc.getTestname());
-				metricsUpdateStatement.executeUpdate();
-			} catch (SQLException sqlexp) {
-				System.err.println("Error while updating a testcase:\n" + sqlexp.getMessage() + "\n------------");
+	/**
+	 * Fill the parameters of a MERGE statement. First parameter is test name,
+	 * followed by all modified metrics.
+	 * 
+	 * @param mergeStatement statement created by {@link #getMergeStatement(long)}
+	 * @param modified       values of modified metrics to be dumped
+	 * @throws SQLException
+	 */
+	private void setMergeParameters(PreparedStatement mergeStatement, ModifiedMetrics modified) throws SQLException {
+		mergeStatement.setString(1, modified.testname);
+		int idxParameter = 2;
+		int idxMetric = 0;
+		for (MetricsBase<?> curMetric : allAvailableMetrics) {
+			if (isMetricModified(modified.modifiedMetrics, idxMetric)) {
+				setMetricParameter(mergeStatement, idxParameter, curMetric, modified.values[idxMetric]);
+				idxParameter++;
 			}
+			idxMetric++;
 		}
 	}
 
+	/**
+	 * Check whether a metric is part of the bitmask of modified metrics
+	 * 
+	 * @param modifiedMetrics bitmask of modified metrics
+	 * @param idxMetric       index of metric
+	 * @return TRUE if metric has been modified
+	 */
+	private static boolean isMetricModified(long modifiedMetrics, int idxMetric) {
+		if (idxMetric >= Long.SIZE) {
+			return modifiedMetrics == -1L;
+		}
+		return (modifiedMetrics & (1L << idxMetric)) != 0;
+	}
+
+	/**
+	 * Set the value of a metric as parameter of a statement. The parameter is type
+	 * dependent (STRING / DOUBLE / INT).
+	 * 
+	 * @param statement   statement to be filled
+	 * @param idxParamter index of parameter
+	 * @param metric      metric the value belongs to
+	 * @param value       value taken from the metric
+	 * @throws SQLException
+	 */
+	private static void setMetricParameter(PreparedStatement statement, int idxParamter, MetricsBase<?> metric, Object value) throws SQLException {
+		if (metric instanceof MetricsBaseString) {
+			statement.setString(idxParamter, (String) value);
+		} else if (metric instanceof MetricsBaseDouble) {
+			statement.setDouble(idxParamter, (Double) value);
+		} else if (metric instanceof MetricsBaseInteger) {
+			statement.setInt(idxParamter, (Integer) value);
+		}
+	}
+
+
 	/**
 	 * Get a list of all test cases in DB, including it's metric values
 	 * 
 	 * @return all {@link TestCase}s found in the database
 	 */
-	public List<TestCase> getTestCases() {
+	public synchronized List<TestCase> getTestCases() {
+		// In session mode all test cases are already in memory
+		if (sessionTestcases != null) {
+			return new ArrayList<TestCase>(sessionTestcases.values());
+		}
+
 		// array to store the found test cases
 		ArrayList<TestCase> testcases = new ArrayList<TestCase>();
 
@@ -315,7 +1114,18 @@ public class DatabaseConnector {
 	 * @param testname the name of the testcase
 	 * @return The TestCase if it exists in the database.
 	 */
-	public TestCase getTestCaseFromDB(String testname) {
+	public synchronized TestCase getTestCaseFromDB(String testname) {
+		// In session mode new test cases are only created in memory
+		if (sessionTestcases != null) {
+			TestCase testCase = sessionTestcases.get(testname);
+			if (testCase == null) {
+				testCase = createNewTestcase(testname);
+				sessionTestcases.put(testname, testCase);
+				sessionNewTestcases.add(testname);
+			}
+			return testCase;
+		}
+
 		TestCase testCase = createOrFillTestCase(testname);
 		if (testCase == null) {
 			insertNewTest(testname);
@@ -369,14 +1179,37 @@ public class DatabaseConnector {
 				((MetricsBaseInteger) curMetric).setMetricValue(metricsValue);
 			}
 		}
-		
+
+		// History metrics are computed from table RESULTS
+		getResultHistory().applyTo(tc);
+
+		// Values are identical to DB
+		tc.clearModifiedMetrics();
+		return tc;
+	}
+
+	/**
+	 * Create a test case that isn't in DB yet. It may have results of the past,
+	 * if it has been removed as missing test before.
+	 * 
+	 * @param testname name of test case
+	 * @return Created {@link TestCase} object
+	 */
+	private TestCase createNewTestcase(String testname) {
+		TestCase tc = this.testcaseGenerator.createNewTestcase(testname);
+		getResultHistory().applyTo(tc);
+		tc.clearModifiedMetrics();
 		return tc;
 	}
 
 	/**
 	 * @return all {@link TestCase} names found in the database.
 	 */
-	public List<String> getTestCaseNames() {
+	public synchronized List<String> getTestCaseNames() {
+		if (sessionTestcases != null) {
+			return new ArrayList<String>(sessionTestcases.keySet());
+		}
+
 		ArrayList<String> names = new ArrayList<String>();
 		try {
 			ResultSet results = getTestCaseNames.executeQuery();
@@ -395,7 +1228,41 @@ public class DatabaseConnector {
 	 * 
 	 * @param testname the name of the test case
 	 */
-	public void deleteTestcase(TestCase tc) {
+	public synchronized void deleteTestcase(TestCase tc) {
+		// The footprint is removed as well
+		pendingFootprints.remove(tc.getTestname());
+		pendingProbes.remove(tc.getTestname());
+		if (footprintIndex != null) {
+			footprintIndex.removeFootprint(tc.getTestname());
+		}
+		try {
+			deleteFootprint.setString(1, tc.getTestname());
+			deleteFootprint.executeUpdate();
+		} catch (SQLException sqlexp) {
+			System.err.println("Error while deleting a footprint:\n" + sqlexp.getMessage() + "\n------------");
+		}
+
+		// And the tokens of it's name
+		pendingNameTokens.remove(tc.getTestname());
+		if (nameTokenIndex != null) {
+			nameTokenIndex.removeTokens(tc.getTestname());
+		}
+		try {
+			deleteNameTokens.setString(1, tc.getTestname());
+			deleteNameTokens.executeUpdate();
+		} catch (SQLException sqlexp) {
+			System.err.println("Error while deleting tokens of a test name:\n" + sqlexp.getMessage() + "\n------------");
+		}
+
+		// Test cases that are not yet written to DB are only removed from memory
+		if (sessionTestcases != null) {
+			sessionTestcases.remove(tc.getTestname());
+			sessionModifiedMetrics.remove(tc.getTestname());
+			if (sessionNewTestcases.remove(tc.getTestname())) {
+				return;
+			}
+		}
+
 		try {
 			System.out.println("Remove testcase " + tc.getTestname() + " from DB...");
 			deleteTestcase.setString(1, tc.getTestname());
@@ -405,60 +1272,643 @@ public class DatabaseConnector {
 		}
 	}
 
+	// --- RUN HISTORY ---
+
+	@Override
+	public synchronized void beginRun() {
+		currentRun = new TestRun();
+	}
+
+	@Override
+	public synchronized void recordResult(String testname, TestCase.Results result, Duration tmExecution) {
+		if (currentRun != null) {
+			currentRun.addResult(testname, result, tmExecution);
+			getResultHistory().addPendingResult(testname, result);
+		}
+	}
+
+	/**
+	 * Read the last results of every test from table RESULTS with a single
+	 * windowed query. Older results that are only stored in the history metric of
+	 * table TESTRESULTS are added in front, results of the current run are added,
+	 * they aren't stored yet.
+	 * 
+	 * @return last results of all tests
+	 */
+	private ResultHistory getResultHistory() {
+		if (resultHistory == null) {
+			ResultHistory history = new ResultHistory(ResultHistory.getDepth(allAvailableMetrics));
+			if (history.getDepth() > 0) {
+				try {
+					getLastResults.setInt(1, history.getDepth());
+					ResultSet results = getLastResults.executeQuery();
+					while (results.next()) {
+						history.addResult(results.getString(COLUMN_TESTNAME), results.getLong("run_id"),
+								TestCase.Results.values()[results.getInt("result")]);
+					}
+					results.close();
+					results = getStoredHistory.executeQuery();
+					while (results.next()) {
+						history.addStoredHistory(results.getString(COLUMN_TESTNAME), results.getString("history"));
+					}
+					results.close();
+				} catch (SQLException sqlexp) {
+					System.err.println("Error while reading history of results:\n" + sqlexp.getMessage() + "\n------------");
+				}
+			}
+			if (currentRun != null) {
+				for (TestRun.Result result : currentRun.getResults()) {
+					history.addPendingResult(result.getTestname(), result.getResult());
+				}
+			}
+			resultHistory = history;
+		}
+		return resultHistory;
+	}
+
 	/**
-	 * Prints the table TESTRESULT (as table with all test case metrics)
+	 * Write the current run to table RUNS and all it's results to table RESULTS
+	 * with JDBC batches. Afterwards runs exceeding the retention are removed, the
+	 * last results of every test are kept by downsampling.
 	 */
-	public void printDatabase(List<MetricsBase<?>> allAvailableMetrics) {
+	@Override
+	public synchronized void endRun() {
+		if (currentRun == null) {
+			return;
+		}
+		TestRun run = currentRun;
+		currentRun = null;
+		run.finish();
+
+		Instant tmStarted = Instant.now();
 		try {
-			// - Generate format definition -
-			final String strSeparator = " | ";
-			int iNonMetricColumns = 1;
-			String formatTable = "%55s" + strSeparator; // <<< for test name
-			for (MetricsBase<?> curMetric : allAvailableMetrics) {
-				int widthOfColumn = Math.max(curMetric.getCliMinLength(), curMetric.getCliName().length());
-				formatTable += "%" + Integer.toString(widthOfColumn) + "s" + strSeparator;
+			conn.setAutoCommit(false);
+
+			// Create the run
+			insertNewRun.setTimestamp(1, Timestamp.from(run.getStarted()));
+			insertNewRun.setTimestamp(2, Timestamp.from(run.getFinished()));
+			insertNewRun.setInt(3, run.getResults().size());
+			insertNewRun.setInt(4, run.getNoOfFailures());
+			insertNewRun.executeUpdate();
+			ResultSet generatedKeys = insertNewRun.getGeneratedKeys();
+			generatedKeys.next();
+			long runId = generatedKeys.getLong(1);
+			generatedKeys.close();
+
+			// Add all results
+			int batchedStatements = 0;
+			for (TestRun.Result result : run.getResults()) {
+				insertNewResult.setLong(1, runId);
+				insertNewResult.setString(2, result.getTestname());
+				insertNewResult.setInt(3, result.getResult().ordinal());
+				insertNewResult.setLong(4, result.getDurationMilliSec());
+				insertNewResult.addBatch();
+				batchedStatements++;
+				if (batchedStatements >= batchSize) {
+					insertNewResult.executeBatch();
+					batchedStatements = 0;
+				}
 			}
-			// Remove the last ' | ' in statement
-			if (formatTable.endsWith(strSeparator)) {
-				formatTable = formatTable.substring(0, formatTable.length() - strSeparator.length());
+			if (batchedStatements > 0) {
+				insertNewResult.executeBatch();
 			}
 
-			// - HEADER -
-			Object header[] = new String[iNonMetricColumns + allAvailableMetrics.size()];
-			header[0] = "Name of testcase";
-			int idxColumns = 1;
-			for (MetricsBase<?> curMetric : allAvailableMetrics) {
-				header[idxColumns] = curMetric.getCliName();
-				idxColumns++;
+			// Retention: remove old runs and downsample the older ones
+			deleteOldResults.setLong(1, runId - TestRun.getMaxRunsKept());
+			deleteOldResults.executeUpdate();
+			deleteOldRuns.setLong(1, runId - TestRun.getMaxRunsKept());
+			deleteOldRuns.executeUpdate();
+			deletePassedResults.setLong(1, runId - TestRun.getDetailRuns());
+			deletePassedResults.setInt(2, getResultHistory().getDepth());
+			deletePassedResults.executeUpdate();
+			conn.commit();
+			getResultHistory().assignRun(runId);
+
+			System.out.println("[CurrantRunner] Stored run " + runId + " with " + run.getResults().size() + " results ("
+					+ Duration.between(tmStarted, Instant.now()).toMillis() + " ms)");
+		} catch (SQLException sqlexp) {
+			System.err.println("Error while writing test run to DB:\n" + sqlexp.getMessage() + "\n------------");
+			try {
+				conn.rollback();
+			} catch (SQLException e) {
+				System.err.println(e.getMessage());
+			}
+		} finally {
+			try {
+				conn.setAutoCommit(true);
+			} catch (SQLException e) {
+				System.err.println(e.getMessage());
 			}
-			String strHeader = String.format(formatTable, header);
-			System.out.println(strHeader);
+		}
+	}
 
-			// - DATA -
-			// Dump results of data base query (STRING / DOUBLE / INT)
-			ResultSet results = getTableContent.executeQuery();
+	// --- MULTIPLE PROCESSES ---
+
+	/**
+	 * Count the started test suite of a build within a single transaction. Builds
+	 * of other processes that haven't been finalized are reported.
+	 */
+	@Override
+	public synchronized int startSuiteOfBuild(String buildId, int expectedSuites) {
+		int startedSuites = 0;
+		try {
+			conn.setAutoCommit(false);
+
+			// Count this suite
+			startBuildSuite.setString(1, buildId);
+			startBuildSuite.setInt(2, expectedSuites);
+			executeMergeOfBuild(startBuildSuite);
+			getBuild.setString(1, buildId);
+			ResultSet results = getBuild.executeQuery();
+			if (results.next() && !results.getBoolean("finalized")) {
+				startedSuites = results.getInt("started_suites");
+			}
+			results.close();
+
+			// Builds that are never finalized, e.g. because a process has crashed
+			getUnfinalizedBuilds.setString(1, buildId);
+			results = getUnfinalizedBuilds.executeQuery();
 			while (results.next()) {
-				Object dataOfTestcase[] = new String[iNonMetricColumns + allAvailableMetrics.size()];
-				dataOfTestcase[0] = results.getString(COLUMN_TESTNAME); // << name of test case
-				idxColumns = 1;
-				for (MetricsBase<?> curMetric : allAvailableMetrics) {
-					if (curMetric instanceof MetricsBaseString) {
-						String dbValue = results.getString(curMetric.getDBColumnName());
-						dataOfTestcase[idxColumns] = ((MetricsBaseString) curMetric).formatCliCurrentValue(dbValue);
-					} else if (curMetric instanceof MetricsBaseDouble) {
-						double dbValue = results.getDouble(curMetric.getDBColumnName());
-						dataOfTestcase[idxColumns] = ((MetricsBaseDouble) curMetric).formatCliCurrentValue(dbValue);
-					} else if (curMetric instanceof MetricsBaseInteger) {
-						int dbValue = results.getInt(curMetric.getDBColumnName());
-						dataOfTestcase[idxColumns] = ((MetricsBaseInteger) curMetric).formatCliCurrentValue(dbValue);
-					}
-					idxColumns++;
+				System.out.println("[CurrantRunner] WARNING: Build " + results.getString("build_id") + " (started " + results.getTimestamp("started")
+						+ ") hasn't been finalized, " + results.getInt("finished_suites") + " of " + results.getInt("started_suites")
+						+ " test suites have finished");
+			}
+			results.close();
+			conn.commit();
+		} catch (SQLException sqlexp) {
+			System.err.println("Error while starting test suite of build:\n" + sqlexp.getMessage() + "\n------------");
+			try {
+				conn.rollback();
+			} catch (SQLException e) {
+				System.err.println(e.getMessage());
+			}
+		} finally {
+			try {
+				conn.setAutoCommit(true);
+			} catch (SQLException e) {
+				System.err.println(e.getMessage());
+			}
+		}
+		return startedSuites;
+	}
+
+	/**
+	 * Count the finished test suite of a build and remember it's tests. Everything
+	 * is done within a single transaction, the row of the build is locked until
+	 * the transaction is committed. Therefore suites of other processes are
+	 * counted one after another and only the one that finishes the last started
+	 * suite is able to finalize the build.
+	 */
+	@Override
+	public synchronized boolean finishSuiteOfBuild(String buildId, int expectedSuites, List<String> allTestsInSuite, List<String> allExecutedTests) {
+		boolean isLastSuite = false;
+		try {
+			conn.setAutoCommit(false);
+
+			// Count this suite, the row of the build is locked from now on
+			mergeBuild.setString(1, buildId);
+			mergeBuild.setInt(2, expectedSuites);
+			executeMergeOfBuild(mergeBuild);
+			getBuild.setString(1, buildId);
+			ResultSet results = getBuild.executeQuery();
+			boolean wasFinalized = results.next() && results.getBoolean("finalized");
+			results.close();
+
+			// Remember all tests of this suite
+			Set<String> executedTests = new HashSet<String>(allExecutedTests);
+			Set<String> suiteTests = new LinkedHashSet<String>(allTestsInSuite);
+			suiteTests.addAll(executedTests);
+			int batchedStatements = 0;
+			for (String testname : suiteTests) {
+				mergeBuildTest.setString(1, buildId);
+				mergeBuildTest.setString(2, testname);
+				mergeBuildTest.setBoolean(3, executedTests.contains(testname));
+				mergeBuildTest.addBatch();
+				batchedStatements++;
+				if (batchedStatements >= batchSize) {
+					mergeBuildTest.executeBatch();
+					batchedStatements = 0;
 				}
-				String strDataOfTestcase = String.format(formatTable, dataOfTestcase);
-				System.out.println(strDataOfTestcase);
 			}
-		} catch (SQLException e) {
-			System.err.println(e.getMessage());
+			if (batchedStatements > 0) {
+				mergeBuildTest.executeBatch();
+			}
+
+			// The last suite finalizes the build, a suite that finishes after it has been
+			// finalized does it again
+			claimBuild.setString(1, buildId);
+			isLastSuite = (claimBuild.executeUpdate() == 1);
+			if (wasFinalized) {
+				System.out.println("[CurrantRunner] WARNING: Build " + buildId + " has been finalized before this test suite has finished"
+						+ (isLastSuite ? ", it's finalized again" : ""));
+			}
+
+			// Remove data of previous builds
+			deleteOldBuildTests.setString(1, buildId);
+			deleteOldBuildTests.executeUpdate();
+			deleteOldBuilds.setString(1, buildId);
+			deleteOldBuilds.executeUpdate();
+			conn.commit();
+		} catch (SQLException sqlexp) {
+			System.err.println("Error while finishing test suite of build:\n" + sqlexp.getMessage() + "\n------------");
+			isLastSuite = false;
+			try {
+				conn.rollback();
+			} catch (SQLException e) {
+				System.err.println(e.getMessage());
+			}
+		} finally {
+			try {
+				conn.setAutoCommit(true);
+			} catch (SQLException e) {
+				System.err.println(e.getMessage());
+			}
+		}
+		return isLastSuite;
+	}
+
+	/**
+	 * Execute a MERGE of the row of a build. Suites of other processes may insert
+	 * the row at the same time, only one insert succeeds. Afterwards the row exists
+	 * and the MERGE of the other suites updates it.
+	 * 
+	 * @param mergeStatement MERGE with all parameters set
+	 * @throws SQLException
+	 */
+	private void executeMergeOfBuild(PreparedStatement mergeStatement) throws SQLException {
+		try {
+			mergeStatement.executeUpdate();
+		} catch (SQLException sqlexp) {
+			// 23505 = DUPLICATE_KEY_1, only the failed statement has been rolled back
+			if (sqlexp.getErrorCode() != 23505) {
+				throw sqlexp;
+			}
+			mergeStatement.executeUpdate();
+		}
+	}
+
+	@Override
+	public synchronized List<String> getTestsOfBuild(String buildId, boolean onlyExecuted) {
+		ArrayList<String> names = new ArrayList<String>();
+		try {
+			PreparedStatement getTests = onlyExecuted ? getExecutedTestsOfBuild : getTestsOfBuild;
+			getTests.setString(1, buildId);
+			ResultSet results = getTests.executeQuery();
+			while (results.next()) {
+				names.add(results.getString(COLUMN_TESTNAME));
+			}
+			results.close();
+		} catch (SQLException sqlexp) {
+			System.err.println("Error while retrieving tests of build:\n" + sqlexp.getMessage() + "\n------------");
+		}
+		return names;
+	}
+
+	/**
+	 * Write pending changes and read all test cases again into the session cache.
+	 * The footprints, tokens of test names and the history of results are read
+	 * again on next use. Without
+	 * session mode nothing else needs to be done.
+	 */
+	@Override
+	public synchronized void refresh() {
+		flush();
+		footprintIndex = null;
+		nameTokenIndex = null;
+		resultHistory = null;
+		if (sessionTestcases == null) {
+			return;
+		}
+		try {
+			sessionNewTestcases.clear();
+			sessionModifiedMetrics.clear();
+			loadSession();
+		} catch (SQLException sqlexp) {
+			System.err.println("Error while reading test cases:\n" + sqlexp.getMessage() + "\n------------");
+		}
+	}
+
+	// --- COVERAGE FOOTPRINTS ---
+
+	/**
+	 * Read the index from tables CLASSES and FOOTPRINTS
+	 */
+	@Override
+	public synchronized FootprintIndex getFootprintIndex() {
+		if (footprintIndex == null) {
+			FootprintIndex index = new FootprintIndex();
+			try {
+				ResultSet results = getClasses.executeQuery();
+				while (results.next()) {
+					index.putClass(results.getInt("class_idx"), results.getString("name"), results.getLong("class_id"));
+				}
+				results.close();
+				results = getFootprints.executeQuery();
+				while (results.next()) {
+					index.putFootprint(results.getString(COLUMN_TESTNAME), FootprintIndex.decode(results.getBytes("classes")));
+					index.putSketch(results.getString(COLUMN_TESTNAME), CoverageSketch.decode(results.getBytes("sketch")));
+				}
+				results.close();
+			} catch (SQLException sqlexp) {
+				System.err.println("Error while reading footprints:\n" + sqlexp.getMessage() + "\n------------");
+			}
+			footprintIndex = index;
+		}
+		return footprintIndex;
+	}
+
+	/**
+	 * New classes are added to table CLASSES at once, the footprint and changed
+	 * ids of classes are written by {@link #flush()}.
+	 */
+	@Override
+	public synchronized void updateFootprint(String testname, SortedMap<String, Long> touchedClasses, Map<String, boolean[]> executedProbes) {
+		FootprintIndex index = getFootprintIndex();
+		try {
+			for (Map.Entry<String, Long> touchedClass : touchedClasses.entrySet()) {
+				if (index.getClassIndex(touchedClass.getKey()) < 0) {
+					index.putClass(insertClass(touchedClass.getKey(), touchedClass.getValue()), touchedClass.getKey(),
+							touchedClass.getValue());
+				}
+			}
+		} catch (SQLException sqlexp) {
+			System.err.println("Error while adding a class:\n" + sqlexp.getMessage() + "\n------------");
+			return;
+		}
+		if (index.update(testname, touchedClasses, pendingClasses)) {
+			pendingFootprints.add(testname);
+		}
+		ProbeBitmap bitmap = index.toProbeBitmap(executedProbes);
+		byte[] encodedProbes = bitmap.encode();
+		if (index.updateProbes(testname, encodedProbes)) {
+			index.putSketch(testname, CoverageSketch.compute(bitmap));
+			pendingProbes.put(testname, encodedProbes);
+		}
+	}
+
+	/**
+	 * Probes are read with a single scan of table FOOTPRINTS, pending probes
+	 * haven't been written yet
+	 */
+	@Override
+	public synchronized Map<String, ProbeBitmap> getProbeBitmaps(Collection<String> testnames) {
+		Set<String> requestedTests = new HashSet<String>(testnames);
+		Map<String, ProbeBitmap> bitmaps = new HashMap<String, ProbeBitmap>();
+		try {
+			ResultSet results = getProbes.executeQuery();
+			while (results.next()) {
+				String testname = results.getString(COLUMN_TESTNAME);
+				if (requestedTests.contains(testname) && !pendingProbes.containsKey(testname)) {
+					bitmaps.put(testname, ProbeBitmap.decode(results.getBytes("probes")));
+				}
+			}
+			results.close();
+		} catch (SQLException sqlexp) {
+			System.err.println("Error while reading probes:\n" + sqlexp.getMessage() + "\n------------");
+		}
+		for (Map.Entry<String, byte[]> pendingProbe : pendingProbes.entrySet()) {
+			if (requestedTests.contains(pendingProbe.getKey())) {
+				bitmaps.put(pendingProbe.getKey(), ProbeBitmap.decode(pendingProbe.getValue()));
+			}
+		}
+		return bitmaps;
+	}
+
+	@Override
+	public synchronized void updateClassIds(Map<String, Long> classIds) {
+		FootprintIndex index = getFootprintIndex();
+		for (Map.Entry<String, Long> classId : classIds.entrySet()) {
+			int classIdx = index.getClassIndex(classId.getKey());
+			if (classIdx >= 0 && index.getClassId(classIdx) != classId.getValue()) {
+				index.putClass(classIdx, classId.getKey(), classId.getValue());
+				pendingClasses.add(classIdx);
+			}
+		}
+	}
+
+	/**
+	 * Add a class to table CLASSES. If another process has added it meanwhile, the
+	 * existing index is used.
+	 *
+	 * @param className name of class
+	 * @param classId   id of class (CRC64 of bytecode)
+	 * @return index of class
+	 * @throws SQLException
+	 */
+	private int insertClass(String className, long classId) throws SQLException {
+		mergeClass.setString(1, className);
+		mergeClass.setLong(2, classId);
+		mergeClass.executeUpdate();
+
+		getClassIndex.setString(1, className);
+		ResultSet results = getClassIndex.executeQuery();
+		results.next();
+		int classIdx = results.getInt("class_idx");
+		results.close();
+		return classIdx;
+	}
+
+	/**
+	 * Write the changed footprints, probes, sketches and ids of classes with JDBC
+	 * batches within a single transaction
+	 */
+	private void writeFootprintsToDB() {
+		if (footprintIndex == null || (pendingFootprints.isEmpty() && pendingClasses.isEmpty() && pendingProbes.isEmpty())) {
+			return;
+		}
+		try {
+			conn.setAutoCommit(false);
+
+			int batchedStatements = 0;
+			for (int classIdx : pendingClasses) {
+				updateClassId.setLong(1, footprintIndex.getClassId(classIdx));
+				updateClassId.setInt(2, classIdx);
+				updateClassId.addBatch();
+				batchedStatements++;
+				if (batchedStatements >= batchSize) {
+					updateClassId.executeBatch();
+					batchedStatements = 0;
+				}
+			}
+			if (batchedStatements > 0) {
+				updateClassId.executeBatch();
+			}
+
+			batchedStatements = 0;
+			for (String testname : pendingFootprints) {
+				int[] footprint = footprintIndex.getFootprint(testname);
+				if (footprint == null) {
+					continue;
+				}
+				mergeFootprint.setString(1, testname);
+				mergeFootprint.setBytes(2, FootprintIndex.encode(footprint));
+				mergeFootprint.addBatch();
+				batchedStatements++;
+				if (batchedStatements >= batchSize) {
+					mergeFootprint.executeBatch();
+					batchedStatements = 0;
+				}
+			}
+			if (batchedStatements > 0) {
+				mergeFootprint.executeBatch();
+			}
+
+			// The footprints exist now, so their probes and sketches can be updated
+			batchedStatements = 0;
+			for (Map.Entry<String, byte[]> pendingProbe : pendingProbes.entrySet()) {
+				int[] sketch = footprintIndex.getSketch(pendingProbe.getKey());
+				updateProbes.setBytes(1, pendingProbe.getValue());
+				updateProbes.setBytes(2, (sketch != null) ? CoverageSketch.encode(sketch) : null);
+				updateProbes.setString(3, pendingProbe.getKey());
+				updateProbes.addBatch();
+				batchedStatements++;
+				if (batchedStatements >= batchSize) {
+					updateProbes.executeBatch();
+					batchedStatements = 0;
+				}
+			}
+			if (batchedStatements > 0) {
+				updateProbes.executeBatch();
+			}
+			conn.commit();
+			pendingClasses.clear();
+			pendingFootprints.clear();
+			pendingProbes.clear();
+		} catch (SQLException sqlexp) {
+			System.err.println("Error while writing footprints to DB:\n" + sqlexp.getMessage() + "\n------------");
+			try {
+				conn.rollback();
+			} catch (SQLException e) {
+				System.err.println(e.getMessage());
+			}
+		} finally {
+			try {
+				conn.setAutoCommit(true);
+			} catch (SQLException e) {
+				System.err.println(e.getMessage());
+			}
+		}
+	}
+
+	// --- NAME TOKENS ---
+
+	/**
+	 * Read the index from tables TOKENS and NAME_TOKENS
+	 */
+	@Override
+	public synchronized NameTokenIndex getNameTokenIndex() {
+		if (nameTokenIndex == null) {
+			NameTokenIndex index = new NameTokenIndex();
+			try {
+				ResultSet results = getTokens.executeQuery();
+				while (results.next()) {
+					index.putToken(results.getInt("token_idx"), results.getString("token"));
+				}
+				results.close();
+				results = getNameTokens.executeQuery();
+				while (results.next()) {
+					index.putTokens(results.getString(COLUMN_TESTNAME), NameTokenIndex.decode(results.getBytes("tokens")));
+				}
+				results.close();
+			} catch (SQLException sqlexp) {
+				System.err.println("Error while reading tokens of test names:\n" + sqlexp.getMessage() + "\n------------");
+			}
+			nameTokenIndex = index;
+		}
+		return nameTokenIndex;
+	}
+
+	/**
+	 * New tokens are added to table TOKENS at once, the tokens of the test are
+	 * written by {@link #flush()}.
+	 */
+	@Override
+	public synchronized int[] updateNameTokens(String testname, List<String> tokens) {
+		NameTokenIndex index = getNameTokenIndex();
+		int[] tokenIndices = new int[tokens.size()];
+		try {
+			for (int idxToken = 0; idxToken < tokenIndices.length; idxToken++) {
+				String token = tokens.get(idxToken);
+				int tokenIdx = index.getTokenIndex(token);
+				if (tokenIdx < 0) {
+					tokenIdx = insertToken(token);
+					index.putToken(tokenIdx, token);
+				}
+				tokenIndices[idxToken] = tokenIdx;
+			}
+		} catch (SQLException sqlexp) {
+			System.err.println("Error while adding a token:\n" + sqlexp.getMessage() + "\n------------");
+			return new int[0];
+		}
+		index.putTokens(testname, tokenIndices);
+		pendingNameTokens.add(testname);
+		return tokenIndices.clone();
+	}
+
+	/**
+	 * Add a token to table TOKENS. If another process has added it meanwhile, the
+	 * existing index is used.
+	 *
+	 * @param token the token
+	 * @return index of token
+	 * @throws SQLException
+	 */
+	private int insertToken(String token) throws SQLException {
+		mergeToken.setString(1, token);
+		mergeToken.executeUpdate();
+
+		getTokenIndex.setString(1, token);
+		ResultSet results = getTokenIndex.executeQuery();
+		results.next();
+		int tokenIdx = results.getInt("token_idx");
+		results.close();
+		return tokenIdx;
+	}
+
+	/**
+	 * Write the changed tokens of tests with JDBC batches within a single
+	 * transaction
+	 */
+	private void writeNameTokensToDB() {
+		if (nameTokenIndex == null || pendingNameTokens.isEmpty()) {
+			return;
+		}
+		try {
+			conn.setAutoCommit(false);
+
+			int batchedStatements = 0;
+			for (String testname : pendingNameTokens) {
+				int[] tokenIndices = nameTokenIndex.getTokens(testname);
+				if (tokenIndices == null) {
+					continue;
+				}
+				mergeNameTokens.setString(1, testname);
+				mergeNameTokens.setBytes(2, NameTokenIndex.encode(tokenIndices));
+				mergeNameTokens.addBatch();
+				batchedStatements++;
+				if (batchedStatements >= batchSize) {
+					mergeNameTokens.executeBatch();
+					batchedStatements = 0;
+				}
+			}
+			if (batchedStatements > 0) {
+				mergeNameTokens.executeBatch();
+			}
+			conn.commit();
+			pendingNameTokens.clear();
+		} catch (SQLException sqlexp) {
+			System.err.println("Error while writing tokens of test names to DB:\n" + sqlexp.getMessage() + "\n------------");
+			try {
+				conn.rollback();
+			} catch (SQLException e) {
+				System.err.println(e.getMessage());
+			}
+		} finally {
+			try {
+				conn.setAutoCommit(true);
+			} catch (SQLException e) {
+				System.err.println(e.getMessage());
+			}
 		}
 	}
 
@@ -466,41 +1916,65 @@ public class DatabaseConnector {
 
 	/**
 	 * Update the model content in the database.
-	 * If not model data is available, a new model is created
+	 * If not model data is available, a new model is created.
+	 * The version of the model is increased with each update.
 	 * 
-	 * @param model		model class to be stored in DB
+	 * @param model		model class to be stored in DB, see {@link ModelCodec}
 	 */
-	public void insertOrUpdateModel(Object model) {
+	public synchronized void insertOrUpdateModel(Object model) {
 		try {
-			if (getModel() == null) {
-				insertNewModel.setObject(1, model);
-				insertNewModel.executeUpdate();
-			} else {
-				updateModelContent.setObject(1, model);
-				updateModelContent.executeUpdate();
+			byte[] encodedModel = ModelCodec.encode(model);
+			mergeModelContent.setBytes(1, encodedModel);
+			mergeModelContent.setBytes(2, encodedModel);
+			mergeModelContent.executeUpdate();
+		} catch (SQLException e) {
+			System.out.println(e.getMessage());
+		} catch (IOException e) {
+			System.err.println("[CurrantRunner] Model can't be stored: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Get the version of the model that is stored in the database. The version is
+	 * increased whenever the model is updated, so it can be used to check if a
+	 * loaded model is still up to date without reading the model itself.
+	 * 
+	 * @return version of model, 0 if there is no model yet
+	 */
+	public synchronized long getModelVersion() {
+		long version = 0;
+		try {
+			ResultSet results = getModelVersion.executeQuery();
+			if (results.next()) {
+				version = results.getLong(COLUMN_MODEL_VERSION);
 			}
+			results.close();
 		} catch (SQLException e) {
 			System.out.println(e.getMessage());
 		}
+		return version;
 	}
 
 	/**
 	 * Get the model bytes that are stored in the database.
-	 * Return null if there is no model in the database
+	 * Return null if there is no model in the database or if the stored model is
+	 * corrupt or incompatible. In this case a new model will be built.
 	 * 
 	 * @return the model class from the database.
 	 */
-	public Object getModel() {
+	public synchronized Object getModel() {
 		Object model = null; // if there is not model yet, null is returned
 		ResultSet results;
 		try {
 			results = getModelContent.executeQuery();
 			while (results.next()) {
-				model = results.getObject("content");
+				model = ModelCodec.decode(results.getBytes(COLUMN_MODEL_CONTENT));
 				break;
 			}
 		} catch (SQLException e) {
 			System.out.println(e.getMessage());
+		} catch (IOException e) {
+			System.err.println("[CurrantRunner] Stored model is corrupt or incompatible and will be rebuilt: " + e.getMessage());
 		} catch (Exception e) { // second exception can happen, when results is null, but accessed with .next()
 			System.out.println(e.getMessage());
 		}
@@ -0,0 +1,96 @@
+package de.proficom.currantrunner.core;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Gate for tests executed in parallel. Tests that measure data of the whole JVM
+ * (e.g. coverage of JaCoCo's agent) pass the gate exclusively and are executed
+ * alone, all other tests pass it shared and still run in parallel.<br/>
+ * <br/>
+ * The gate counts how long tests have waited and how long exclusive tests have
+ * blocked the others, so the cost of lost parallelism can be reported.
+ */
+class ExecutionGate {
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/**
+	 * Statistics of the current test suite
+	 */
+	private final AtomicInteger noOfExclusive = new AtomicInteger();
+	private final AtomicInteger noOfShared = new AtomicInteger();
+	private final AtomicLong nanosWaiting = new AtomicLong();
+	private final AtomicLong nanosExclusive = new AtomicLong();
+	private volatile Instant tmSuiteStarted = Instant.now();
+
+	/**
+	 * Pass the gate before a test is executed. Blocks until the test may be
+	 * started.
+	 *
+	 * @param invocation test to be executed
+	 * @param exclusive  TRUE if the test must be executed alone
+	 */
+	void enter(TestInvocation invocation, boolean exclusive) {
+		Lock gateLock = exclusive ? lock.writeLock() : lock.readLock();
+		long tmWaitStarted = System.nanoTime();
+		gateLock.lock();
+		long tmEntered = System.nanoTime();
+
+		nanosWaiting.addAndGet(tmEntered - tmWaitStarted);
+		if (exclusive) {
+			noOfExclusive.incrementAndGet();
+		} else {
+			noOfShared.incrementAndGet();
+		}
+		invocation.enteredGate(gateLock, exclusive, tmEntered, Duration.ofNanos(tmEntered - tmWaitStarted));
+	}
+
+	/**
+	 * Leave the gate after a test has been finished. Must be called by the thread
+	 * that has entered the gate.
+	 *
+	 * @param invocation test that has been executed
+	 */
+	void leave(TestInvocation invocation) {
+		Lock gateLock = invocation.leftGate();
+		if (gateLock == null) {
+			return;
+		}
+		if (invocation.isExclusive()) {
+			nanosExclusive.addAndGet(System.nanoTime() - invocation.getGateEntered());
+		}
+		gateLock.unlock();
+	}
+
+	/**
+	 * Reset the statistics when a new test suite is started
+	 */
+	void resetStatistics() {
+		noOfExclusive.set(0);
+		noOfShared.set(0);
+		nanosWaiting.set(0);
+		nanosExclusive.set(0);
+		tmSuiteStarted = Instant.now();
+	}
+
+	/**
+	 * Print the cost of lost parallelism in current test suite
+	 */
+	void printStatistics() {
+		int noOfTests = noOfExclusive.get() + noOfShared.get();
+		if (noOfTests == 0) {
+			return;
+		}
+		long msSuite = Math.max(1, Duration.between(tmSuiteStarted, Instant.now()).toMillis());
+		long msExclusive = Duration.ofNanos(nanosExclusive.get()).toMillis();
+		long msWaiting = Duration.ofNanos(nanosWaiting.get()).toMillis();
+		System.out.println(String.format(
+				"[CurrantRunner] Execution gate: %d of %d tests executed alone for %d ms (%.1f%% of %d ms), "
+						+ "tests waited %d ms for the gate",
+				noOfExclusive.get(), noOfTests, msExclusive, 100.0 * msExclusive / msSuite, msSuite, msWaiting));
+	}
+}
@@ -0,0 +1,135 @@
+package de.proficom.currantrunner.core;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Skipping of tests after a correlated failure. When a test fails, tests that
+ * haven't been started yet and have executed nearly the same classes (see
+ * {@link FootprintIndex#getOverlappingTests(String, double)}) are likely to
+ * fail for the same reason. In fast feedback builds they are skipped, so the
+ * build reports the failure without executing all of them.<br/>
+ * <br/>
+ * Two tests are correlated if the Jaccard similarity of their footprints is at
+ * least the threshold set by environment parameter
+ * <code>currantRunner.correlationThreshold</code> (default 0.8). Tests without
+ * a measured footprint are never skipped.<br/>
+ * <br/>
+ * All methods are synchronized, tests may fail in several threads at once.
+ */
+class FailureCorrelation {
+	static final String PARAM_CORRELATION_THRESHOLD = "currantRunner.correlationThreshold";
+	private static final double DEFAULT_CORRELATION_THRESHOLD = 0.8;
+
+	private final double threshold;
+
+	/**
+	 * Tests started in the current test suite, they aren't skipped anymore
+	 */
+	private final Set<String> startedTests = new HashSet<String>();
+
+	/**
+	 * Failed test that has caused the skip by name of correlated test
+	 */
+	private final Map<String, String> correlatedTests = new HashMap<String, String>();
+
+	/**
+	 * Correlated tests that have been checked by {@link #skip(String)}. The first
+	 * check decides for all invocations of a test, e.g. of a data provider.
+	 */
+	private final Set<String> decidedTests = new HashSet<String>();
+
+	/**
+	 * Statistics of the current test suite
+	 */
+	private final Set<String> failedTests = new LinkedHashSet<String>();
+	private final Set<String> skippedTests = new LinkedHashSet<String>();
+
+	FailureCorrelation() {
+		this.threshold = getCorrelationThreshold();
+	}
+
+	/**
+	 * Forget all tests of the last test suite
+	 */
+	synchronized void reset() {
+		startedTests.clear();
+		correlatedTests.clear();
+		decidedTests.clear();
+		failedTests.clear();
+		skippedTests.clear();
+	}
+
+	/**
+	 * @param testname name of test that is about to be started
+	 */
+	synchronized void onTestStarted(String testname) {
+		startedTests.add(testname);
+	}
+
+	/**
+	 * Mark all tests that haven't been started and are correlated with a failed
+	 * test
+	 *
+	 * @param testname name of failed test
+	 * @param index    footprints of all tests
+	 */
+	void onTestFailed(String testname, FootprintIndex index) {
+		Map<String, Double> overlappingTests = index.getOverlappingTests(testname, threshold);
+		synchronized (this) {
+			failedTests.add(testname);
+			int noOfCorrelated = 0;
+			for (String overlappingTest : overlappingTests.keySet()) {
+				if (!startedTests.contains(overlappingTest) && !correlatedTests.containsKey(overlappingTest)) {
+					correlatedTests.put(overlappingTest, testname);
+					noOfCorrelated++;
+				}
+			}
+			if (noOfCorrelated > 0) {
+				System.out.println("[CurrantRunner] " + testname + " failed, " + noOfCorrelated
+						+ " correlated tests will be skipped");
+			}
+		}
+	}
+
+	/**
+	 * Check if a test is skipped before it's started. A correlated test that
+	 * hasn't been started when it's checked the first time is skipped for all
+	 * it's invocations until {@link #reset()}.
+	 *
+	 * @param testname name of test that is about to be started
+	 * @return name of failed test that is correlated with the test or null if the
+	 *         test must be executed
+	 */
+	synchronized String skip(String testname) {
+		String failedTest = correlatedTests.get(testname);
+		if (failedTest == null) {
+			return null;
+		}
+		if (decidedTests.add(testname) && !startedTests.contains(testname)) {
+			skippedTests.add(testname);
+		}
+		return skippedTests.contains(testname) ? failedTest : null;
+	}
+
+	/**
+	 * Print the number of skipped tests of the current test suite
+	 */
+	synchronized void printStatistics() {
+		if (failedTests.isEmpty()) {
+			return;
+		}
+		System.out.println("[CurrantRunner] Correlated failures: " + skippedTests.size() + " tests skipped after "
+				+ failedTests.size() + " failed tests (threshold " + threshold + ")");
+	}
+
+	private static double getCorrelationThreshold() {
+		if (System.getProperty(PARAM_CORRELATION_THRESHOLD) != null) {
+			return Math.max(0.0, Math.min(1.0, Double.parseDouble(System.getProperty(PARAM_CORRELATION_THRESHOLD))));
+		}
+		return DEFAULT_CORRELATION_THRESHOLD;
+	}
+}
@@ -0,0 +1,340 @@
+package de.proficom.currantrunner.core;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+
+import org.jacoco.core.internal.data.CRC64;
+
+/**
+ * In-memory index of the coverage footprints of all tests. The footprint of a
+ * test is the set of classes it has executed when it's coverage has been
+ * measured the last time.<br/>
+ * <br/>
+ * Every class gets a small index that is assigned by the store (table
+ * <code>CLASSES</code>), a footprint is a sorted array of these indices. In the
+ * store it's encoded as varints of the differences between neighbouring
+ * indices, so most classes need a single byte (table
+ * <code>FOOTPRINTS</code>).<br/>
+ * <br/>
+ * Besides the footprint of every test the index keeps the reverse direction,
+ * i.e. all tests that have executed a class, and a small sketch of the probes
+ * of every test (see {@link CoverageSketch}).<br/>
+ * <br/>
+ * All methods are synchronized, the index is shared by all threads executing
+ * tests.
+ */
+public class FootprintIndex {
+	/**
+	 * Classes by their index: name and id (CRC64 of bytecode) of last measurement
+	 */
+	private final Map<String, Integer> classIndices = new HashMap<String, Integer>();
+	private String[] classNames = new String[256];
+	private long[] classIds = new long[256];
+	private int noOfClasses = 0;
+
+	/**
+	 * Footprint of every test and the tests of every class
+	 */
+	private final Map<String, int[]> footprints = new HashMap<String, int[]>();
+	private final List<Set<String>> testsByClass = new ArrayList<Set<String>>();
+
+	/**
+	 * Digest (CRC64) of the encoded probes of every test written by this process,
+	 * see {@link ProbeBitmap}. The probes themselves are kept in store only, just
+	 * their sketches are held in memory.
+	 */
+	private final Map<String, Long> probeDigests = new HashMap<String, Long>();
+
+	/**
+	 * MinHash sketch of the probes of every test, see {@link CoverageSketch}
+	 */
+	private final Map<String, int[]> sketches = new HashMap<String, int[]>();
+
+	/**
+	 * Add or change a class, used by the store when the index is loaded
+	 *
+	 * @param classIdx  index of class assigned by the store
+	 * @param className name of class, e.g. <code>com/example/A</code>
+	 * @param classId   id of class (CRC64 of bytecode)
+	 */
+	synchronized void putClass(int classIdx, String className, long classId) {
+		if (classIdx >= classNames.length) {
+			int newLength = Math.max(2 * classNames.length, classIdx + 1);
+			classNames = Arrays.copyOf(classNames, newLength);
+			classIds = Arrays.copyOf(classIds, newLength);
+		}
+		while (testsByClass.size() <= classIdx) {
+			testsByClass.add(new LinkedHashSet<String>());
+		}
+		classIndices.put(className, classIdx);
+		classNames[classIdx] = className;
+		classIds[classIdx] = classId;
+		noOfClasses = Math.max(noOfClasses, classIdx + 1);
+	}
+
+	/**
+	 * Set the footprint of a test and update the tests of it's classes
+	 *
+	 * @param testname  name of test case
+	 * @param footprint sorted indices of executed classes
+	 * @return TRUE if the footprint differs from the previous one
+	 */
+	synchronized boolean putFootprint(String testname, int[] footprint) {
+		int[] previousFootprint = footprints.put(testname, footprint);
+		if (Arrays.equals(previousFootprint, footprint)) {
+			return false;
+		}
+		if (previousFootprint != null) {
+			for (int classIdx : previousFootprint) {
+				testsByClass.get(classIdx).remove(testname);
+			}
+		}
+		for (int classIdx : footprint) {
+			testsByClass.get(classIdx).add(testname);
+		}
+		return true;
+	}
+
+	/**
+	 * Update the footprint of a test by the classes of a measurement. The ids of
+	 * changed classes are replaced.
+	 *
+	 * @param testname       name of test case
+	 * @param touchedClasses ids of executed classes by name, all of them must
+	 *                       have been added by {@link #putClass}
+	 * @param changedClasses indices of classes with a changed id are added here
+	 * @return TRUE if the footprint differs from the previous one
+	 */
+	synchronized boolean update(String testname, SortedMap<String, Long> touchedClasses, Set<Integer> changedClasses) {
+		int[] footprint = new int[touchedClasses.size()];
+		int idxFootprint = 0;
+		for (Map.Entry<String, Long> touchedClass : touchedClasses.entrySet()) {
+			Integer classIdx = classIndices.get(touchedClass.getKey());
+			if (classIdx == null) {
+				throw new IllegalStateException("Class " + touchedClass.getKey() + " has no index");
+			}
+			if (classIds[classIdx] != touchedClass.getValue()) {
+				classIds[classIdx] = touchedClass.getValue();
+				changedClasses.add(classIdx);
+			}
+			footprint[idxFootprint++] = classIdx;
+		}
+		Arrays.sort(footprint);
+		return putFootprint(testname, footprint);
+	}
+
+	/**
+	 * Convert the probes of a measurement into a set keyed by the class indices
+	 *
+	 * @param executedProbes probes of executed classes by name, all of them must
+	 *                       have been added by {@link #putClass}
+	 * @return set of probes
+	 */
+	synchronized ProbeBitmap toProbeBitmap(Map<String, boolean[]> executedProbes) {
+		ProbeBitmap bitmap = new ProbeBitmap();
+		for (Map.Entry<String, boolean[]> classProbes : executedProbes.entrySet()) {
+			Integer classIdx = classIndices.get(classProbes.getKey());
+			if (classIdx != null) {
+				bitmap.add(classIdx, classProbes.getValue());
+			}
+		}
+		return bitmap;
+	}
+
+	/**
+	 * Check if the encoded probes of a test differ from the ones written before
+	 *
+	 * @param testname      name of test case
+	 * @param encodedProbes probes of test, see {@link ProbeBitmap#encode()}
+	 * @return TRUE if the probes must be written
+	 */
+	synchronized boolean updateProbes(String testname, byte[] encodedProbes) {
+		long digest = CRC64.classId(encodedProbes);
+		Long previousDigest = probeDigests.put(testname, digest);
+		return previousDigest == null || previousDigest != digest;
+	}
+
+	/**
+	 * Set the sketch of the probes of a test
+	 *
+	 * @param testname name of test case
+	 * @param sketch   sketch of probes or null if the test hasn't executed any
+	 *                 probe
+	 */
+	synchronized void putSketch(String testname, int[] sketch) {
+		if (sketch != null) {
+			sketches.put(testname, sketch);
+		} else {
+			sketches.remove(testname);
+		}
+	}
+
+	/**
+	 * Remove the footprint of a test
+	 *
+	 * @param testname name of test case
+	 */
+	synchronized void removeFootprint(String testname) {
+		probeDigests.remove(testname);
+		sketches.remove(testname);
+		int[] footprint = footprints.remove(testname);
+		if (footprint != null) {
+			for (int classIdx : footprint) {
+				testsByClass.get(classIdx).remove(testname);
+			}
+		}
+	}
+
+	/**
+	 * @param testname name of test case
+	 * @return sorted indices of executed classes or null if the coverage of the
+	 *         test hasn't been measured yet
+	 */
+	public synchronized int[] getFootprint(String testname) {
+		int[] footprint = footprints.get(testname);
+		return (footprint != null) ? footprint.clone() : null;
+	}
+
+	/**
+	 * @param testname name of test case
+	 * @return sketch of the executed probes, see {@link CoverageSketch}, or null if
+	 *         the probes of the test haven't been measured yet
+	 */
+	public synchronized int[] getSketch(String testname) {
+		int[] sketch = sketches.get(testname);
+		return (sketch != null) ? sketch.clone() : null;
+	}
+
+	/**
+	 * @return names of all tests with a footprint
+	 */
+	public synchronized Set<String> getTestnames() {
+		return new LinkedHashSet<String>(footprints.keySet());
+	}
+
+	/**
+	 * @param className name of class, e.g. <code>com/example/A</code>
+	 * @return names of all tests that have executed the class
+	 */
+	public synchronized Set<String> getTestsOfClass(String className) {
+		Integer classIdx = classIndices.get(className);
+		if (classIdx == null) {
+			return Collections.emptySet();
+		}
+		return new LinkedHashSet<String>(testsByClass.get(classIdx));
+	}
+
+	/**
+	 * Find the tests whose footprint overlaps the footprint of a test. Only tests
+	 * sharing a class are visited, their number of common classes is counted by
+	 * the tests of every class.
+	 *
+	 * @param testname      name of test case
+	 * @param minSimilarity minimal Jaccard similarity of the footprints, i.e.
+	 *                      common classes / all classes of both tests
+	 * @return similarity of the overlapping tests by name, empty if the test has
+	 *         no footprint
+	 */
+	public synchronized Map<String, Double> getOverlappingTests(String testname, double minSimilarity) {
+		int[] footprint = footprints.get(testname);
+		if (footprint == null || footprint.length == 0) {
+			return Collections.emptyMap();
+		}
+		Map<String, Integer> commonClasses = new HashMap<String, Integer>();
+		for (int classIdx : footprint) {
+			for (String otherTestname : testsByClass.get(classIdx)) {
+				commonClasses.merge(otherTestname, 1, Integer::sum);
+			}
+		}
+		commonClasses.remove(testname);
+
+		Map<String, Double> overlappingTests = new HashMap<String, Double>();
+		for (Map.Entry<String, Integer> otherTest : commonClasses.entrySet()) {
+			int noOfCommon = otherTest.getValue();
+			double similarity = (double) noOfCommon / (footprint.length + footprints.get(otherTest.getKey()).length - noOfCommon);
+			if (similarity >= minSimilarity) {
+				overlappingTests.put(otherTest.getKey(), similarity);
+			}
+		}
+		return overlappingTests;
+	}
+
+	/**
+	 * @param className name of class, e.g. <code>com/example/A</code>
+	 * @return index of class or -1 if it hasn't been executed by any test yet
+	 */
+	public synchronized int getClassIndex(String className) {
+		Integer classIdx = classIndices.get(className);
+		return (classIdx != null) ? classIdx : -1;
+	}
+
+	/**
+	 * @param classIdx index of class
+	 * @return name of class or null if the index isn't used
+	 */
+	public synchronized String getClassName(int classIdx) {
+		return (classIdx < noOfClasses) ? classNames[classIdx] : null;
+	}
+
+	/**
+	 * @param classIdx index of class
+	 * @return id of class (CRC64 of bytecode) when it has been executed the last
+	 *         time
+	 */
+	public synchronized long getClassId(int classIdx) {
+		return (classIdx < noOfClasses) ? classIds[classIdx] : 0;
+	}
+
+	/**
+	 * @return number of class indices, i.e. the highest index + 1
+	 */
+	public synchronized int getNoOfClasses() {
+		return noOfClasses;
+	}
+
+	// --- ENCODING ---
+
+	/**
+	 * Encode a footprint as varints of the differences between neighbouring
+	 * indices. The first index is stored as it is.
+	 *
+	 * @param footprint sorted indices of classes
+	 * @return encoded footprint
+	 */
+	static byte[] encode(int[] footprint) {
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream(footprint.length + 4);
+		int previousIdx = 0;
+		for (int classIdx : footprint) {
+			MVStoreConnector.writeVarLong(encoded, classIdx - previousIdx);
+			previousIdx = classIdx;
+		}
+		return encoded.toByteArray();
+	}
+
+	/**
+	 * Decode a footprint written by {@link #encode(int[])}
+	 *
+	 * @param encoded encoded footprint
+	 * @return sorted indices of classes
+	 */
+	static int[] decode(byte[] encoded) {
+		ByteBuffer buffer = ByteBuffer.wrap(encoded);
+		int[] footprint = new int[encoded.length];
+		int size = 0;
+		int previousIdx = 0;
+		while (buffer.hasRemaining()) {
+			previousIdx += (int) MVStoreConnector.readVarLong(buffer);
+			footprint[size++] = previousIdx;
+		}
+		return Arrays.copyOf(footprint, size);
+	}
+}
@@ -0,0 +1,242 @@
+package de.proficom.currantrunner.core;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+
+/**
+ * Storage of test case metrics and the ML model.<br/>
+ * <br/>
+ * Implementations:
+ * <ul>
+ *   <li>{@link DatabaseConnector}: tables in a H2 SQL database (default)</li>
+ *   <li>{@link MVStoreConnector}: binary records in maps of H2's MVStore</li>
+ * </ul>
+ * The storage is selected with environment parameter
+ * <code>currantRunner.storage</code> (<code>sql</code> or
+ * <code>mvstore</code>).<br/>
+ * <br/>
+ * Tests may be executed in parallel, so implementations must be thread safe.
+ */
+public interface IMetricStore {
+
+	// --- TEST CASES ---
+
+	/**
+	 * Get a list of all test cases in store, including it's metric values
+	 *
+	 * @return all {@link TestCase}s found in store
+	 */
+	public List<TestCase> getTestCases();
+
+	/**
+	 * Get a test case from store. If it doesn't exist yet, a new test case is
+	 * created.
+	 *
+	 * @param testname the name of the testcase
+	 * @return the {@link TestCase}
+	 */
+	public TestCase getTestCaseFromDB(String testname);
+
+	/**
+	 * @return all {@link TestCase} names found in store.
+	 */
+	public List<String> getTestCaseNames();
+
+	/**
+	 * Make sure that all given test cases exist in store. Only missing test cases
+	 * are added.
+	 *
+	 * @param testnames names of test cases
+	 */
+	public void registerTestCases(List<String> testnames);
+
+	/**
+	 * Store the modified metric values of a test case
+	 *
+	 * @param tc test case to be dumped
+	 */
+	public void updateMetricsInDB(TestCase tc);
+
+	/**
+	 * Store the modified metric values of several test cases
+	 *
+	 * @param testcases test cases to be dumped
+	 */
+	public void updateMetricsInDB(List<TestCase> testcases);
+
+	/**
+	 * Remove a test case from store
+	 *
+	 * @param tc test case to be removed
+	 */
+	public void deleteTestcase(TestCase tc);
+
+	/**
+	 * Write all pending changes
+	 */
+	public void flush();
+
+	/**
+	 * Write all pending changes and close the store
+	 */
+	public void closeDatabase();
+
+	// --- RUN HISTORY ---
+
+	/**
+	 * Start a new test run. All results until {@link #endRun()} belong to this run.
+	 */
+	public void beginRun();
+
+	/**
+	 * Remember the result of a test execution in current run
+	 *
+	 * @param testname    name of test case
+	 * @param result      result of test execution
+	 * @param tmExecution duration of test execution
+	 */
+	public void recordResult(String testname, TestCase.Results result, Duration tmExecution);
+
+	/**
+	 * Store the current run with all it's results. Old runs are removed or
+	 * downsampled, see {@link TestRun}.
+	 */
+	public void endRun();
+
+	// --- MULTIPLE PROCESSES ---
+
+	/**
+	 * Count a started test suite of a build. A build consists of several test
+	 * suites that may be executed by different processes (e.g. surefire forks)
+	 * sharing the same store. Builds of other processes that have never been
+	 * finalized (e.g. after a crashed process) are reported.
+	 *
+	 * @param buildId        identifier of the build, equal for all processes
+	 * @param expectedSuites minimal number of test suites of the build, 0 if it's
+	 *                       unknown
+	 * @return number of started suites of the build including this one, 0 if the
+	 *         build has already been finalized
+	 */
+	public int startSuiteOfBuild(String buildId, int expectedSuites);
+
+	/**
+	 * Count a finished test suite of a build and remember it's tests. The build is
+	 * finalized when all started suites and at least the expected number of
+	 * suites have finished.
+	 *
+	 * @param buildId          identifier of the build, equal for all processes
+	 * @param expectedSuites   minimal number of test suites of the build, 0 if
+	 *                         it's unknown
+	 * @param allTestsInSuite  all test cases that are part of the test suite
+	 * @param allExecutedTests all tests that have been executed
+	 * @return true if this is the last suite of the build, false otherwise. Only
+	 *         one suite of a build gets true, unless a suite finishes after the
+	 *         build has been finalized.
+	 */
+	public boolean finishSuiteOfBuild(String buildId, int expectedSuites, List<String> allTestsInSuite, List<String> allExecutedTests);
+
+	/**
+	 * Get the tests of all finished test suites of a build
+	 *
+	 * @param buildId      identifier of the build
+	 * @param onlyExecuted true for executed tests only
+	 * @return names of test cases
+	 */
+	public List<String> getTestsOfBuild(String buildId, boolean onlyExecuted);
+
+	/**
+	 * Write pending changes and read test cases again, so changes of other
+	 * processes become visible
+	 */
+	public void refresh();
+
+	// --- COVERAGE FOOTPRINTS ---
+
+	/**
+	 * Get the footprints of all tests, see {@link FootprintIndex}. The index is
+	 * read from store on first use and kept up to date by
+	 * {@link #updateFootprint(String, SortedMap, Map)}.
+	 *
+	 * @return index of footprints
+	 */
+	public FootprintIndex getFootprintIndex();
+
+	/**
+	 * Remember the classes and probes executed by a test. Only a changed
+	 * footprint, changed probes and added or changed classes are written with the
+	 * next {@link #flush()}.
+	 *
+	 * @param testname       name of test case
+	 * @param touchedClasses ids of executed classes (CRC64 of bytecode) by name
+	 * @param executedProbes probes of executed classes by name, see
+	 *                       {@link ProbeBitmap}
+	 */
+	public void updateFootprint(String testname, SortedMap<String, Long> touchedClasses, Map<String, boolean[]> executedProbes);
+
+	/**
+	 * Get the probes executed by tests when their coverage has been measured the
+	 * last time. They are read from store on every call and not kept in memory.
+	 *
+	 * @param testnames names of test cases
+	 * @return probes by test name, tests without measured probes are missing
+	 */
+	public Map<String, ProbeBitmap> getProbeBitmaps(Collection<String> testnames);
+
+	/**
+	 * Remember the current ids of classes that are part of footprints, e.g. after
+	 * changed classes have been detected. Other classes are ignored. The ids are
+	 * written with the next {@link #flush()}.
+	 *
+	 * @param classIds ids of classes (CRC64 of bytecode) by name
+	 */
+	public void updateClassIds(Map<String, Long> classIds);
+
+	// --- NAME TOKENS ---
+
+	/**
+	 * Get the tokens of all test names, see {@link NameTokenIndex}. The index is
+	 * read from store on first use and kept up to date by
+	 * {@link #updateNameTokens(String, List)}.
+	 *
+	 * @return index of tokens
+	 */
+	public NameTokenIndex getNameTokenIndex();
+
+	/**
+	 * Remember the tokens of a test name. New tokens get their index at once, the
+	 * tokens of the test are written with the next {@link #flush()}.
+	 *
+	 * @param testname name of test case
+	 * @param tokens   tokens of the name
+	 * @return indices of the tokens
+	 */
+	public int[] updateNameTokens(String testname, List<String> tokens);
+
+	// --- MODEL DATA ---
+
+	/**
+	 * Update the model in store. The version of the model is increased with each
+	 * update.
+	 *
+	 * @param model model class to be stored, see {@link ModelCodec}
+	 */
+	public void insertOrUpdateModel(Object model);
+
+	/**
+	 * Get the version of the stored model without reading the model itself
+	 *
+	 * @return version of model, 0 if there is no model yet
+	 */
+	public long getModelVersion();
+
+	/**
+	 * Get the stored model
+	 *
+	 * @return the model or null if there is no (valid) model
+	 */
+	public Object getModel();
+}
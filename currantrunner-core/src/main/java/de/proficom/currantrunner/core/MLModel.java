@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import de.proficom.currantrunner.metrics.MetricsBase;
 import weka.classifiers.trees.HoeffdingTree;
@@ -28,21 +29,31 @@ public class MLModel {
 	 * Simple constructor to access the machine learning model that is saved in the
 	 * database.
 	 */
-	public MLModel(DatabaseConnector db) {
+	public MLModel(IMetricStore db) {
 		// if classifier stays uninitialized, a new model is build later.
 		Object modelObj = db.getModel();
-		if (modelObj != null) {
+		if (modelObj instanceof HoeffdingTree) {
 			this.HTClassifier = (HoeffdingTree) modelObj;
+		} else if (modelObj != null) {
+			System.err.println("[CurrantRunner] Stored model is incompatible and will be rebuilt: " + modelObj.getClass().getName());
 		}
 	}
 
+	/**
+	 * @return TRUE if there is a trained model, otherwise all tests have the same
+	 *         failure probability
+	 */
+	public boolean hasModel() {
+		return HTClassifier != null;
+	}
+
 	/**
 	 * Train the model with the given set of test data.
 	 * 
 	 * @param testcases the training set a.k.a. samples
 	 * @param db        storage for trained model
 	 */
-	public void train(List<TestCase> testcases, DatabaseConnector db) {
+	public void train(List<TestCase> testcases, IMetricStore db) {
 		/*
 		 * Checks if everything necessary is available. If there is not model yet, a new
 		 * one is build.
@@ -130,7 +141,7 @@ public class MLModel {
 	 * @param failureProbability	maps testcase to it's likelihood to FAIL
 	 * @return						prioritized test cases
 	 */
-	public ArrayList<TestCase> prioritize(List<TestCase> testcases, HashMap<TestCase, Double> failureProbability) {
+	public ArrayList<TestCase> prioritize(List<TestCase> testcases, Map<TestCase, Double> failureProbability) {
 		/*
 		 * if there is no model or there is an error with the given testcases list, the
 		 * input is returned.
@@ -174,7 +185,7 @@ public class MLModel {
 	 * 
 	 * @param testcases training data for the model.
 	 */
-	private void buildModel(List<TestCase> testcases, DatabaseConnector db) {
+	private void buildModel(List<TestCase> testcases, IMetricStore db) {
 		if (testcases == null | testcases.size() < 1) {
 			return;
 		}
@@ -0,0 +1,948 @@
+package de.proficom.currantrunner.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+
+import org.h2.mvstore.Cursor;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.h2.mvstore.MVStoreException;
+
+import de.proficom.currantrunner.metrics.MetricsBase;
+import de.proficom.currantrunner.metrics.MetricsBaseDouble;
+import de.proficom.currantrunner.metrics.MetricsBaseInteger;
+import de.proficom.currantrunner.metrics.MetricsBaseString;
+
+/**
+ * Class to store test case metrics and the ML model directly in maps of H2's
+ * {@link MVStore} without SQL.<br/>
+ * <br/>
+ * Every test case is stored as a compact binary record keyed by it's name. The
+ * metric values are written one after another (STRING / DOUBLE / INT):
+ * <ul>
+ *   <li>INTEGER: zigzag encoded varint</li>
+ *   <li>DOUBLE: 8 bytes</li>
+ *   <li>VARCHAR: varint with length + 1 (0 = NULL), followed by UTF-8 bytes</li>
+ * </ul>
+ * The layout of records (column name and type of all metrics) is stored as
+ * well. If the metrics are changed all records are converted on next start.
+ * Values of unchanged metrics are kept.<br/>
+ * <br/>
+ * The coverage footprints of tests (see {@link FootprintIndex}), their probes
+ * (see {@link ProbeBitmap}) and the sketches of the probes (see
+ * {@link CoverageSketch}) are kept in maps of their own, keyed by test name and
+ * class name.<br/>
+ * <br/>
+ * The tokens of test names (see {@link NameTokenIndex}) are kept in a map of
+ * tokens with their index and a map of encoded token indices keyed by test
+ * name.<br/>
+ * <br/>
+ * All public methods are synchronized, so the store can be used by several
+ * threads executing tests.
+ */
+public class MVStoreConnector implements IMetricStore {
+	/**
+	 * Name of maps in store
+	 */
+	static final String MAP_TESTRESULTS = "testresults";
+	static final String MAP_MODEL = "model";
+	static final String MAP_CONFIGURATION = "configuration";
+	static final String MAP_RUNS = "runs";
+	static final String MAP_RESULTS = "results";
+	static final String MAP_BUILDS = "builds";
+	static final String MAP_BUILD_TESTS = "buildTests";
+	static final String MAP_FOOTPRINTS = "footprints";
+	static final String MAP_CLASSES = "classes";
+	static final String MAP_PROBES = "probes";
+	static final String MAP_SKETCHES = "sketches";
+	static final String MAP_TOKENS = "tokens";
+	static final String MAP_NAME_TOKENS = "nameTokens";
+
+	/**
+	 * Entries in map of configuration
+	 */
+	static final String CONFIG_RECORD_LAYOUT = "recordLayout";
+	static final String CONFIG_MODEL_VERSION = "modelVersion";
+
+	/**
+	 * Type of metric values in records
+	 */
+	private static final char KIND_INTEGER = 'I';
+	private static final char KIND_DOUBLE = 'D';
+	private static final char KIND_STRING = 'S';
+
+	private MVStore store;
+	private MVMap<String, byte[]> testresults;
+	private MVMap<String, byte[]> model;
+	private MVMap<String, String> configuration;
+	private MVMap<Long, long[]> runs;
+	private MVMap<Long, byte[]> results;
+	private MVMap<String, long[]> builds;
+	private MVMap<String, Boolean> buildTests;
+	private MVMap<String, byte[]> footprints;
+	private MVMap<String, long[]> classes;
+	private MVMap<String, byte[]> probes;
+	private MVMap<String, byte[]> sketches;
+	private MVMap<String, Integer> tokens;
+	private MVMap<String, byte[]> nameTokens;
+
+	/**
+	 * Generator class to create new test cases with all metrics
+	 */
+	private ITestCaseGenerator testcaseGenerator;
+
+	/**
+	 * Type of all metrics in records and the record of a new test case
+	 */
+	private char[] metricKinds;
+	private byte[] defaultRecord;
+
+	/**
+	 * Results of current test run, written by {@link #endRun()}
+	 */
+	private TestRun currentRun = null;
+
+	/**
+	 * Last results of all tests for the history metrics, read on first use
+	 */
+	private ResultHistory resultHistory = null;
+
+	/**
+	 * All metrics of a test case
+	 */
+	private List<MetricsBase<?>> allAvailableMetrics;
+
+	/**
+	 * Footprints of all tests, read on first use
+	 */
+	private FootprintIndex footprintIndex = null;
+
+	/**
+	 * Tokens of all test names, read on first use
+	 */
+	private NameTokenIndex nameTokenIndex = null;
+
+	/**
+	 * Constructor that opens or creates the store
+	 *
+	 * @param databaseDirectory		Path to DB
+	 * @param allAvailableMetrics	List of all metrics to be stored in DB
+	 * @param _testcaseGenerator	Interface to create a {@link TestCase} class for a record
+	 */
+	public MVStoreConnector(String databaseDirectory, List<MetricsBase<?>> allAvailableMetrics, ITestCaseGenerator _testcaseGenerator) {
+		// Remember to generator class
+		testcaseGenerator = _testcaseGenerator;
+		this.allAvailableMetrics = allAvailableMetrics;
+
+		// Layout of records for current metrics
+		metricKinds = new char[allAvailableMetrics.size()];
+		Object[] defaultValues = new Object[allAvailableMetrics.size()];
+		for (int idxMetric = 0; idxMetric < allAvailableMetrics.size(); idxMetric++) {
+			metricKinds[idxMetric] = getKind(allAvailableMetrics.get(idxMetric));
+			defaultValues[idxMetric] = getDefaultValue(allAvailableMetrics.get(idxMetric), metricKinds[idxMetric]);
+		}
+		defaultRecord = encodeRecord(defaultValues, metricKinds);
+
+		try {
+			// Changes are written by flush() and when the store is closed
+			Files.createDirectories(Paths.get(databaseDirectory));
+			store = new MVStore.Builder().fileName(databaseDirectory + "/MetricStore.mv").autoCommitDisabled().open();
+			testresults = store.openMap(MAP_TESTRESULTS);
+			model = store.openMap(MAP_MODEL);
+			configuration = store.openMap(MAP_CONFIGURATION);
+			runs = store.openMap(MAP_RUNS);
+			results = store.openMap(MAP_RESULTS);
+			builds = store.openMap(MAP_BUILDS);
+			buildTests = store.openMap(MAP_BUILD_TESTS);
+			footprints = store.openMap(MAP_FOOTPRINTS);
+			classes = store.openMap(MAP_CLASSES);
+			probes = store.openMap(MAP_PROBES);
+			sketches = store.openMap(MAP_SKETCHES);
+			tokens = store.openMap(MAP_TOKENS);
+			nameTokens = store.openMap(MAP_NAME_TOKENS);
+
+			// convert records of changed metrics
+			updateRecordLayout(allAvailableMetrics);
+		} catch (IOException | MVStoreException e) {
+			System.err.println("[CurrantRunner] Store can't be opened: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Compare the stored layout of records with the current metrics. If they are
+	 * different, all records are converted. Values of metrics with same name and
+	 * type are kept, new metrics get their default value.
+	 *
+	 * @param allAvailableMetrics List of all metrics to be stored in DB
+	 */
+	private void updateRecordLayout(List<MetricsBase<?>> allAvailableMetrics) {
+		String recordLayout = getRecordLayout(allAvailableMetrics);
+		String storedLayout = configuration.get(CONFIG_RECORD_LAYOUT);
+		if (recordLayout.equals(storedLayout)) {
+			return;
+		}
+
+		if (storedLayout != null && !testresults.isEmpty()) {
+			System.out.println("[CurrantRunner] Convert " + testresults.size() + " records to changed metrics...");
+
+			// Position of every stored metric
+			String[] storedColumns = storedLayout.isEmpty() ? new String[0] : storedLayout.split(",");
+			char[] storedKinds = new char[storedColumns.length];
+			Map<String, Integer> storedPositions = new HashMap<String, Integer>();
+			for (int idxColumn = 0; idxColumn < storedColumns.length; idxColumn++) {
+				storedKinds[idxColumn] = storedColumns[idxColumn].charAt(storedColumns[idxColumn].length() - 1);
+				storedPositions.put(storedColumns[idxColumn], idxColumn);
+			}
+
+			// Map current metrics to stored values
+			Object[] defaultValues = decodeRecord(defaultRecord, metricKinds);
+			int[] sourcePositions = new int[allAvailableMetrics.size()];
+			for (int idxMetric = 0; idxMetric < allAvailableMetrics.size(); idxMetric++) {
+				Integer storedPosition = storedPositions.get(getColumnLayout(allAvailableMetrics.get(idxMetric), metricKinds[idxMetric]));
+				sourcePositions[idxMetric] = (storedPosition != null) ? storedPosition : -1;
+			}
+
+			// Convert all records
+			for (String testname : new ArrayList<String>(testresults.keyList())) {
+				Object[] storedValues = decodeRecord(testresults.get(testname), storedKinds);
+				Object[] values = new Object[metricKinds.length];
+				for (int idxMetric = 0; idxMetric < metricKinds.length; idxMetric++) {
+					values[idxMetric] = (sourcePositions[idxMetric] >= 0) ? storedValues[sourcePositions[idxMetric]] : defaultValues[idxMetric];
+				}
+				testresults.put(testname, encodeRecord(values, metricKinds));
+			}
+		}
+		configuration.put(CONFIG_RECORD_LAYOUT, recordLayout);
+		store.commit();
+	}
+
+	/**
+	 * Get the layout of records for the given metrics. It will change whenever a
+	 * metric is added, removed or changed.
+	 *
+	 * @param allAvailableMetrics List of all metrics to be stored in DB
+	 * @return comma separated list of column name and type
+	 */
+	private static String getRecordLayout(List<MetricsBase<?>> allAvailableMetrics) {
+		String recordLayout = "";
+		for (MetricsBase<?> curMetric : allAvailableMetrics) {
+			if (!recordLayout.isEmpty()) {
+				recordLayout += ",";
+			}
+			recordLayout += getColumnLayout(curMetric, getKind(curMetric));
+		}
+		return recordLayout;
+	}
+
+	/**
+	 * Get the layout of a single metric in records
+	 *
+	 * @param metric metric to be stored
+	 * @param kind   type of metric value
+	 * @return column name and type, e.g. "lastresult:I"
+	 */
+	private static String getColumnLayout(MetricsBase<?> metric, char kind) {
+		return metric.getDBColumnName().toLowerCase() + ":" + kind;
+	}
+
+	/**
+	 * Get the type of metric value (STRING / DOUBLE / INT)
+	 *
+	 * @param metric metric to be stored
+	 * @return type of value in records
+	 */
+	private static char getKind(MetricsBase<?> metric) {
+		if (metric instanceof MetricsBaseString) {
+			return KIND_STRING;
+		} else if (metric instanceof MetricsBaseDouble) {
+			return KIND_DOUBLE;
+		}
+		return KIND_INTEGER;
+	}
+
+	/**
+	 * Get the value of a new test case, identical to the default value of a column
+	 * in SQL database
+	 *
+	 * @param metric metric to be stored
+	 * @param kind   type of metric value
+	 * @return default value of metric
+	 */
+	private static Object getDefaultValue(MetricsBase<?> metric, char kind) {
+		String defaultValue = metric.getDBDefaultValue();
+		boolean isNull = (defaultValue == null || defaultValue.equalsIgnoreCase("NULL"));
+		switch (kind) {
+		case KIND_STRING:
+			return isNull ? null : defaultValue.replaceAll("^'|'$", "");
+		case KIND_DOUBLE:
+			return isNull ? 0.0 : Double.parseDouble(defaultValue);
+		default:
+			return isNull ? 0 : Integer.parseInt(defaultValue);
+		}
+	}
+
+	// --- RECORDS ---
+
+	/**
+	 * Convert metric values into a record
+	 *
+	 * @param values values of all metrics
+	 * @param kinds  type of all metrics
+	 * @return binary record
+	 */
+	private static byte[] encodeRecord(Object[] values, char[] kinds) {
+		ByteArrayOutputStream record = new ByteArrayOutputStream(16 + 4 * kinds.length);
+		for (int idxMetric = 0; idxMetric < kinds.length; idxMetric++) {
+			Object value = values[idxMetric];
+			switch (kinds[idxMetric]) {
+			case KIND_STRING:
+				if (value == null) {
+					writeVarLong(record, 0);
+				} else {
+					byte[] bytes = ((String) value).getBytes(StandardCharsets.UTF_8);
+					writeVarLong(record, bytes.length + 1L);
+					record.write(bytes, 0, bytes.length);
+				}
+				break;
+			case KIND_DOUBLE:
+				long bits = Double.doubleToLongBits(value != null ? (Double) value : 0.0);
+				for (int shift = 56; shift >= 0; shift -= 8) {
+					record.write((int) (bits >>> shift));
+				}
+				break;
+			default:
+				int intValue = value != null ? (Integer) value : 0;
+				writeVarLong(record, ((intValue << 1) ^ (intValue >> 31)) & 0xFFFFFFFFL);
+				break;
+			}
+		}
+		return record.toByteArray();
+	}
+
+	/**
+	 * Convert a record into metric values
+	 *
+	 * @param record binary record
+	 * @param kinds  type of all metrics
+	 * @return values of all metrics
+	 */
+	private static Object[] decodeRecord(byte[] record, char[] kinds) {
+		ByteBuffer buffer = ByteBuffer.wrap(record);
+		Object[] values = new Object[kinds.length];
+		for (int idxMetric = 0; idxMetric < kinds.length; idxMetric++) {
+			switch (kinds[idxMetric]) {
+			case KIND_STRING:
+				int length = (int) readVarLong(buffer);
+				if (length > 0) {
+					values[idxMetric] = new String(record, buffer.position(), length - 1, StandardCharsets.UTF_8);
+					buffer.position(buffer.position() + length - 1);
+				}
+				break;
+			case KIND_DOUBLE:
+				values[idxMetric] = buffer.getDouble();
+				break;
+			default:
+				int zigzag = (int) readVarLong(buffer);
+				values[idxMetric] = (zigzag >>> 1) ^ -(zigzag & 1);
+				break;
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Write an unsigned value with 7 bits per byte
+	 *
+	 * @param out   record
+	 * @param value value to be written
+	 */
+	static void writeVarLong(ByteArrayOutputStream out, long value) {
+		while ((value & ~0x7FL) != 0) {
+			out.write((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.write((int) value);
+	}
+
+	/**
+	 * Read an unsigned value written by {@link #writeVarLong}
+	 *
+	 * @param in record
+	 * @return value
+	 */
+	static long readVarLong(ByteBuffer in) {
+		long value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = in.get();
+			value |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return value;
+	}
+
+	/**
+	 * Create a record with the current values of a test case
+	 *
+	 * @param tc test case to be stored
+	 * @return binary record
+	 */
+	private byte[] createRecord(TestCase tc) {
+		Object[] values = new Object[metricKinds.length];
+		int idxMetric = 0;
+		for (MetricsBase<?> curMetric : tc.getAllMetrics()) {
+			values[idxMetric] = curMetric.getMetricValue();
+			idxMetric++;
+		}
+		return encodeRecord(values, metricKinds);
+	}
+
+	/**
+	 * Create a test case with all metric values of a record
+	 *
+	 * @param testname name of test case
+	 * @param record   binary record
+	 * @return Created {@link TestCase} object
+	 */
+	private TestCase createTestCaseFromRecord(String testname, byte[] record) {
+		TestCase tc = this.testcaseGenerator.createNewTestcase(testname);
+		Object[] values = decodeRecord(record, metricKinds);
+		int idxMetric = 0;
+		for (MetricsBase<?> curMetric : tc.getAllMetrics()) {
+			if (curMetric instanceof MetricsBaseString) {
+				((MetricsBaseString) curMetric).setMetricValue((String) values[idxMetric]);
+			} else if (curMetric instanceof MetricsBaseDouble) {
+				((MetricsBaseDouble) curMetric).setMetricValue((Double) values[idxMetric]);
+			} else if (curMetric instanceof MetricsBaseInteger) {
+				((MetricsBaseInteger) curMetric).setMetricValue((Integer) values[idxMetric]);
+			}
+			idxMetric++;
+		}
+
+		// History metrics are computed from the stored runs
+		getResultHistory().applyTo(tc);
+
+		// Values are identical to store
+		tc.clearModifiedMetrics();
+		return tc;
+	}
+
+	// --- TEST CASES ---
+
+	@Override
+	public synchronized List<TestCase> getTestCases() {
+		ArrayList<TestCase> testcases = new ArrayList<TestCase>(testresults.size());
+		for (Map.Entry<String, byte[]> entry : testresults.entrySet()) {
+			testcases.add(createTestCaseFromRecord(entry.getKey(), entry.getValue()));
+		}
+		return testcases;
+	}
+
+	@Override
+	public synchronized TestCase getTestCaseFromDB(String testname) {
+		byte[] record = testresults.get(testname);
+		if (record == null) {
+			record = defaultRecord;
+			testresults.put(testname, record);
+		}
+		return createTestCaseFromRecord(testname, record);
+	}
+
+	@Override
+	public synchronized List<String> getTestCaseNames() {
+		return new ArrayList<String>(testresults.keyList());
+	}
+
+	@Override
+	public synchronized void registerTestCases(List<String> testnames) {
+		for (String testname : testnames) {
+			testresults.putIfAbsent(testname, defaultRecord);
+		}
+	}
+
+	@Override
+	public synchronized void updateMetricsInDB(TestCase tc) {
+		if (tc.getModifiedMetrics() == 0) {
+			return;
+		}
+		testresults.put(tc.getTestname(), createRecord(tc));
+		tc.clearModifiedMetrics();
+	}
+
+	@Override
+	public synchronized void updateMetricsInDB(List<TestCase> testcases) {
+		for (TestCase tc : testcases) {
+			updateMetricsInDB(tc);
+		}
+	}
+
+	@Override
+	public synchronized void deleteTestcase(TestCase tc) {
+		System.out.println("Remove testcase " + tc.getTestname() + " from DB...");
+		testresults.remove(tc.getTestname());
+		footprints.remove(tc.getTestname());
+		probes.remove(tc.getTestname());
+		sketches.remove(tc.getTestname());
+		if (footprintIndex != null) {
+			footprintIndex.removeFootprint(tc.getTestname());
+		}
+		nameTokens.remove(tc.getTestname());
+		if (nameTokenIndex != null) {
+			nameTokenIndex.removeTokens(tc.getTestname());
+		}
+	}
+
+	@Override
+	public synchronized void flush() {
+		if (store.hasUnsavedChanges()) {
+			store.commit();
+		}
+	}
+
+	@Override
+	public synchronized void closeDatabase() {
+		try {
+			store.close();
+		} catch (MVStoreException e) {
+			System.err.println(e.getMessage());
+		}
+	}
+
+	// --- RUN HISTORY ---
+
+	@Override
+	public synchronized void beginRun() {
+		currentRun = new TestRun();
+	}
+
+	@Override
+	public synchronized void recordResult(String testname, TestCase.Results result, Duration tmExecution) {
+		if (currentRun != null) {
+			currentRun.addResult(testname, result, tmExecution);
+			getResultHistory().addPendingResult(testname, result);
+		}
+	}
+
+	/**
+	 * Read the last results of every test from map of results. All runs are read
+	 * once in their order, older results that are only stored in the history
+	 * metric of the test case are added in front, results of the current run are
+	 * added.
+	 *
+	 * @return last results of all tests
+	 */
+	private ResultHistory getResultHistory() {
+		if (resultHistory == null) {
+			ResultHistory history = new ResultHistory(ResultHistory.getDepth(allAvailableMetrics));
+			if (history.getDepth() > 0) {
+				for (Map.Entry<Long, byte[]> entry : results.entrySet()) {
+					for (TestRun.Result result : decodeResults(entry.getValue())) {
+						history.addResult(result.getTestname(), entry.getKey(), result.getResult());
+					}
+				}
+				int idxStoredHistory = allAvailableMetrics.indexOf(ResultHistory.getDeepestMetric(allAvailableMetrics));
+				for (Map.Entry<String, byte[]> entry : testresults.entrySet()) {
+					history.addStoredHistory(entry.getKey(), (String) decodeRecord(entry.getValue(), metricKinds)[idxStoredHistory]);
+				}
+			}
+			if (currentRun != null) {
+				for (TestRun.Result result : currentRun.getResults()) {
+					history.addPendingResult(result.getTestname(), result.getResult());
+				}
+			}
+			resultHistory = history;
+		}
+		return resultHistory;
+	}
+
+	/**
+	 * Store the current run in map of runs (started, finished, number of tests and
+	 * failures) and all it's results as a single record in map of results.
+	 * Afterwards runs exceeding the retention are removed, the last results of
+	 * every test are kept by downsampling.
+	 */
+	@Override
+	public synchronized void endRun() {
+		if (currentRun == null) {
+			return;
+		}
+		TestRun run = currentRun;
+		currentRun = null;
+		run.finish();
+
+		Long lastRunId = runs.lastKey();
+		long runId = (lastRunId != null) ? lastRunId + 1 : 1;
+		runs.put(runId, new long[] { run.getStarted().toEpochMilli(), run.getFinished().toEpochMilli(), run.getResults().size(),
+				run.getNoOfFailures() });
+		results.put(runId, encodeResults(run.getResults()));
+		getResultHistory().assignRun(runId);
+
+		// Retention: remove old runs and downsample the older ones
+		for (Long oldRunId = runs.firstKey(); oldRunId != null && oldRunId <= runId - TestRun.getMaxRunsKept(); oldRunId = runs.firstKey()) {
+			runs.remove(oldRunId);
+			results.remove(oldRunId);
+		}
+		// Results of older runs drop out of the history with every run, so all runs
+		// exceeding the detail runs are checked again
+		Map<Long, byte[]> downsampledRuns = new HashMap<Long, byte[]>();
+		Cursor<Long, byte[]> cursor = results.cursor(null, runId - TestRun.getDetailRuns(), false);
+		while (cursor.hasNext()) {
+			Long downsampledRunId = cursor.next();
+			List<TestRun.Result> storedResults = decodeResults(cursor.getValue());
+			List<TestRun.Result> keptResults = new ArrayList<TestRun.Result>();
+			for (TestRun.Result result : storedResults) {
+				if (result.getResult() == TestCase.Results.FAILED || (result.getResult() == TestCase.Results.PASSED
+						&& getResultHistory().isPartOfHistory(result.getTestname(), downsampledRunId))) {
+					keptResults.add(result);
+				}
+			}
+			if (keptResults.size() < storedResults.size()) {
+				downsampledRuns.put(downsampledRunId, encodeResults(keptResults));
+			}
+		}
+		results.putAll(downsampledRuns);
+		store.commit();
+	}
+
+	/**
+	 * Convert results of a run into a record. Every result consists of the test
+	 * name (varint with length followed by UTF-8 bytes), the result (ordinal of
+	 * {@link TestCase.Results}) and the duration in ms (varint).
+	 *
+	 * @param runResults results of run
+	 * @return binary record
+	 */
+	private static byte[] encodeResults(List<TestRun.Result> runResults) {
+		ByteArrayOutputStream record = new ByteArrayOutputStream(32 * runResults.size());
+		for (TestRun.Result result : runResults) {
+			byte[] bytes = result.getTestname().getBytes(StandardCharsets.UTF_8);
+			writeVarLong(record, bytes.length);
+			record.write(bytes, 0, bytes.length);
+			record.write(result.getResult().ordinal());
+			writeVarLong(record, Math.max(0, result.getDurationMilliSec()));
+		}
+		return record.toByteArray();
+	}
+
+	/**
+	 * Convert a record into results of a run
+	 *
+	 * @param record binary record created by {@link #encodeResults}
+	 * @return results of run
+	 */
+	static List<TestRun.Result> decodeResults(byte[] record) {
+		ByteBuffer buffer = ByteBuffer.wrap(record);
+		List<TestRun.Result> runResults = new ArrayList<TestRun.Result>();
+		while (buffer.hasRemaining()) {
+			int length = (int) readVarLong(buffer);
+			String testname = new String(record, buffer.position(), length, StandardCharsets.UTF_8);
+			buffer.position(buffer.position() + length);
+			TestCase.Results result = TestCase.Results.values()[buffer.get()];
+			runResults.add(new TestRun.Result(testname, result, readVarLong(buffer)));
+		}
+		return runResults;
+	}
+
+	// --- MULTIPLE PROCESSES ---
+
+	/**
+	 * Count the started test suite of a build. Map of builds contains expected
+	 * suites, finished suites, finalized (0/1), start time and started suites.
+	 */
+	@Override
+	public synchronized int startSuiteOfBuild(String buildId, int expectedSuites) {
+		long[] build = getBuild(buildId, expectedSuites);
+		build[0] = Math.max(build[0], expectedSuites);
+		build[4]++;
+		builds.put(buildId, build);
+
+		// Builds that are never finalized, e.g. because a process has crashed
+		for (Map.Entry<String, long[]> entry : builds.entrySet()) {
+			if (!entry.getKey().equals(buildId) && entry.getValue()[2] == 0) {
+				System.out.println("[CurrantRunner] WARNING: Build " + entry.getKey() + " (started " + Instant.ofEpochMilli(entry.getValue()[3])
+						+ ") hasn't been finalized, " + entry.getValue()[1] + " of " + getStartedSuites(entry.getValue()) + " test suites have finished");
+			}
+		}
+		store.commit();
+		return (build[2] == 0) ? (int) build[4] : 0;
+	}
+
+	/**
+	 * Count the finished test suite of a build. The file of the store is locked by
+	 * a single process, so the suites of a build are always finished one after
+	 * another.<br/>
+	 * Map of tests is keyed by build and test name.
+	 */
+	@Override
+	public synchronized boolean finishSuiteOfBuild(String buildId, int expectedSuites, List<String> allTestsInSuite, List<String> allExecutedTests) {
+		long[] build = getBuild(buildId, expectedSuites);
+		build[1]++;
+		build[4] = getStartedSuites(build);
+
+		for (String testname : allTestsInSuite) {
+			buildTests.putIfAbsent(getBuildTestKey(buildId, testname), Boolean.FALSE);
+		}
+		for (String testname : allExecutedTests) {
+			buildTests.put(getBuildTestKey(buildId, testname), Boolean.TRUE);
+		}
+
+		// The last suite finalizes the build, a suite that finishes after it has been
+		// finalized does it again
+		boolean isLastSuite = (build[1] >= build[0] && build[1] >= build[4]);
+		if (build[2] != 0) {
+			System.out.println("[CurrantRunner] WARNING: Build " + buildId + " has been finalized before this test suite has finished"
+					+ (isLastSuite ? ", it's finalized again" : ""));
+		}
+		if (isLastSuite) {
+			build[2] = 1;
+		}
+		builds.put(buildId, build);
+
+		// Remove data of previous builds
+		long tmStale = System.currentTimeMillis() - Duration.ofDays(1).toMillis();
+		for (String oldBuildId : new ArrayList<String>(builds.keySet())) {
+			long[] oldBuild = builds.get(oldBuildId);
+			if (!oldBuildId.equals(buildId) && (oldBuild[2] != 0 || oldBuild[3] < tmStale)) {
+				builds.remove(oldBuildId);
+				for (String key : getKeysOfBuild(oldBuildId)) {
+					buildTests.remove(key);
+				}
+			}
+		}
+		store.commit();
+		return isLastSuite;
+	}
+
+	/**
+	 * @param buildId        identifier of the build
+	 * @param expectedSuites number of test suites of a new build
+	 * @return copy of the build in map of builds or a new build
+	 */
+	private long[] getBuild(String buildId, int expectedSuites) {
+		long[] build = builds.get(buildId);
+		if (build == null) {
+			return new long[] { expectedSuites, 0, 0, System.currentTimeMillis(), 0 };
+		}
+		// Builds stored before started suites have been counted
+		return Arrays.copyOf(build, 5);
+	}
+
+	/**
+	 * @param build build in map of builds
+	 * @return number of started suites, at least the number of finished suites
+	 */
+	private static long getStartedSuites(long[] build) {
+		return Math.max(build.length > 4 ? build[4] : 0, build[1]);
+	}
+
+	@Override
+	public synchronized List<String> getTestsOfBuild(String buildId, boolean onlyExecuted) {
+		List<String> names = new ArrayList<String>();
+		String prefix = getBuildTestKey(buildId, "");
+		for (String key : getKeysOfBuild(buildId)) {
+			if (!onlyExecuted || buildTests.get(key)) {
+				names.add(key.substring(prefix.length()));
+			}
+		}
+		return names;
+	}
+
+	/**
+	 * The store is used by a single process only, there is nothing to be read
+	 * again.
+	 */
+	@Override
+	public synchronized void refresh() {
+		flush();
+	}
+
+	private static String getBuildTestKey(String buildId, String testname) {
+		return buildId + '\n' + testname;
+	}
+
+	private List<String> getKeysOfBuild(String buildId) {
+		String prefix = getBuildTestKey(buildId, "");
+		List<String> keys = new ArrayList<String>();
+		for (String key = buildTests.ceilingKey(prefix); key != null && key.startsWith(prefix); key = buildTests.higherKey(key)) {
+			keys.add(key);
+		}
+		return keys;
+	}
+
+	// --- COVERAGE FOOTPRINTS ---
+
+	/**
+	 * Read the index from map of classes (name with index and id) and the maps of
+	 * footprints and sketches (encoded footprint or sketch keyed by test name)
+	 */
+	@Override
+	public synchronized FootprintIndex getFootprintIndex() {
+		if (footprintIndex == null) {
+			FootprintIndex index = new FootprintIndex();
+			for (Map.Entry<String, long[]> entry : classes.entrySet()) {
+				index.putClass((int) entry.getValue()[0], entry.getKey(), entry.getValue()[1]);
+			}
+			for (Map.Entry<String, byte[]> entry : footprints.entrySet()) {
+				index.putFootprint(entry.getKey(), FootprintIndex.decode(entry.getValue()));
+			}
+			for (Map.Entry<String, byte[]> entry : sketches.entrySet()) {
+				index.putSketch(entry.getKey(), CoverageSketch.decode(entry.getValue()));
+			}
+			footprintIndex = index;
+		}
+		return footprintIndex;
+	}
+
+	/**
+	 * The maps are changed directly, they are written with the next commit. A new
+	 * class gets the next free index.
+	 */
+	@Override
+	public synchronized void updateFootprint(String testname, SortedMap<String, Long> touchedClasses, Map<String, boolean[]> executedProbes) {
+		FootprintIndex index = getFootprintIndex();
+		for (Map.Entry<String, Long> touchedClass : touchedClasses.entrySet()) {
+			if (index.getClassIndex(touchedClass.getKey()) < 0) {
+				int classIdx = classes.size();
+				classes.put(touchedClass.getKey(), new long[] { classIdx, touchedClass.getValue() });
+				index.putClass(classIdx, touchedClass.getKey(), touchedClass.getValue());
+			}
+		}
+		Set<Integer> changedClasses = new HashSet<Integer>();
+		boolean isChanged = index.update(testname, touchedClasses, changedClasses);
+		for (int classIdx : changedClasses) {
+			classes.put(index.getClassName(classIdx), new long[] { classIdx, index.getClassId(classIdx) });
+		}
+		if (isChanged) {
+			footprints.put(testname, FootprintIndex.encode(index.getFootprint(testname)));
+		}
+		ProbeBitmap bitmap = index.toProbeBitmap(executedProbes);
+		byte[] encodedProbes = bitmap.encode();
+		if (index.updateProbes(testname, encodedProbes)) {
+			probes.put(testname, encodedProbes);
+			int[] sketch = CoverageSketch.compute(bitmap);
+			index.putSketch(testname, sketch);
+			if (sketch != null) {
+				sketches.put(testname, CoverageSketch.encode(sketch));
+			} else {
+				sketches.remove(testname);
+			}
+		}
+	}
+
+	@Override
+	public synchronized Map<String, ProbeBitmap> getProbeBitmaps(Collection<String> testnames) {
+		Map<String, ProbeBitmap> bitmaps = new HashMap<String, ProbeBitmap>();
+		for (String testname : testnames) {
+			byte[] encodedProbes = probes.get(testname);
+			if (encodedProbes != null) {
+				bitmaps.put(testname, ProbeBitmap.decode(encodedProbes));
+			}
+		}
+		return bitmaps;
+	}
+
+	@Override
+	public synchronized void updateClassIds(Map<String, Long> classIds) {
+		FootprintIndex index = getFootprintIndex();
+		for (Map.Entry<String, Long> classId : classIds.entrySet()) {
+			int classIdx = index.getClassIndex(classId.getKey());
+			if (classIdx >= 0 && index.getClassId(classIdx) != classId.getValue()) {
+				index.putClass(classIdx, classId.getKey(), classId.getValue());
+				classes.put(classId.getKey(), new long[] { classIdx, classId.getValue() });
+			}
+		}
+	}
+
+	// --- NAME TOKENS ---
+
+	/**
+	 * Read the index from map of tokens (token with index) and the map of encoded
+	 * token indices keyed by test name
+	 */
+	@Override
+	public synchronized NameTokenIndex getNameTokenIndex() {
+		if (nameTokenIndex == null) {
+			NameTokenIndex index = new NameTokenIndex();
+			for (Map.Entry<String, Integer> entry : tokens.entrySet()) {
+				index.putToken(entry.getValue(), entry.getKey());
+			}
+			for (Map.Entry<String, byte[]> entry : nameTokens.entrySet()) {
+				index.putTokens(entry.getKey(), NameTokenIndex.decode(entry.getValue()));
+			}
+			nameTokenIndex = index;
+		}
+		return nameTokenIndex;
+	}
+
+	/**
+	 * The maps are changed directly, they are written with the next commit. A new
+	 * token gets the next free index.
+	 */
+	@Override
+	public synchronized int[] updateNameTokens(String testname, List<String> tokensOfName) {
+		NameTokenIndex index = getNameTokenIndex();
+		int[] tokenIndices = new int[tokensOfName.size()];
+		for (int idxToken = 0; idxToken < tokenIndices.length; idxToken++) {
+			String token = tokensOfName.get(idxToken);
+			int tokenIdx = index.getTokenIndex(token);
+			if (tokenIdx < 0) {
+				tokenIdx = tokens.size();
+				tokens.put(token, tokenIdx);
+				index.putToken(tokenIdx, token);
+			}
+			tokenIndices[idxToken] = tokenIdx;
+		}
+		index.putTokens(testname, tokenIndices);
+		nameTokens.put(testname, NameTokenIndex.encode(tokenIndices));
+		return tokenIndices.clone();
+	}
+
+	// --- MODEL DATA ---
+
+	@Override
+	public synchronized void insertOrUpdateModel(Object modelObj) {
+		try {
+			model.put(DatabaseConnector.MODEL_ML_TYPE, ModelCodec.encode(modelObj));
+			configuration.put(CONFIG_MODEL_VERSION, Long.toString(getModelVersion() + 1));
+			store.commit();
+		} catch (IOException e) {
+			System.err.println("[CurrantRunner] Model can't be stored: " + e.getMessage());
+		}
+	}
+
+	@Override
+	public synchronized long getModelVersion() {
+		String version = configuration.get(CONFIG_MODEL_VERSION);
+		return (version != null) ? Long.parseLong(version) : 0;
+	}
+
+	@Override
+	public synchronized Object getModel() {
+		byte[] encodedModel = model.get(DatabaseConnector.MODEL_ML_TYPE);
+		if (encodedModel == null) {
+			return null;
+		}
+		try {
+			return ModelCodec.decode(encodedModel);
+		} catch (IOException e) {
+			System.err.println("[CurrantRunner] Stored model is corrupt or incompatible and will be rebuilt: " + e.getMessage());
+		}
+		return null;
+	}
+}
@@ -0,0 +1,74 @@
+package de.proficom.currantrunner.core;
+
+import java.util.List;
+
+import de.proficom.currantrunner.metrics.MetricsBase;
+import de.proficom.currantrunner.metrics.MetricsBaseDouble;
+import de.proficom.currantrunner.metrics.MetricsBaseInteger;
+import de.proficom.currantrunner.metrics.MetricsBaseString;
+
+/**
+ * Output of the test cases of a {@link IMetricStore} to CLI
+ */
+public class MetricStorePrinter {
+
+	/**
+	 * Private constructor, class provides static functions only
+	 */
+	private MetricStorePrinter() {
+	}
+
+	/**
+	 * Prints all test cases of a store with their metrics as table
+	 *
+	 * @param db                  store of test cases
+	 * @param allAvailableMetrics metrics to be printed
+	 */
+	public static void print(IMetricStore db, List<MetricsBase<?>> allAvailableMetrics) {
+		// - Generate format definition -
+		final String strSeparator = " | ";
+		int iNonMetricColumns = 1;
+		String formatTable = "%55s" + strSeparator; // <<< for test name
+		for (MetricsBase<?> curMetric : allAvailableMetrics) {
+			int widthOfColumn = Math.max(curMetric.getCliMinLength(), curMetric.getCliName().length());
+			formatTable += "%" + Integer.toString(widthOfColumn) + "s" + strSeparator;
+		}
+		// Remove the last ' | ' in statement
+		if (formatTable.endsWith(strSeparator)) {
+			formatTable = formatTable.substring(0, formatTable.length() - strSeparator.length());
+		}
+
+		// - HEADER -
+		Object header[] = new String[iNonMetricColumns + allAvailableMetrics.size()];
+		header[0] = "Name of testcase";
+		int idxColumns = 1;
+		for (MetricsBase<?> curMetric : allAvailableMetrics) {
+			header[idxColumns] = curMetric.getCliName();
+			idxColumns++;
+		}
+		System.out.println(String.format(formatTable, header));
+
+		// - DATA -
+		// Values of test cases are formatted by the given metrics (STRING / DOUBLE / INT)
+		for (TestCase tc : db.getTestCases()) {
+			Object dataOfTestcase[] = new String[iNonMetricColumns + allAvailableMetrics.size()];
+			dataOfTestcase[0] = tc.getTestname(); // << name of test case
+			idxColumns = 1;
+			for (MetricsBase<?> curMetric : allAvailableMetrics) {
+				MetricsBase<?> tcMetric = tc.getAllMetrics().get(idxColumns - 1);
+				if (curMetric instanceof MetricsBaseString) {
+					String value = ((MetricsBaseString) tcMetric).getStringValue();
+					dataOfTestcase[idxColumns] = ((MetricsBaseString) curMetric).formatCliCurrentValue(value);
+				} else if (curMetric instanceof MetricsBaseDouble) {
+					double value = ((MetricsBaseDouble) tcMetric).getDoubleValue();
+					dataOfTestcase[idxColumns] = ((MetricsBaseDouble) curMetric).formatCliCurrentValue(value);
+				} else if (curMetric instanceof MetricsBaseInteger) {
+					int value = ((MetricsBaseInteger) tcMetric).getIntegerValue();
+					dataOfTestcase[idxColumns] = ((MetricsBaseInteger) curMetric).formatCliCurrentValue(value);
+				}
+				idxColumns++;
+			}
+			System.out.println(String.format(formatTable, dataOfTestcase));
+		}
+	}
+}
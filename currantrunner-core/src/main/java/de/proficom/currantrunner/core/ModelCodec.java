@@ -0,0 +1,206 @@
+package de.proficom.currantrunner.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Class to convert the ML model into bytes stored in DB and back.<br/>
+ * <br/>
+ * The stored data consists of a header and the (optionally compressed) Java
+ * serialization of the model:
+ * <ul>
+ *   <li>4 bytes: format identifier "CRML"</li>
+ *   <li>1 byte: version of format</li>
+ *   <li>1 byte: compression of data (0 = none, 1 = deflate)</li>
+ *   <li>4 bytes: length of uncompressed data</li>
+ *   <li>8 bytes: CRC32 checksum of uncompressed data</li>
+ *   <li>data</li>
+ * </ul>
+ * A model that is corrupt, truncated or has been stored by an incompatible
+ * version is rejected with an {@link IOException}.
+ */
+public class ModelCodec {
+	/**
+	 * Environment parameter to select the compression of stored models ("deflate"
+	 * or "none")
+	 */
+	private final static String PARAM_MODEL_COMPRESSION = "currantRunner.modelCompression";
+
+	/**
+	 * Header of the format
+	 */
+	private final static byte[] FORMAT_IDENTIFIER = { 'C', 'R', 'M', 'L' };
+	private final static byte FORMAT_VERSION = 1;
+	private final static byte COMPRESSION_NONE = 0;
+	private final static byte COMPRESSION_DEFLATE = 1;
+	private final static int HEADER_LENGTH = FORMAT_IDENTIFIER.length + 1 + 1 + 4 + 8;
+
+	/**
+	 * Limits of the length of uncompressed data, a larger length in header is
+	 * treated as corrupt data. Deflate compresses data at most by factor 1032.
+	 */
+	private final static int MAX_LENGTH_OF_DATA = 1 << 30;
+	private final static int MAX_DEFLATE_RATIO = 1032;
+
+	/**
+	 * First bytes of a plain Java serialization. Models stored by older versions
+	 * of CurrantRunner are stored this way.
+	 */
+	private final static int JAVA_SERIALIZATION_MAGIC = 0xACED;
+
+	/**
+	 * Private constructor, class provides static functions only
+	 */
+	private ModelCodec() {
+	}
+
+	/**
+	 * Convert a model into bytes to be stored in DB
+	 *
+	 * @param model model to be stored, must be serializable
+	 * @return bytes including header and checksum
+	 * @throws IOException if the model can't be serialized
+	 */
+	public static byte[] encode(Object model) throws IOException {
+		// Serialize the model
+		ByteArrayOutputStream serializedStream = new ByteArrayOutputStream();
+		ObjectOutputStream objectStream = new ObjectOutputStream(serializedStream);
+		objectStream.writeObject(model);
+		objectStream.close();
+		byte[] serializedModel = serializedStream.toByteArray();
+
+		// Write header
+		byte compression = getCompression();
+		ByteArrayOutputStream encodedStream = new ByteArrayOutputStream(serializedModel.length / 4 + 32);
+		DataOutputStream headerStream = new DataOutputStream(encodedStream);
+		headerStream.write(FORMAT_IDENTIFIER);
+		headerStream.writeByte(FORMAT_VERSION);
+		headerStream.writeByte(compression);
+		headerStream.writeInt(serializedModel.length);
+		headerStream.writeLong(checksum(serializedModel));
+		headerStream.flush();
+
+		// Write data
+		if (compression == COMPRESSION_DEFLATE) {
+			OutputStream dataStream = new DeflaterOutputStream(encodedStream, new Deflater(Deflater.BEST_SPEED));
+			dataStream.write(serializedModel);
+			dataStream.close();
+		} else {
+			encodedStream.write(serializedModel);
+		}
+		return encodedStream.toByteArray();
+	}
+
+	/**
+	 * Convert bytes stored in DB into a model
+	 *
+	 * @param encodedModel bytes created by {@link #encode(Object)}
+	 * @return the model
+	 * @throws IOException if the data is corrupt or incompatible
+	 */
+	public static Object decode(byte[] encodedModel) throws IOException {
+		if (encodedModel == null || encodedModel.length < 2) {
+			throw new IOException("Model data is empty");
+		}
+
+		// Models of older versions are stored without header
+		if ((((encodedModel[0] & 0xFF) << 8) | (encodedModel[1] & 0xFF)) == JAVA_SERIALIZATION_MAGIC) {
+			return deserialize(encodedModel);
+		}
+
+		// Check header
+		DataInputStream headerStream = new DataInputStream(new ByteArrayInputStream(encodedModel));
+		byte[] formatIdentifier = new byte[FORMAT_IDENTIFIER.length];
+		headerStream.readFully(formatIdentifier);
+		for (int i = 0; i < FORMAT_IDENTIFIER.length; i++) {
+			if (formatIdentifier[i] != FORMAT_IDENTIFIER[i]) {
+				throw new IOException("Unknown format of model data");
+			}
+		}
+		byte formatVersion = headerStream.readByte();
+		if (formatVersion != FORMAT_VERSION) {
+			throw new IOException("Unsupported version of model data: " + formatVersion);
+		}
+		byte compression = headerStream.readByte();
+		int lengthOfData = headerStream.readInt();
+		long expectedChecksum = headerStream.readLong();
+
+		// Check length before the data is allocated
+		long maxLengthOfData = encodedModel.length - HEADER_LENGTH;
+		InputStream dataStream = headerStream;
+		if (compression == COMPRESSION_DEFLATE) {
+			dataStream = new InflaterInputStream(headerStream);
+			maxLengthOfData *= MAX_DEFLATE_RATIO;
+		} else if (compression != COMPRESSION_NONE) {
+			throw new IOException("Unsupported compression of model data: " + compression);
+		}
+		if (lengthOfData < 0 || lengthOfData > MAX_LENGTH_OF_DATA || lengthOfData > maxLengthOfData) {
+			throw new IOException("Invalid length of model data: " + lengthOfData);
+		}
+
+		// Read data
+		byte[] serializedModel = new byte[lengthOfData];
+		new DataInputStream(dataStream).readFully(serializedModel);
+		dataStream.close();
+
+		// Verify data
+		if (checksum(serializedModel) != expectedChecksum) {
+			throw new IOException("Checksum of model data is invalid");
+		}
+		return deserialize(serializedModel);
+	}
+
+	/**
+	 * Deserialize a model
+	 *
+	 * @param serializedModel Java serialization of model
+	 * @return the model
+	 * @throws IOException if the model can't be deserialized
+	 */
+	private static Object deserialize(byte[] serializedModel) throws IOException {
+		ObjectInputStream objectStream = new ObjectInputStream(new ByteArrayInputStream(serializedModel));
+		try {
+			return objectStream.readObject();
+		} catch (ClassNotFoundException e) {
+			throw new IOException("Incompatible model data: " + e.getMessage(), e);
+		} finally {
+			objectStream.close();
+		}
+	}
+
+	/**
+	 * Calculate checksum of data
+	 *
+	 * @param data data to be checked
+	 * @return CRC32 checksum
+	 */
+	private static long checksum(byte[] data) {
+		CRC32 crc = new CRC32();
+		crc.update(data, 0, data.length);
+		return crc.getValue();
+	}
+
+	/**
+	 * Get the configured compression, default is deflate
+	 *
+	 * @return compression of data
+	 */
+	private static byte getCompression() {
+		String compression = System.getProperty(PARAM_MODEL_COMPRESSION);
+		if (compression != null && compression.equalsIgnoreCase("none")) {
+			return COMPRESSION_NONE;
+		}
+		return COMPRESSION_DEFLATE;
+	}
+}
@@ -0,0 +1,134 @@
+package de.proficom.currantrunner.core;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In-memory index of the tokens of all test names, e.g. the words of a camel
+ * case name. Splitting a name into tokens is expensive compared to reading them,
+ * so the tokens of every test are kept and a name is only split when it's
+ * test is new.<br/>
+ * <br/>
+ * Every token gets a small index that is assigned by the store (table
+ * <code>TOKENS</code>), the tokens of a test are an array of these indices in
+ * the order of the name. In the store it's encoded as varints (table
+ * <code>NAME_TOKENS</code>).<br/>
+ * <br/>
+ * All methods are synchronized, the index is shared by all threads.
+ */
+public class NameTokenIndex {
+	/**
+	 * Tokens by their index
+	 */
+	private final Map<String, Integer> indicesOfTokens = new HashMap<String, Integer>();
+	private String[] tokens = new String[256];
+	private int noOfTokens = 0;
+
+	/**
+	 * Token indices of every test
+	 */
+	private final Map<String, int[]> tokensOfTests = new HashMap<String, int[]>();
+
+	/**
+	 * Add a token, used by the store when the index is loaded
+	 *
+	 * @param tokenIdx index of token assigned by the store
+	 * @param token    the token
+	 */
+	synchronized void putToken(int tokenIdx, String token) {
+		if (tokenIdx >= tokens.length) {
+			tokens = Arrays.copyOf(tokens, Math.max(2 * tokens.length, tokenIdx + 1));
+		}
+		indicesOfTokens.put(token, tokenIdx);
+		tokens[tokenIdx] = token;
+		noOfTokens = Math.max(noOfTokens, tokenIdx + 1);
+	}
+
+	/**
+	 * Set the tokens of a test
+	 *
+	 * @param testname     name of test case
+	 * @param tokenIndices indices of the tokens in the order of the name
+	 */
+	synchronized void putTokens(String testname, int[] tokenIndices) {
+		tokensOfTests.put(testname, tokenIndices);
+	}
+
+	/**
+	 * Remove the tokens of a test
+	 *
+	 * @param testname name of test case
+	 */
+	synchronized void removeTokens(String testname) {
+		tokensOfTests.remove(testname);
+	}
+
+	/**
+	 * @param testname name of test case
+	 * @return indices of the tokens in the order of the name or null if the name
+	 *         hasn't been split yet
+	 */
+	public synchronized int[] getTokens(String testname) {
+		int[] tokenIndices = tokensOfTests.get(testname);
+		return (tokenIndices != null) ? tokenIndices.clone() : null;
+	}
+
+	/**
+	 * @param token a token
+	 * @return index of token or -1 if it isn't part of any name yet
+	 */
+	public synchronized int getTokenIndex(String token) {
+		Integer tokenIdx = indicesOfTokens.get(token);
+		return (tokenIdx != null) ? tokenIdx : -1;
+	}
+
+	/**
+	 * @param tokenIdx index of token
+	 * @return the token or null if the index isn't used
+	 */
+	public synchronized String getToken(int tokenIdx) {
+		return (tokenIdx < noOfTokens) ? tokens[tokenIdx] : null;
+	}
+
+	/**
+	 * @return number of token indices, i.e. the highest index + 1
+	 */
+	public synchronized int getNoOfTokens() {
+		return noOfTokens;
+	}
+
+	// --- ENCODING ---
+
+	/**
+	 * Encode the tokens of a test as varints
+	 *
+	 * @param tokenIndices indices of tokens
+	 * @return encoded tokens
+	 */
+	static byte[] encode(int[] tokenIndices) {
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream(tokenIndices.length + 4);
+		for (int tokenIdx : tokenIndices) {
+			MVStoreConnector.writeVarLong(encoded, tokenIdx);
+		}
+		return encoded.toByteArray();
+	}
+
+	/**
+	 * Decode the tokens of a test written by {@link #encode(int[])}
+	 *
+	 * @param encoded encoded tokens
+	 * @return indices of tokens
+	 */
+	static int[] decode(byte[] encoded) {
+		ByteBuffer buffer = ByteBuffer.wrap(encoded);
+		int[] tokenIndices = new int[encoded.length];
+		int size = 0;
+		while (buffer.hasRemaining()) {
+			tokenIndices[size++] = (int) MVStoreConnector.readVarLong(buffer);
+		}
+		return Arrays.copyOf(tokenIndices, size);
+	}
+}
@@ -0,0 +1,375 @@
+package de.proficom.currantrunner.core;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Compressed set of the probes executed by a test, organized like a roaring
+ * bitmap. The probes of a class are kept in a container keyed by the index of
+ * the class (see {@link FootprintIndex}):
+ * <ul>
+ *   <li>array container: sorted probe indices, used for up to 4096 probes</li>
+ *   <li>bitmap container: 65536 bits, used for more probes</li>
+ * </ul>
+ * Probes with an index above 65535 are ignored, JaCoCo creates less probes even
+ * for huge classes.<br/>
+ * <br/>
+ * The bitmap is used to compare the coverage of tests, e.g. how many probes of
+ * a test are not covered by the tests scheduled before. It's not thread safe.
+ */
+public class ProbeBitmap {
+	private static final int MAX_ARRAY_CARDINALITY = 4096;
+	private static final int MAX_PROBES = 65536;
+	private static final int BITMAP_WORDS = MAX_PROBES / 64;
+
+	/**
+	 * Sorted indices of classes and their containers, either char[] (array) or
+	 * long[] (bitmap)
+	 */
+	private int[] keys = new int[4];
+	private Object[] containers = new Object[4];
+	private int[] cardinalities = new int[4];
+	private int size = 0;
+	private int cardinality = 0;
+
+	/**
+	 * Add the executed probes of a class
+	 *
+	 * @param classIdx index of class
+	 * @param probes   probes of class, TRUE if executed
+	 */
+	public void add(int classIdx, boolean[] probes) {
+		int length = Math.min(probes.length, MAX_PROBES);
+		int count = 0;
+		for (int idxProbe = 0; idxProbe < length; idxProbe++) {
+			if (probes[idxProbe]) {
+				count++;
+			}
+		}
+		if (count == 0) {
+			return;
+		}
+
+		Object container;
+		if (count <= MAX_ARRAY_CARDINALITY) {
+			char[] array = new char[count];
+			int idxArray = 0;
+			for (int idxProbe = 0; idxProbe < length; idxProbe++) {
+				if (probes[idxProbe]) {
+					array[idxArray++] = (char) idxProbe;
+				}
+			}
+			container = array;
+		} else {
+			long[] bitmap = new long[BITMAP_WORDS];
+			for (int idxProbe = 0; idxProbe < length; idxProbe++) {
+				if (probes[idxProbe]) {
+					bitmap[idxProbe >>> 6] |= 1L << idxProbe;
+				}
+			}
+			container = bitmap;
+		}
+		addContainer(classIdx, container, count);
+	}
+
+	/**
+	 * Remove all probes of a class
+	 *
+	 * @param classIdx index of class
+	 */
+	public void remove(int classIdx) {
+		int idxKey = Arrays.binarySearch(keys, 0, size, classIdx);
+		if (idxKey < 0) {
+			return;
+		}
+		cardinality -= cardinalities[idxKey];
+		System.arraycopy(keys, idxKey + 1, keys, idxKey, size - idxKey - 1);
+		System.arraycopy(containers, idxKey + 1, containers, idxKey, size - idxKey - 1);
+		System.arraycopy(cardinalities, idxKey + 1, cardinalities, idxKey, size - idxKey - 1);
+		size--;
+		containers[size] = null;
+	}
+
+	/**
+	 * @return number of probes in set
+	 */
+	public int getCardinality() {
+		return cardinality;
+	}
+
+	/**
+	 * @return number of classes with at least one probe
+	 */
+	public int getNoOfClasses() {
+		return size;
+	}
+
+	/**
+	 * Call an action for every probe of the set, ordered by class index and probe
+	 * index
+	 *
+	 * @param action gets <code>classIdx * 65536 + probeIdx</code> of every probe
+	 */
+	public void forEach(LongConsumer action) {
+		for (int idxKey = 0; idxKey < size; idxKey++) {
+			long base = (long) keys[idxKey] * MAX_PROBES;
+			if (containers[idxKey] instanceof char[]) {
+				for (char probe : (char[]) containers[idxKey]) {
+					action.accept(base + probe);
+				}
+			} else {
+				long[] bitmap = (long[]) containers[idxKey];
+				for (int idxWord = 0; idxWord < BITMAP_WORDS; idxWord++) {
+					long word = bitmap[idxWord];
+					while (word != 0) {
+						action.accept(base + 64 * idxWord + Long.numberOfTrailingZeros(word));
+						word &= word - 1;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Count the probes that are not contained in another set
+	 *
+	 * @param other set of probes, e.g. the probes covered so far
+	 * @return number of probes in this set but not in the other one
+	 */
+	public int andNotCardinality(ProbeBitmap other) {
+		int count = 0;
+		int idxOther = 0;
+		for (int idxKey = 0; idxKey < size; idxKey++) {
+			while (idxOther < other.size && other.keys[idxOther] < keys[idxKey]) {
+				idxOther++;
+			}
+			if (idxOther < other.size && other.keys[idxOther] == keys[idxKey]) {
+				count += andNotCardinality(containers[idxKey], cardinalities[idxKey], other.containers[idxOther]);
+			} else {
+				count += cardinalities[idxKey];
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Add all probes of another set to this one
+	 *
+	 * @param other set of probes, not modified
+	 */
+	public void or(ProbeBitmap other) {
+		for (int idxOther = 0; idxOther < other.size; idxOther++) {
+			Object container = other.containers[idxOther];
+			addContainer(other.keys[idxOther], (container instanceof char[]) ? ((char[]) container).clone() : ((long[]) container).clone(),
+					other.cardinalities[idxOther]);
+		}
+	}
+
+	/**
+	 * Add a container that isn't used by any other set
+	 */
+	private void addContainer(int classIdx, Object container, int containerCardinality) {
+		int idxKey = Arrays.binarySearch(keys, 0, size, classIdx);
+		if (idxKey >= 0) {
+			cardinality -= cardinalities[idxKey];
+			Object union = union(containers[idxKey], container);
+			containers[idxKey] = union;
+			cardinalities[idxKey] = getCardinality(union);
+			cardinality += cardinalities[idxKey];
+			return;
+		}
+
+		// Insert a new class
+		idxKey = -(idxKey + 1);
+		if (size == keys.length) {
+			keys = Arrays.copyOf(keys, 2 * size);
+			containers = Arrays.copyOf(containers, 2 * size);
+			cardinalities = Arrays.copyOf(cardinalities, 2 * size);
+		}
+		System.arraycopy(keys, idxKey, keys, idxKey + 1, size - idxKey);
+		System.arraycopy(containers, idxKey, containers, idxKey + 1, size - idxKey);
+		System.arraycopy(cardinalities, idxKey, cardinalities, idxKey + 1, size - idxKey);
+		keys[idxKey] = classIdx;
+		containers[idxKey] = container;
+		cardinalities[idxKey] = containerCardinality;
+		cardinality += containerCardinality;
+		size++;
+	}
+
+	// --- CONTAINERS ---
+
+	private static int andNotCardinality(Object container, int containerCardinality, Object otherContainer) {
+		if (container instanceof char[]) {
+			char[] array = (char[]) container;
+			if (otherContainer instanceof char[]) {
+				// Merge two sorted arrays
+				char[] otherArray = (char[]) otherContainer;
+				int count = 0;
+				int idxOther = 0;
+				for (char probe : array) {
+					while (idxOther < otherArray.length && otherArray[idxOther] < probe) {
+						idxOther++;
+					}
+					if (idxOther >= otherArray.length || otherArray[idxOther] != probe) {
+						count++;
+					}
+				}
+				return count;
+			}
+			long[] otherBitmap = (long[]) otherContainer;
+			int count = 0;
+			for (char probe : array) {
+				if ((otherBitmap[probe >>> 6] & (1L << probe)) == 0) {
+					count++;
+				}
+			}
+			return count;
+		}
+
+		long[] bitmap = (long[]) container;
+		if (otherContainer instanceof char[]) {
+			int count = containerCardinality;
+			for (char probe : (char[]) otherContainer) {
+				if ((bitmap[probe >>> 6] & (1L << probe)) != 0) {
+					count--;
+				}
+			}
+			return count;
+		}
+		long[] otherBitmap = (long[]) otherContainer;
+		int count = 0;
+		for (int idxWord = 0; idxWord < BITMAP_WORDS; idxWord++) {
+			count += Long.bitCount(bitmap[idxWord] & ~otherBitmap[idxWord]);
+		}
+		return count;
+	}
+
+	/**
+	 * Union of two containers. A bitmap of the first container is modified in
+	 * place, arrays are always replaced.
+	 */
+	private static Object union(Object container, Object otherContainer) {
+		if (container instanceof long[]) {
+			return orInto((long[]) container, otherContainer);
+		}
+		if (otherContainer instanceof long[]) {
+			return orInto((long[]) otherContainer, container);
+		}
+
+		// Merge two sorted arrays, convert to bitmap if it gets too large
+		char[] array = (char[]) container;
+		char[] otherArray = (char[]) otherContainer;
+		char[] merged = new char[array.length + otherArray.length];
+		int idxArray = 0;
+		int idxOther = 0;
+		int size = 0;
+		while (idxArray < array.length || idxOther < otherArray.length) {
+			char probe;
+			if (idxOther >= otherArray.length || (idxArray < array.length && array[idxArray] < otherArray[idxOther])) {
+				probe = array[idxArray++];
+			} else if (idxArray >= array.length || otherArray[idxOther] < array[idxArray]) {
+				probe = otherArray[idxOther++];
+			} else {
+				probe = array[idxArray++];
+				idxOther++;
+			}
+			merged[size++] = probe;
+		}
+		if (size > MAX_ARRAY_CARDINALITY) {
+			return orInto(new long[BITMAP_WORDS], Arrays.copyOf(merged, size));
+		}
+		return Arrays.copyOf(merged, size);
+	}
+
+	private static long[] orInto(long[] bitmap, Object otherContainer) {
+		if (otherContainer instanceof char[]) {
+			for (char probe : (char[]) otherContainer) {
+				bitmap[probe >>> 6] |= 1L << probe;
+			}
+		} else {
+			long[] otherBitmap = (long[]) otherContainer;
+			for (int idxWord = 0; idxWord < BITMAP_WORDS; idxWord++) {
+				bitmap[idxWord] |= otherBitmap[idxWord];
+			}
+		}
+		return bitmap;
+	}
+
+	private static int getCardinality(Object container) {
+		if (container instanceof char[]) {
+			return ((char[]) container).length;
+		}
+		int count = 0;
+		for (long word : (long[]) container) {
+			count += Long.bitCount(word);
+		}
+		return count;
+	}
+
+	// --- ENCODING ---
+
+	/**
+	 * Encode the set for the store. Every container is written as varint of the
+	 * difference to the previous class index and it's cardinality, followed by
+	 * varints of the differences between the probe indices (array) or all words
+	 * (bitmap).
+	 *
+	 * @return encoded set
+	 */
+	public byte[] encode() {
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream(16 + 2 * cardinality);
+		int previousKey = 0;
+		for (int idxKey = 0; idxKey < size; idxKey++) {
+			MVStoreConnector.writeVarLong(encoded, keys[idxKey] - previousKey);
+			MVStoreConnector.writeVarLong(encoded, cardinalities[idxKey]);
+			previousKey = keys[idxKey];
+			if (containers[idxKey] instanceof char[]) {
+				int previousProbe = 0;
+				for (char probe : (char[]) containers[idxKey]) {
+					MVStoreConnector.writeVarLong(encoded, probe - previousProbe);
+					previousProbe = probe;
+				}
+			} else {
+				ByteBuffer words = ByteBuffer.allocate(8 * BITMAP_WORDS);
+				words.asLongBuffer().put((long[]) containers[idxKey]);
+				encoded.write(words.array(), 0, words.capacity());
+			}
+		}
+		return encoded.toByteArray();
+	}
+
+	/**
+	 * Decode a set written by {@link #encode()}
+	 *
+	 * @param encoded encoded set
+	 * @return set of probes
+	 */
+	public static ProbeBitmap decode(byte[] encoded) {
+		ProbeBitmap bitmap = new ProbeBitmap();
+		ByteBuffer buffer = ByteBuffer.wrap(encoded);
+		int key = 0;
+		while (buffer.hasRemaining()) {
+			key += (int) MVStoreConnector.readVarLong(buffer);
+			int containerCardinality = (int) MVStoreConnector.readVarLong(buffer);
+			Object container;
+			if (containerCardinality <= MAX_ARRAY_CARDINALITY) {
+				char[] array = new char[containerCardinality];
+				int probe = 0;
+				for (int idxArray = 0; idxArray < containerCardinality; idxArray++) {
+					probe += (int) MVStoreConnector.readVarLong(buffer);
+					array[idxArray] = (char) probe;
+				}
+				container = array;
+			} else {
+				long[] words = new long[BITMAP_WORDS];
+				buffer.asLongBuffer().get(words);
+				buffer.position(buffer.position() + 8 * BITMAP_WORDS);
+				container = words;
+			}
+			bitmap.addContainer(key, container, containerCardinality);
+		}
+		return bitmap;
+	}
+}
@@ -0,0 +1,234 @@
+package de.proficom.currantrunner.core;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.proficom.currantrunner.metrics.MetricResultHistory;
+import de.proficom.currantrunner.metrics.MetricsBase;
+
+/**
+ * In-memory cache of the last results of every test. It's read from the stored
+ * runs (table <code>RESULTS</code>) once and kept up to date with every
+ * recorded result, so the history metrics ({@link MetricResultHistory}) are
+ * always computed from the stored runs.<br/>
+ * <br/>
+ * Only PASSED and FAILED results are part of the history. For every test the
+ * last results up to the largest depth of all history metrics are kept, with
+ * the id of their run. Results of the current run get their run id when it's
+ * stored.<br/>
+ * <br/>
+ * All methods are synchronized, results are recorded by several threads.
+ */
+public class ResultHistory {
+	/**
+	 * Run id of results that belong to the current run
+	 */
+	private static final long PENDING_RUN = Long.MAX_VALUE;
+
+	/**
+	 * Run id of results that are only known from the stored history metric, e.g.
+	 * of a store created before runs were stored
+	 */
+	private static final long STORED_RUN = Long.MIN_VALUE;
+
+	/**
+	 * Last results of a single test, oldest first
+	 */
+	private static class Window {
+		private final long[] runIds;
+		private final int[] results;
+		private int size = 0;
+
+		Window(int depth) {
+			runIds = new long[depth];
+			results = new int[depth];
+		}
+	}
+
+	private final int depth;
+	private final Map<String, Window> windows = new HashMap<String, Window>();
+
+	/**
+	 * Tests with results of the current run
+	 */
+	private final Set<String> pendingTests = new HashSet<String>();
+
+	/**
+	 * @param depth number of results kept for every test
+	 */
+	public ResultHistory(int depth) {
+		this.depth = depth;
+	}
+
+	/**
+	 * @param allAvailableMetrics all metrics of a test case
+	 * @return largest depth of all history metrics, 0 if there is none
+	 */
+	static int getDepth(List<MetricsBase<?>> allAvailableMetrics) {
+		MetricResultHistory deepestMetric = getDeepestMetric(allAvailableMetrics);
+		return (deepestMetric != null) ? deepestMetric.getDepth() : 0;
+	}
+
+	/**
+	 * @param allAvailableMetrics all metrics of a test case
+	 * @return history metric with the largest depth, null if there is none
+	 */
+	static MetricResultHistory getDeepestMetric(List<MetricsBase<?>> allAvailableMetrics) {
+		MetricResultHistory deepestMetric = null;
+		for (MetricsBase<?> curMetric : allAvailableMetrics) {
+			if (curMetric instanceof MetricResultHistory
+					&& (deepestMetric == null || ((MetricResultHistory) curMetric).getDepth() > deepestMetric.getDepth())) {
+				deepestMetric = (MetricResultHistory) curMetric;
+			}
+		}
+		return deepestMetric;
+	}
+
+	/**
+	 * @return number of results kept for every test
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * Add a stored result, used by the store when the history is loaded. Results
+	 * must be added in the order of their runs.
+	 *
+	 * @param testname name of test case
+	 * @param runId    id of run
+	 * @param result   result of test execution
+	 */
+	synchronized void addResult(String testname, long runId, TestCase.Results result) {
+		if (depth == 0 || result == TestCase.Results.SKIPPED) {
+			return;
+		}
+		Window window = windows.get(testname);
+		if (window == null) {
+			window = new Window(depth);
+			windows.put(testname, window);
+		}
+		if (window.size == depth) {
+			System.arraycopy(window.runIds, 1, window.runIds, 0, depth - 1);
+			System.arraycopy(window.results, 1, window.results, 0, depth - 1);
+			window.size--;
+		}
+		window.runIds[window.size] = runId;
+		window.results[window.size] = (result == TestCase.Results.FAILED) ? 1 : 0;
+		window.size++;
+	}
+
+	/**
+	 * Add the stored value of the deepest history metric, used by the store after
+	 * the stored runs have been added. The value holds the same last results as
+	 * the stored runs, but it's older results may be missing in the runs, e.g.
+	 * after the store has been upgraded. These older results are added in front
+	 * of the results of the stored runs.
+	 *
+	 * @param testname      name of test case
+	 * @param storedHistory stored value, results separated by comma (0 = PASSED,
+	 *                      1 = FAILED), oldest first
+	 */
+	synchronized void addStoredHistory(String testname, String storedHistory) {
+		if (depth == 0 || storedHistory == null || storedHistory.isEmpty()) {
+			return;
+		}
+		String[] storedResults = storedHistory.split(",");
+		Window window = windows.get(testname);
+		int size = (window != null) ? window.size : 0;
+		int noOfOlderResults = Math.min(storedResults.length, depth) - size;
+		if (noOfOlderResults <= 0) {
+			return;
+		}
+
+		Window newWindow = new Window(depth);
+		for (int idxStored = storedResults.length - size - noOfOlderResults; idxStored < storedResults.length - size; idxStored++) {
+			newWindow.runIds[newWindow.size] = STORED_RUN;
+			newWindow.results[newWindow.size] = "1".equals(storedResults[idxStored].trim()) ? 1 : 0;
+			newWindow.size++;
+		}
+		if (window != null) {
+			System.arraycopy(window.runIds, 0, newWindow.runIds, newWindow.size, size);
+			System.arraycopy(window.results, 0, newWindow.results, newWindow.size, size);
+			newWindow.size += size;
+		}
+		windows.put(testname, newWindow);
+	}
+
+	/**
+	 * Add a result of the current run
+	 *
+	 * @param testname name of test case
+	 * @param result   result of test execution
+	 */
+	synchronized void addPendingResult(String testname, TestCase.Results result) {
+		addResult(testname, PENDING_RUN, result);
+		pendingTests.add(testname);
+	}
+
+	/**
+	 * The current run has been stored, it's results get the id of the run
+	 *
+	 * @param runId id of stored run
+	 */
+	synchronized void assignRun(long runId) {
+		for (String testname : pendingTests) {
+			Window window = windows.get(testname);
+			if (window == null) {
+				continue;
+			}
+			for (int idxResult = 0; idxResult < window.size; idxResult++) {
+				if (window.runIds[idxResult] == PENDING_RUN) {
+					window.runIds[idxResult] = runId;
+				}
+			}
+		}
+		pendingTests.clear();
+	}
+
+	/**
+	 * @param testname name of test case
+	 * @return last results of the test, oldest first (0 = PASSED, 1 = FAILED)
+	 */
+	public synchronized int[] getResults(String testname) {
+		Window window = windows.get(testname);
+		return (window != null) ? Arrays.copyOf(window.results, window.size) : new int[0];
+	}
+
+	/**
+	 * Check if a stored result is one of the last results of a test. Such results
+	 * must not be removed by the retention of runs.
+	 *
+	 * @param testname name of test case
+	 * @param runId    id of run
+	 * @return TRUE if the result of the run is part of the history
+	 */
+	synchronized boolean isPartOfHistory(String testname, long runId) {
+		Window window = windows.get(testname);
+		if (window == null) {
+			return false;
+		}
+		return window.size < depth || runId >= window.runIds[0];
+	}
+
+	/**
+	 * Set the last results of a test to it's history metrics
+	 *
+	 * @param tc test case
+	 */
+	void applyTo(TestCase tc) {
+		if (depth == 0) {
+			return;
+		}
+		int[] results = getResults(tc.getTestname());
+		for (MetricsBase<?> curMetric : tc.getAllMetrics()) {
+			if (curMetric instanceof MetricResultHistory) {
+				((MetricResultHistory) curMetric).setResults(results);
+			}
+		}
+	}
+}
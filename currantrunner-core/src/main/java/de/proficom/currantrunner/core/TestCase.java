@@ -58,6 +58,58 @@ public class TestCase {
 		return false;
 	}
 
+	/**
+	 * Get a bitmask of all metrics that have been modified since the test case was
+	 * read from DB or written to DB. Bit n is related to the n-th metric of
+	 * {@link #getAllMetrics()}. Metrics after the 64th one can't be tracked, if
+	 * any of them is modified all bits are set.
+	 *
+	 * @return bitmask of modified metrics, 0 = nothing has been modified
+	 */
+	public long getModifiedMetrics() {
+		long modifiedMask = 0;
+		int idxMetric = 0;
+		for (MetricsBase<?> curMetric : getAllMetrics()) {
+			if (curMetric.isModified()) {
+				if (idxMetric >= Long.SIZE) {
+					return -1L;
+				}
+				modifiedMask |= (1L << idxMetric);
+			}
+			idxMetric++;
+		}
+		return modifiedMask;
+	}
+
+	/**
+	 * Mark all metrics as unmodified, e.g. after they have been written to DB
+	 */
+	public void clearModifiedMetrics() {
+		for (MetricsBase<?> curMetric : getAllMetrics()) {
+			curMetric.setModified(false);
+		}
+	}
+
+	/**
+	 * Mark some metrics as unmodified, e.g. after their values have been taken to
+	 * be written to DB. Metrics that aren't part of the bitmask stay modified.
+	 *
+	 * @param modifiedMask bitmask of metrics, see {@link #getModifiedMetrics()}
+	 */
+	public void clearModifiedMetrics(long modifiedMask) {
+		if (modifiedMask == -1L) {
+			clearModifiedMetrics();
+			return;
+		}
+		int idxMetric = 0;
+		for (MetricsBase<?> curMetric : getAllMetrics()) {
+			if (idxMetric < Long.SIZE && (modifiedMask & (1L << idxMetric)) != 0) {
+				curMetric.setModified(false);
+			}
+			idxMetric++;
+		}
+	}
+
 	/**
 	 * Ask all metrics if the test case can be removed from DB
 	 * 
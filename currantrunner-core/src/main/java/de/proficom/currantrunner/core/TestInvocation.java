@@ -0,0 +1,153 @@
+package de.proficom.currantrunner.core;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+
+/**
+ * Context of a single execution of a test case. It's created when the test is
+ * started and given to all handlers until the test has finished.<br/>
+ * <br/>
+ * Tests may be executed in parallel (e.g. TestNG with
+ * <code>parallel="methods"</code>), so handlers must keep the state of a
+ * running test here instead of their own fields. A context is used by a single
+ * thread only.<br/>
+ * <br/>
+ * Results that are calculated later (e.g. by a background thread of a handler)
+ * are written with {@link #updateTestCase(Consumer)}.
+ */
+public class TestInvocation {
+	private final String testname;
+	private final CurrantRunner runner;
+	private Instant tmStarted = Instant.now();
+	private volatile boolean isConcurrent = false;
+
+	/**
+	 * State of the {@link ExecutionGate}
+	 */
+	private Lock gateLock = null;
+	private boolean isExclusive = false;
+	private long tmGateEntered = 0;
+	private Duration gateWait = Duration.ZERO;
+	private final Map<Object, Object> attributes = new HashMap<Object, Object>();
+
+	/**
+	 * Constructor for a test that is about to start
+	 *
+	 * @param testname name of test case
+	 * @param runner   runner that executes the test
+	 */
+	TestInvocation(String testname, CurrantRunner runner) {
+		this.testname = testname;
+		this.runner = runner;
+	}
+
+	public String getTestname() {
+		return testname;
+	}
+
+	/**
+	 * @return timestamp when the test has been started
+	 */
+	public Instant getStarted() {
+		return tmStarted;
+	}
+
+	/**
+	 * @return TRUE if other tests have been executed at the same time. Data that
+	 *         is global for the JVM (e.g. coverage of JaCoCo's agent) is mixed
+	 *         with the data of these tests.
+	 */
+	public boolean isConcurrent() {
+		return isConcurrent;
+	}
+
+	void markConcurrent() {
+		this.isConcurrent = true;
+	}
+
+	/**
+	 * @return TRUE if the test has been executed alone by the
+	 *         {@link ExecutionGate}
+	 */
+	public boolean isExclusive() {
+		return isExclusive;
+	}
+
+	/**
+	 * @return time the test has waited for other tests before it has been
+	 *         started, it's contained in the duration reported by TestNG
+	 */
+	public Duration getGateWait() {
+		return gateWait;
+	}
+
+	void enteredGate(Lock gateLock, boolean isExclusive, long tmGateEntered, Duration gateWait) {
+		this.gateLock = gateLock;
+		this.isExclusive = isExclusive;
+		this.tmGateEntered = tmGateEntered;
+		this.gateWait = gateWait;
+		this.tmStarted = Instant.now();
+	}
+
+	long getGateEntered() {
+		return tmGateEntered;
+	}
+
+	/**
+	 * @return lock of gate or null if the gate has been left already
+	 */
+	Lock leftGate() {
+		Lock gateLock = this.gateLock;
+		this.gateLock = null;
+		return gateLock;
+	}
+
+	/**
+	 * Get a value stored by a handler
+	 *
+	 * @param key key of value, usually the handler itself
+	 * @return value or null if not set
+	 */
+	public Object getAttribute(Object key) {
+		return attributes.get(key);
+	}
+
+	/**
+	 * Store a value of a handler for this execution
+	 *
+	 * @param key   key of value, usually the handler itself
+	 * @param value value to be stored
+	 */
+	public void setAttribute(Object key, Object value) {
+		attributes.put(key, value);
+	}
+
+	/**
+	 * Update the test case after it has been finished. The test case is read
+	 * from store, updated and written again while it's locked for other threads.
+	 * May be called by any thread until the handler has been drained, see
+	 * {@link de.proficom.currantrunner.handler.ITestCaseHandler#drain()}.
+	 *
+	 * @param update update of the test case metrics
+	 */
+	public void updateTestCase(Consumer<TestCase> update) {
+		runner.updateTestCase(testname, update);
+	}
+
+	/**
+	 * Remember the classes and probes executed by the test, see
+	 * {@link FootprintIndex} and {@link ProbeBitmap}. May be called by any thread
+	 * like {@link #updateTestCase(Consumer)}.
+	 *
+	 * @param touchedClasses ids of executed classes (CRC64 of bytecode) by name
+	 * @param executedProbes probes of executed classes by name
+	 */
+	public void updateFootprint(SortedMap<String, Long> touchedClasses, Map<String, boolean[]> executedProbes) {
+		runner.updateFootprint(testname, touchedClasses, executedProbes);
+	}
+}
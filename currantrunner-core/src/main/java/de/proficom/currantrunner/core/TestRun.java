@@ -0,0 +1,115 @@
+package de.proficom.currantrunner.core;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Results of all test cases executed within a single test run (test suite).
+ * Results are collected in memory and written by {@link IMetricStore#endRun()}
+ * at once.<br/>
+ * <br/>
+ * To keep the stored history bounded, only the last runs are kept
+ * (<code>currantRunner.maxRunsKept</code>, default: 1000). Results of PASSED
+ * and SKIPPED tests are only kept for the most recent runs
+ * (<code>currantRunner.detailRuns</code>, default: 100), for older runs only
+ * failures are kept.
+ */
+public class TestRun {
+	/**
+	 * Environment parameters for retention of run history
+	 */
+	private final static String PARAM_MAX_RUNS_KEPT = "currantRunner.maxRunsKept";
+	private final static String PARAM_DETAIL_RUNS = "currantRunner.detailRuns";
+
+	/**
+	 * Result of a single test execution
+	 */
+	public static class Result {
+		private final String testname;
+		private final TestCase.Results result;
+		private final long durationMilliSec;
+
+		public Result(String testname, TestCase.Results result, long durationMilliSec) {
+			this.testname = testname;
+			this.result = result;
+			this.durationMilliSec = durationMilliSec;
+		}
+
+		public String getTestname() {
+			return testname;
+		}
+
+		public TestCase.Results getResult() {
+			return result;
+		}
+
+		public long getDurationMilliSec() {
+			return durationMilliSec;
+		}
+	}
+
+	private final Instant tmStarted = Instant.now();
+	private Instant tmFinished = null;
+	private final List<Result> results = new ArrayList<Result>();
+	private int noOfFailures = 0;
+
+	/**
+	 * Remember the result of a test execution
+	 *
+	 * @param testname    name of test case
+	 * @param result      result of test execution
+	 * @param tmExecution duration of test execution
+	 */
+	public void addResult(String testname, TestCase.Results result, Duration tmExecution) {
+		results.add(new Result(testname, result, tmExecution.toMillis()));
+		if (result == TestCase.Results.FAILED) {
+			noOfFailures++;
+		}
+	}
+
+	/**
+	 * Mark the run as finished
+	 */
+	public void finish() {
+		tmFinished = Instant.now();
+	}
+
+	public Instant getStarted() {
+		return tmStarted;
+	}
+
+	public Instant getFinished() {
+		return (tmFinished != null) ? tmFinished : Instant.now();
+	}
+
+	public List<Result> getResults() {
+		return results;
+	}
+
+	public int getNoOfFailures() {
+		return noOfFailures;
+	}
+
+	/**
+	 * @return number of runs that are kept in store
+	 */
+	public static int getMaxRunsKept() {
+		if (System.getProperty(PARAM_MAX_RUNS_KEPT) != null) {
+			return Math.max(1, Integer.parseInt(System.getProperty(PARAM_MAX_RUNS_KEPT)));
+		}
+		return 1000;
+	}
+
+	/**
+	 * @return number of recent runs for which all results are kept, older runs
+	 *         keep only failures
+	 */
+	public static int getDetailRuns() {
+		if (System.getProperty(PARAM_DETAIL_RUNS) != null) {
+			return Math.max(1, Integer.parseInt(System.getProperty(PARAM_DETAIL_RUNS)));
+		}
+		return 100;
+	}
+}
@@ -0,0 +1,170 @@
+package de.proficom.currantrunner.coverage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.jacoco.core.analysis.ICounter;
+import org.jacoco.core.internal.analysis.Instruction;
+
+import de.proficom.currantrunner.handler.CoverageCounters;
+
+/**
+ * Result of the static analysis of a single class by JaCoCo. It's created once
+ * per class by {@link ClassCoverageModelBuilder} and is used to calculate the
+ * coverage for any probe array of this class without reading the bytecode
+ * again.<br/>
+ * <br/>
+ * For every method the steps of JaCoCo's analysis are recorded:
+ * <ul>
+ *   <li>creation of instructions and their probes,</li>
+ *   <li>jumps between instructions,</li>
+ *   <li>results of JaCoCo's filters (ignored, merged and replaced branches).</li>
+ * </ul>
+ * These steps are replayed with the probes of a test. Methods without an
+ * executed probe are skipped, they can't contain covered instructions.
+ */
+public class ClassCoverageModel {
+	/**
+	 * Model of a class without coverage, e.g. synthetic classes or classes with
+	 * different bytecode than the instrumented one
+	 */
+	static final ClassCoverageModel EMPTY = new ClassCoverageModel(Collections.<MethodModel>emptyList());
+
+	/**
+	 * Recorded operations of the instructions builder
+	 */
+	static final int OP_INSN = 0; // line, index of predecessor or -1
+	static final int OP_PROBE = 1; // index of instruction, probe id, branch
+	static final int OP_JUMP = 2; // index of source, index of target, branch
+
+	/**
+	 * Recorded analysis of a single method
+	 */
+	static class MethodModel {
+		private final int noOfInstructions;
+		private final int[] ops;
+		private final int[] probeIds;
+		private final boolean[] ignored;
+		private final int[] mergedInstructions;
+		private final int[] mergeRepresentatives;
+		private final int[] replacedInstructions;
+		private final int[][] replacementTargets;
+
+		MethodModel(int noOfInstructions, int[] ops, int[] probeIds, boolean[] ignored, int[] mergedInstructions,
+				int[] mergeRepresentatives, int[] replacedInstructions, int[][] replacementTargets) {
+			this.noOfInstructions = noOfInstructions;
+			this.ops = ops;
+			this.probeIds = probeIds;
+			this.ignored = ignored;
+			this.mergedInstructions = mergedInstructions;
+			this.mergeRepresentatives = mergeRepresentatives;
+			this.replacedInstructions = replacedInstructions;
+			this.replacementTargets = replacementTargets;
+		}
+
+		/**
+		 * @param probes probes of class
+		 * @return TRUE if at least one probe of this method has been executed
+		 */
+		boolean isExecuted(boolean[] probes) {
+			for (int probeId : probeIds) {
+				if (probes[probeId]) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Replay the analysis with the given probes, like JaCoCo's
+		 * InstructionsBuilder and MethodCoverageCalculator do.
+		 *
+		 * @param probes   probes of class
+		 * @param counters counters to be increased by covered values of method
+		 */
+		void addCoverage(boolean[] probes, CoverageCounters counters) {
+			// Build instructions and wire them
+			Instruction[] instructions = new Instruction[noOfInstructions];
+			int noOfCreated = 0;
+			int pos = 0;
+			while (pos < ops.length) {
+				switch (ops[pos]) {
+				case OP_INSN:
+					Instruction insn = new Instruction(ops[pos + 1]);
+					if (ops[pos + 2] >= 0) {
+						instructions[ops[pos + 2]].addBranch(insn, 0);
+					}
+					instructions[noOfCreated++] = insn;
+					pos += 3;
+					break;
+				case OP_PROBE:
+					instructions[ops[pos + 1]].addBranch(probes[ops[pos + 2]], ops[pos + 3]);
+					pos += 4;
+					break;
+				default:
+					instructions[ops[pos + 1]].addBranch(instructions[ops[pos + 2]], ops[pos + 3]);
+					pos += 4;
+					break;
+				}
+			}
+
+			// Apply filters: first merges, then replaced branches
+			for (int idxMerge = 0; idxMerge < mergedInstructions.length; idxMerge++) {
+				int representative = mergeRepresentatives[idxMerge];
+				instructions[representative] = instructions[representative].merge(instructions[mergedInstructions[idxMerge]]);
+			}
+			for (int idxMerge = 0; idxMerge < mergedInstructions.length; idxMerge++) {
+				instructions[mergedInstructions[idxMerge]] = instructions[mergeRepresentatives[idxMerge]];
+			}
+			for (int idxReplacement = 0; idxReplacement < replacedInstructions.length; idxReplacement++) {
+				List<Instruction> targets = new ArrayList<Instruction>(replacementTargets[idxReplacement].length);
+				for (int target : replacementTargets[idxReplacement]) {
+					targets.add(instructions[target]);
+				}
+				int replaced = replacedInstructions[idxReplacement];
+				instructions[replaced] = instructions[replaced].replaceBranches(targets);
+			}
+
+			// Count covered values like JaCoCo's MethodCoverageImpl
+			int coveredInstructions = 0;
+			int coveredBranches = 0;
+			int coveredComplexity = 0;
+			for (int idxInsn = 0; idxInsn < noOfInstructions; idxInsn++) {
+				if (ignored[idxInsn]) {
+					continue;
+				}
+				coveredInstructions += instructions[idxInsn].getInstructionCounter().getCoveredCount();
+				ICounter branches = instructions[idxInsn].getBranchCounter();
+				coveredBranches += branches.getCoveredCount();
+				if (branches.getTotalCount() > 1) {
+					coveredComplexity += Math.max(0, branches.getCoveredCount() - 1);
+				}
+			}
+			if (coveredInstructions > 0) {
+				coveredComplexity++;
+			}
+			counters.addCovered(coveredInstructions, coveredBranches, coveredComplexity);
+		}
+	}
+
+	private final List<MethodModel> methods;
+
+	ClassCoverageModel(List<MethodModel> methods) {
+		this.methods = methods;
+	}
+
+	/**
+	 * Add the coverage of this class for the given probes
+	 *
+	 * @param probes   probes of class, recorded by JaCoCo's agent
+	 * @param counters counters to be increased
+	 */
+	public void addCoverage(boolean[] probes, CoverageCounters counters) {
+		for (MethodModel method : methods) {
+			if (method.isExecuted(probes)) {
+				method.addCoverage(probes, counters);
+			}
+		}
+	}
+}
@@ -0,0 +1,515 @@
+package de.proficom.currantrunner.coverage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jacoco.core.JaCoCo;
+import org.jacoco.core.internal.analysis.Instruction;
+import org.jacoco.core.internal.analysis.filter.Filters;
+import org.jacoco.core.internal.analysis.filter.IFilter;
+import org.jacoco.core.internal.analysis.filter.IFilterContext;
+import org.jacoco.core.internal.analysis.filter.IFilterOutput;
+import org.jacoco.core.internal.flow.ClassProbesAdapter;
+import org.jacoco.core.internal.flow.ClassProbesVisitor;
+import org.jacoco.core.internal.flow.IFrame;
+import org.jacoco.core.internal.flow.LabelInfo;
+import org.jacoco.core.internal.flow.MethodProbesVisitor;
+import org.jacoco.core.internal.instr.InstrSupport;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.Attribute;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+
+/**
+ * Creates a {@link ClassCoverageModel} from the bytecode of a class. The class
+ * is visited the same way as JaCoCo's ClassAnalyzer, MethodAnalyzer and
+ * InstructionsBuilder do, but instead of calculating the coverage for one probe
+ * array, all steps are recorded. JaCoCo's filters are applied with the same
+ * context and their results are recorded, too.<br/>
+ * <br/>
+ * This follows the implementation of JaCoCo 0.8.6, it has to be checked when
+ * JaCoCo is updated. With any other version in class path
+ * {@link CoverageAnalysisCache} uses JaCoCo's analyzer instead.
+ */
+public class ClassCoverageModelBuilder extends ClassProbesVisitor implements IFilterContext {
+	/**
+	 * JaCoCo version whose analysis is recorded by this builder
+	 */
+	static final String SUPPORTED_JACOCO_VERSION = "0.8.6";
+
+	private final IFilter filter = Filters.all();
+	private final List<ClassCoverageModel.MethodModel> methods = new ArrayList<ClassCoverageModel.MethodModel>();
+
+	private String className;
+	private String superClassName;
+	private String sourceFileName;
+	private String sourceDebugExtension;
+	private final Set<String> classAnnotations = new HashSet<String>();
+	private final Set<String> classAttributes = new HashSet<String>();
+
+	/**
+	 * @return TRUE if the JaCoCo version in class path is the one this builder
+	 *         follows, the qualifier of the version is ignored (e.g.
+	 *         <code>0.8.6.202009150832</code>)
+	 */
+	public static boolean isSupported() {
+		return JaCoCo.VERSION.equals(SUPPORTED_JACOCO_VERSION) || JaCoCo.VERSION.startsWith(SUPPORTED_JACOCO_VERSION + ".");
+	}
+
+	/**
+	 * Analyze a class and create the model of it
+	 *
+	 * @param classBytes bytecode of class (not instrumented)
+	 * @return model of class
+	 */
+	public static ClassCoverageModel build(byte[] classBytes) {
+		ClassReader reader = InstrSupport.classReaderFor(classBytes);
+
+		// Like JaCoCo's analyzer: modules and synthetic classes are not analyzed
+		if ((reader.getAccess() & (Opcodes.ACC_MODULE | Opcodes.ACC_SYNTHETIC)) != 0) {
+			return ClassCoverageModel.EMPTY;
+		}
+
+		ClassCoverageModelBuilder builder = new ClassCoverageModelBuilder();
+		reader.accept(new ClassProbesAdapter(builder, false), 0);
+		return new ClassCoverageModel(builder.methods);
+	}
+
+	private ClassCoverageModelBuilder() {
+		super();
+	}
+
+	// ============================================
+	//  ClassProbesVisitor
+	// ============================================
+
+	@Override
+	public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+		this.className = name;
+		this.superClassName = superName;
+	}
+
+	@Override
+	public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+		classAnnotations.add(desc);
+		return super.visitAnnotation(desc, visible);
+	}
+
+	@Override
+	public void visitAttribute(Attribute attribute) {
+		classAttributes.add(attribute.type);
+	}
+
+	@Override
+	public void visitSource(String source, String debug) {
+		this.sourceFileName = source;
+		this.sourceDebugExtension = debug;
+	}
+
+	@Override
+	public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+		InstrSupport.assertNotInstrumented(name, className);
+		return super.visitField(access, name, desc, signature, value);
+	}
+
+	@Override
+	public MethodProbesVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+		InstrSupport.assertNotInstrumented(name, className);
+		return new MethodRecorder();
+	}
+
+	@Override
+	public void visitTotalProbeCount(int count) {
+		// Nothing to do
+	}
+
+	// ============================================
+	//  IFilterContext
+	// ============================================
+
+	@Override
+	public String getClassName() {
+		return className;
+	}
+
+	@Override
+	public String getSuperClassName() {
+		return superClassName;
+	}
+
+	@Override
+	public Set<String> getClassAnnotations() {
+		return classAnnotations;
+	}
+
+	@Override
+	public Set<String> getClassAttributes() {
+		return classAttributes;
+	}
+
+	@Override
+	public String getSourceFileName() {
+		return sourceFileName;
+	}
+
+	@Override
+	public String getSourceDebugExtension() {
+		return sourceDebugExtension;
+	}
+
+	// ============================================
+	//  Methods
+	// ============================================
+
+	/**
+	 * Visitor of a single method. It records the calls of JaCoCo's
+	 * InstructionsBuilder as operations of {@link ClassCoverageModel}.
+	 */
+	private class MethodRecorder extends MethodProbesVisitor {
+		private AbstractInsnNode currentNode = null;
+
+		// State of instructions builder
+		private int currentLine = -1;
+		private Instruction currentInsn = null;
+		private final List<Label> currentLabel = new ArrayList<Label>(2);
+		private final Map<Instruction, Integer> instructionIndex = new IdentityHashMap<Instruction, Integer>();
+		private final Map<AbstractInsnNode, Integer> nodeIndex = new IdentityHashMap<AbstractInsnNode, Integer>();
+		private final Set<Integer> probeIds = new HashSet<Integer>();
+
+		// Recorded operations, jumps are wired at the end
+		private int[] ops = new int[64];
+		private int noOfOps = 0;
+		private final List<Instruction> jumpSources = new ArrayList<Instruction>();
+		private final List<Label> jumpTargets = new ArrayList<Label>();
+		private final List<Integer> jumpBranches = new ArrayList<Integer>();
+
+		private void record(int... values) {
+			if (noOfOps + values.length > ops.length) {
+				ops = Arrays.copyOf(ops, Math.max(ops.length * 2, noOfOps + values.length));
+			}
+			System.arraycopy(values, 0, ops, noOfOps, values.length);
+			noOfOps += values.length;
+		}
+
+		// --- InstructionsBuilder ---
+
+		private void addLabel(Label label) {
+			currentLabel.add(label);
+			if (!LabelInfo.isSuccessor(label)) {
+				noSuccessor();
+			}
+		}
+
+		private void addInstruction(AbstractInsnNode node) {
+			Instruction insn = new Instruction(currentLine);
+			for (int idxLabel = currentLabel.size() - 1; idxLabel >= 0; idxLabel--) {
+				LabelInfo.setInstruction(currentLabel.get(idxLabel), insn);
+			}
+			currentLabel.clear();
+			int index = instructionIndex.size();
+			record(ClassCoverageModel.OP_INSN, currentLine, (currentInsn != null) ? instructionIndex.get(currentInsn) : -1);
+			currentInsn = insn;
+			instructionIndex.put(insn, index);
+			nodeIndex.put(node, index);
+		}
+
+		private void noSuccessor() {
+			currentInsn = null;
+		}
+
+		private void addJump(Label target, int branch) {
+			jumpSources.add(currentInsn);
+			jumpTargets.add(target);
+			jumpBranches.add(branch);
+		}
+
+		private void addProbe(int probeId, int branch) {
+			record(ClassCoverageModel.OP_PROBE, instructionIndex.get(currentInsn), probeId, branch);
+			probeIds.add(probeId);
+		}
+
+		// --- MethodAnalyzer ---
+
+		@Override
+		public void accept(MethodNode methodNode, MethodVisitor methodVisitor) {
+			methodVisitor.visitCode();
+			for (TryCatchBlockNode tryCatchBlock : methodNode.tryCatchBlocks) {
+				tryCatchBlock.accept(methodVisitor);
+			}
+			Iterator<AbstractInsnNode> itNodes = methodNode.instructions.iterator();
+			while (itNodes.hasNext()) {
+				currentNode = itNodes.next();
+				currentNode.accept(methodVisitor);
+			}
+			methodVisitor.visitEnd();
+			addMethod(methodNode);
+		}
+
+		@Override
+		public void visitLabel(Label label) {
+			addLabel(label);
+		}
+
+		@Override
+		public void visitLineNumber(int line, Label start) {
+			currentLine = line;
+		}
+
+		@Override
+		public void visitInsn(int opcode) {
+			addInstruction(currentNode);
+		}
+
+		@Override
+		public void visitIntInsn(int opcode, int operand) {
+			addInstruction(currentNode);
+		}
+
+		@Override
+		public void visitVarInsn(int opcode, int var) {
+			addInstruction(currentNode);
+		}
+
+		@Override
+		public void visitTypeInsn(int opcode, String type) {
+			addInstruction(currentNode);
+		}
+
+		@Override
+		public void visitFieldInsn(int opcode, String owner, String name, String desc) {
+			addInstruction(currentNode);
+		}
+
+		@Override
+		public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf) {
+			addInstruction(currentNode);
+		}
+
+		@Override
+		public void visitInvokeDynamicInsn(String name, String desc, org.objectweb.asm.Handle bsm, Object... bsmArgs) {
+			addInstruction(currentNode);
+		}
+
+		@Override
+		public void visitJumpInsn(int opcode, Label label) {
+			addInstruction(currentNode);
+			addJump(label, 1);
+		}
+
+		@Override
+		public void visitLdcInsn(Object cst) {
+			addInstruction(currentNode);
+		}
+
+		@Override
+		public void visitIincInsn(int var, int increment) {
+			addInstruction(currentNode);
+		}
+
+		@Override
+		public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels) {
+			visitSwitchInsn(dflt, labels);
+		}
+
+		@Override
+		public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) {
+			visitSwitchInsn(dflt, labels);
+		}
+
+		private void visitSwitchInsn(Label dflt, Label[] labels) {
+			addInstruction(currentNode);
+			LabelInfo.resetDone(labels);
+			int branch = 0;
+			addJump(dflt, branch);
+			LabelInfo.setDone(dflt);
+			for (Label label : labels) {
+				if (!LabelInfo.isDone(label)) {
+					branch++;
+					addJump(label, branch);
+					LabelInfo.setDone(label);
+				}
+			}
+		}
+
+		@Override
+		public void visitMultiANewArrayInsn(String desc, int dims) {
+			addInstruction(currentNode);
+		}
+
+		@Override
+		public void visitProbe(int probeId) {
+			addProbe(probeId, 0);
+			noSuccessor();
+		}
+
+		@Override
+		public void visitJumpInsnWithProbe(int opcode, Label label, int probeId, IFrame frame) {
+			addInstruction(currentNode);
+			addProbe(probeId, 1);
+		}
+
+		@Override
+		public void visitInsnWithProbe(int opcode, int probeId) {
+			addInstruction(currentNode);
+			addProbe(probeId, 0);
+		}
+
+		@Override
+		public void visitTableSwitchInsnWithProbes(int min, int max, Label dflt, Label[] labels, IFrame frame) {
+			visitSwitchInsnWithProbes(dflt, labels);
+		}
+
+		@Override
+		public void visitLookupSwitchInsnWithProbes(Label dflt, int[] keys, Label[] labels, IFrame frame) {
+			visitSwitchInsnWithProbes(dflt, labels);
+		}
+
+		private void visitSwitchInsnWithProbes(Label dflt, Label[] labels) {
+			addInstruction(currentNode);
+			LabelInfo.resetDone(dflt);
+			LabelInfo.resetDone(labels);
+			int branch = 0;
+			visitSwitchTarget(dflt, branch);
+			for (Label label : labels) {
+				branch++;
+				visitSwitchTarget(label, branch);
+			}
+		}
+
+		private void visitSwitchTarget(Label label, int branch) {
+			int probeId = LabelInfo.getProbeId(label);
+			if (!LabelInfo.isDone(label)) {
+				if (probeId == LabelInfo.NO_PROBE) {
+					addJump(label, branch);
+				} else {
+					addProbe(probeId, branch);
+				}
+				LabelInfo.setDone(label);
+			}
+		}
+
+		// --- ClassAnalyzer / MethodCoverageCalculator ---
+
+		/**
+		 * Wire the jumps, apply the filters and store the recorded method
+		 *
+		 * @param methodNode visited method
+		 */
+		private void addMethod(MethodNode methodNode) {
+			for (int idxJump = 0; idxJump < jumpSources.size(); idxJump++) {
+				record(ClassCoverageModel.OP_JUMP, getIndex(jumpSources.get(idxJump)),
+						getIndex(LabelInfo.getInstruction(jumpTargets.get(idxJump))), jumpBranches.get(idxJump));
+			}
+
+			FilterRecorder filterOutput = new FilterRecorder();
+			filter.filter(methodNode, ClassCoverageModelBuilder.this, filterOutput);
+
+			int noOfInstructions = instructionIndex.size();
+			boolean[] ignored = new boolean[noOfInstructions];
+			for (AbstractInsnNode node : filterOutput.ignored) {
+				Integer index = nodeIndex.get(node);
+				if (index != null) {
+					ignored[index] = true;
+				}
+			}
+			int[] mergedInstructions = new int[filterOutput.merged.size()];
+			int[] mergeRepresentatives = new int[filterOutput.merged.size()];
+			int idxMerge = 0;
+			for (AbstractInsnNode node : filterOutput.merged.keySet()) {
+				mergedInstructions[idxMerge] = getIndex(node);
+				mergeRepresentatives[idxMerge] = getIndex(filterOutput.findRepresentative(node));
+				ignored[mergedInstructions[idxMerge]] = true;
+				idxMerge++;
+			}
+			int[] replacedInstructions = new int[filterOutput.replacements.size()];
+			int[][] replacementTargets = new int[filterOutput.replacements.size()][];
+			int idxReplacement = 0;
+			for (Map.Entry<AbstractInsnNode, Set<AbstractInsnNode>> replacement : filterOutput.replacements.entrySet()) {
+				replacedInstructions[idxReplacement] = getIndex(replacement.getKey());
+				replacementTargets[idxReplacement] = new int[replacement.getValue().size()];
+				int idxTarget = 0;
+				for (AbstractInsnNode target : replacement.getValue()) {
+					replacementTargets[idxReplacement][idxTarget++] = getIndex(target);
+				}
+				idxReplacement++;
+			}
+
+			int[] methodProbeIds = new int[probeIds.size()];
+			int idxProbe = 0;
+			for (Integer probeId : probeIds) {
+				methodProbeIds[idxProbe++] = probeId;
+			}
+			methods.add(new ClassCoverageModel.MethodModel(noOfInstructions, Arrays.copyOf(ops, noOfOps), methodProbeIds, ignored,
+					mergedInstructions, mergeRepresentatives, replacedInstructions, replacementTargets));
+		}
+
+		private int getIndex(Instruction insn) {
+			Integer index = instructionIndex.get(insn);
+			if (index == null) {
+				throw new IllegalStateException("Unknown instruction in " + className);
+			}
+			return index;
+		}
+
+		private int getIndex(AbstractInsnNode node) {
+			Integer index = nodeIndex.get(node);
+			if (index == null) {
+				throw new IllegalStateException("Filter refers to unknown instruction in " + className);
+			}
+			return index;
+		}
+	}
+
+	/**
+	 * Records the output of JaCoCo's filters like MethodCoverageCalculator
+	 */
+	private static class FilterRecorder implements IFilterOutput {
+		private final Set<AbstractInsnNode> ignored = new HashSet<AbstractInsnNode>();
+		private final Map<AbstractInsnNode, AbstractInsnNode> merged = new HashMap<AbstractInsnNode, AbstractInsnNode>();
+		private final Map<AbstractInsnNode, Set<AbstractInsnNode>> replacements = new LinkedHashMap<AbstractInsnNode, Set<AbstractInsnNode>>();
+
+		@Override
+		public void ignore(AbstractInsnNode fromInclusive, AbstractInsnNode toInclusive) {
+			for (AbstractInsnNode node = fromInclusive; node != toInclusive; node = node.getNext()) {
+				ignored.add(node);
+			}
+			ignored.add(toInclusive);
+		}
+
+		@Override
+		public void merge(AbstractInsnNode node1, AbstractInsnNode node2) {
+			node1 = findRepresentative(node1);
+			node2 = findRepresentative(node2);
+			if (node1 != node2) {
+				merged.put(node2, node1);
+			}
+		}
+
+		@Override
+		public void replaceBranches(AbstractInsnNode source, Set<AbstractInsnNode> newTargets) {
+			replacements.put(source, newTargets);
+		}
+
+		private AbstractInsnNode findRepresentative(AbstractInsnNode node) {
+			AbstractInsnNode representative;
+			while ((representative = merged.get(node)) != null) {
+				node = representative;
+			}
+			return node;
+		}
+	}
+}
@@ -0,0 +1,192 @@
+package de.proficom.currantrunner.coverage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jacoco.core.JaCoCo;
+import org.jacoco.core.analysis.Analyzer;
+import org.jacoco.core.analysis.CoverageBuilder;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.internal.InputStreams;
+import org.jacoco.core.internal.data.CRC64;
+
+import de.proficom.currantrunner.handler.CoverageCounters;
+
+/**
+ * Cache of the static analysis of classes. The bytecode of a class is read and
+ * analyzed only the first time it's found in coverage data of a test. For all
+ * following tests the coverage is calculated from the probes by the cached
+ * {@link ClassCoverageModel}.<br/>
+ * <br/>
+ * Classes are identified by JaCoCo's class id (CRC64 of the bytecode), so a
+ * changed class is analyzed again. The cache may be used by several threads.<br/>
+ * <br/>
+ * The model replays JaCoCo's internal analysis of version
+ * {@value ClassCoverageModelBuilder#SUPPORTED_JACOCO_VERSION}. With any other
+ * version in class path every class is analyzed by JaCoCo's analyzer for each
+ * test.<br/>
+ * <br/>
+ * With offline instrumentation the class path contains instrumented classes.
+ * Then the original classes are read from the directory given by environment
+ * parameter <code>currantRunner.originalClasses</code>, see
+ * {@link OfflineInstrumentation}.
+ */
+public class CoverageAnalysisCache {
+	static final String PARAM_ORIGINAL_CLASSES = "currantRunner.originalClasses";
+
+	private final Map<Long, ClassCoverageModel> models = new ConcurrentHashMap<Long, ClassCoverageModel>();
+
+	/**
+	 * Ids of the classes in class path, see {@link #getClassId(String)}
+	 */
+	private final Map<String, Long> classIds = new ConcurrentHashMap<String, Long>();
+
+	private final boolean isModelSupported = ClassCoverageModelBuilder.isSupported();
+	private volatile boolean isVersionWarningPrinted = false;
+
+	/**
+	 * Add the coverage of a class to the counters. The class and it's probes are
+	 * added to the touched classes of the counters.
+	 *
+	 * @param classId   id of class (CRC64 of bytecode), recorded by JaCoCo's agent
+	 * @param className name of class, e.g. <code>com/example/A</code>
+	 * @param probes    probes of class with at least one executed probe
+	 * @param counters  counters to be increased
+	 */
+	public void addCoverage(long classId, String className, boolean[] probes, CoverageCounters counters) {
+		getModel(classId, className).addCoverage(probes, counters);
+		counters.addTouchedClass(className, getClassId(className), probes);
+	}
+
+	/**
+	 * Get the id of a class in class path. The bytecode of a class is read only
+	 * once, so changes are detected between test runs but not within a run.
+	 *
+	 * @param className name of class, e.g. <code>com/example/A</code>
+	 * @return id of class (CRC64 of bytecode), 0 if the class isn't found
+	 */
+	public long getClassId(String className) {
+		Long classId = classIds.get(className);
+		if (classId == null) {
+			byte[] classBytes = readClass(className);
+			classId = (classBytes != null) ? CRC64.classId(classBytes) : 0L;
+			classIds.put(className, classId);
+		}
+		return classId;
+	}
+
+	/**
+	 * @return number of analyzed classes in cache
+	 */
+	public int size() {
+		return models.size();
+	}
+
+	/**
+	 * Get the model of a class from cache. If it's not found, the class is read
+	 * and analyzed.
+	 *
+	 * @param classId   id of class
+	 * @param className name of class
+	 * @return model of class
+	 */
+	private ClassCoverageModel getModel(long classId, String className) {
+		ClassCoverageModel model = models.get(classId);
+		if (model == null) {
+			model = createModel(classId, className);
+			models.put(classId, model);
+		}
+		return model;
+	}
+
+	private ClassCoverageModel createModel(long classId, String className) {
+		byte[] classBytes = readClass(className);
+		if (classBytes == null) {
+			return ClassCoverageModel.EMPTY;
+		}
+
+		// A different class with same name has no coverage (like JaCoCo's analyzer)
+		if (CRC64.classId(classBytes) != classId) {
+			return ClassCoverageModel.EMPTY;
+		}
+
+		// The recorded analysis may differ from other JaCoCo versions
+		if (!isModelSupported) {
+			if (!isVersionWarningPrinted) {
+				isVersionWarningPrinted = true;
+				System.err.println("[CurrantRunner][JaCoCo] WARNING: JaCoCo " + JaCoCo.VERSION + " is used instead of "
+						+ ClassCoverageModelBuilder.SUPPORTED_JACOCO_VERSION + ", classes are not cached");
+			}
+			return new AnalyzedClass(classId, className, classBytes);
+		}
+
+		try {
+			return ClassCoverageModelBuilder.build(classBytes);
+		} catch (RuntimeException e) {
+			// Unexpected bytecode: use JaCoCo's analyzer for every test
+			System.err.println("[CurrantRunner][JaCoCo] Class " + className + " is not cached: " + e.getMessage());
+			return new AnalyzedClass(classId, className, classBytes);
+		}
+	}
+
+	/**
+	 * Read the original bytecode of a class
+	 *
+	 * @param className name of class
+	 * @return bytecode or null if the class isn't found
+	 */
+	private byte[] readClass(String className) {
+		try {
+			if (System.getProperty(PARAM_ORIGINAL_CLASSES) != null) {
+				Path classFile = Paths.get(System.getProperty(PARAM_ORIGINAL_CLASSES), className + ".class");
+				if (Files.exists(classFile)) {
+					return Files.readAllBytes(classFile);
+				}
+			}
+			try (InputStream classResource = getClass().getResourceAsStream('/' + className + ".class")) {
+				if (classResource != null) {
+					return InputStreams.readFully(classResource);
+				}
+			}
+		} catch (IOException e) {
+			System.err.println("[CurrantRunner][JaCoCo] Error: " + e.getMessage());
+		}
+		return null;
+	}
+
+	/**
+	 * Fallback for classes that can't be recorded. It's analyzed by JaCoCo's
+	 * analyzer for each test.
+	 */
+	private static class AnalyzedClass extends ClassCoverageModel {
+		private final long classId;
+		private final String className;
+		private final byte[] classBytes;
+
+		AnalyzedClass(long classId, String className, byte[] classBytes) {
+			super(null);
+			this.classId = classId;
+			this.className = className;
+			this.classBytes = classBytes;
+		}
+
+		@Override
+		public void addCoverage(boolean[] probes, CoverageCounters counters) {
+			ExecutionDataStore dataStore = new ExecutionDataStore();
+			dataStore.put(new ExecutionData(classId, className, probes));
+			CoverageBuilder coverageBuilder = new CoverageBuilder();
+			try {
+				new Analyzer(dataStore, coverageBuilder).analyzeClass(classBytes, className);
+				counters.updateCounters(coverageBuilder);
+			} catch (IOException e) {
+				System.err.println("[CurrantRunner][JaCoCo] Error: " + e.getMessage());
+			}
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package de.proficom.currantrunner.coverage;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Background threads for the analysis of coverage data. The test thread only
+ * takes a snapshot of the agent's execution data, the coverage is calculated
+ * and written to the test case later, so it doesn't add to the duration of the
+ * test.<br/>
+ * <br/>
+ * The number of waiting analyses is limited. If the queue is full, the
+ * analysis is done by the test thread itself, which slows the tests down to
+ * the speed of the analysis (backpressure).<br/>
+ * <br/>
+ * Environment parameters:
+ * <ul>
+ *   <li><code>currantRunner.coverageThreads</code>: number of threads
+ *      (default 1, so the analyses of a test are applied in order)</li>
+ *   <li><code>currantRunner.coverageQueueSize</code>: maximum number of
+ *      waiting analyses (default 64)</li>
+ * </ul>
+ */
+public class CoverageAnalysisQueue {
+	private final static String PARAM_THREADS = "currantRunner.coverageThreads";
+	private final static String PARAM_QUEUE_SIZE = "currantRunner.coverageQueueSize";
+
+	/**
+	 * Idle threads are stopped after this time
+	 */
+	private final static long KEEP_ALIVE_SECONDS = 30;
+
+	private final ThreadPoolExecutor executor;
+
+	/**
+	 * Number of submitted analyses that are not finished yet
+	 */
+	private int pending = 0;
+
+	public CoverageAnalysisQueue() {
+		int noOfThreads = getIntProperty(PARAM_THREADS, 1);
+		int queueSize = getIntProperty(PARAM_QUEUE_SIZE, 64);
+
+		this.executor = new ThreadPoolExecutor(noOfThreads, noOfThreads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(queueSize), new AnalysisThreadFactory(),
+				new ThreadPoolExecutor.CallerRunsPolicy());
+		this.executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Execute an analysis in background. If too many analyses are waiting, it's
+	 * executed by the calling thread.
+	 *
+	 * @param analysis analysis of coverage data, including the update of the
+	 *                 test case
+	 */
+	public void submit(Runnable analysis) {
+		synchronized (this) {
+			pending++;
+		}
+		executor.execute(new Runnable() {
+			public void run() {
+				try {
+					analysis.run();
+				} catch (RuntimeException e) {
+					System.err.println("[CurrantRunner][JaCoCo] Error: " + e.getMessage());
+				} finally {
+					finished();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Wait until all submitted analyses have been finished
+	 */
+	public synchronized void drain() {
+		while (pending > 0) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	private synchronized void finished() {
+		pending--;
+		if (pending == 0) {
+			notifyAll();
+		}
+	}
+
+	private static int getIntProperty(String name, int defaultValue) {
+		if (System.getProperty(name) != null) {
+			return Math.max(1, Integer.parseInt(System.getProperty(name)));
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * Analysis threads must not prevent the JVM from exiting
+	 */
+	private static class AnalysisThreadFactory implements ThreadFactory {
+		private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "CurrantRunner-coverage-" + threadNumber.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
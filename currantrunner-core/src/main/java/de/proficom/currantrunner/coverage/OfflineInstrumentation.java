@@ -0,0 +1,181 @@
+package de.proficom.currantrunner.coverage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+
+import org.jacoco.core.JaCoCo;
+import org.jacoco.core.instr.Instrumenter;
+import org.jacoco.core.internal.data.CRC64;
+import org.jacoco.core.runtime.OfflineInstrumentationAccessGenerator;
+
+/**
+ * Offline instrumentation of the tested classes with a persistent cache.<br/>
+ * <br/>
+ * Usually JaCoCo's agent instruments every class when it's loaded, on every
+ * build. Instead the classes of a project are instrumented before the tests
+ * are executed. Instrumented classes are stored in a cache directory with the
+ * class id (CRC64 of original bytecode) as key, so only changed classes are
+ * instrumented again by the next build.<br/>
+ * <br/>
+ * Usage (see profile <code>currantrunner-offline</code> of
+ * currantrunner-testng-maven):
+ *
+ * <pre>
+ * OfflineInstrumentation &lt;classes directory&gt; &lt;output directory&gt; &lt;cache directory&gt;
+ * </pre>
+ *
+ * All other files of the classes directory are copied to the output directory.
+ * The tests must be executed with the output directory in class path, the
+ * original classes are needed for the coverage analysis (see
+ * {@link CoverageAnalysisCache}).
+ */
+public class OfflineInstrumentation {
+	/**
+	 * Cached classes that haven't been used for this time are removed
+	 */
+	private final static Duration CACHE_RETENTION = Duration.ofDays(30);
+
+	private final Path classesDirectory;
+	private final Path outputDirectory;
+	private final Path cacheDirectory;
+	private final Instrumenter instrumenter = new Instrumenter(new OfflineInstrumentationAccessGenerator());
+
+	private int noOfCached = 0;
+	private int noOfInstrumented = 0;
+	private int noOfFailed = 0;
+
+	/**
+	 * Constructor
+	 *
+	 * @param classesDirectory directory with compiled classes
+	 * @param outputDirectory  directory for instrumented classes
+	 * @param cacheDirectory   directory for the cache, shared by all builds
+	 */
+	public OfflineInstrumentation(Path classesDirectory, Path outputDirectory, Path cacheDirectory) {
+		this.classesDirectory = classesDirectory;
+		this.outputDirectory = outputDirectory;
+		// Instrumented classes depend on JaCoCo's version
+		this.cacheDirectory = cacheDirectory.resolve(JaCoCo.VERSION);
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 3) {
+			System.err.println("Usage: OfflineInstrumentation <classes directory> <output directory> <cache directory>");
+			System.exit(1);
+		}
+		new OfflineInstrumentation(Paths.get(args[0]), Paths.get(args[1]), Paths.get(args[2])).run();
+	}
+
+	/**
+	 * Instrument all classes. Classes found in cache are copied, all other ones
+	 * are instrumented and added to cache.
+	 *
+	 * @throws IOException
+	 */
+	public void run() throws IOException {
+		Instant tmStarted = Instant.now();
+		deleteDirectory(outputDirectory);
+		Files.createDirectories(outputDirectory);
+		Files.createDirectories(cacheDirectory);
+
+		if (Files.isDirectory(classesDirectory)) {
+			Files.walkFileTree(classesDirectory, new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+					Path target = outputDirectory.resolve(classesDirectory.relativize(file).toString());
+					Files.createDirectories(target.getParent());
+					if (file.getFileName().toString().endsWith(".class")) {
+						instrumentClass(file, target);
+					} else {
+						Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING);
+					}
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		}
+		removeUnusedCacheEntries();
+
+		System.out.println("[CurrantRunner][JaCoCo] Offline instrumentation: " + noOfInstrumented + " classes instrumented, "
+				+ noOfCached + " taken from cache, " + noOfFailed + " failed ("
+				+ Duration.between(tmStarted, Instant.now()).toMillis() + " ms)");
+	}
+
+	/**
+	 * Get an instrumented class from cache or instrument it
+	 */
+	private void instrumentClass(Path file, Path target) throws IOException {
+		byte[] classBytes = Files.readAllBytes(file);
+		Path cachedFile = cacheDirectory.resolve(String.format("%016x.class", CRC64.classId(classBytes)));
+		if (Files.exists(cachedFile)) {
+			Files.copy(cachedFile, target, StandardCopyOption.REPLACE_EXISTING);
+			// Keep the entry in cache
+			Files.setLastModifiedTime(cachedFile, FileTime.from(Instant.now()));
+			noOfCached++;
+			return;
+		}
+
+		byte[] instrumentedBytes;
+		try {
+			instrumentedBytes = instrumenter.instrument(classBytes, file.toString());
+		} catch (IOException e) {
+			// Class is executed without coverage
+			System.err.println("[CurrantRunner][JaCoCo] Error: " + e.getMessage());
+			Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING);
+			noOfFailed++;
+			return;
+		}
+
+		// Write to temporary file first, other builds may use the cache at the same time
+		Path tempFile = Files.createTempFile(cacheDirectory, "instr", ".tmp");
+		Files.write(tempFile, instrumentedBytes);
+		try {
+			Files.move(tempFile, cachedFile, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			Files.deleteIfExists(tempFile);
+		}
+		Files.write(target, instrumentedBytes);
+		noOfInstrumented++;
+	}
+
+	private void removeUnusedCacheEntries() throws IOException {
+		Instant tmOldest = Instant.now().minus(CACHE_RETENTION);
+		File[] cachedFiles = cacheDirectory.toFile().listFiles();
+		if (cachedFiles == null) {
+			return;
+		}
+		for (File cachedFile : cachedFiles) {
+			if (cachedFile.lastModified() < tmOldest.toEpochMilli()) {
+				Files.deleteIfExists(cachedFile.toPath());
+			}
+		}
+	}
+
+	private static void deleteDirectory(Path directory) throws IOException {
+		if (!Files.exists(directory)) {
+			return;
+		}
+		Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+				Files.delete(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+}
@@ -0,0 +1,225 @@
+package de.proficom.currantrunner.coverage;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.jacoco.agent.rt.IAgent;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataReader;
+import org.jacoco.core.data.IExecutionDataVisitor;
+import org.jacoco.core.data.ISessionInfoVisitor;
+import org.jacoco.core.data.SessionInfo;
+
+/**
+ * Collects the probes of executed classes from JaCoCo's agent.<br/>
+ * <br/>
+ * The agent only provides the execution data of all loaded classes as
+ * serialized session, which has to be parsed again for every test. Instead the
+ * collector reads the probe arrays of the agent's runtime data in place (the
+ * classes of the agent are shaded, so they are accessed by reflection). Only
+ * classes with executed probes are copied into a {@link ProbeSnapshot} and
+ * reset afterwards.<br/>
+ * <br/>
+ * If the runtime data can't be accessed (e.g. another version of the agent),
+ * the serialized execution data is used.<br/>
+ * <br/>
+ * With offline instrumentation (see {@link OfflineInstrumentation}) the agent
+ * is started when the first instrumented class is loaded. Until then no
+ * probes have been executed.
+ */
+public class ProbeCollector {
+	/**
+	 * Lock for access to JaCoCo's agent
+	 */
+	private static final Object agentLock = new Object();
+
+	/**
+	 * Runtime data of agent: store of execution data and the methods to read it.
+	 * All fields are null if the serialized execution data is used.
+	 */
+	private Object store = null;
+	private Method getContents = null;
+	private Method getId = null;
+	private Method getName = null;
+	private Method getProbes = null;
+	private boolean isInitialized = false;
+
+	/**
+	 * Snapshots that can be reused
+	 */
+	private final Queue<ProbeSnapshot> freeSnapshots = new ConcurrentLinkedQueue<ProbeSnapshot>();
+
+	/**
+	 * Reset the probes of all classes
+	 *
+	 * @throws IllegalStateException if there is no agent
+	 */
+	public void reset() {
+		synchronized (agentLock) {
+			if (isOfflineAgentMissing()) {
+				return;
+			}
+			IAgent jacocoAgent = org.jacoco.agent.rt.RT.getAgent();
+			jacocoAgent.reset();
+		}
+	}
+
+	/**
+	 * Copy the probes of all executed classes and reset them
+	 *
+	 * @return snapshot of executed classes, must be given back by
+	 *         {@link #release(ProbeSnapshot)}
+	 * @throws IllegalStateException if there is no agent
+	 * @throws IOException           if the execution data can't be read
+	 */
+	public ProbeSnapshot collect() throws IOException {
+		ProbeSnapshot snapshot = freeSnapshots.poll();
+		if (snapshot == null) {
+			snapshot = new ProbeSnapshot();
+		}
+
+		synchronized (agentLock) {
+			if (isOfflineAgentMissing()) {
+				return snapshot;
+			}
+			IAgent jacocoAgent = org.jacoco.agent.rt.RT.getAgent();
+			if (!isInitialized) {
+				initRuntimeAccess(jacocoAgent);
+				isInitialized = true;
+			}
+			if (store != null) {
+				try {
+					collectRuntimeData(snapshot);
+					return snapshot;
+				} catch (ReflectiveOperationException e) {
+					System.err.println("[CurrantRunner][JaCoCo] Runtime data can't be read, using execution data: " + e);
+					store = null;
+					snapshot.clear();
+				}
+			}
+			collectExecutionData(jacocoAgent.getExecutionData(true), snapshot);
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Give back a snapshot that isn't used anymore
+	 *
+	 * @param snapshot snapshot of {@link #collect()}
+	 */
+	public void release(ProbeSnapshot snapshot) {
+		snapshot.clear();
+		freeSnapshots.add(snapshot);
+	}
+
+	/**
+	 * @return TRUE if the probes are read from the agent's runtime data
+	 */
+	public boolean isDirectAccess() {
+		synchronized (agentLock) {
+			return store != null;
+		}
+	}
+
+	/**
+	 * @return TRUE if classes are instrumented offline and no instrumented class
+	 *         has been loaded yet
+	 */
+	private static boolean isOfflineAgentMissing() {
+		if (System.getProperty(CoverageAnalysisCache.PARAM_ORIGINAL_CLASSES) == null) {
+			return false;
+		}
+		try {
+			org.jacoco.agent.rt.RT.getAgent();
+			return false;
+		} catch (IllegalStateException e) {
+			return true;
+		}
+	}
+
+	/**
+	 * Find the store of execution data within the agent
+	 */
+	private void initRuntimeAccess(IAgent jacocoAgent) {
+		try {
+			Object runtimeData = jacocoAgent.getClass().getMethod("getData").invoke(jacocoAgent);
+			Field storeField = getField(runtimeData.getClass(), "store");
+			storeField.setAccessible(true);
+			Object store = storeField.get(runtimeData);
+			Method getContents = store.getClass().getMethod("getContents");
+
+			// Look for the methods of the agent's execution data
+			Class<?> executionDataClass = Class.forName(store.getClass().getPackage().getName() + ".ExecutionData", false,
+					store.getClass().getClassLoader());
+			this.getId = executionDataClass.getMethod("getId");
+			this.getName = executionDataClass.getMethod("getName");
+			this.getProbes = executionDataClass.getMethod("getProbes");
+			this.getContents = getContents;
+			this.store = store;
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			System.err.println("[CurrantRunner][JaCoCo] Runtime data can't be accessed, using execution data: " + e);
+		}
+	}
+
+	private static Field getField(Class<?> clazz, String name) throws NoSuchFieldException {
+		for (Class<?> curClass = clazz; curClass != null; curClass = curClass.getSuperclass()) {
+			try {
+				return curClass.getDeclaredField(name);
+			} catch (NoSuchFieldException e) {
+				// Look in super class
+			}
+		}
+		throw new NoSuchFieldException(name);
+	}
+
+	/**
+	 * Copy the executed probes in place. The agent uses the store as lock when
+	 * classes are added or reset.
+	 */
+	private void collectRuntimeData(ProbeSnapshot snapshot) throws ReflectiveOperationException {
+		synchronized (store) {
+			for (Object executionData : (Collection<?>) getContents.invoke(store)) {
+				boolean[] probes = (boolean[]) getProbes.invoke(executionData);
+				if (hasHits(probes)) {
+					snapshot.add((Long) getId.invoke(executionData), (String) getName.invoke(executionData), probes);
+					Arrays.fill(probes, false);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Parse the serialized execution data of the agent
+	 */
+	private static void collectExecutionData(byte[] jacocoExecData, ProbeSnapshot snapshot) throws IOException {
+		ExecutionDataReader jacocoExecDataReader = new ExecutionDataReader(new ByteArrayInputStream(jacocoExecData));
+		jacocoExecDataReader.setSessionInfoVisitor(new ISessionInfoVisitor() {
+			public void visitSessionInfo(final SessionInfo info) {
+				// Nothing to do
+			}
+		});
+		jacocoExecDataReader.setExecutionDataVisitor(new IExecutionDataVisitor() {
+			public void visitClassExecution(final ExecutionData data) {
+				if (data.hasHits()) {
+					snapshot.add(data.getId(), data.getName(), data.getProbes());
+				}
+			}
+		});
+		jacocoExecDataReader.read();
+	}
+
+	private static boolean hasHits(boolean[] probes) {
+		for (boolean probe : probes) {
+			if (probe) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,92 @@
+package de.proficom.currantrunner.coverage;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Copy of the probes of all classes that have been executed by a test. Only
+ * classes with at least one executed probe are contained.<br/>
+ * <br/>
+ * Snapshots are reused by {@link ProbeCollector}, so the probe arrays of a class
+ * are allocated only once and not for every test.
+ */
+public class ProbeSnapshot {
+	private long[] classIds = new long[64];
+	private String[] classNames = new String[64];
+	private boolean[][] probes = new boolean[64][];
+	private int size = 0;
+
+	/**
+	 * Buffers for the probes of every class that has been in this snapshot
+	 */
+	private final Map<Long, boolean[]> buffers = new HashMap<Long, boolean[]>();
+
+	/**
+	 * @return number of classes in snapshot
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param idx index of class
+	 * @return id of class (CRC64 of bytecode)
+	 */
+	public long getClassId(int idx) {
+		return classIds[idx];
+	}
+
+	/**
+	 * @param idx index of class
+	 * @return name of class, e.g. <code>com/example/A</code>
+	 */
+	public String getClassName(int idx) {
+		return classNames[idx];
+	}
+
+	/**
+	 * @param idx index of class
+	 * @return probes of class
+	 */
+	public boolean[] getProbes(int idx) {
+		return probes[idx];
+	}
+
+	/**
+	 * Add a copy of the probes of a class
+	 *
+	 * @param classId   id of class
+	 * @param className name of class
+	 * @param source    probes of class, not modified
+	 */
+	void add(long classId, String className, boolean[] source) {
+		if (size == classIds.length) {
+			int newLength = 2 * size;
+			classIds = Arrays.copyOf(classIds, newLength);
+			classNames = Arrays.copyOf(classNames, newLength);
+			probes = Arrays.copyOf(probes, newLength);
+		}
+
+		boolean[] buffer = buffers.get(classId);
+		if (buffer == null || buffer.length != source.length) {
+			buffer = new boolean[source.length];
+			buffers.put(classId, buffer);
+		}
+		System.arraycopy(source, 0, buffer, 0, source.length);
+
+		classIds[size] = classId;
+		classNames[size] = className;
+		probes[size] = buffer;
+		size++;
+	}
+
+	/**
+	 * Remove all classes, the buffers are kept
+	 */
+	void clear() {
+		Arrays.fill(classNames, 0, size, null);
+		Arrays.fill(probes, 0, size, null);
+		size = 0;
+	}
+}
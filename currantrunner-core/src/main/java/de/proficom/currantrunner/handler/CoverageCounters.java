@@ -1,5 +1,10 @@
 package de.proficom.currantrunner.handler;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
 import org.jacoco.core.analysis.CoverageBuilder;
 import org.jacoco.core.analysis.IClassCoverage;
 
@@ -10,6 +15,8 @@ public class CoverageCounters {
 	private int coveredInstructions;
 	private int coveredBranches;
 	private int coveredComplexity;
+	private final SortedMap<String, Long> touchedClasses = new TreeMap<String, Long>();
+	private final Map<String, boolean[]> executedProbes = new HashMap<String, boolean[]>();
 
 	/**
 	 * Constructor to reset all counters
@@ -47,6 +54,49 @@ public class CoverageCounters {
 		return this.coveredComplexity;
 	}
 
+	/**
+	 * Increase the counters by covered values of a class or method
+	 * 
+	 * @param instructions number of covered instructions
+	 * @param branches     number of covered branches
+	 * @param complexity   covered complexity
+	 */
+	public void addCovered(int instructions, int branches, int complexity) {
+		this.coveredInstructions += instructions;
+		this.coveredBranches += branches;
+		this.coveredComplexity += complexity;
+	}
+
+	/**
+	 * Get the classes with at least one executed probe
+	 * 
+	 * @return ids of classes (CRC64 of bytecode), sorted by class name
+	 */
+	public SortedMap<String, Long> getTouchedClasses() {
+		return this.touchedClasses;
+	}
+
+	/**
+	 * Get the probes of the classes with at least one executed probe
+	 * 
+	 * @return probes by class name, TRUE if executed
+	 */
+	public Map<String, boolean[]> getExecutedProbes() {
+		return this.executedProbes;
+	}
+
+	/**
+	 * Remember a class that has been executed by the test
+	 * 
+	 * @param className name of class, e.g. <code>com/example/A</code>
+	 * @param classId   id of class (CRC64 of bytecode)
+	 * @param probes    probes of class, a copy is kept
+	 */
+	public void addTouchedClass(String className, long classId, boolean[] probes) {
+		this.touchedClasses.put(className, classId);
+		this.executedProbes.put(className, probes.clone());
+	}
+
 	/**
 	 * Update all internal counters by JaCoCo coverage builder We calculate the sum
 	 * of all classes available in coverage report. Don't forget to reset these
@@ -1,34 +1,109 @@
 package de.proficom.currantrunner.handler;
 
-import java.io.ByteArrayInputStream;
-import java.io.InputStream;
 import java.time.Duration;
 import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.Set;
-
-import org.jacoco.agent.rt.IAgent;
-import org.jacoco.core.analysis.Analyzer;
-import org.jacoco.core.analysis.CoverageBuilder;
-import org.jacoco.core.data.ExecutionData;
-import org.jacoco.core.data.ExecutionDataReader;
-import org.jacoco.core.data.ExecutionDataStore;
-import org.jacoco.core.data.IExecutionDataVisitor;
-import org.jacoco.core.data.ISessionInfoVisitor;
-import org.jacoco.core.data.SessionInfo;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 import de.proficom.currantrunner.core.TestCase;
+import de.proficom.currantrunner.core.TestInvocation;
+import de.proficom.currantrunner.coverage.CoverageAnalysisCache;
+import de.proficom.currantrunner.coverage.CoverageAnalysisQueue;
+import de.proficom.currantrunner.coverage.ProbeCollector;
+import de.proficom.currantrunner.coverage.ProbeSnapshot;
+import de.proficom.currantrunner.metrics.MetricResultLast;
 import de.proficom.currantrunner.metrics.MetricsBase;
+import de.proficom.currantrunner.metrics.MetricsCoverageAge;
 import de.proficom.currantrunner.metrics.MetricsCoverageBranch;
+import de.proficom.currantrunner.metrics.MetricsCoverageClasses;
 import de.proficom.currantrunner.metrics.MetricsCoverageComplexity;
 import de.proficom.currantrunner.metrics.MetricsCoverageInstructions;
 
 /**
  * During unit tests the testcase data will be based additionally on coverage
- * information and duration of test execution
+ * information and duration of test execution<br/>
+ * <br/>
+ * JaCoCo's agent collects the coverage of the whole JVM. If tests are executed
+ * in parallel, the coverage can't be related to a single test. Therefore the
+ * coverage is only measured for tests that have been executed alone, the
+ * other ones keep their last measured coverage. With environment parameter
+ * <code>currantRunner.executionGate</code> the tests with coverage to be
+ * measured are executed alone, while all other tests still run in parallel.<br/>
+ * <br/>
+ * The test thread only copies the executed probes of the agent (see
+ * {@link ProbeCollector}). They are analyzed in background by
+ * {@link CoverageAnalysisQueue} and the metrics are updated later by
+ * {@link TestInvocation#updateTestCase}. The covered classes and probes are
+ * kept as footprint of the test (see {@link TestInvocation#updateFootprint}).<br/>
+ * <br/>
+ * The coverage of an unchanged test hardly changes between runs. With
+ * environment parameter <code>currantRunner.coverageRefreshRuns</code> set to N
+ * (default 1) the coverage of a test is measured again only
+ * <ul>
+ *   <li>every N executions of the test (see {@link MetricsCoverageAge}),</li>
+ *   <li>if it's result differs from the last one or</li>
+ *   <li>if one of the classes covered by the test has been changed (see
+ *      {@link MetricsCoverageClasses}).</li>
+ * </ul>
+ * Otherwise the last measured values are kept. The hit rate of these values is
+ * printed at the end of a test suite.
  */
 public class HandlerCodeCoverage implements ITestCaseHandler {
+	/**
+	 * Environment parameter for the number of test executions after which the
+	 * coverage is measured again
+	 */
+	private final static String PARAM_REFRESH_RUNS = "currantRunner.coverageRefreshRuns";
+
+	/**
+	 * Reasons to measure the coverage of a test
+	 */
+	private enum RefreshReason {
+		NEW, AGE, RESULT, CLASSES
+	}
+
+	/**
+	 * Decision about the coverage of a test execution, stored in it's
+	 * {@link TestInvocation}
+	 */
+	private static class Sampling {
+		private RefreshReason reason;
+		private TestCase.Results previousResult;
+	}
+
+	private final int refreshRuns;
+
+	/**
+	 * Statistics of the current test suite
+	 */
+	private final AtomicIntegerArray noOfMeasured = new AtomicIntegerArray(RefreshReason.values().length);
+	private final AtomicInteger noOfReused = new AtomicInteger();
+	private final AtomicInteger noOfConcurrent = new AtomicInteger();
+
+	/**
+	 * Static analysis of all classes, each class is analyzed only once
+	 */
+	private final CoverageAnalysisCache analysisCache = new CoverageAnalysisCache();
+
+	/**
+	 * Access to the probes of JaCoCo's agent
+	 */
+	private final ProbeCollector probeCollector = new ProbeCollector();
+
+	/**
+	 * Background threads for the analysis, so it doesn't add to test durations
+	 */
+	private final CoverageAnalysisQueue analysisQueue = new CoverageAnalysisQueue();
+
+	public HandlerCodeCoverage() {
+		int refreshRuns = 1;
+		if (System.getProperty(PARAM_REFRESH_RUNS) != null) {
+			refreshRuns = Math.max(1, Integer.parseInt(System.getProperty(PARAM_REFRESH_RUNS)));
+		}
+		this.refreshRuns = refreshRuns;
+	}
 
 	@Override
 	public ArrayList<MetricsBase<?>> getRunnersMetrics() {
@@ -39,73 +114,213 @@ public class HandlerCodeCoverage implements ITestCaseHandler {
 		_metrics.add(new MetricsCoverageBranch());
 		_metrics.add(new MetricsCoverageComplexity());
 
+		// Add metrics to decide when coverage is measured again
+		_metrics.add(new MetricsCoverageAge());
+		_metrics.add(new MetricsCoverageClasses());
+
 		return _metrics;
 	}
 
+	/**
+	 * Tests with coverage to be measured are executed alone, if the execution
+	 * gate is enabled
+	 */
+	@Override
+	public boolean isExclusiveExecutionRequired(TestCase tc, TestInvocation invocation) {
+		return getSampling(tc, invocation).reason != null;
+	}
+
 	@Override
-	public void onTestStarted(TestCase tc) {
+	public void onTestStarted(TestCase tc, TestInvocation invocation) {
+		// Coverage of other running tests must not be removed
+		if (invocation.isConcurrent()) {
+			return;
+		}
+
+		// Decide if coverage must be measured, the result is checked when the test is finished
+		getSampling(tc, invocation);
+
 		// Reset the coverage information in JaCoCo
 		try {
-			IAgent jacocoAgent = org.jacoco.agent.rt.RT.getAgent();
-			jacocoAgent.reset();
+			probeCollector.reset();
 		} catch (Exception e) {
 			System.out.println("[CurrantRunner][JaCoCo] Error: " + e.getMessage());
 		}
 	}
 
 	@Override
-	public void onTestFinished(TestCase tc, TestCase.Results result, Duration tmExecution) {
-		// Analyze coverage information with JaCoCo
-		CoverageCounters jacocoCoverage = new CoverageCounters();
+	public void onTestFinished(TestCase tc, TestCase.Results result, Duration tmExecution, TestInvocation invocation) {
+		// Coverage contains data of other tests, keep the last measured values
+		if (invocation.isConcurrent()) {
+			incrementAge(tc);
+			noOfConcurrent.incrementAndGet();
+			return;
+		}
+
+		// Keep the last measured values if nothing has changed
+		Sampling sampling = (Sampling) invocation.getAttribute(this);
+		RefreshReason reason = (sampling != null) ? sampling.reason : RefreshReason.AGE;
+		if (reason == null && sampling.previousResult != result) {
+			reason = RefreshReason.RESULT;
+		}
+		if (reason == null) {
+			incrementAge(tc);
+			noOfReused.incrementAndGet();
+			return;
+		}
+		noOfMeasured.incrementAndGet(reason.ordinal());
+
+		// Copy the probes of executed classes
+		// Thereby the Coverage Information is reset
+		ProbeSnapshot snapshot;
 		try {
-			IAgent jacocoAgent = org.jacoco.agent.rt.RT.getAgent();
-
-			// Get execution data from agent
-			// Thereby the Coverage Information is reset
-			ByteArrayInputStream jacocoExecDataStream = new ByteArrayInputStream(jacocoAgent.getExecutionData(true));
-			ExecutionDataReader jacocoExecDataReader = new ExecutionDataReader(jacocoExecDataStream);
-			ExecutionDataStore jacocoDataStore = new ExecutionDataStore();
-
-			// Read all execution data
-			// Thereby fill coverage's datastore and a list of all used class names
-			Set<String> allAvailableClasses = new HashSet<>();
-			jacocoExecDataReader.setSessionInfoVisitor(new ISessionInfoVisitor() {
-				public void visitSessionInfo(final SessionInfo info) {
-					// Nothing to do
-				}
-			});
-			jacocoExecDataReader.setExecutionDataVisitor(new IExecutionDataVisitor() {
-				public void visitClassExecution(final ExecutionData data) {
-					jacocoDataStore.put(data);
-					allAvailableClasses.add(data.getName());
-				}
-			});
-			jacocoExecDataReader.read();
-			jacocoExecDataStream.close();
-
-			// Now iterate all classes in JVM and calculate coverage information
-			final CoverageBuilder coverageBuilder = new CoverageBuilder();
-			final Analyzer analyzer = new Analyzer(jacocoDataStore, coverageBuilder);
-			Iterator<String> itClasses = allAvailableClasses.iterator();
-			while (itClasses.hasNext()) {
-				String nameOfClass = itClasses.next();
-				String nameOfClassResource = '/' + nameOfClass.replace('.', '/') + ".class";
-				InputStream classResource = getClass().getResourceAsStream(nameOfClassResource);
-				analyzer.analyzeClass(classResource, nameOfClass);
-			}
-			
-			// Now we have a coverage of all executed classes
-			// This is a base for all our internal counter
-			jacocoCoverage.updateCounters(coverageBuilder);
+			snapshot = probeCollector.collect();
 		} catch (Exception e) {
 			System.err.println("[CurrantRunner][JaCoCo] Error: " + e.getMessage());
+			updateMetrics(tc, new CoverageCounters());
+			return;
+		}
+
+		// The coverage is analyzed in background and written to the test case later
+		analysisQueue.submit(() -> {
+			CoverageCounters jacocoCoverage = analyzeProbes(snapshot);
+			invocation.updateTestCase(testCase -> updateMetrics(testCase, jacocoCoverage));
+			invocation.updateFootprint(jacocoCoverage.getTouchedClasses(), jacocoCoverage.getExecutedProbes());
+		});
+	}
+
+	@Override
+	public void drain() {
+		analysisQueue.drain();
+	}
+
+	@Override
+	public void onTestsetFinished() {
+		// Print and reset the statistics of this test suite
+		int noOfReused = this.noOfReused.getAndSet(0);
+		int noOfConcurrent = this.noOfConcurrent.getAndSet(0);
+		int[] noOfMeasured = new int[RefreshReason.values().length];
+		int noOfAllMeasured = 0;
+		for (RefreshReason reason : RefreshReason.values()) {
+			noOfMeasured[reason.ordinal()] = this.noOfMeasured.getAndSet(reason.ordinal(), 0);
+			noOfAllMeasured += noOfMeasured[reason.ordinal()];
+		}
+		int noOfTests = noOfAllMeasured + noOfReused;
+		if (noOfTests + noOfConcurrent == 0) {
+			return;
+		}
+		double hitRate = (noOfTests > 0) ? (100.0 * noOfReused / noOfTests) : 0.0;
+		System.out.println(String.format(
+				"[CurrantRunner][JaCoCo] Coverage measured for %d of %d tests (new: %d, age: %d, result: %d, classes: %d), "
+						+ "reused for %d (hit rate %.1f%%), not measured in parallel: %d",
+				noOfAllMeasured, noOfTests, noOfMeasured[RefreshReason.NEW.ordinal()],
+				noOfMeasured[RefreshReason.AGE.ordinal()], noOfMeasured[RefreshReason.RESULT.ordinal()],
+				noOfMeasured[RefreshReason.CLASSES.ordinal()], noOfReused, hitRate, noOfConcurrent));
+	}
+
+	/**
+	 * Get the decision about the coverage of a test execution. It's made once
+	 * before the test is started.
+	 *
+	 * @param tc         test case to be executed
+	 * @param invocation context of this test execution
+	 * @return decision stored in invocation
+	 */
+	private Sampling getSampling(TestCase tc, TestInvocation invocation) {
+		Sampling sampling = (Sampling) invocation.getAttribute(this);
+		if (sampling == null) {
+			sampling = new Sampling();
+			sampling.reason = getRefreshReason(tc);
+			for (MetricsBase<?> curMetric : tc.getAllMetrics()) {
+				if (curMetric instanceof MetricResultLast) {
+					sampling.previousResult = ((MetricResultLast) curMetric).getValueAsTestResult();
+				}
+			}
+			invocation.setAttribute(this, sampling);
+		}
+		return sampling;
+	}
+
+	/**
+	 * Check if the coverage of a test must be measured before it's started
+	 *
+	 * @param tc test case to be executed
+	 * @return reason to measure the coverage or null if the last values may be
+	 *         kept (unless the result changes)
+	 */
+	private RefreshReason getRefreshReason(TestCase tc) {
+		MetricsCoverageClasses classesMetric = null;
+		int age = 0;
+		for (MetricsBase<?> curMetric : tc.getAllMetrics()) {
+			if (curMetric instanceof MetricsCoverageClasses) {
+				classesMetric = (MetricsCoverageClasses) curMetric;
+			} else if (curMetric instanceof MetricsCoverageAge) {
+				age = ((MetricsCoverageAge) curMetric).getIntegerValue();
+			}
+		}
+		if (classesMetric == null || !classesMetric.isMeasured()) {
+			return RefreshReason.NEW;
 		}
+		if (age + 1 >= refreshRuns) {
+			return RefreshReason.AGE;
+		}
+
+		// Compare the classes of last measurement with the classes in class path
+		Map<String, Long> currentClassIds = new HashMap<String, Long>();
+		for (String className : classesMetric.getClassNames()) {
+			currentClassIds.put(className, analysisCache.getClassId(className));
+		}
+		if (!classesMetric.isSignatureEqual(currentClassIds)) {
+			return RefreshReason.CLASSES;
+		}
+		return null;
+	}
+
+	/**
+	 * Count an execution of a test without measured coverage
+	 *
+	 * @param tc test case that has been executed
+	 */
+	private static void incrementAge(TestCase tc) {
+		for (MetricsBase<?> curMetric : tc.getAllMetrics()) {
+			if (curMetric instanceof MetricsCoverageAge) {
+				((MetricsCoverageAge) curMetric).incrementAge();
+			}
+		}
+	}
+
+	/**
+	 * Calculate the coverage of a test by the cached analysis of all classes
+	 *
+	 * @param snapshot probes of executed classes, released afterwards
+	 * @return covered values of all classes
+	 */
+	private CoverageCounters analyzeProbes(ProbeSnapshot snapshot) {
+		CoverageCounters jacocoCoverage = new CoverageCounters();
+		try {
+			for (int idxClass = 0; idxClass < snapshot.size(); idxClass++) {
+				analysisCache.addCoverage(snapshot.getClassId(idxClass), snapshot.getClassName(idxClass),
+						snapshot.getProbes(idxClass), jacocoCoverage);
+			}
+		} finally {
+			probeCollector.release(snapshot);
+		}
+		return jacocoCoverage;
+	}
 
-		// Forward these informations to test case metrics
+	/**
+	 * Forward the coverage to test case metrics
+	 *
+	 * @param tc             test case to be updated
+	 * @param jacocoCoverage covered values of test
+	 */
+	private static void updateMetrics(TestCase tc, CoverageCounters jacocoCoverage) {
 		for (MetricsBase<?> curMetric : tc.getAllMetrics()) {
 			if ((curMetric instanceof MetricsCoverageInstructions)
 				|| (curMetric instanceof MetricsCoverageBranch)
-				|| (curMetric instanceof MetricsCoverageComplexity)) {
+				|| (curMetric instanceof MetricsCoverageComplexity)
+				|| (curMetric instanceof MetricsCoverageAge)
+				|| (curMetric instanceof MetricsCoverageClasses)) {
 				curMetric.updateMetricByCoverage(jacocoCoverage);
 			}
 		}
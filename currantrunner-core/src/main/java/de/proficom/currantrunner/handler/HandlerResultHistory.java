@@ -5,6 +5,7 @@ import java.util.ArrayList;
 
 import de.proficom.currantrunner.core.TestCase;
 import de.proficom.currantrunner.core.TestCase.Results;
+import de.proficom.currantrunner.core.TestInvocation;
 import de.proficom.currantrunner.metrics.MetricResultHistory;
 import de.proficom.currantrunner.metrics.MetricsBase;
 
@@ -33,13 +34,13 @@ public class HandlerResultHistory implements ITestCaseHandler {
 	}
 
 	@Override
-	public void onTestStarted(TestCase tc) {
+	public void onTestStarted(TestCase tc, TestInvocation invocation) {
 		// Nothing to do
 
 	}
 
 	@Override
-	public void onTestFinished(TestCase tc, Results result, Duration tmExecution) {
+	public void onTestFinished(TestCase tc, Results result, Duration tmExecution, TestInvocation invocation) {
 		for (MetricsBase<?> curMetric : tc.getAllMetrics()) {
 			if (curMetric instanceof MetricResultHistory) {
 				curMetric.updateMetricByResult(result);
@@ -5,6 +5,7 @@ import java.time.Instant;
 import java.util.ArrayList;
 
 import de.proficom.currantrunner.core.TestCase;
+import de.proficom.currantrunner.core.TestInvocation;
 import de.proficom.currantrunner.metrics.MetricsBase;
 import de.proficom.currantrunner.metrics.MetricsDurationMilliSec;
 
@@ -13,7 +14,6 @@ import de.proficom.currantrunner.metrics.MetricsDurationMilliSec;
  * It's either given by test framework (e.g. TestNG) or measured internally.
  */
 public class HandlerRunDuration implements ITestCaseHandler {
-	Instant tmTestStarted = Instant.now();
 
 	@Override
 	public ArrayList<MetricsBase<?>> getRunnersMetrics() {
@@ -23,13 +23,12 @@ public class HandlerRunDuration implements ITestCaseHandler {
 	}
 
 	@Override
-	public void onTestStarted(TestCase tc) {
-		// Remember the timestamp when test has started
-		this.tmTestStarted = Instant.now();
+	public void onTestStarted(TestCase tc, TestInvocation invocation) {
+		// The timestamp when test has started is kept by invocation
 	}
 
 	@Override
-	public void onTestFinished(TestCase tc, TestCase.Results result, Duration tmExecution) {
+	public void onTestFinished(TestCase tc, TestCase.Results result, Duration tmExecution, TestInvocation invocation) {
 		Duration durationOfTestcase;
 
 		// Get the duration of the test case run
@@ -37,9 +36,13 @@ public class HandlerRunDuration implements ITestCaseHandler {
 		// calculation.
 		if (tmExecution.isZero() || tmExecution.isNegative()) {
 			Instant tmTestFinished = Instant.now();
-			durationOfTestcase = Duration.between(this.tmTestStarted, tmTestFinished);
+			durationOfTestcase = Duration.between(invocation.getStarted(), tmTestFinished);
 		} else {
-			durationOfTestcase = tmExecution;
+			// Time waiting for other tests doesn't belong to the test
+			durationOfTestcase = tmExecution.minus(invocation.getGateWait());
+			if (durationOfTestcase.isNegative()) {
+				durationOfTestcase = Duration.ZERO;
+			}
 		}
 
 		// Forward these informations to test case metrics
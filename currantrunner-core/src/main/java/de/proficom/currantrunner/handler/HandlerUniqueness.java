@@ -1,20 +1,28 @@
 package de.proficom.currantrunner.handler;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 
+import de.proficom.currantrunner.core.IMetricStore;
+import de.proficom.currantrunner.core.NameTokenIndex;
 import de.proficom.currantrunner.core.TestCase;
 import de.proficom.currantrunner.metrics.MetricUniqueness;
 import de.proficom.currantrunner.metrics.MetricsBase;
 
 /**
  * Handler to store the uniqueness of a test case name in respect to all
- * executed tests.
+ * executed tests.<br/>
+ * <br/>
+ * The calculation is kept for the next test suite, so only names that have
+ * been added or removed since are processed. The tokens of every name are
+ * stored (see {@link NameTokenIndex}), a name is split into tokens only once.
  */
 public class HandlerUniqueness implements ITestSuiteHandler {
-	private HashMap<String, Double> uniquenesses = null;
+	private UniquenessCalculation uniqueness = null;
+
+	// Store that has given the tokens to the calculation
+	private IMetricStore tokenStore = null;
 
 	@Override
 	public ArrayList<MetricsBase<?>> getRunnersMetrics() {
@@ -25,8 +33,36 @@ public class HandlerUniqueness implements ITestSuiteHandler {
 
 	@Override
 	public void onTestsetStarted(List<String> allTestsInSuite) {
-		// Calculate the uniqueness of these names
-		this.uniquenesses = UniquenessCalculation.calculateUniqueness(new HashSet<String>(allTestsInSuite));
+		// Calculate the uniqueness of these names without stored tokens
+		this.uniqueness = new UniquenessCalculation();
+		this.tokenStore = null;
+		this.uniqueness.updateTestcaseNames(new HashSet<String>(allTestsInSuite));
+	}
+
+	@Override
+	public void onTestsetStarted(List<String> allTestsInSuite, IMetricStore db) {
+		long tmStarted = System.currentTimeMillis();
+		if (this.uniqueness == null || this.tokenStore != db) {
+			this.uniqueness = new UniquenessCalculation();
+			this.tokenStore = db;
+		}
+
+		// Only names without stored tokens are split
+		NameTokenIndex index = db.getNameTokenIndex();
+		int[] noOfTokenized = new int[1];
+		int noOfChanges = this.uniqueness.updateTestcaseNames(new HashSet<String>(allTestsInSuite), testname -> {
+			int[] tokenIndices = index.getTokens(testname);
+			if (tokenIndices == null) {
+				tokenIndices = db.updateNameTokens(testname, this.uniqueness.tokenizeCamelCase(testname));
+				noOfTokenized[0]++;
+			}
+			return tokenIndices;
+		});
+		if (noOfChanges > 0) {
+			System.out.println("[CurrantRunner] Uniqueness of " + this.uniqueness.getNoOfTestcaseNames() + " test names: "
+					+ noOfChanges + " names added or removed, " + noOfTokenized[0] + " tokenized ("
+					+ (System.currentTimeMillis() - tmStarted) + " ms)");
+		}
 	}
 
 	@Override
@@ -34,8 +70,9 @@ public class HandlerUniqueness implements ITestSuiteHandler {
 		// Calculate uniqueness of a single test case
 		// Values are pre-calculated once in "onTestsetStarted(List<String> allTestsInSuite)".
 		double tcValue = 0.0;
-		if (this.uniquenesses.containsKey(tc.getTestname())) {
-			tcValue = this.uniquenesses.get(tc.getTestname());
+		Double uniquenessOfTestcase = this.uniqueness.getUniqueness(tc.getTestname());
+		if (uniquenessOfTestcase != null) {
+			tcValue = uniquenessOfTestcase;
 		}
 
 		// Forward these informations to test case metrics
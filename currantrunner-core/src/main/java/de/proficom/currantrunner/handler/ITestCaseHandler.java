@@ -4,10 +4,13 @@ import java.time.Duration;
 import java.util.ArrayList;
 
 import de.proficom.currantrunner.core.TestCase;
+import de.proficom.currantrunner.core.TestInvocation;
 import de.proficom.currantrunner.metrics.MetricsBase;
 
 /**
  * The handler interface is responsible to UPDATE metrics within a test case.
+ * Tests may be executed in parallel, so the state of a running test must be
+ * kept in it's {@link TestInvocation} and not in fields of the handler.
  */
 public interface ITestCaseHandler {
 	/**
@@ -17,12 +20,28 @@ public interface ITestCaseHandler {
 	 */
 	public ArrayList<MetricsBase<?>> getRunnersMetrics();
 
+	/**
+	 * Check if the test must be executed alone, e.g. because the handler
+	 * measures data of the whole JVM. It's called before
+	 * {@link #onTestStarted(TestCase, TestInvocation)} and only has an effect if
+	 * the execution gate is enabled (environment parameter
+	 * <code>currantRunner.executionGate</code>).
+	 * 
+	 * @param tc         testcase to be executed
+	 * @param invocation context of this test execution
+	 * @return TRUE if no other test may run at the same time
+	 */
+	public default boolean isExclusiveExecutionRequired(TestCase tc, TestInvocation invocation) {
+		return false;
+	}
+
 	/**
 	 * Inform the handler about called testcase
 	 * 
-	 * @param tc testcase to be executed
+	 * @param tc         testcase to be executed
+	 * @param invocation context of this test execution
 	 */
-	public void onTestStarted(TestCase tc);
+	public void onTestStarted(TestCase tc, TestInvocation invocation);
 
 	/**
 	 * Inform the handler about a finished testcase
@@ -30,6 +49,25 @@ public interface ITestCaseHandler {
 	 * @param tc          testcase that has been executed
 	 * @param result      result of test execution
 	 * @param tmExecution Duration of test execution
+	 * @param invocation  context of this test execution
+	 */
+	public void onTestFinished(TestCase tc, TestCase.Results result, Duration tmExecution, TestInvocation invocation);
+
+	/**
+	 * Wait until all updates of finished tests have been written. Handlers that
+	 * update test cases later (see {@link TestInvocation#updateTestCase}) must
+	 * block here until they are done. It's called before the test suite is
+	 * finished and before the model is trained.
+	 */
+	public default void drain() {
+		// Nothing to do, all updates are done in onTestFinished()
+	}
+
+	/**
+	 * Inform the handler that all tests of the test suite have been finished and
+	 * it has been drained. May be used to report statistics of the test suite.
 	 */
-	public void onTestFinished(TestCase tc, TestCase.Results result, Duration tmExecution);
+	public default void onTestsetFinished() {
+		// Nothing to do
+	}
 }
@@ -3,6 +3,7 @@ package de.proficom.currantrunner.handler;
 import java.util.ArrayList;
 import java.util.List;
 
+import de.proficom.currantrunner.core.IMetricStore;
 import de.proficom.currantrunner.core.TestCase;
 import de.proficom.currantrunner.metrics.MetricsBase;
 
@@ -24,6 +25,18 @@ public interface ITestSuiteHandler {
 	 */
 	public void onTestsetStarted(List<String> allTestsInSuite);
 
+	/**
+	 * Inform the handler that a test suite is about to be started. Handlers that
+	 * keep data in the store override this method, by default it's the same as
+	 * {@link #onTestsetStarted(List)}.
+	 * 
+	 * @param allTestsInSuite List of all test cases in test suite
+	 * @param db              Store of CurrantRunner
+	 */
+	public default void onTestsetStarted(List<String> allTestsInSuite, IMetricStore db) {
+		onTestsetStarted(allTestsInSuite);
+	}
+
 	/**
 	 * Inform the handler that a test within a test suite may be executed soon
 	 * 
@@ -1,33 +1,71 @@
 package de.proficom.currantrunner.handler;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import de.proficom.currantrunner.core.NameTokenIndex;
 
 /**
  * Class to calculate uniqueness values for test case names.
  * 
  * This uniqueness is calculated by word tokens. The tokens are generated either
  * from camelCase notation or separated by '_'.
+ * 
+ * The names of consecutive test suites are mostly the same. An instance keeps
+ * the names of the last test suite with their vectors and the sums needed for
+ * the uniqueness, so only added and removed names have to be processed.
  */
 public class UniquenessCalculation {
 
+	// regular expression to split function names into tokens by:
+	// * camel case notation
+	// * numbers
+	// * underscore
+	// * dots
+	private static final Pattern TOKEN_SEPARATOR = Pattern.compile("(?<!(^|[A-Z0-9]))(?=[A-Z0-9])"
+			+ "|(?<!(^|[^A-Z]))(?=[0-9])|"
+			+ "(?<!(^|[^0-9]))(?=[A-Za-z])"
+			+ "|(?<!^)(?=[A-Z][a-z])"
+			+ "|_" + "|\\.");
+
 	// Sets to store synonyms of a word
 	Set<String> testFilter = new HashSet<String>();
 	Set<String> equalFilter = new HashSet<String>();
 	Set<String> errorFilter = new HashSet<String>();
 
+	// Ids of tokens, if they aren't given by a NameTokenIndex
+	Map<String, Integer> tokenIds = new HashMap<String, Integer>();
+
+	// Vectors of the current names
+	Map<String, TokenVector> vectors = new HashMap<String, TokenVector>();
+
+	/*
+	 * Sum of the occurrences of every token by the squared length of the vectors,
+	 * i.e. [token id][squared length]. The numbers are exact, so names can be
+	 * added and removed any number of times.
+	 */
+	int[][] tokenCounts = new int[256][];
+
+	// Sum of all normalized vectors, calculated again for changed tokens only
+	double[] sumOfVectors = new double[256];
+	BitSet changedTokens = new BitSet();
+
 	/**
-	 * Private constructor, because it is intended to only call the main method
-	 * "calculateUniqueness" in a static way. Nevertheless this constructor is used
-	 * to initialize the word filter.
+	 * Constructor to initialize the word filter. Tokens get their ids by the
+	 * instance, unless they are given to {@link #updateTestcaseNames(Collection, Function)}.
 	 */
-	private UniquenessCalculation() {
+	public UniquenessCalculation() {
 		// synonyms of the words to achieve a "soft cosine similarity"
 		// this is used to equalize names like "testFunction" and "testsFunction"
 		testFilter.add("tests");
@@ -73,192 +111,253 @@ public class UniquenessCalculation {
 	 */
 	public static HashMap<String, Double> calculateUniqueness(Set<String> testcaseNames) {
 		UniquenessCalculation uniqueness = new UniquenessCalculation();
-		// camel case tokenization: testCaseName -> [test, case, name]
-		HashMap<String, List<String>> splittedTestNames = uniqueness.tokenizeCamelCase(testcaseNames);
-		// the word are embedded in vectors
-		HashMap<String, Integer[]> wordToVectors = uniqueness.vectorize(splittedTestNames);
+		uniqueness.updateTestcaseNames(testcaseNames);
 
-		/*
-		 * Iterate over all vectors and calculate the cosine similarity between these.
-		 * Sum up the values and later store the sum mapped to the test case name.
-		 */
 		HashMap<String, Double> resultSimilarity = new HashMap<String, Double>();
-		for (Map.Entry<String, Integer[]> vector1 : wordToVectors.entrySet()) {
-			double sumOfSimilarity = 0;
-			for (Map.Entry<String, Integer[]> vector2 : wordToVectors.entrySet()) {
-				// Similarity to the identical vector is not interesting
-				if (vector1.getKey().equals(vector2.getKey())) {
-					continue;
-				}
-				// Based on cosine similarity we calculate uniqueness value
-				double value = uniqueness.cosineSimilarityCalc(vector1.getValue(), vector2.getValue());
-
-				// Cosine Similarity is defined as: 0 = not similar, 1 = identical
-				// BUT: We wan't uniqueness. There we invert the value
-				value = 1.0 - value;
+		for (String testcaseName : testcaseNames) {
+			resultSimilarity.put(testcaseName, uniqueness.getUniqueness(testcaseName));
+		}
+		return resultSimilarity;
+	}
 
-				// Sum all the value
-				sumOfSimilarity += value;
+	/**
+	 * Set the names whose uniqueness should be calculated. Every name is split
+	 * into tokens by {@link #tokenizeCamelCase(String)}.
+	 * 
+	 * @param testcaseNames names of current test suite
+	 * @return number of added and removed names
+	 */
+	public int updateTestcaseNames(Collection<String> testcaseNames) {
+		return updateTestcaseNames(testcaseNames, testcaseName -> {
+			List<String> tokens = tokenizeCamelCase(testcaseName);
+			int[] tokenIndices = new int[tokens.size()];
+			for (int idxToken = 0; idxToken < tokenIndices.length; idxToken++) {
+				Integer tokenId = tokenIds.get(tokens.get(idxToken));
+				if (tokenId == null) {
+					tokenId = tokenIds.size();
+					tokenIds.put(tokens.get(idxToken), tokenId);
+				}
+				tokenIndices[idxToken] = tokenId;
 			}
+			return tokenIndices;
+		});
+	}
 
-			// calculate mean value (Note: -1 is needed as we don't compute similarity to
-			// ourselves.
-			double meanSimilarity = sumOfSimilarity;
-			if (wordToVectors.size() > 2) {
-				meanSimilarity /= (double) (wordToVectors.size()) - 1.0;
+	/**
+	 * Set the names whose uniqueness should be calculated. Only names that
+	 * haven't been part of the last names are split into tokens, the vectors of
+	 * removed names are subtracted from the sums. An instance must always get the
+	 * tokens from the same source.
+	 * 
+	 * @param testcaseNames      names of current test suite
+	 * @param tokenIndicesOfName function to get the ids of the tokens of a new
+	 *                           name, e.g. from a {@link NameTokenIndex}
+	 * @return number of added and removed names
+	 */
+	public int updateTestcaseNames(Collection<String> testcaseNames, Function<String, int[]> tokenIndicesOfName) {
+		Set<String> currentNames = (testcaseNames instanceof Set) ? (Set<String>) testcaseNames : new HashSet<String>(testcaseNames);
+		int noOfChanges = 0;
+		for (Iterator<Map.Entry<String, TokenVector>> vector = vectors.entrySet().iterator(); vector.hasNext();) {
+			Map.Entry<String, TokenVector> entry = vector.next();
+			if (!currentNames.contains(entry.getKey())) {
+				addToSum(entry.getValue(), -1);
+				vector.remove();
+				noOfChanges++;
 			}
-			resultSimilarity.put(vector1.getKey(), meanSimilarity);
 		}
-		return resultSimilarity;
+		for (String testcaseName : currentNames) {
+			if (!vectors.containsKey(testcaseName)) {
+				TokenVector vector = new TokenVector(tokenIndicesOfName.apply(testcaseName));
+				addToSum(vector, 1);
+				vectors.put(testcaseName, vector);
+				noOfChanges++;
+			}
+		}
+		return noOfChanges;
 	}
 
 	/**
-	 * Camel case tokenization of the given words. For example thisTestCaseName is
+	 * Get the uniqueness of a name, see {@link #calculateUniqueness(Set)}. The
+	 * vectors are normalized to length 1, so the cosine similarity of two names is
+	 * the dot product of their vectors. The sum of the similarities of a name to
+	 * all names is the dot product with the sum of all vectors, the similarity to
+	 * itself is subtracted. The effort is linear in the number of tokens of the
+	 * name.
+	 * 
+	 * @param testcaseName a name of current test suite
+	 * @return uniqueness of the name or null if it isn't part of the test suite
+	 */
+	public Double getUniqueness(String testcaseName) {
+		TokenVector vector = vectors.get(testcaseName);
+		if (vector == null) {
+			return null;
+		}
+		updateSumOfVectors();
+
+		/*
+		 * Cosine Similarity is defined as: 0 = not similar, 1 = identical. BUT: We
+		 * wan't uniqueness. There we sum up the inverted values of all other names.
+		 */
+		double length = Math.sqrt(vector.squaredLength);
+		double dotProduct = 0;
+		double selfSimilarity = 0;
+		for (int idxToken = 0; idxToken < vector.tokens.length; idxToken++) {
+			double component = vector.occurrences[idxToken] / length;
+			dotProduct += component * sumOfVectors[vector.tokens[idxToken]];
+			selfSimilarity += component * component;
+		}
+		double sumOfSimilarity = (vectors.size() - 1) - (dotProduct - selfSimilarity);
+
+		// calculate mean value (Note: -1 is needed as we don't compute similarity to
+		// ourselves.
+		double meanSimilarity = sumOfSimilarity;
+		if (vectors.size() > 2) {
+			meanSimilarity /= (double) (vectors.size()) - 1.0;
+		}
+		return meanSimilarity;
+	}
+
+	/**
+	 * @return number of current names
+	 */
+	public int getNoOfTestcaseNames() {
+		return vectors.size();
+	}
+
+	/**
+	 * Camel case tokenization of the given word. For example thisTestCaseName is
 	 * split into [this, test, case, name]. The tokens are converted into lowercase
 	 * and also filtered. For example {testing, check ... } -> test Words are also
 	 * tokenized by underscore and numbers. For example: test_case_number12Package
 	 * is split into [test, case, number, 12, package]
 	 * 
-	 * @param words the words to tokenize
-	 * @return the tokenized words mapped to the untokenized original word.
+	 * @param word the word to tokenize
+	 * @return the tokens of the word
 	 */
-	private HashMap<String, List<String>> tokenizeCamelCase(Set<String> words) {
-		// stores the token to one word
-		HashMap<String, List<String>> wordToSplit = new HashMap<String, List<String>>();
-		for (String word : words) {
-			// regular expression to split function names into tokens by:
-			// * camel case notation
-			// * numbers
-			// * underscore
-			// * dots
-			String[] wordSplit = word.split("(?<!(^|[A-Z0-9]))(?=[A-Z0-9])"
-					+ "|(?<!(^|[^A-Z]))(?=[0-9])|"
-					+ "(?<!(^|[^0-9]))(?=[A-Za-z])"
-					+ "|(?<!^)(?=[A-Z][a-z])"
-					+ "|_" + "|\\.");
-			
-			// will store the lower case token
-			List<String> lowercaseToken = new ArrayList<String>();
-			for (String wordSpl : wordSplit) {
-				String wordSplLow = wordSpl.toLowerCase();
-				// convert synonyms to one unified name and store them in the lower case token
-				// list
-				if (testFilter.contains(wordSplLow) || wordSplLow.contains("test")) {
-					lowercaseToken.add("test");
-					continue;
-				}
-				if (equalFilter.contains(wordSplLow)) {
-					lowercaseToken.add("equal");
-					continue;
-				}
-				if (errorFilter.contains(wordSplLow)) {
-					lowercaseToken.add("error");
-					continue;
-				}
-				lowercaseToken.add(wordSplLow);
-			}
-			// remove empty tokens
-			Predicate<String> filterEmpty = str -> (str.length() <= 0);
-			lowercaseToken.removeIf(filterEmpty);
+	public List<String> tokenizeCamelCase(String word) {
+		String[] wordSplit = TOKEN_SEPARATOR.split(word);
 
-			// the tokenized word is mapped to their tokens
-			// System.out.println("Tokens for Word '" + word + "' = " + String.join(" / ", lowercaseToken));
-			wordToSplit.put(word, lowercaseToken);
+		// will store the lower case token
+		List<String> lowercaseToken = new ArrayList<String>();
+		for (String wordSpl : wordSplit) {
+			String wordSplLow = wordSpl.toLowerCase();
+			// convert synonyms to one unified name and store them in the lower case token
+			// list
+			if (testFilter.contains(wordSplLow) || wordSplLow.contains("test")) {
+				lowercaseToken.add("test");
+				continue;
+			}
+			if (equalFilter.contains(wordSplLow)) {
+				lowercaseToken.add("equal");
+				continue;
+			}
+			if (errorFilter.contains(wordSplLow)) {
+				lowercaseToken.add("error");
+				continue;
+			}
+			lowercaseToken.add(wordSplLow);
 		}
-		return wordToSplit;
+		// remove empty tokens
+		Predicate<String> filterEmpty = str -> (str.length() <= 0);
+		lowercaseToken.removeIf(filterEmpty);
+		return lowercaseToken;
 	}
 
 	/**
-	 * Calculate the cosine similarity between two vectors in a multidimensional
-	 * space. The cosine is applied to the angle between the two vectors.
+	 * Add or subtract the occurrences of a vector to the sums of it's tokens
 	 * 
-	 * @param v1 vector 1
-	 * @param v2 vector 2
-	 * @return the cosine similarity
+	 * @param vector vector of a name
+	 * @param sign   1 to add, -1 to subtract
 	 */
-	private double cosineSimilarityCalc(Integer[] v1, Integer[] v2) {
-		// Check if vectors are equal size and contain at minimum one element
-		if (v1.length != v2.length || v1.length < 1 || v2.length < 1) {
-			return 0;
-		}
-
-		double upperSum = 0; // sum of multiplied components of the vectors v1 and v2
-		double v1SqtSum = 0; // square-rooted sum of squared components of the vector v1
-		double v2SqtSum = 0; // square-rooted sum of squared components of the vector v2
-
-		/*
-		 * Go over all components of the vector. Because v1.length = v2.length it
-		 * sufficient to iterate over the length of one vector. The rest follows the
-		 * formula of the cosine similarity.
-		 */
-		for (int i = 0; i < v1.length; i++) {
-			upperSum += v1[i] * v2[i];
-			v1SqtSum += Math.pow(v1[i], 2);
-			v2SqtSum += Math.pow(v2[i], 2);
+	private void addToSum(TokenVector vector, int sign) {
+		for (int idxToken = 0; idxToken < vector.tokens.length; idxToken++) {
+			int tokenId = vector.tokens[idxToken];
+			if (tokenId >= tokenCounts.length) {
+				int newLength = Math.max(2 * tokenCounts.length, tokenId + 1);
+				tokenCounts = Arrays.copyOf(tokenCounts, newLength);
+				sumOfVectors = Arrays.copyOf(sumOfVectors, newLength);
+			}
+			if (tokenCounts[tokenId] == null || tokenCounts[tokenId].length <= vector.squaredLength) {
+				int[] counts = new int[vector.squaredLength + 1];
+				if (tokenCounts[tokenId] != null) {
+					System.arraycopy(tokenCounts[tokenId], 0, counts, 0, tokenCounts[tokenId].length);
+				}
+				tokenCounts[tokenId] = counts;
+			}
+			tokenCounts[tokenId][vector.squaredLength] += sign * vector.occurrences[idxToken];
+			changedTokens.set(tokenId);
 		}
-		v1SqtSum = Math.sqrt(v1SqtSum);
-		v2SqtSum = Math.sqrt(v2SqtSum);
+	}
 
-		// Calculate COS(angle) value, avoid division by 0
-		double denominator = v1SqtSum * v2SqtSum;
-		double cosinus;
-		if (denominator == 0) {
-			cosinus = 0.0;
-		} else {
-			cosinus = upperSum / denominator;
+	/**
+	 * Calculate the components of the sum of all vectors for changed tokens. A
+	 * component is the sum of the occurrences divided by the length of their
+	 * vectors.
+	 */
+	private void updateSumOfVectors() {
+		for (int tokenId = changedTokens.nextSetBit(0); tokenId >= 0; tokenId = changedTokens.nextSetBit(tokenId + 1)) {
+			double sum = 0;
+			int[] counts = tokenCounts[tokenId];
+			for (int squaredLength = 1; squaredLength < counts.length; squaredLength++) {
+				if (counts[squaredLength] != 0) {
+					sum += counts[squaredLength] / Math.sqrt(squaredLength);
+				}
+			}
+			sumOfVectors[tokenId] = sum;
 		}
-		return cosinus;
+		changedTokens.clear();
 	}
 
 	/**
 	 * The word with its tokens is converted into a vector. The components of the
-	 * vectors are either 0 or 1 (or the number of occurrences). 0 = a word does not
-	 * contain the token 1 = a word contains the token 1x 2 = a word contains the
-	 * token 2x ...
+	 * vectors are the number of occurrences of a token (0 = a word does not contain
+	 * the token, 1 = a word contains the token 1x, 2 = a word contains the token 2x
+	 * ...), divided by the length of the vector.
 	 * 
 	 * Example: word1 = [hello, word, is, an, example] word2 = [this, is, an, test]
 	 * allTokens = [hello, word, is, an, example, this, test] vector of word1 = [ 1
-	 * , 1 , 1 , 1, 1 , 0 , 0 ] vector of word2 = [ 0 , 0 , 1 , 1, 0 , 1 , 1 ]
+	 * , 1 , 1 , 1, 1 , 0 , 0 ] / sqrt(5) vector of word2 = [ 0 , 0 , 1 , 1, 0 , 1
+	 * , 1 ] / sqrt(4)
 	 * 
-	 * @param splittedWords words mapped to their token
-	 * @return word mapped to the corresponding vector
+	 * Most components are 0, so only the tokens of a word are stored by their id
+	 * with the number of occurrences.
 	 */
-	private HashMap<String, Integer[]> vectorize(HashMap<String, List<String>> splittedWords) {
-		// allTokens contains all tokens of all words
-		// first use a set to store all words to avoid duplicates
-		HashSet<String> tokenSet = new HashSet<String>();
-		for (List<String> tokens : splittedWords.values()) {
-			tokenSet.addAll(tokens);
-		}
-
-		// after that store in an ArrayList to have an order for the vector
-		ArrayList<String> allTokens = new ArrayList<String>();
-		allTokens.addAll(tokenSet);
-		// System.out.println("allTokens = " + String.join(", ", allTokens));
+	private static class TokenVector {
+		/**
+		 * Sorted ids of the tokens and their number of occurrences
+		 */
+		private final int[] tokens;
+		private final int[] occurrences;
 
-		/*
-		 * Iterate all words and assign the number of occurrences to each vector element
+		/**
+		 * Sum of squared occurrences, 0 for a word without tokens
 		 */
-		HashMap<String, Integer[]> vectors = new HashMap<String, Integer[]>();
-		int vectorLength = allTokens.size();
-		for (Map.Entry<String, List<String>> entry : splittedWords.entrySet()) {
-			String testName = entry.getKey();
-			Integer[] vector = new Integer[vectorLength];
+		private final int squaredLength;
 
-			// Iterate all words
-			int idx = 0;
-			for (String token : allTokens) {
-				int noOfOccurs = Collections.frequency(entry.getValue(), token);
-				vector[idx] = noOfOccurs;
-				idx++;
+		/**
+		 * Create the vector of a word
+		 * 
+		 * @param tokenIndices ids of the tokens of the word
+		 */
+		TokenVector(int[] tokenIndices) {
+			int[] ids = tokenIndices.clone();
+			Arrays.sort(ids);
+			int[] counts = new int[ids.length];
+			int noOfTokens = 0;
+			for (int idxToken = 0; idxToken < ids.length; idxToken++) {
+				if (noOfTokens == 0 || ids[noOfTokens - 1] != ids[idxToken]) {
+					ids[noOfTokens++] = ids[idxToken];
+				}
+				counts[noOfTokens - 1]++;
+			}
+			int sumOfSquares = 0;
+			for (int idxToken = 0; idxToken < noOfTokens; idxToken++) {
+				sumOfSquares += counts[idxToken] * counts[idxToken];
 			}
-			vectors.put(testName, vector);
+			this.tokens = Arrays.copyOf(ids, noOfTokens);
+			this.occurrences = Arrays.copyOf(counts, noOfTokens);
+			this.squaredLength = sumOfSquares;
 		}
-		// for (Map.Entry<String, Integer[]> entry : vectors.entrySet()) {
-		// System.out.println("testName = " + entry.getKey() + ", vector = " +
-		// Arrays.toString(entry.getValue()));
-		// }
-		return vectors;
 	}
 
 }
@@ -1,19 +1,23 @@
 package de.proficom.currantrunner.metrics;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
-import java.util.function.Predicate;
 
 import de.proficom.currantrunner.core.TestCase;
 import de.proficom.currantrunner.core.TestCase.Results;
 
 /**
  * The "HISTORY" value is based on the number of PASSED/FAILED results in the past.
- * Value is stored in DB as string, separated by comma.
+ * The results are taken from the stored runs (see ResultHistory in package core)
+ * when the test case is loaded. The value in DB is a copy of them as string,
+ * separated by comma, it's never read back.
  */
 public class MetricResultHistory extends MetricsBaseString {
 	private int HISTORY_DEPTH = 5;
+
+	/**
+	 * Last results (0 = PASSED, 1 = FAILED), oldest first
+	 */
+	private int[] history = new int[0];
 	
 	/**
 	 * Constructor
@@ -24,6 +28,13 @@ public class MetricResultHistory extends MetricsBaseString {
 		HISTORY_DEPTH = depth;
 	}
 
+	/**
+	 * @return number of results taken from the past
+	 */
+	public int getDepth() {
+		return HISTORY_DEPTH;
+	}
+
 	@Override
 	public String getCliName() {
 		return "Last " + Integer.toString(HISTORY_DEPTH) + " results";
@@ -41,36 +52,49 @@ public class MetricResultHistory extends MetricsBaseString {
 		return "history_" + Integer.toString(HISTORY_DEPTH);
 	}
 
+	/**
+	 * Set the last results of the test, e.g. from the stored runs. Only the last
+	 * results up to the depth are kept.
+	 * 
+	 * @param results results, 0 = PASSED, 1 = FAILED, oldest first
+	 */
+	public void setResults(int[] results) {
+		setHistory(Arrays.copyOfRange(results, Math.max(0, results.length - HISTORY_DEPTH), results.length));
+	}
+
 	@Override
 	public void updateMetricByResult(TestCase.Results result) {
-		// Append last result to list of results
-		String strValue = this.getStringValue();
-		if (strValue == null || strValue.length() == 0) {
-			strValue = "";
-		}
-	
-		// Split current values
-		String[] historyArray = strValue.split(",");
-		List<String> historyList = new ArrayList<String>(Arrays.asList(historyArray));
-		
-		// Remove empty entries
-		Predicate<String> filterEmpty = str -> (str.length() <= 0);
-		historyList.removeIf(filterEmpty);
-		
-		// Append the last result
+		// Only PASSED and FAILED results are part of the history
+		int lastResult;
 		if (result == Results.PASSED) {
-			historyList.add("0");
+			lastResult = 0;
 		} else if (result == Results.FAILED) {
-			historyList.add("1");
+			lastResult = 1;
+		} else {
+			return;
 		}
-		
-		// If needed: Keep only last items
-		while (historyList.size() > HISTORY_DEPTH) {
-			historyList.remove(0);
+
+		// Append the last result, if needed: Keep only last items
+		int[] newHistory = Arrays.copyOfRange(history, Math.max(0, history.length + 1 - HISTORY_DEPTH), history.length + 1);
+		newHistory[newHistory.length - 1] = lastResult;
+		setHistory(newHistory);
+	}
+
+	/**
+	 * Set the results and their copy as string value
+	 * 
+	 * @param newHistory results, 0 = PASSED, 1 = FAILED, oldest first
+	 */
+	private void setHistory(int[] newHistory) {
+		StringBuilder strValue = new StringBuilder(2 * newHistory.length);
+		for (int item : newHistory) {
+			if (strValue.length() > 0) {
+				strValue.append(',');
+			}
+			strValue.append(item);
 		}
-		
-		// Set the new value
-		this.setStringValue(String.join(",", historyList));
+		this.setStringValue(strValue.toString());
+		history = newHistory;
 	}
 	
 	/**
@@ -90,20 +114,15 @@ public class MetricResultHistory extends MetricsBaseString {
 		 * failed and 0 is returned. Nevertheless new test cases are executed as first.
 		 * Normally new test cases weren't prioritized neither.
 		 */
-		String failureString = this.getStringValue();
-		if (failureString == null || failureString.length() == 0) {
+		int[] failureHistory = history;
+		if (failureHistory.length == 0) {
 			return 0.0;
 		}
 
 		// Calculate the value using all results in the past
-		String[] failureHistory = failureString.split(",");		
-		if (failureHistory == null || failureHistory.length == 0) {
-			return 0.0;
-		}
 		double result = 0;
 		double leaningRate = 0.7;
-		for (String failure : failureHistory) {
-			int f = Integer.parseInt(failure);
+		for (int f : failureHistory) {
 			result += leaningRate * f - (1 - leaningRate) * result;
 		}
 		return result;
@@ -82,6 +82,27 @@ abstract public class MetricsBase<T> {
 	 */
 	abstract public T getMetricValue();
 	
+	/**
+	 * Returns TRUE if the value has been modified since it was read from DB or
+	 * written to DB. Only modified metrics are written to DB.
+	 * 
+	 * @return TRUE = value has been modified
+	 */
+	public boolean isModified() {
+		return this.modified;
+	}
+
+	/**
+	 * Set or reset the modification state of metric's value
+	 * 
+	 * @param modified TRUE = value has been modified
+	 */
+	public void setModified(boolean modified) {
+		this.modified = modified;
+	}
+
+	private boolean modified = false;
+
 	/**
 	 * If a test case is not needed in DB anymore the metric can override this function.
 	 * @return	TRUE = remove the testcase from DB
@@ -14,6 +14,9 @@ public abstract class MetricsBaseDouble extends MetricsBase<Double> {
 	};
 	
 	public void setDoubleValue(double value) {
+		if (Double.compare(_value, value) != 0) {
+			setModified(true);
+		}
 		_value = value;
 	}
 
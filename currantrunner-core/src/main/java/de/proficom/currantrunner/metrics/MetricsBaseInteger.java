@@ -12,6 +12,9 @@ public abstract class MetricsBaseInteger extends MetricsBase<Integer> {
 	};
 	
 	public void setIntegerValue(Integer value) {
+		if (_value != value) {
+			setModified(true);
+		}
 		_value = value;
 	}
 
@@ -1,5 +1,7 @@
 package de.proficom.currantrunner.metrics;
 
+import java.util.Objects;
+
 /**
  * Base class for metrics based on data type STRING
  */
@@ -12,6 +14,9 @@ public abstract class MetricsBaseString extends MetricsBase<String> {
 	};
 
 	public void setStringValue(String value) {
+		if (!Objects.equals(_value, value)) {
+			setModified(true);
+		}
 		_value = value;
 	}
 
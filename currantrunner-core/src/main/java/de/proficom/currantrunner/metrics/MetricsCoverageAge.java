@@ -0,0 +1,50 @@
+package de.proficom.currantrunner.metrics;
+
+import de.proficom.currantrunner.handler.CoverageCounters;
+
+/**
+ * Metric to store the AGE of the coverage values, i.e. the number of test
+ * executions since the coverage has been measured. It's only used to decide
+ * when the coverage is measured again and not for training.
+ */
+public class MetricsCoverageAge extends MetricsBaseInteger {
+
+	@Override
+	public String getCliName() {
+		return "covAge";
+	}
+
+	@Override
+	public int getCliMinLength() {
+		return 6;
+	}
+
+	@Override
+	public String getDBColumnName() {
+		return "coverageage";
+	}
+
+	@Override
+	public String getDBDefaultValue() {
+		// Default value is '0' not NULL
+		return Integer.toString(0);
+	}
+
+	// Coverage has just been measured
+	@Override
+	public void updateMetricByCoverage(CoverageCounters coverage) {
+		this.setIntegerValue(0);
+	}
+
+	/**
+	 * Called when a test has been executed without measuring it's coverage
+	 */
+	public void incrementAge() {
+		this.setIntegerValue(this.getIntegerValue() + 1);
+	}
+
+	@Override
+	public boolean isMLContained() {
+		return false;
+	}
+}
@@ -0,0 +1,141 @@
+package de.proficom.currantrunner.metrics;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import de.proficom.currantrunner.handler.CoverageCounters;
+
+/**
+ * Metric to store the CLASSES covered by a test. The value contains a
+ * signature of the class ids (CRC64 of bytecode) followed by the names of the
+ * classes, e.g. <code>1f2e3d4c5b6a7980:com/example/A,com/example/B</code>. If
+ * the signature of the current class ids differs, at least one of the classes
+ * has been changed. It's only used to decide when the coverage is measured
+ * again and not for training.<br/>
+ * <br/>
+ * If the names don't fit into the column, only the signature is stored. Such
+ * a test is treated as changed on every check.
+ */
+public class MetricsCoverageClasses extends MetricsBaseString {
+	private final static int MAX_LENGTH = 65535;
+	private final static char SEPARATOR_SIGNATURE = ':';
+	private final static char SEPARATOR_CLASSES = ',';
+
+	@Override
+	public String getCliName() {
+		return "covClasses";
+	}
+
+	@Override
+	public int getCliMinLength() {
+		return 10;
+	}
+
+	@Override
+	public String getDBColumnName() {
+		return "coveredclasses";
+	}
+
+	@Override
+	public String getDBColumnType() {
+		return "VARCHAR(" + MAX_LENGTH + ")";
+	}
+
+	/**
+	 * Print the number of classes instead of the names
+	 */
+	@Override
+	public String formatCliCurrentValue(String value) {
+		return Integer.toString(getClassNames(value).length);
+	}
+
+	@Override
+	public void updateMetricByCoverage(CoverageCounters coverage) {
+		SortedMap<String, Long> touchedClasses = coverage.getTouchedClasses();
+		StringBuilder strValue = new StringBuilder();
+		strValue.append(Long.toHexString(getSignature(touchedClasses))).append(SEPARATOR_SIGNATURE);
+		boolean isFirst = true;
+		for (String className : touchedClasses.keySet()) {
+			if (!isFirst) {
+				strValue.append(SEPARATOR_CLASSES);
+			}
+			strValue.append(className);
+			isFirst = false;
+		}
+
+		// Keep the signature only if there are too many classes
+		if (strValue.length() > MAX_LENGTH) {
+			strValue.setLength(strValue.indexOf(String.valueOf(SEPARATOR_SIGNATURE)) + 1);
+		}
+		this.setStringValue(strValue.toString());
+	}
+
+	/**
+	 * @return TRUE if the coverage has been measured at least once
+	 */
+	public boolean isMeasured() {
+		String strValue = this.getStringValue();
+		return strValue != null && strValue.indexOf(SEPARATOR_SIGNATURE) > 0;
+	}
+
+	/**
+	 * @return names of covered classes, e.g. <code>com/example/A</code>
+	 */
+	public String[] getClassNames() {
+		return getClassNames(this.getStringValue());
+	}
+
+	/**
+	 * Check if the covered classes are unchanged
+	 *
+	 * @param currentClassIds current ids of the classes of
+	 *                        {@link #getClassNames()}
+	 * @return TRUE if the signature of the given ids is equal to the stored one
+	 */
+	public boolean isSignatureEqual(Map<String, Long> currentClassIds) {
+		String strValue = this.getStringValue();
+		if (!isMeasured()) {
+			return false;
+		}
+		String strSignature = strValue.substring(0, strValue.indexOf(SEPARATOR_SIGNATURE));
+		return Long.parseUnsignedLong(strSignature, 16) == getSignature(new TreeMap<String, Long>(currentClassIds));
+	}
+
+	/**
+	 * @return number of covered classes
+	 */
+	@Override
+	public double getMLValue() {
+		return getClassNames().length;
+	}
+
+	@Override
+	public boolean isMLContained() {
+		return false;
+	}
+
+	private static String[] getClassNames(String strValue) {
+		if (strValue == null) {
+			return new String[0];
+		}
+		int idxClasses = strValue.indexOf(SEPARATOR_SIGNATURE) + 1;
+		if (idxClasses <= 0 || idxClasses >= strValue.length()) {
+			return new String[0];
+		}
+		return strValue.substring(idxClasses).split(String.valueOf(SEPARATOR_CLASSES));
+	}
+
+	/**
+	 * @param classIds ids of classes, sorted by name
+	 * @return signature of all names and ids
+	 */
+	private static long getSignature(SortedMap<String, Long> classIds) {
+		long signature = 1125899906842597L;
+		for (Map.Entry<String, Long> entry : classIds.entrySet()) {
+			signature = 31 * signature + entry.getKey().hashCode();
+			signature = 31 * signature + entry.getValue();
+		}
+		return signature;
+	}
+}
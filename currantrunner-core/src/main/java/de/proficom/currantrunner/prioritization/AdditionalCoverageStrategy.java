@@ -0,0 +1,123 @@
+package de.proficom.currantrunner.prioritization;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.stream.Collectors;
+
+import de.proficom.currantrunner.core.IMetricStore;
+import de.proficom.currantrunner.core.ProbeBitmap;
+import de.proficom.currantrunner.core.TestCase;
+
+/**
+ * "Additional coverage" ordering: the next test is always the one that covers
+ * the most probes not covered by the tests before, weighted by it's failure
+ * probability. Tests with the same coverage don't cluster at the top anymore,
+ * a duplicate of a scheduled test adds nothing.<br/>
+ * <br/>
+ * The probes of every test are read from store (see {@link ProbeBitmap}). The
+ * tests are kept in a lazy greedy priority queue: the additional coverage of a
+ * test can only shrink when other tests are scheduled, so the score of the
+ * queue's head is calculated again only if it's older than the last scheduled
+ * test. Usually only a few scores are calculated per scheduled test.<br/>
+ * <br/>
+ * Tests without measured probes and tests that don't add any coverage are
+ * executed afterwards by their failure probability.
+ */
+public class AdditionalCoverageStrategy implements IPrioritizationStrategy {
+	/**
+	 * Weight of tests with a failure probability of 0, so they are still ordered
+	 * by their coverage
+	 */
+	private static final double MIN_WEIGHT = 0.01;
+
+	/**
+	 * Test in priority queue with the score of a round
+	 */
+	private static class Candidate {
+		private final TestCase tc;
+		private final int idxOrder;
+		private final double weight;
+		private final ProbeBitmap probes;
+		private double score;
+		private int round = 0;
+
+		Candidate(TestCase tc, int idxOrder, double weight, ProbeBitmap probes) {
+			this.tc = tc;
+			this.idxOrder = idxOrder;
+			this.weight = weight;
+			this.probes = probes;
+			this.score = weight * probes.getCardinality();
+		}
+	}
+
+	@Override
+	public List<TestCase> prioritize(List<TestCase> testcases, Map<TestCase, Double> failureProbability, IMetricStore db) {
+		Instant tmStarted = Instant.now();
+		Map<String, ProbeBitmap> probesOfTests = db.getProbeBitmaps(
+				testcases.stream().map(TestCase::getTestname).collect(Collectors.toList()));
+
+		// Highest score first, the given order for equal scores
+		PriorityQueue<Candidate> queue = new PriorityQueue<Candidate>(Math.max(1, testcases.size()),
+				Comparator.comparingDouble((Candidate candidate) -> -candidate.score).thenComparingInt(candidate -> candidate.idxOrder));
+		List<TestCase> remainingTests = new ArrayList<TestCase>();
+		for (int idxTest = 0; idxTest < testcases.size(); idxTest++) {
+			TestCase tc = testcases.get(idxTest);
+			ProbeBitmap probes = probesOfTests.get(tc.getTestname());
+			if (probes == null || probes.getCardinality() == 0) {
+				remainingTests.add(tc);
+			} else {
+				queue.add(new Candidate(tc, idxTest, getProbability(failureProbability, tc) + MIN_WEIGHT, probes));
+			}
+		}
+		int noOfMeasuredTests = queue.size();
+
+		// Lazy greedy selection
+		List<TestCase> orderedTests = new ArrayList<TestCase>(testcases.size());
+		ProbeBitmap coveredProbes = new ProbeBitmap();
+		int round = 0;
+		int noOfEvaluations = 0;
+		while (!queue.isEmpty()) {
+			Candidate head = queue.poll();
+			if (head.round != round) {
+				// Score is outdated, calculate it for the current coverage
+				head.score = head.weight * head.probes.andNotCardinality(coveredProbes);
+				head.round = round;
+				noOfEvaluations++;
+				queue.add(head);
+				continue;
+			}
+			if (head.score <= 0.0) {
+				// No test adds coverage anymore
+				remainingTests.add(head.tc);
+				while (!queue.isEmpty()) {
+					remainingTests.add(queue.poll().tc);
+				}
+				break;
+			}
+			orderedTests.add(head.tc);
+			coveredProbes.or(head.probes);
+			round++;
+		}
+
+		// All other tests by their failure probability
+		remainingTests.sort(Comparator.comparingDouble((TestCase tc) -> -getProbability(failureProbability, tc)));
+		int noOfCoveringTests = orderedTests.size();
+		orderedTests.addAll(remainingTests);
+
+		System.out.println("[CurrantRunner] Additional coverage: " + noOfCoveringTests + " of " + noOfMeasuredTests
+				+ " measured tests cover " + coveredProbes.getCardinality() + " probes, " + remainingTests.size()
+				+ " tests ordered by probability (" + noOfEvaluations + " evaluations, "
+				+ Duration.between(tmStarted, Instant.now()).toMillis() + " ms)");
+		return orderedTests;
+	}
+
+	private static double getProbability(Map<TestCase, Double> failureProbability, TestCase tc) {
+		Double probability = failureProbability.get(tc);
+		return (probability != null) ? probability : 1.0;
+	}
+}
@@ -0,0 +1,177 @@
+package de.proficom.currantrunner.prioritization;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import de.proficom.currantrunner.core.CoverageSketch;
+import de.proficom.currantrunner.core.FootprintIndex;
+import de.proficom.currantrunner.core.IMetricStore;
+import de.proficom.currantrunner.core.TestCase;
+
+/**
+ * "Diversity" ordering: the next test is the one that is both likely to fail
+ * and far from all tests scheduled before. The distance of a test is the
+ * Jaccard distance of it's probes to the most similar scheduled test,
+ * estimated by their sketches (see {@link CoverageSketch}). The score is
+ * weighted by the failure probability:
+ *
+ * <pre>
+ * (p + 0.01) * min(1 - similarity)
+ * </pre>
+ *
+ * So tests with similar failure probabilities are interleaved by their
+ * coverage, a near duplicate of a scheduled test drops back.<br/>
+ * <br/>
+ * The sketches of all tests are held in memory by {@link FootprintIndex}, no
+ * probes are read from store. The distance of a test can only shrink when other
+ * tests are scheduled, so the tests are kept in a lazy greedy priority queue
+ * like in {@link AdditionalCoverageStrategy}. A test is compared only with
+ * scheduled tests that share a band of it's sketch, tests without a common band
+ * count as distant.<br/>
+ * <br/>
+ * Tests without a sketch count as distant from all tests. Tests with equal
+ * sketches as a scheduled test are executed afterwards by their failure
+ * probability.
+ */
+public class DiversityStrategy implements IPrioritizationStrategy {
+	/**
+	 * Weight of tests with a failure probability of 0, so they are still ordered
+	 * by their distance
+	 */
+	private static final double MIN_WEIGHT = 0.01;
+
+	/**
+	 * Test in priority queue with it's distance to the scheduled tests of a round
+	 */
+	private static class Candidate {
+		private final TestCase tc;
+		private final int idxOrder;
+		private final double weight;
+		private final int[] sketch;
+		private final long[] bandKeys;
+
+		/**
+		 * Number of scheduled tests in the buckets of bands that have been compared
+		 */
+		private final int[] comparedTests;
+		private double distance = 1.0;
+		private double score;
+		private int round = 0;
+
+		Candidate(TestCase tc, int idxOrder, double weight, int[] sketch) {
+			this.tc = tc;
+			this.idxOrder = idxOrder;
+			this.weight = weight;
+			this.sketch = sketch;
+			this.score = weight;
+			if (sketch != null) {
+				this.bandKeys = new long[CoverageSketch.BANDS];
+				for (int band = 0; band < CoverageSketch.BANDS; band++) {
+					this.bandKeys[band] = CoverageSketch.getBandKey(sketch, band);
+				}
+				this.comparedTests = new int[CoverageSketch.BANDS];
+			} else {
+				this.bandKeys = new long[0];
+				this.comparedTests = new int[0];
+			}
+		}
+	}
+
+	@Override
+	public List<TestCase> prioritize(List<TestCase> testcases, Map<TestCase, Double> failureProbability, IMetricStore db) {
+		Instant tmStarted = Instant.now();
+		FootprintIndex index = db.getFootprintIndex();
+
+		// Highest score first, the given order for equal scores
+		PriorityQueue<Candidate> queue = new PriorityQueue<Candidate>(Math.max(1, testcases.size()),
+				Comparator.comparingDouble((Candidate candidate) -> -candidate.score).thenComparingInt(candidate -> candidate.idxOrder));
+		int noOfSketches = 0;
+		for (int idxTest = 0; idxTest < testcases.size(); idxTest++) {
+			TestCase tc = testcases.get(idxTest);
+			int[] sketch = index.getSketch(tc.getTestname());
+			if (sketch != null) {
+				noOfSketches++;
+			}
+			queue.add(new Candidate(tc, idxTest, getProbability(failureProbability, tc) + MIN_WEIGHT, sketch));
+		}
+
+		// Scheduled tests with sketch by the keys of their bands
+		List<Candidate> scheduledTests = new ArrayList<Candidate>();
+		Map<Long, List<Integer>> scheduledByBand = new HashMap<Long, List<Integer>>();
+
+		// Lazy greedy selection
+		List<TestCase> orderedTests = new ArrayList<TestCase>(testcases.size());
+		List<TestCase> duplicateTests = new ArrayList<TestCase>();
+		int round = 0;
+		long noOfComparisons = 0;
+		while (!queue.isEmpty()) {
+			Candidate head = queue.poll();
+			if (head.round != round) {
+				// Distance is outdated, compare with the tests scheduled meanwhile. A
+				// test sharing an earlier band has been compared already.
+				for (int band = 0; band < head.bandKeys.length && head.distance > 0.0; band++) {
+					List<Integer> bucket = scheduledByBand.get(head.bandKeys[band]);
+					if (bucket == null) {
+						continue;
+					}
+					for (int idxBucket = head.comparedTests[band]; idxBucket < bucket.size(); idxBucket++) {
+						Candidate scheduled = scheduledTests.get(bucket.get(idxBucket));
+						if (!hasCommonBand(head, scheduled, band)) {
+							head.distance = Math.min(head.distance, 1.0 - CoverageSketch.similarity(head.sketch, scheduled.sketch));
+							noOfComparisons++;
+						}
+					}
+					head.comparedTests[band] = bucket.size();
+				}
+				head.score = head.weight * head.distance;
+				head.round = round;
+				queue.add(head);
+				continue;
+			}
+			if (head.score <= 0.0) {
+				duplicateTests.add(head.tc);
+				continue;
+			}
+			orderedTests.add(head.tc);
+			if (head.sketch != null) {
+				for (int band = 0; band < head.bandKeys.length; band++) {
+					scheduledByBand.computeIfAbsent(head.bandKeys[band], key -> new ArrayList<Integer>()).add(scheduledTests.size());
+				}
+				scheduledTests.add(head);
+			}
+			round++;
+		}
+
+		// Duplicates by their failure probability
+		duplicateTests.sort(Comparator.comparingDouble((TestCase tc) -> -getProbability(failureProbability, tc)));
+		orderedTests.addAll(duplicateTests);
+
+		System.out.println("[CurrantRunner] Diversity: " + noOfSketches + " of " + testcases.size() + " tests with sketch, "
+				+ duplicateTests.size() + " duplicates ordered by probability (" + noOfComparisons + " comparisons, "
+				+ Duration.between(tmStarted, Instant.now()).toMillis() + " ms)");
+		return orderedTests;
+	}
+
+	/**
+	 * @return TRUE if both tests share a band before the given one
+	 */
+	private static boolean hasCommonBand(Candidate candidate, Candidate otherCandidate, int band) {
+		for (int idxBand = 0; idxBand < band; idxBand++) {
+			if (candidate.bandKeys[idxBand] == otherCandidate.bandKeys[idxBand]) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static double getProbability(Map<TestCase, Double> failureProbability, TestCase tc) {
+		Double probability = failureProbability.get(tc);
+		return (probability != null) ? probability : 1.0;
+	}
+}
@@ -0,0 +1,32 @@
+package de.proficom.currantrunner.prioritization;
+
+import java.util.List;
+import java.util.Map;
+
+import de.proficom.currantrunner.core.IMetricStore;
+import de.proficom.currantrunner.core.TestCase;
+
+/**
+ * Strategy to order the known test cases of a test suite. New tests without
+ * past results are always executed first and not passed to the strategy.<br/>
+ * <br/>
+ * The strategy is selected with environment parameter
+ * <code>currantRunner.prioritization</code>:
+ * <ul>
+ *   <li><code>probability</code>: descending failure probability of the ML model
+ *      (default)</li>
+ *   <li><code>additionalCoverage</code>: {@link AdditionalCoverageStrategy}</li>
+ *   <li><code>diversity</code>: {@link DiversityStrategy}</li>
+ * </ul>
+ */
+public interface IPrioritizationStrategy {
+	/**
+	 * Order the test cases
+	 * 
+	 * @param testcases          test cases to be ordered
+	 * @param failureProbability likelihood of every test case to FAIL
+	 * @param db                 store with the coverage of test cases
+	 * @return ordered test cases, most important first
+	 */
+	public List<TestCase> prioritize(List<TestCase> testcases, Map<TestCase, Double> failureProbability, IMetricStore db);
+}
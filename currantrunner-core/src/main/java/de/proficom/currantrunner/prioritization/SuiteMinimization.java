@@ -0,0 +1,248 @@
+package de.proficom.currantrunner.prioritization;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import de.proficom.currantrunner.core.FootprintIndex;
+import de.proficom.currantrunner.core.IMetricStore;
+import de.proficom.currantrunner.core.ProbeBitmap;
+import de.proficom.currantrunner.core.TestCase;
+import de.proficom.currantrunner.metrics.MetricsBase;
+import de.proficom.currantrunner.metrics.MetricsDurationMilliSec;
+
+/**
+ * Minimization of a test suite: a subset of the tests that covers the same
+ * probes as the whole suite (see {@link ProbeBitmap}), all other tests are
+ * redundant.<br/>
+ * <br/>
+ * The subset is found as weighted set cover, the weight of a test is it's
+ * duration (see {@link MetricsDurationMilliSec}):
+ * <ul>
+ *   <li>Probes of the test's own class are ignored, otherwise every test would
+ *      be unique by it's own test method</li>
+ *   <li>Tests without measured probes, tests that have failed last time and
+ *      tests affected by changed classes are always kept, their probes count as
+ *      covered</li>
+ *   <li>Greedy selection: the next test is the one with the most probes not
+ *      covered yet per millisecond. Like in {@link AdditionalCoverageStrategy}
+ *      the tests are kept in a lazy greedy priority queue.</li>
+ *   <li>Redundancy elimination: selected tests whose probes are all covered by
+ *      other selected tests are removed again, the slowest first</li>
+ * </ul>
+ * The greedy selection is near minimal, the duration of the kept tests is at
+ * most ln(probes) times the minimal one.
+ */
+public class SuiteMinimization {
+	/**
+	 * Tests that must be executed and redundant tests, in the order of the given
+	 * tests
+	 */
+	private final Set<String> keptTests = new LinkedHashSet<String>();
+	private final Set<String> redundantTests = new LinkedHashSet<String>();
+
+	/**
+	 * Duration of every test in milliseconds
+	 */
+	private final Map<String, Long> durations = new HashMap<String, Long>();
+
+	private int noOfCoveredProbes = 0;
+
+	/**
+	 * Test in priority queue with it's ratio of new probes per millisecond
+	 */
+	private static class Candidate {
+		private final String testname;
+		private final int idxOrder;
+		private final long cost;
+		private final ProbeBitmap probes;
+		private double ratio;
+		private int round = 0;
+
+		Candidate(String testname, int idxOrder, long cost, ProbeBitmap probes) {
+			this.testname = testname;
+			this.idxOrder = idxOrder;
+			this.cost = cost;
+			this.probes = probes;
+			this.ratio = (double) probes.getCardinality() / cost;
+		}
+	}
+
+	/**
+	 * Minimize a test suite
+	 *
+	 * @param testcases  tests of the suite
+	 * @param db         store with the probes of tests
+	 * @param isRequired tests that are always kept, e.g. tests affected by changed
+	 *                   classes
+	 */
+	public SuiteMinimization(List<TestCase> testcases, IMetricStore db, Predicate<String> isRequired) {
+		Map<String, ProbeBitmap> probesOfTests = db.getProbeBitmaps(
+				testcases.stream().map(TestCase::getTestname).collect(Collectors.toList()));
+		FootprintIndex index = db.getFootprintIndex();
+		for (Map.Entry<String, ProbeBitmap> probesOfTest : probesOfTests.entrySet()) {
+			probesOfTest.getValue().remove(index.getClassIndex(getTestClassName(probesOfTest.getKey())));
+		}
+
+		// Tests that are always kept cover their probes first
+		ProbeBitmap coveredProbes = new ProbeBitmap();
+		Set<String> requiredTests = new LinkedHashSet<String>();
+		PriorityQueue<Candidate> queue = new PriorityQueue<Candidate>(Math.max(1, testcases.size()),
+				Comparator.comparingDouble((Candidate candidate) -> -candidate.ratio).thenComparingInt(candidate -> candidate.idxOrder));
+		for (int idxTest = 0; idxTest < testcases.size(); idxTest++) {
+			TestCase tc = testcases.get(idxTest);
+			long duration = getDuration(tc);
+			durations.put(tc.getTestname(), duration);
+			ProbeBitmap probes = probesOfTests.get(tc.getTestname());
+			if (probes == null || probes.getCardinality() == 0 || tc.getLastResult() == TestCase.Results.FAILED
+					|| isRequired.test(tc.getTestname())) {
+				requiredTests.add(tc.getTestname());
+				if (probes != null) {
+					coveredProbes.or(probes);
+				}
+			} else {
+				queue.add(new Candidate(tc.getTestname(), idxTest, Math.max(1, duration), probes));
+			}
+		}
+
+		// Lazy greedy selection
+		List<Candidate> selectedTests = new ArrayList<Candidate>();
+		int round = 0;
+		while (!queue.isEmpty()) {
+			Candidate head = queue.poll();
+			if (head.round != round) {
+				// Ratio is outdated, calculate it for the current coverage
+				head.ratio = (double) head.probes.andNotCardinality(coveredProbes) / head.cost;
+				head.round = round;
+				queue.add(head);
+				continue;
+			}
+			if (head.ratio <= 0.0) {
+				// All probes are covered
+				break;
+			}
+			selectedTests.add(head);
+			coveredProbes.or(head.probes);
+			round++;
+		}
+		this.noOfCoveredProbes = coveredProbes.getCardinality();
+
+		// Remove selected tests that are covered by the other ones, the slowest first
+		Map<Long, Integer> coveringTests = new HashMap<Long, Integer>();
+		for (Candidate selected : selectedTests) {
+			selected.probes.forEach(probe -> coveringTests.merge(probe, 1, Integer::sum));
+		}
+		for (String testname : requiredTests) {
+			ProbeBitmap probes = probesOfTests.get(testname);
+			if (probes != null) {
+				probes.forEach(probe -> coveringTests.merge(probe, 1, Integer::sum));
+			}
+		}
+		selectedTests.sort(Comparator.comparingLong((Candidate candidate) -> -candidate.cost));
+		Set<String> selectedTestnames = new LinkedHashSet<String>();
+		for (Candidate selected : selectedTests) {
+			boolean[] isRedundant = { true };
+			selected.probes.forEach(probe -> isRedundant[0] &= coveringTests.get(probe) > 1);
+			if (isRedundant[0]) {
+				selected.probes.forEach(probe -> coveringTests.merge(probe, -1, Integer::sum));
+			} else {
+				selectedTestnames.add(selected.testname);
+			}
+		}
+
+		for (TestCase tc : testcases) {
+			if (requiredTests.contains(tc.getTestname()) || selectedTestnames.contains(tc.getTestname())) {
+				keptTests.add(tc.getTestname());
+			} else {
+				redundantTests.add(tc.getTestname());
+			}
+		}
+	}
+
+	/**
+	 * @return names of tests that must be executed to cover all probes
+	 */
+	public Set<String> getKeptTests() {
+		return keptTests;
+	}
+
+	/**
+	 * @return names of tests whose probes are covered by the kept tests
+	 */
+	public Set<String> getRedundantTests() {
+		return redundantTests;
+	}
+
+	/**
+	 * @return estimated time saved by skipping the redundant tests
+	 */
+	public Duration getSavedTime() {
+		return Duration.ofMillis(redundantTests.stream().mapToLong(durations::get).sum());
+	}
+
+	/**
+	 * @return estimated duration of all tests
+	 */
+	public Duration getTotalTime() {
+		return Duration.ofMillis(durations.values().stream().mapToLong(Long::longValue).sum());
+	}
+
+	/**
+	 * @return number of probes covered by all tests
+	 */
+	public int getNoOfCoveredProbes() {
+		return noOfCoveredProbes;
+	}
+
+	/**
+	 * Print the redundant tests with their duration and the estimated time saved
+	 */
+	public void printReport() {
+		System.out.println("[CurrantRunner] Minimization of test suite: " + keptTests.size() + " of "
+				+ (keptTests.size() + redundantTests.size()) + " tests cover all " + noOfCoveredProbes + " probes");
+		if (!redundantTests.isEmpty()) {
+			System.out.println("[CurrantRunner] Redundant test cases:");
+			for (String testname : redundantTests) {
+				System.out.format("[CurrantRunner]   %10s ms  %s%n", durations.get(testname), testname);
+			}
+		}
+		System.out.println("[CurrantRunner] Estimated time saved: " + formatTime(getSavedTime()) + " of " + formatTime(getTotalTime()));
+		System.out.println();
+	}
+
+	/**
+	 * Format a duration as seconds, e.g. <code>12.3 s</code>
+	 *
+	 * @param duration a duration
+	 * @return formatted duration
+	 */
+	public static String formatTime(Duration duration) {
+		return String.format("%.1f s", duration.toMillis() / 1000.0);
+	}
+
+	/**
+	 * Get the class of a test, e.g. <code>com/example/ATest</code> for
+	 * <code>com.example.ATest.testMethod</code>
+	 */
+	private static String getTestClassName(String testname) {
+		int idxMethod = testname.lastIndexOf('.');
+		return (idxMethod > 0) ? testname.substring(0, idxMethod).replace('.', '/') : testname;
+	}
+
+	private static long getDuration(TestCase tc) {
+		for (MetricsBase<?> curMetric : tc.getAllMetrics()) {
+			if (curMetric instanceof MetricsDurationMilliSec) {
+				return Math.max(0, ((MetricsDurationMilliSec) curMetric).getIntegerValue());
+			}
+		}
+		return 0;
+	}
+}
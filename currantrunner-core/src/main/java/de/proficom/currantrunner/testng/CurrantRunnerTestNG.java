@@ -23,16 +23,24 @@ import de.proficom.currantrunner.handler.ITestSuiteHandler;
  * </ul>
  */
 public class CurrantRunnerTestNG {
-	private static CurrantRunner runner = null;
+	private static volatile CurrantRunner runner = null;
 
 	/**
 	 * Get access to Singleton.
-	 * Will create the instance if not already existing
+	 * Will create the instance if not already existing. It's called by all
+	 * threads executing tests, so only one instance is created.
 	 * 
 	 * @return instance of {@link CurrantRunner} for TestNG interface
 	 */
 	public static CurrantRunner getCurrantRunner() {
-		if (CurrantRunnerTestNG.runner == null) {
+		CurrantRunner instance = CurrantRunnerTestNG.runner;
+		if (instance != null) {
+			return instance;
+		}
+		synchronized (CurrantRunnerTestNG.class) {
+			if (CurrantRunnerTestNG.runner != null) {
+				return CurrantRunnerTestNG.runner;
+			}
 			// For unit tests based on TestNG we use handlers for...
 			//   * history of last test runs
 			//   * Uniqueness of test names
@@ -48,8 +56,8 @@ public class CurrantRunnerTestNG {
 
 			// Create the instance
 			CurrantRunnerTestNG.runner = new CurrantRunner(unitTestHandlers, unitTestSuiteHandlers);
+			return CurrantRunnerTestNG.runner;
 		}
-		return runner;
 	}
 
 }
@@ -0,0 +1,30 @@
+package de.proficom.currantrunner.testng;
+
+import de.proficom.currantrunner.core.CurrantRunner;
+import de.proficom.currantrunner.prioritization.SuiteMinimization;
+
+/**
+ * Offline analysis of the test suite: prints the test cases that are redundant
+ * by their coverage and the time a minimized run would save, see
+ * {@link SuiteMinimization}. No tests are executed.<br/>
+ * <br/>
+ * Usage (see profile <code>currantrunner-minimization-report</code> of
+ * currantrunner-testng-maven):
+ *
+ * <pre>
+ * MinimizationReport
+ * </pre>
+ *
+ * The store is found like in test runs, e.g. by environment parameter
+ * <code>currantRunner.dataDirectory</code>.
+ */
+public class MinimizationReport {
+
+	public static void main(String[] args) {
+		CurrantRunner runner = CurrantRunnerTestNG.getCurrantRunner();
+		runner.init();
+		runner.printMinimizationReport();
+		runner.deinit();
+	}
+
+}
@@ -14,7 +14,8 @@ import de.proficom.currantrunner.core.PrioritizationData;
  * This class is used to alter the list of test methods that TestNG is about to
  * run.
  * 
- * Here we do the machine learning-based prioritization of test cases.
+ * Here we do the machine learning-based prioritization of test cases. In a
+ * minimized run (e.g. for pull requests) redundant test cases are left out.
  */
 public class TestExecutionListener implements IMethodInterceptor {
 
@@ -40,6 +41,11 @@ public class TestExecutionListener implements IMethodInterceptor {
 		// Prioritize by CurrantRunner
 		List<PrioritizationData> prioritizedTests = CurrantRunnerTestNG.getCurrantRunner().prioritize(allMethodNames);
 
+		// Skip tests whose coverage is covered by other tests
+		if (CurrantRunnerTestNG.getCurrantRunner().isMinimizedRun()) {
+			prioritizedTests = CurrantRunnerTestNG.getCurrantRunner().removeRedundantTests(prioritizedTests);
+		}
+
 		// Convert test cases name to it's related instances
 		List<IMethodInstance> orderedTestcases = new ArrayList<>();
 		for (PrioritizationData method : prioritizedTests) {
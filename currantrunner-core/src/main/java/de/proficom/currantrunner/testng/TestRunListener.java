@@ -2,35 +2,63 @@ package de.proficom.currantrunner.testng;
 
 import java.time.Duration;
 
+import org.testng.IHookCallBack;
+import org.testng.IHookable;
 import org.testng.IInvokedMethod;
 import org.testng.IInvokedMethodListener;
 import org.testng.ITestResult;
+import org.testng.SkipException;
 
 import de.proficom.currantrunner.core.TestCase.Results;
 
 /**
  * A listener that gets invoked before and after a method is invoked by TestNG.
  * This is called either for a @Test function or Before/After functions.
+ * 
+ * As hook it skips tests that are correlated with a failed test, if enabled.
  */
-public class TestRunListener implements IInvokedMethodListener {
+public class TestRunListener implements IInvokedMethodListener, IHookable {
+
+	/**
+	 * Attribute of test result with the failed test that has caused the skip
+	 */
+	private static final String ATTR_CORRELATED_FAILURE = "currantRunner.correlatedFailure";
 
 	/**
 	 * Invoked, before a test case runs.
 	 */
 	public void beforeInvocation(IInvokedMethod method, ITestResult testResult) {
-		// Inform CurrantRunner that a new test is about to start
 		if (method.isTestMethod()) {
+			// A skipped test is neither started nor finished
+			String correlatedFailure = CurrantRunnerTestNG.getCurrantRunner().getCorrelatedFailure(method.getTestMethod().getQualifiedName());
+			if (correlatedFailure != null) {
+				testResult.setAttribute(ATTR_CORRELATED_FAILURE, correlatedFailure);
+				return;
+			}
+
+			// Inform CurrantRunner that a new test is about to start
 			CurrantRunnerTestNG.getCurrantRunner().onTestStarted(method.getTestMethod().getQualifiedName());
 		}
 	}
 
+	/**
+	 * Invoked instead of a test method. Skipped tests aren't executed at all.
+	 */
+	public void run(IHookCallBack callBack, ITestResult testResult) {
+		Object correlatedFailure = testResult.getAttribute(ATTR_CORRELATED_FAILURE);
+		if (correlatedFailure != null) {
+			throw new SkipException("[CurrantRunner] Skipped, correlated with failed test " + correlatedFailure);
+		}
+		callBack.runTestMethod(testResult);
+	}
+
 	/**
 	 * Invoked, after a test case run. We analyze the RuntimeData and collect
 	 * coverage data, the result of the test case and how long the test case took is
 	 * stored in the database.
 	 */
 	public void afterInvocation(IInvokedMethod method, ITestResult testResult) {
-		if (method.isTestMethod()) {
+		if (method.isTestMethod() && testResult.getAttribute(ATTR_CORRELATED_FAILURE) == null) {
 			// Convert TestNG result to CurrantRunner result
 			Results currantRunnerResult = Results.FAILED;
 			switch (testResult.getStatus()) {
@@ -0,0 +1,115 @@
+package de.proficom.currantrunner.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.proficom.currantrunner.core.CurrantRunner;
+import de.proficom.currantrunner.core.DatabaseConnector;
+import de.proficom.currantrunner.core.IMetricStore;
+import de.proficom.currantrunner.core.MVStoreConnector;
+import de.proficom.currantrunner.core.TestCase;
+import de.proficom.currantrunner.metrics.MetricsBase;
+import de.proficom.currantrunner.metrics.MetricsBaseInteger;
+
+/**
+ * Compares the storages of test case metrics ({@link IMetricStore}) with a
+ * large number of test cases. Every storage is created in a new temporary
+ * directory and the following steps are measured:
+ * <ul>
+ *   <li>register: add all test cases</li>
+ *   <li>scan: read all test cases</li>
+ *   <li>update: read every test case by name, modify a metric and store it</li>
+ *   <li>reopen: close and open the storage again, read all test cases</li>
+ * </ul>
+ * Usage: <code>java -cp &lt;classpath&gt; de.proficom.currantrunner.benchmark.MetricStoreBenchmark [number of tests]</code>
+ */
+public class MetricStoreBenchmark {
+	private final static String PARAM_SESSION_CACHE = "currantRunner.sessionCache";
+
+	public static void main(String[] args) throws IOException {
+		int noOfTests = (args.length > 0) ? Integer.parseInt(args[0]) : 100000;
+		List<String> testnames = new ArrayList<String>(noOfTests);
+		for (int idxTest = 0; idxTest < noOfTests; idxTest++) {
+			testnames.add("de.proficom.benchmark.pkg" + (idxTest % 100) + ".BenchmarkTest.testMethod" + idxTest);
+		}
+
+		// Test cases are created with all built-in metrics
+		CurrantRunner generator = new CurrantRunner(new ArrayList<>(), new ArrayList<>());
+
+		System.out.println("Tests: " + noOfTests);
+		System.out.println(String.format("%-28s %10s %10s %10s %10s", "Storage", "register", "scan", "update", "reopen"));
+		runBenchmark("sql", "true", testnames, generator);
+		runBenchmark("sql", "false", testnames, generator);
+		runBenchmark("mvstore", null, testnames, generator);
+	}
+
+	/**
+	 * Run all steps for a single storage and print the duration of each step
+	 *
+	 * @param storage      "sql" or "mvstore"
+	 * @param sessionCache value of currantRunner.sessionCache for SQL storage
+	 * @param testnames    names of all test cases
+	 * @param generator    creates test cases with all metrics
+	 * @throws IOException
+	 */
+	private static void runBenchmark(String storage, String sessionCache, List<String> testnames, CurrantRunner generator) throws IOException {
+		Path directory = Files.createTempDirectory("currantrunner-benchmark");
+		if (sessionCache != null) {
+			System.setProperty(PARAM_SESSION_CACHE, sessionCache);
+		}
+
+		// register
+		long tmStarted = System.nanoTime();
+		IMetricStore store = openStore(storage, directory, generator);
+		store.registerTestCases(testnames);
+		store.flush();
+		long tmRegister = System.nanoTime() - tmStarted;
+
+		// scan
+		tmStarted = System.nanoTime();
+		int noOfTestcases = store.getTestCases().size();
+		long tmScan = System.nanoTime() - tmStarted;
+
+		// update
+		tmStarted = System.nanoTime();
+		int counter = 0;
+		for (String testname : testnames) {
+			TestCase tc = store.getTestCaseFromDB(testname);
+			for (MetricsBase<?> curMetric : tc.getAllMetrics()) {
+				if (curMetric instanceof MetricsBaseInteger) {
+					((MetricsBaseInteger) curMetric).setIntegerValue(++counter);
+					break;
+				}
+			}
+			store.updateMetricsInDB(tc);
+		}
+		store.flush();
+		long tmUpdate = System.nanoTime() - tmStarted;
+
+		// reopen
+		tmStarted = System.nanoTime();
+		store.closeDatabase();
+		store = openStore(storage, directory, generator);
+		noOfTestcases = Math.min(noOfTestcases, store.getTestCases().size());
+		long tmReopen = System.nanoTime() - tmStarted;
+		store.closeDatabase();
+
+		String name = storage + (sessionCache != null ? " (sessionCache=" + sessionCache + ")" : "");
+		if (noOfTestcases != testnames.size()) {
+			name += " INCOMPLETE";
+		}
+		System.out.println(String.format("%-28s %7d ms %7d ms %7d ms %7d ms", name, tmRegister / 1000000, tmScan / 1000000,
+				tmUpdate / 1000000, tmReopen / 1000000));
+		System.clearProperty(PARAM_SESSION_CACHE);
+	}
+
+	private static IMetricStore openStore(String storage, Path directory, CurrantRunner generator) {
+		if (storage.equals("mvstore")) {
+			return new MVStoreConnector(directory.toString(), generator.getAllMetrics(), generator);
+		}
+		return new DatabaseConnector(directory.toString(), generator.getAllMetrics(), generator);
+	}
+}
@@ -0,0 +1,63 @@
+package de.proficom.currantrunner.benchmark;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+
+import de.proficom.currantrunner.handler.UniquenessCalculation;
+
+/**
+ * Measures the uniqueness of test names ({@link UniquenessCalculation}) with a
+ * growing number of test names. The number of names is quadrupled from 1000 up
+ * to the given maximum, the duration should grow linearly.<br/>
+ * <br/>
+ * The names are built of random words, so they share some tokens like real
+ * test names: <code>de.proficom.benchmark.pkg12.OrderParserTest.testParseInvalidJson3</code><br/>
+ * <br/>
+ * Usage: <code>java -cp &lt;classpath&gt; de.proficom.currantrunner.benchmark.UniquenessBenchmark [max number of tests]</code>
+ */
+public class UniquenessBenchmark {
+	private final static String[] WORDS = { "Order", "Customer", "Invoice", "Parser", "Json", "Xml", "Http", "Client", "Server",
+			"Cache", "User", "Account", "Valid", "Invalid", "Empty", "Null", "Read", "Write", "Update", "Delete", "Create", "Find",
+			"Equals", "Same", "Fail", "Timeout", "Retry", "Limit", "Value", "Number", "Date", "Time", "Async", "Batch", "Stream" };
+
+	public static void main(String[] args) {
+		int maxNoOfTests = (args.length > 0) ? Integer.parseInt(args[0]) : 64000;
+
+		System.out.println(String.format("%10s %10s %12s %12s", "Tests", "Duration", "per test", "uniqueness"));
+		for (int noOfTests = 1000; noOfTests <= maxNoOfTests; noOfTests *= 4) {
+			Set<String> testnames = createTestnames(noOfTests);
+
+			long tmStarted = System.nanoTime();
+			HashMap<String, Double> uniquenesses = UniquenessCalculation.calculateUniqueness(testnames);
+			long tmDuration = System.nanoTime() - tmStarted;
+
+			double meanUniqueness = uniquenesses.values().stream().mapToDouble(Double::doubleValue).average().orElse(0.0);
+			System.out.println(String.format("%10d %7d ms %9.1f us %12.6f", testnames.size(), tmDuration / 1000000,
+					tmDuration / 1000.0 / testnames.size(), meanUniqueness));
+		}
+	}
+
+	/**
+	 * Create distinct test names, always the same ones for a number of tests
+	 *
+	 * @param noOfTests number of test names
+	 * @return test names
+	 */
+	private static Set<String> createTestnames(int noOfTests) {
+		Random random = new Random(noOfTests);
+		Set<String> testnames = new LinkedHashSet<String>(noOfTests);
+		while (testnames.size() < noOfTests) {
+			StringBuilder testname = new StringBuilder("de.proficom.benchmark.pkg" + random.nextInt(100) + ".");
+			testname.append(WORDS[random.nextInt(WORDS.length)]).append(WORDS[random.nextInt(WORDS.length)]).append("Test.test");
+			int noOfWords = 1 + random.nextInt(4);
+			for (int idxWord = 0; idxWord < noOfWords; idxWord++) {
+				testname.append(WORDS[random.nextInt(WORDS.length)]);
+			}
+			testname.append(random.nextInt(10));
+			testnames.add(testname.toString());
+		}
+		return testnames;
+	}
+}
@@ -0,0 +1,91 @@
+package de.proficom.currantrunner.core;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+public class CoverageSketchTest {
+	private static final int NO_OF_PROBES = 2000;
+	private static final int NO_OF_RANDOM_SETS = 20;
+
+	@Test
+	public void testEqualAndEmptySets() {
+		ProbeBitmap probes = createProbes(0, NO_OF_PROBES);
+		int[] sketch = CoverageSketch.compute(probes);
+		assertEquals(sketch.length, CoverageSketch.SIZE);
+		assertEquals(CoverageSketch.compute(ProbeBitmap.decode(probes.encode())), sketch);
+		assertEquals(CoverageSketch.similarity(sketch, sketch), 1.0);
+		for (int band = 0; band < CoverageSketch.BANDS; band++) {
+			assertEquals(CoverageSketch.getBandKey(sketch, band) >>> 32, band);
+		}
+		assertNull(CoverageSketch.compute(new ProbeBitmap()));
+	}
+
+	@Test
+	public void testEncodeRoundTrip() {
+		int[] sketch = CoverageSketch.compute(createProbes(0, 100));
+		assertEquals(CoverageSketch.decode(CoverageSketch.encode(sketch)), sketch);
+		assertNull(CoverageSketch.decode(null));
+		assertNull(CoverageSketch.decode(new byte[3]));
+	}
+
+	/**
+	 * The estimated similarity of random sets must be close to their Jaccard
+	 * similarity. Single estimates have a standard error of about 0.06, their
+	 * mean must be more accurate.
+	 */
+	@Test
+	public void testEstimatedSimilarity() {
+		Random random = new Random(11);
+		for (double similarity : new double[] { 0.0, 0.2, 0.5, 0.8, 1.0 }) {
+			// |A| = |B| = n and |A & B| = c, so c / (2n - c) = similarity
+			int noOfCommon = (int) Math.round(2 * NO_OF_PROBES * similarity / (1 + similarity));
+			double sumOfEstimates = 0.0;
+			for (int idxRandom = 0; idxRandom < NO_OF_RANDOM_SETS; idxRandom++) {
+				int offset = random.nextInt(1000000);
+				int[] sketch = CoverageSketch.compute(createProbes(offset, NO_OF_PROBES));
+				int[] otherSketch = CoverageSketch.compute(createProbes(offset + NO_OF_PROBES - noOfCommon, NO_OF_PROBES));
+				double estimate = CoverageSketch.similarity(sketch, otherSketch);
+				assertEquals(estimate, similarity, 0.3, "similarity " + similarity);
+				sumOfEstimates += estimate;
+			}
+			assertEquals(sumOfEstimates / NO_OF_RANDOM_SETS, similarity, 0.05, "similarity " + similarity);
+		}
+	}
+
+	/**
+	 * Sets that differ in a few probes share most bands, disjoint sets none
+	 */
+	@Test
+	public void testBands() {
+		int[] sketch = CoverageSketch.compute(createProbes(0, NO_OF_PROBES));
+		int[] similarSketch = CoverageSketch.compute(createProbes(10, NO_OF_PROBES));
+		int[] disjointSketch = CoverageSketch.compute(createProbes(NO_OF_PROBES, NO_OF_PROBES));
+		int commonBands = 0;
+		for (int band = 0; band < CoverageSketch.BANDS; band++) {
+			if (CoverageSketch.getBandKey(sketch, band) == CoverageSketch.getBandKey(similarSketch, band)) {
+				commonBands++;
+			}
+			assertNotEquals(CoverageSketch.getBandKey(sketch, band), CoverageSketch.getBandKey(disjointSketch, band));
+		}
+		assertTrue(commonBands >= CoverageSketch.BANDS / 2, commonBands + " common bands");
+	}
+
+	/**
+	 * @return consecutive probes, spread over classes of 1000 probes
+	 */
+	private static ProbeBitmap createProbes(int firstProbe, int noOfProbes) {
+		ProbeBitmap probes = new ProbeBitmap();
+		for (int probe = firstProbe; probe < firstProbe + noOfProbes; probe++) {
+			boolean[] classProbes = new boolean[1000];
+			classProbes[probe % 1000] = true;
+			probes.add(probe / 1000, classProbes);
+		}
+		return probes;
+	}
+}
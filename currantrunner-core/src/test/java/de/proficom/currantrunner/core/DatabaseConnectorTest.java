@@ -0,0 +1,449 @@
+package de.proficom.currantrunner.core;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import de.proficom.currantrunner.metrics.MetricMissingCounter;
+import de.proficom.currantrunner.metrics.MetricResultHistory;
+import de.proficom.currantrunner.metrics.MetricResultLast;
+import de.proficom.currantrunner.metrics.MetricUniqueness;
+import de.proficom.currantrunner.metrics.MetricsBase;
+import de.proficom.currantrunner.metrics.MetricsBaseInteger;
+import de.proficom.currantrunner.metrics.MetricsBaseString;
+import de.proficom.currantrunner.metrics.MetricsCoverageAge;
+import de.proficom.currantrunner.metrics.MetricsDurationMilliSec;
+
+public class DatabaseConnectorTest {
+	private static final String PARAM_SESSION_CACHE = "currantRunner.sessionCache";
+	private static final String PARAM_BATCH_SIZE = "currantRunner.dbBatchSize";
+	private static final int NO_OF_PROCESSES = 6;
+
+	private File databaseDirectory;
+
+	@BeforeMethod
+	public void createDirectory() throws IOException {
+		databaseDirectory = Files.createTempDirectory("currantrunner").toFile();
+	}
+
+	@AfterMethod
+	public void deleteDirectory() {
+		System.clearProperty(PARAM_SESSION_CACHE);
+		System.clearProperty(PARAM_BATCH_SIZE);
+		System.clearProperty(CurrantRunner.PARAM_MULTI_PROCESS);
+		deleteRecursively(databaseDirectory);
+	}
+
+	@DataProvider
+	public Object[][] sessionCache() {
+		return new Object[][] { { "true" }, { "false" } };
+	}
+
+	/**
+	 * Only the modified metrics of a test case are written, values written by
+	 * somebody else to other columns are kept. Test cases with different
+	 * modified metrics are written by different statements.
+	 */
+	@Test(dataProvider = "sessionCache")
+	public void testMergeOfModifiedMetrics(String sessionCache) throws SQLException {
+		System.setProperty(PARAM_SESSION_CACHE, sessionCache);
+		System.setProperty(PARAM_BATCH_SIZE, "2");
+		List<String> testnames = Arrays.asList("test1", "test2", "test3", "test4", "test5");
+		DatabaseConnector db = new DatabaseConnector(databaseDirectory.getPath(), createMergeMetrics(),
+				name -> new TestCase(name, createMergeMetrics()));
+		db.registerTestCases(testnames);
+		db.flush();
+		assertEquals(readColumn("lastresult").keySet(), testnames);
+
+		try (Connection conn = openConnection(); Statement stmt = conn.createStatement()) {
+			stmt.execute("UPDATE TESTRESULTS SET lastresult = 'written by others'");
+		}
+
+		List<TestCase> testcases = new ArrayList<TestCase>();
+		for (int idxTest = 0; idxTest < testnames.size(); idxTest++) {
+			TestCase tc = db.getTestCaseFromDB(testnames.get(idxTest));
+			if (idxTest < 3) {
+				((MetricsDurationMilliSec) tc.getAllMetrics().get(0)).setMetricValue(100 + idxTest);
+			} else {
+				((MetricUniqueness) tc.getAllMetrics().get(2)).setMetricValue(0.5 + idxTest);
+			}
+			testcases.add(tc);
+		}
+		db.updateMetricsInDB(testcases);
+		db.flush();
+
+		Map<String, Object> durations = readColumn("duration");
+		Map<String, Object> uniqueness = readColumn("uniqueness");
+		for (int idxTest = 0; idxTest < testnames.size(); idxTest++) {
+			String testname = testnames.get(idxTest);
+			assertEquals(durations.get(testname), (idxTest < 3) ? Integer.valueOf(100 + idxTest) : null, testname);
+			assertEquals(uniqueness.get(testname), (idxTest < 3) ? null : Double.valueOf(0.5 + idxTest), testname);
+			assertEquals(readColumn("lastresult").get(testname), "written by others", testname);
+		}
+
+		// Nothing is modified anymore
+		db.updateMetricsInDB(db.getTestCases());
+		db.flush();
+		assertEquals(readColumn("duration"), durations);
+		db.closeDatabase();
+	}
+
+	/**
+	 * A DB created before runs were stored has the history only in table
+	 * TESTRESULTS. It must survive reading and writing the test cases.
+	 */
+	@Test
+	public void testHistoryOfUpgradedDatabase() throws SQLException {
+		try (Connection conn = openConnection(); Statement stmt = conn.createStatement()) {
+			stmt.execute("CREATE TABLE TESTRESULTS (testname VARCHAR(255),history_3 VARCHAR(255),history_10 VARCHAR(255),UNIQUE (testname))");
+			stmt.execute("CREATE TABLE MODEL (type VARCHAR(255),content JAVA_OBJECT,UNIQUE (type));");
+			stmt.execute("INSERT INTO TESTRESULTS VALUES ('test1', '0,1,1', '0,0,0,1,0,1,1')");
+			stmt.execute("INSERT INTO TESTRESULTS VALUES ('test2', '', '')");
+		}
+
+		DatabaseConnector db = new DatabaseConnector(databaseDirectory.getPath(), createMetrics(), DatabaseConnectorTest::createTestcase);
+		assertHistory(db.getTestCaseFromDB("test1"), "0,1,1", "0,0,0,1,0,1,1");
+		assertHistory(db.getTestCaseFromDB("test2"), "", "");
+
+		// Results of a new run are appended to the stored history
+		db.beginRun();
+		for (String testname : Arrays.asList("test1", "test2")) {
+			TestCase tc = db.getTestCaseFromDB(testname);
+			for (MetricsBase<?> curMetric : tc.getAllMetrics()) {
+				curMetric.updateMetricByResult(TestCase.Results.PASSED);
+			}
+			db.recordResult(testname, TestCase.Results.PASSED, Duration.ofMillis(10));
+			db.updateMetricsInDB(tc);
+		}
+		db.endRun();
+		db.closeDatabase();
+
+		db = new DatabaseConnector(databaseDirectory.getPath(), createMetrics(), DatabaseConnectorTest::createTestcase);
+		assertHistory(db.getTestCaseFromDB("test1"), "1,1,0", "0,0,0,1,0,1,1,0");
+		assertHistory(db.getTestCaseFromDB("test2"), "0", "0");
+		db.closeDatabase();
+	}
+
+	/**
+	 * Columns of new metrics are added with their default value, columns of
+	 * removed metrics are dropped and columns with a changed type are converted.
+	 * Values that can't be converted are reset.
+	 */
+	@Test
+	public void testUpdateSchema() throws SQLException {
+		List<MetricsBase<?>> oldMetrics = Arrays.asList(new MetricsDurationMilliSec(), new MetricResultLast(),
+				new MetricMissingCounter(10), new MetricUniqueness());
+		DatabaseConnector db = new DatabaseConnector(databaseDirectory.getPath(), oldMetrics,
+				name -> new TestCase(name, Arrays.asList(new MetricsDurationMilliSec(), new MetricResultLast(),
+						new MetricMissingCounter(10), new MetricUniqueness())));
+		db.registerTestCases(Arrays.asList("test1", "test2"));
+		TestCase tc = db.getTestCaseFromDB("test1");
+		((MetricsDurationMilliSec) tc.getAllMetrics().get(0)).setMetricValue(42);
+		((MetricResultLast) tc.getAllMetrics().get(1)).setMetricValue("PASSED");
+		((MetricMissingCounter) tc.getAllMetrics().get(2)).setMetricValue(3);
+		((MetricUniqueness) tc.getAllMetrics().get(3)).setMetricValue(0.25);
+		db.updateMetricsInDB(tc);
+		db.closeDatabase();
+
+		// lastresult and missing change their type, uniqueness is removed, coverageage is new
+		List<MetricsBase<?>> newMetrics = Arrays.asList(new MetricsDurationMilliSec(), new IntegerMetric("lastresult"),
+				new StringMetric("missing"), new MetricsCoverageAge());
+		db = new DatabaseConnector(databaseDirectory.getPath(), newMetrics, name -> new TestCase(name, Arrays.asList(
+				new MetricsDurationMilliSec(), new IntegerMetric("lastresult"), new StringMetric("missing"), new MetricsCoverageAge())));
+		assertEquals(readColumnTypes().keySet(),
+				new TreeSet<String>(Arrays.asList("TESTNAME", "DURATION", "LASTRESULT", "MISSING", "COVERAGEAGE")));
+		assertEquals(readColumnTypes().get("LASTRESULT"), "INTEGER");
+		assertEquals(readColumnTypes().get("MISSING"), "CHARACTER VARYING");
+
+		tc = db.getTestCaseFromDB("test1");
+		assertEquals(tc.getAllMetrics().get(0).getMetricValue(), Integer.valueOf(42));
+		assertEquals(readColumn("lastresult").get("test1"), null);
+		assertEquals(tc.getAllMetrics().get(2).getMetricValue(), "3");
+		assertEquals(readColumn("coverageage").get("test1"), Integer.valueOf(0));
+		assertEquals(readColumn("coverageage").get("test2"), Integer.valueOf(0));
+
+		// The same metrics don't change the schema again
+		db.closeDatabase();
+		db = new DatabaseConnector(databaseDirectory.getPath(), newMetrics, name -> new TestCase(name, Arrays.asList(
+				new MetricsDurationMilliSec(), new IntegerMetric("lastresult"), new StringMetric("missing"), new MetricsCoverageAge())));
+		assertEquals(readColumn("duration").get("test1"), Integer.valueOf(42));
+		assertEquals(readColumn("missing").get("test1"), "3");
+		db.closeDatabase();
+	}
+
+	/**
+	 * A model stored as JAVA_OBJECT by older versions is still readable after the
+	 * column has been converted to BLOB
+	 */
+	@Test
+	public void testModelOfUpgradedDatabase() throws SQLException, IOException {
+		List<String> model = Arrays.asList("attribute1", "attribute2");
+		ByteArrayOutputStream serializedStream = new ByteArrayOutputStream();
+		try (ObjectOutputStream objectStream = new ObjectOutputStream(serializedStream)) {
+			objectStream.writeObject(new ArrayList<String>(model));
+		}
+		try (Connection conn = openConnection(); Statement stmt = conn.createStatement()) {
+			stmt.execute("CREATE TABLE TESTRESULTS (testname VARCHAR(255),history_3 VARCHAR(255),history_10 VARCHAR(255),UNIQUE (testname))");
+			stmt.execute("CREATE TABLE MODEL (type VARCHAR(255),content JAVA_OBJECT,UNIQUE (type));");
+			try (PreparedStatement insertModel = conn.prepareStatement("INSERT INTO MODEL VALUES ('Hoeffding', ?)")) {
+				insertModel.setBytes(1, serializedStream.toByteArray());
+				insertModel.execute();
+			}
+		}
+
+		DatabaseConnector db = new DatabaseConnector(databaseDirectory.getPath(), createMetrics(), DatabaseConnectorTest::createTestcase);
+		assertEquals(readColumnTypes("MODEL").get("CONTENT"), "BINARY LARGE OBJECT");
+		assertEquals(db.getModel(), model);
+		assertEquals(db.getModelVersion(), 0);
+
+		// New models are written with ModelCodec
+		db.insertOrUpdateModel(new ArrayList<String>(Arrays.asList("attribute3")));
+		assertEquals(db.getModel(), Arrays.asList("attribute3"));
+		assertEquals(db.getModelVersion(), 1);
+		db.closeDatabase();
+	}
+
+	@Test
+	public void testSuitesOfBuild() {
+		DatabaseConnector db = new DatabaseConnector(databaseDirectory.getPath(), createMetrics(), DatabaseConnectorTest::createTestcase);
+		assertSuitesOfBuild(db);
+		db.closeDatabase();
+	}
+
+	/**
+	 * Suites of a build finish at the same time in several processes with their
+	 * own connection, exactly one of them is the last suite
+	 */
+	@Test
+	public void testConcurrentSuitesOfBuild() throws Exception {
+		System.setProperty(CurrantRunner.PARAM_MULTI_PROCESS, "true");
+		CyclicBarrier barrier = new CyclicBarrier(NO_OF_PROCESSES);
+		List<Callable<Boolean>> suites = new ArrayList<Callable<Boolean>>();
+		for (int idxSuite = 0; idxSuite < NO_OF_PROCESSES; idxSuite++) {
+			String testname = "test" + idxSuite;
+			suites.add(() -> {
+				DatabaseConnector db = new DatabaseConnector(databaseDirectory.getPath(), createMetrics(), DatabaseConnectorTest::createTestcase);
+				try {
+					barrier.await();
+					assertTrue(db.startSuiteOfBuild("build1", 0) > 0);
+					barrier.await();
+					return db.finishSuiteOfBuild("build1", 0, Arrays.asList(testname), Arrays.asList(testname));
+				} finally {
+					db.closeDatabase();
+				}
+			});
+		}
+
+		int noOfLastSuites = 0;
+		ExecutorService executor = Executors.newFixedThreadPool(NO_OF_PROCESSES);
+		try {
+			for (Future<Boolean> isLastSuite : executor.invokeAll(suites)) {
+				noOfLastSuites += isLastSuite.get() ? 1 : 0;
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(noOfLastSuites, 1);
+
+		DatabaseConnector db = new DatabaseConnector(databaseDirectory.getPath(), createMetrics(), DatabaseConnectorTest::createTestcase);
+		assertEquals(new TreeSet<String>(db.getTestsOfBuild("build1", true)).size(), NO_OF_PROCESSES);
+		db.closeDatabase();
+	}
+
+	/**
+	 * Start and finish test suites of builds one after another
+	 *
+	 * @param db store of test cases
+	 */
+	static void assertSuitesOfBuild(IMetricStore db) {
+		// Three suites are expected, the third one is the last
+		assertEquals(db.startSuiteOfBuild("build1", 3), 1);
+		assertEquals(db.startSuiteOfBuild("build1", 3), 2);
+		assertFalse(db.finishSuiteOfBuild("build1", 3, Arrays.asList("test1", "test2"), Arrays.asList("test1")));
+		assertFalse(db.finishSuiteOfBuild("build1", 3, Arrays.asList("test3"), Arrays.asList("test3")));
+		assertEquals(db.startSuiteOfBuild("build1", 3), 3);
+		assertTrue(db.finishSuiteOfBuild("build1", 3, Arrays.asList("test4"), Arrays.<String>asList()));
+		assertEquals(new TreeSet<String>(db.getTestsOfBuild("build1", false)),
+				new TreeSet<String>(Arrays.asList("test1", "test2", "test3", "test4")));
+		assertEquals(new TreeSet<String>(db.getTestsOfBuild("build1", true)), new TreeSet<String>(Arrays.asList("test1", "test3")));
+
+		// The build has been finalized, a late suite isn't counted anymore
+		assertEquals(db.startSuiteOfBuild("build1", 3), 0);
+
+		// Number of suites is unknown, the last started suite is the last one
+		assertEquals(db.startSuiteOfBuild("build2", 0), 1);
+		assertEquals(db.startSuiteOfBuild("build2", 0), 2);
+		assertFalse(db.finishSuiteOfBuild("build2", 0, Arrays.asList("test1"), Arrays.asList("test1")));
+		assertTrue(db.finishSuiteOfBuild("build2", 0, Arrays.asList("test2"), Arrays.asList("test2")));
+	}
+
+	private static void assertHistory(TestCase tc, String history3, String history10) {
+		List<MetricsBase<?>> metrics = tc.getAllMetrics();
+		assertEquals(metrics.get(0).getMetricValue(), history3, tc.getTestname());
+		assertEquals(metrics.get(1).getMetricValue(), history10, tc.getTestname());
+	}
+
+	private static List<MetricsBase<?>> createMetrics() {
+		List<MetricsBase<?>> metrics = new ArrayList<MetricsBase<?>>();
+		metrics.add(new MetricResultHistory(3));
+		metrics.add(new MetricResultHistory(10));
+		return metrics;
+	}
+
+	private static List<MetricsBase<?>> createMergeMetrics() {
+		List<MetricsBase<?>> metrics = new ArrayList<MetricsBase<?>>();
+		metrics.add(new MetricsDurationMilliSec());
+		metrics.add(new MetricResultLast());
+		metrics.add(new MetricUniqueness());
+		return metrics;
+	}
+
+	private static TestCase createTestcase(String name) {
+		return new TestCase(name, createMetrics());
+	}
+
+	/**
+	 * @param columnName column of table TESTRESULTS
+	 * @return values of column by name of test case, ordered by name
+	 */
+	private Map<String, Object> readColumn(String columnName) throws SQLException {
+		Map<String, Object> values = new LinkedHashMap<String, Object>();
+		try (Connection conn = openConnection();
+				Statement stmt = conn.createStatement();
+				ResultSet results = stmt.executeQuery("SELECT testname, " + columnName + " FROM TESTRESULTS ORDER BY testname")) {
+			while (results.next()) {
+				values.put(results.getString(1), results.getObject(2));
+			}
+		}
+		return values;
+	}
+
+	private Map<String, String> readColumnTypes() throws SQLException {
+		return readColumnTypes("TESTRESULTS");
+	}
+
+	/**
+	 * @param tableName name of table
+	 * @return type of every column of the table, ordered by name
+	 */
+	private Map<String, String> readColumnTypes(String tableName) throws SQLException {
+		Map<String, String> columnTypes = new TreeMap<String, String>();
+		try (Connection conn = openConnection();
+				PreparedStatement getColumns = conn.prepareStatement(
+						"SELECT COLUMN_NAME, DATA_TYPE FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_SCHEMA = SCHEMA() AND TABLE_NAME = ?")) {
+			getColumns.setString(1, tableName);
+			try (ResultSet results = getColumns.executeQuery()) {
+				while (results.next()) {
+					columnTypes.put(results.getString(1), results.getString(2));
+				}
+			}
+		}
+		return columnTypes;
+	}
+
+	private Connection openConnection() throws SQLException {
+		return DriverManager.getConnection("jdbc:h2:" + databaseDirectory.getPath() + "/Database", "currantrunner", "!proficomMLTestNG!");
+	}
+
+	static void deleteRecursively(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				deleteRecursively(child);
+			}
+		}
+		file.delete();
+	}
+
+	/**
+	 * String metric with any column, e.g. to change the type of a column
+	 */
+	private static class StringMetric extends MetricsBaseString {
+		private final String columnName;
+
+		StringMetric(String columnName) {
+			this.columnName = columnName;
+		}
+
+		@Override
+		public String getCliName() {
+			return columnName;
+		}
+
+		@Override
+		public int getCliMinLength() {
+			return columnName.length();
+		}
+
+		@Override
+		public String getDBColumnName() {
+			return columnName;
+		}
+
+		@Override
+		public double getMLValue() {
+			return 0;
+		}
+	}
+
+	/**
+	 * Integer metric with any column, e.g. to change the type of a column
+	 */
+	private static class IntegerMetric extends MetricsBaseInteger {
+		private final String columnName;
+
+		IntegerMetric(String columnName) {
+			this.columnName = columnName;
+		}
+
+		@Override
+		public String getCliName() {
+			return columnName;
+		}
+
+		@Override
+		public int getCliMinLength() {
+			return columnName.length();
+		}
+
+		@Override
+		public String getDBColumnName() {
+			return columnName;
+		}
+
+		@Override
+		public double getMLValue() {
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package de.proficom.currantrunner.core;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class FailureCorrelationTest {
+	private FootprintIndex index;
+
+	@BeforeMethod
+	public void createIndex() {
+		index = new FootprintIndex();
+		for (int classIdx = 0; classIdx <= 10; classIdx++) {
+			index.putClass(classIdx, "C" + classIdx, classIdx);
+		}
+		index.putFootprint("failed", new int[] { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9 });
+		// Similarity 8 / 10
+		index.putFootprint("similar", new int[] { 0, 1, 2, 3, 4, 5, 6, 7 });
+		// Similarity 7 / 11
+		index.putFootprint("related", new int[] { 0, 1, 2, 3, 4, 5, 6, 10 });
+		index.putFootprint("equal", new int[] { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9 });
+		index.putFootprint("distinct", new int[] { 10 });
+	}
+
+	@AfterMethod
+	public void clearThreshold() {
+		System.clearProperty(FailureCorrelation.PARAM_CORRELATION_THRESHOLD);
+	}
+
+	@Test
+	public void testDefaultThreshold() {
+		FailureCorrelation correlation = new FailureCorrelation();
+		correlation.onTestStarted("failed");
+		correlation.onTestFailed("failed", index);
+		assertEquals(correlation.skip("similar"), "failed");
+		assertEquals(correlation.skip("equal"), "failed");
+		assertNull(correlation.skip("related"));
+		assertNull(correlation.skip("distinct"));
+		assertNull(correlation.skip("unmeasured"));
+	}
+
+	@Test
+	public void testThreshold() {
+		System.setProperty(FailureCorrelation.PARAM_CORRELATION_THRESHOLD, "0.6");
+		FailureCorrelation correlation = new FailureCorrelation();
+		correlation.onTestFailed("failed", index);
+		assertEquals(correlation.skip("related"), "failed");
+		assertNull(correlation.skip("distinct"));
+
+		// Only equal footprints are correlated, the threshold is limited to 1
+		System.setProperty(FailureCorrelation.PARAM_CORRELATION_THRESHOLD, "1.5");
+		correlation = new FailureCorrelation();
+		correlation.onTestFailed("failed", index);
+		assertEquals(correlation.skip("equal"), "failed");
+		assertNull(correlation.skip("similar"));
+	}
+
+	/**
+	 * Started tests are never skipped, the first check decides for all
+	 * invocations of a test
+	 */
+	@Test
+	public void testInvocations() {
+		FailureCorrelation correlation = new FailureCorrelation();
+		correlation.onTestStarted("equal");
+		correlation.onTestFailed("failed", index);
+		assertNull(correlation.skip("equal"));
+
+		assertEquals(correlation.skip("similar"), "failed");
+		correlation.onTestStarted("similar");
+		assertEquals(correlation.skip("similar"), "failed");
+
+		// A test failing later has no effect on the decided test
+		correlation.onTestFailed("similar", index);
+		assertNull(correlation.skip("equal"));
+
+		// The next test suite starts again
+		correlation.reset();
+		assertNull(correlation.skip("similar"));
+		correlation.onTestFailed("failed", index);
+		assertEquals(correlation.skip("equal"), "failed");
+	}
+}
@@ -0,0 +1,163 @@
+package de.proficom.currantrunner.core;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import de.proficom.currantrunner.metrics.MetricsBase;
+
+public class FootprintIndexTest {
+
+	@Test
+	public void testEncodeRoundTrip() {
+		int[][] footprints = { {}, { 0 }, { 127 }, { 128 }, { 0, 1, 2, 3 }, { 5, 132, 16515, 16516 },
+				{ 1, 2097152, Integer.MAX_VALUE } };
+		for (int[] footprint : footprints) {
+			assertEquals(FootprintIndex.decode(FootprintIndex.encode(footprint)), footprint, Arrays.toString(footprint));
+		}
+
+		Random random = new Random(4711);
+		for (int idxRandom = 0; idxRandom < 100; idxRandom++) {
+			int[] footprint = random.ints(random.nextInt(200), 0, 100000).distinct().sorted().toArray();
+			assertEquals(FootprintIndex.decode(FootprintIndex.encode(footprint)), footprint, Arrays.toString(footprint));
+		}
+	}
+
+	/**
+	 * Differences below 128 need a single byte, the next ones two and three bytes
+	 */
+	@Test
+	public void testEncodedLength() {
+		assertEquals(FootprintIndex.encode(new int[] { 3, 10, 137, 200 }).length, 4);
+		assertEquals(FootprintIndex.encode(new int[] { 128 }).length, 2);
+		assertEquals(FootprintIndex.encode(new int[] { 16383 }).length, 2);
+		assertEquals(FootprintIndex.encode(new int[] { 16384 }).length, 3);
+	}
+
+	@Test
+	public void testTestsOfClass() {
+		FootprintIndex index = new FootprintIndex();
+		index.putClass(0, "com/example/A", 1);
+		index.putClass(1, "com/example/B", 2);
+		index.putClass(300, "com/example/C", 3);
+		assertEquals(index.getNoOfClasses(), 301);
+		assertEquals(index.getClassName(300), "com/example/C");
+		assertNull(index.getClassName(301));
+
+		Set<Integer> changedClasses = new HashSet<Integer>();
+		assertTrue(index.update("test1", touchedClasses("com/example/C", 3, "com/example/A", 1), changedClasses));
+		assertTrue(index.update("test2", touchedClasses("com/example/B", 2), changedClasses));
+		assertEquals(changedClasses, Collections.emptySet());
+		assertEquals(index.getFootprint("test1"), new int[] { 0, 300 });
+		assertEquals(index.getTestsOfClass("com/example/A"), Collections.singleton("test1"));
+		assertEquals(index.getTestsOfClass("com/example/D"), Collections.emptySet());
+
+		// Same footprint, but a changed class
+		assertFalse(index.update("test1", touchedClasses("com/example/C", 4, "com/example/A", 1), changedClasses));
+		assertEquals(changedClasses, Collections.singleton(300));
+		assertEquals(index.getClassId(300), 4);
+
+		// The tests of a class follow the changed footprint
+		assertTrue(index.update("test1", touchedClasses("com/example/B", 2), changedClasses));
+		assertEquals(index.getTestsOfClass("com/example/A"), Collections.emptySet());
+		assertEquals(index.getTestsOfClass("com/example/B"), new HashSet<String>(Arrays.asList("test1", "test2")));
+
+		index.removeFootprint("test1");
+		assertNull(index.getFootprint("test1"));
+		assertEquals(index.getTestsOfClass("com/example/B"), Collections.singleton("test2"));
+		assertEquals(index.getTestnames(), Collections.singleton("test2"));
+	}
+
+	@Test
+	public void testOverlappingTests() {
+		FootprintIndex index = new FootprintIndex();
+		for (int classIdx = 0; classIdx < 10; classIdx++) {
+			index.putClass(classIdx, "C" + classIdx, classIdx);
+		}
+		index.putFootprint("test1", new int[] { 0, 1, 2, 3 });
+		index.putFootprint("test2", new int[] { 0, 1, 2, 3 });
+		index.putFootprint("test3", new int[] { 2, 3, 4, 5 });
+		index.putFootprint("test4", new int[] { 6, 7 });
+		index.putFootprint("test5", new int[] {});
+
+		// test3 shares 2 of 6 classes with test1
+		assertEquals(index.getOverlappingTests("test1", 0.0).keySet(), new HashSet<String>(Arrays.asList("test2", "test3")));
+		assertEquals(index.getOverlappingTests("test1", 0.0).get("test2"), Double.valueOf(1.0));
+		assertEquals(index.getOverlappingTests("test1", 0.0).get("test3"), 1.0 / 3.0, 1e-12);
+		assertEquals(index.getOverlappingTests("test1", 1.0 / 3.0).size(), 2);
+		assertEquals(index.getOverlappingTests("test1", 0.34).keySet(), Collections.singleton("test2"));
+		assertEquals(index.getOverlappingTests("test4", 0.0), Collections.emptyMap());
+		assertEquals(index.getOverlappingTests("test5", 0.0), Collections.emptyMap());
+		assertEquals(index.getOverlappingTests("unknown", 0.0), Collections.emptyMap());
+	}
+
+	@DataProvider
+	public Object[][] storage() {
+		return new Object[][] { { "h2" }, { "mvstore" } };
+	}
+
+	/**
+	 * Footprints are written to the store and read again by the next process
+	 */
+	@Test(dataProvider = "storage")
+	public void testStoredFootprints(String storage) throws IOException {
+		File databaseDirectory = Files.createTempDirectory("currantrunner").toFile();
+		try {
+			Map<String, boolean[]> executedProbes = new HashMap<String, boolean[]>();
+			executedProbes.put("com/example/A", new boolean[] { true, false });
+			executedProbes.put("com/example/B", new boolean[] { true });
+			IMetricStore db = openStore(storage, databaseDirectory);
+			db.updateFootprint("test1", touchedClasses("com/example/A", 1, "com/example/B", 2), executedProbes);
+			db.updateFootprint("test2", touchedClasses("com/example/B", 2), executedProbes);
+			db.flush();
+			db.closeDatabase();
+
+			db = openStore(storage, databaseDirectory);
+			FootprintIndex index = db.getFootprintIndex();
+			assertEquals(index.getTestnames(), new HashSet<String>(Arrays.asList("test1", "test2")));
+			assertEquals(index.getTestsOfClass("com/example/B"), new HashSet<String>(Arrays.asList("test1", "test2")));
+			assertEquals(index.getTestsOfClass("com/example/A"), Collections.singleton("test1"));
+			int classIdx = index.getClassIndex("com/example/A");
+			assertEquals(index.getClassId(classIdx), 1);
+			assertEquals(index.getFootprint("test2"), new int[] { index.getClassIndex("com/example/B") });
+			db.closeDatabase();
+		} finally {
+			DatabaseConnectorTest.deleteRecursively(databaseDirectory);
+		}
+	}
+
+	private static IMetricStore openStore(String storage, File databaseDirectory) {
+		List<MetricsBase<?>> metrics = new ArrayList<MetricsBase<?>>();
+		if (storage.equals("h2")) {
+			return new DatabaseConnector(databaseDirectory.getPath(), metrics, name -> new TestCase(name, new ArrayList<MetricsBase<?>>()));
+		}
+		return new MVStoreConnector(databaseDirectory.getPath(), metrics, name -> new TestCase(name, new ArrayList<MetricsBase<?>>()));
+	}
+
+	private static SortedMap<String, Long> touchedClasses(Object... namesAndIds) {
+		SortedMap<String, Long> touchedClasses = new TreeMap<String, Long>();
+		for (int idx = 0; idx < namesAndIds.length; idx += 2) {
+			touchedClasses.put((String) namesAndIds[idx], ((Integer) namesAndIds[idx + 1]).longValue());
+		}
+		return touchedClasses;
+	}
+}
@@ -0,0 +1,89 @@
+package de.proficom.currantrunner.core;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import de.proficom.currantrunner.metrics.MetricResultHistory;
+import de.proficom.currantrunner.metrics.MetricsBase;
+
+public class MVStoreConnectorTest {
+	private File databaseDirectory;
+
+	@BeforeMethod
+	public void createDirectory() throws IOException {
+		databaseDirectory = Files.createTempDirectory("currantrunner").toFile();
+	}
+
+	@AfterMethod
+	public void deleteDirectory() {
+		DatabaseConnectorTest.deleteRecursively(databaseDirectory);
+	}
+
+	/**
+	 * Test cases without stored runs have the history only in their record. It
+	 * must survive reading and writing the test cases.
+	 */
+	@Test
+	public void testHistoryWithoutStoredRuns() {
+		MVStoreConnector db = openStore();
+		db.registerTestCases(Arrays.asList("test1"));
+		TestCase tc = db.getTestCaseFromDB("test1");
+		((MetricResultHistory) tc.getAllMetrics().get(0)).setMetricValue("0,1,1");
+		((MetricResultHistory) tc.getAllMetrics().get(1)).setMetricValue("0,0,0,1,0,1,1");
+		db.updateMetricsInDB(tc);
+		db.closeDatabase();
+
+		db = openStore();
+		assertHistory(db.getTestCaseFromDB("test1"), "0,1,1", "0,0,0,1,0,1,1");
+
+		// Results of a new run are appended to the stored history
+		db.beginRun();
+		tc = db.getTestCaseFromDB("test1");
+		for (MetricsBase<?> curMetric : tc.getAllMetrics()) {
+			curMetric.updateMetricByResult(TestCase.Results.FAILED);
+		}
+		db.recordResult("test1", TestCase.Results.FAILED, Duration.ofMillis(10));
+		db.updateMetricsInDB(tc);
+		db.endRun();
+		db.closeDatabase();
+
+		db = openStore();
+		assertHistory(db.getTestCaseFromDB("test1"), "1,1,1", "0,0,0,1,0,1,1,1");
+		db.closeDatabase();
+	}
+
+	@Test
+	public void testSuitesOfBuild() {
+		MVStoreConnector db = openStore();
+		DatabaseConnectorTest.assertSuitesOfBuild(db);
+		db.closeDatabase();
+	}
+
+	private static void assertHistory(TestCase tc, String history3, String history10) {
+		List<MetricsBase<?>> metrics = tc.getAllMetrics();
+		assertEquals(metrics.get(0).getMetricValue(), history3, tc.getTestname());
+		assertEquals(metrics.get(1).getMetricValue(), history10, tc.getTestname());
+	}
+
+	private MVStoreConnector openStore() {
+		return new MVStoreConnector(databaseDirectory.getPath(), createMetrics(), name -> new TestCase(name, createMetrics()));
+	}
+
+	private static List<MetricsBase<?>> createMetrics() {
+		List<MetricsBase<?>> metrics = new ArrayList<MetricsBase<?>>();
+		metrics.add(new MetricResultHistory(3));
+		metrics.add(new MetricResultHistory(10));
+		return metrics;
+	}
+}
@@ -0,0 +1,117 @@
+package de.proficom.currantrunner.core;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+public class ModelCodecTest {
+	private static final String PARAM_MODEL_COMPRESSION = "currantRunner.modelCompression";
+	private static final int OFFSET_LENGTH = 6;
+	private static final int OFFSET_CHECKSUM = 10;
+	private static final int OFFSET_DATA = 18;
+
+	@AfterMethod
+	public void clearCompression() {
+		System.clearProperty(PARAM_MODEL_COMPRESSION);
+	}
+
+	@Test
+	public void testRoundTripDeflate() throws IOException {
+		List<String> model = createModel();
+		byte[] encodedModel = ModelCodec.encode(model);
+		assertEquals(Arrays.copyOf(encodedModel, 4), new byte[] { 'C', 'R', 'M', 'L' });
+		assertEquals(ModelCodec.decode(encodedModel), model);
+	}
+
+	@Test
+	public void testRoundTripUncompressed() throws IOException {
+		System.setProperty(PARAM_MODEL_COMPRESSION, "none");
+		List<String> model = createModel();
+		byte[] encodedModel = ModelCodec.encode(model);
+		assertEquals(ModelCodec.decode(encodedModel), model);
+	}
+
+	@Test
+	public void testLegacyJavaSerialization() throws IOException {
+		List<String> model = createModel();
+		ByteArrayOutputStream serializedStream = new ByteArrayOutputStream();
+		ObjectOutputStream objectStream = new ObjectOutputStream(serializedStream);
+		objectStream.writeObject(model);
+		objectStream.close();
+		byte[] legacyModel = serializedStream.toByteArray();
+		assertEquals(legacyModel[0] & 0xFF, 0xAC);
+		assertEquals(legacyModel[1] & 0xFF, 0xED);
+		assertEquals(ModelCodec.decode(legacyModel), model);
+	}
+
+	@Test
+	public void testCorruptedChecksum() throws IOException {
+		byte[] encodedModel = ModelCodec.encode(createModel());
+		encodedModel[OFFSET_CHECKSUM + 7] ^= 0x01;
+		assertThrows(IOException.class, () -> ModelCodec.decode(encodedModel));
+	}
+
+	@Test
+	public void testCorruptedData() throws IOException {
+		System.setProperty(PARAM_MODEL_COMPRESSION, "none");
+		byte[] encodedModel = ModelCodec.encode(createModel());
+		encodedModel[encodedModel.length - 1] ^= 0x01;
+		assertThrows(IOException.class, () -> ModelCodec.decode(encodedModel));
+	}
+
+	@Test
+	public void testInvalidLength() throws IOException {
+		for (String compression : new String[] { "none", "deflate" }) {
+			System.setProperty(PARAM_MODEL_COMPRESSION, compression);
+			for (int lengthOfData : new int[] { -1, Integer.MIN_VALUE, Integer.MAX_VALUE }) {
+				byte[] encodedModel = ModelCodec.encode(createModel());
+				ByteBuffer.wrap(encodedModel).putInt(OFFSET_LENGTH, lengthOfData);
+				assertThrows(IOException.class, () -> ModelCodec.decode(encodedModel));
+			}
+		}
+	}
+
+	@Test
+	public void testTruncatedData() throws IOException {
+		for (String compression : new String[] { "none", "deflate" }) {
+			System.setProperty(PARAM_MODEL_COMPRESSION, compression);
+			// The last bytes of deflate end the compressed stream, the data is complete
+			// and valid without them
+			byte[] encodedModel = ModelCodec.encode(createModel());
+			int lastLength = compression.equals("none") ? encodedModel.length - 1 : encodedModel.length / 2;
+			for (int length : new int[] { 0, 1, 5, OFFSET_DATA - 1, OFFSET_DATA, OFFSET_DATA + 1, lastLength }) {
+				byte[] truncatedModel = Arrays.copyOf(encodedModel, length);
+				assertThrows(IOException.class, () -> ModelCodec.decode(truncatedModel));
+			}
+		}
+	}
+
+	@Test
+	public void testUnknownFormat() throws IOException {
+		byte[] encodedModel = ModelCodec.encode(createModel());
+		encodedModel[0] = 'X';
+		assertThrows(IOException.class, () -> ModelCodec.decode(encodedModel));
+
+		byte[] unknownVersion = ModelCodec.encode(createModel());
+		unknownVersion[4] = 99;
+		assertThrows(IOException.class, () -> ModelCodec.decode(unknownVersion));
+	}
+
+	private static List<String> createModel() {
+		List<String> model = new ArrayList<String>();
+		for (int i = 0; i < 1000; i++) {
+			model.add("attribute" + (i % 17));
+		}
+		return model;
+	}
+}
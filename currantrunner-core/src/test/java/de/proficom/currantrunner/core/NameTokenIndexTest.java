@@ -0,0 +1,105 @@
+package de.proficom.currantrunner.core;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import de.proficom.currantrunner.metrics.MetricsBase;
+
+public class NameTokenIndexTest {
+
+	@Test
+	public void testEncodeRoundTrip() {
+		int[][] allTokenIndices = { {}, { 0 }, { 3, 3, 0 }, { 127, 128, 1 }, { 16384, 5, Integer.MAX_VALUE } };
+		for (int[] tokenIndices : allTokenIndices) {
+			assertEquals(NameTokenIndex.decode(NameTokenIndex.encode(tokenIndices)), tokenIndices, Arrays.toString(tokenIndices));
+		}
+		assertEquals(NameTokenIndex.encode(new int[] { 1, 2, 1 }).length, 3);
+	}
+
+	@Test
+	public void testIndex() {
+		NameTokenIndex index = new NameTokenIndex();
+		index.putToken(0, "test");
+		index.putToken(300, "order");
+		assertEquals(index.getNoOfTokens(), 301);
+		assertEquals(index.getTokenIndex("order"), 300);
+		assertEquals(index.getTokenIndex("parser"), -1);
+		assertEquals(index.getToken(300), "order");
+		assertNull(index.getToken(301));
+
+		index.putTokens("testOrderOrder", new int[] { 0, 300, 300 });
+		int[] tokenIndices = index.getTokens("testOrderOrder");
+		assertEquals(tokenIndices, new int[] { 0, 300, 300 });
+		// A copy is returned
+		tokenIndices[0] = 1;
+		assertEquals(index.getTokens("testOrderOrder"), new int[] { 0, 300, 300 });
+
+		index.removeTokens("testOrderOrder");
+		assertNull(index.getTokens("testOrderOrder"));
+	}
+
+	@DataProvider
+	public Object[][] storage() {
+		return new Object[][] { { "h2" }, { "mvstore" } };
+	}
+
+	/**
+	 * Tokens share their indices and are read again by the next process, the
+	 * tokens of a deleted test are removed
+	 */
+	@Test(dataProvider = "storage")
+	public void testStoredTokens(String storage) throws IOException {
+		File databaseDirectory = Files.createTempDirectory("currantrunner").toFile();
+		try {
+			IMetricStore db = openStore(storage, databaseDirectory);
+			db.registerTestCases(Arrays.asList("testOrder", "readOrderOrder"));
+			int[] tokensOfTest = db.updateNameTokens("testOrder", Arrays.asList("test", "order"));
+			int[] tokensOfRead = db.updateNameTokens("readOrderOrder", Arrays.asList("read", "order", "order"));
+			assertEquals(tokensOfRead[1], tokensOfTest[1]);
+			assertEquals(tokensOfRead[2], tokensOfTest[1]);
+			assertEquals(db.updateNameTokens("__", Collections.emptyList()), new int[0]);
+			db.flush();
+			db.closeDatabase();
+
+			db = openStore(storage, databaseDirectory);
+			NameTokenIndex index = db.getNameTokenIndex();
+			assertEquals(index.getTokens("testOrder"), tokensOfTest);
+			assertEquals(index.getTokens("readOrderOrder"), tokensOfRead);
+			assertEquals(index.getTokens("__"), new int[0]);
+			assertEquals(index.getTokenIndex("order"), tokensOfTest[1]);
+			assertEquals(index.getToken(tokensOfRead[0]), "read");
+			assertEquals(index.getToken(tokensOfTest[0]), "test");
+
+			db.deleteTestcase(db.getTestCaseFromDB("testOrder"));
+			assertNull(index.getTokens("testOrder"));
+			db.flush();
+			db.closeDatabase();
+
+			db = openStore(storage, databaseDirectory);
+			assertNull(db.getNameTokenIndex().getTokens("testOrder"));
+			assertEquals(db.getNameTokenIndex().getTokens("readOrderOrder"), tokensOfRead);
+			db.closeDatabase();
+		} finally {
+			DatabaseConnectorTest.deleteRecursively(databaseDirectory);
+		}
+	}
+
+	private static IMetricStore openStore(String storage, File databaseDirectory) {
+		List<MetricsBase<?>> metrics = new ArrayList<MetricsBase<?>>();
+		if (storage.equals("h2")) {
+			return new DatabaseConnector(databaseDirectory.getPath(), metrics, name -> new TestCase(name, new ArrayList<MetricsBase<?>>()));
+		}
+		return new MVStoreConnector(databaseDirectory.getPath(), metrics, name -> new TestCase(name, new ArrayList<MetricsBase<?>>()));
+	}
+}
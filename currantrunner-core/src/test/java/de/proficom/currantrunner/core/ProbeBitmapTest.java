@@ -0,0 +1,122 @@
+package de.proficom.currantrunner.core;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.testng.annotations.Test;
+
+/**
+ * Compare {@link ProbeBitmap} with a plain set of probes, with array and bitmap
+ * containers
+ */
+public class ProbeBitmapTest {
+	private static final int NO_OF_RANDOM_SETS = 30;
+
+	@Test
+	public void testAddAndRemove() {
+		Random random = new Random(42);
+		for (int idxRandom = 0; idxRandom < NO_OF_RANDOM_SETS; idxRandom++) {
+			TreeSet<Long> expected = new TreeSet<Long>();
+			ProbeBitmap bitmap = createRandom(random, expected);
+			assertBitmap(bitmap, expected);
+
+			int classIdx = random.nextInt(8);
+			bitmap.remove(classIdx);
+			expected.subSet((long) classIdx * 65536, (long) (classIdx + 1) * 65536).clear();
+			assertBitmap(bitmap, expected);
+		}
+	}
+
+	@Test
+	public void testOrAndAndNot() {
+		Random random = new Random(43);
+		for (int idxRandom = 0; idxRandom < NO_OF_RANDOM_SETS; idxRandom++) {
+			TreeSet<Long> expected = new TreeSet<Long>();
+			TreeSet<Long> expectedOther = new TreeSet<Long>();
+			ProbeBitmap bitmap = createRandom(random, expected);
+			ProbeBitmap other = createRandom(random, expectedOther);
+
+			TreeSet<Long> difference = new TreeSet<Long>(expected);
+			difference.removeAll(expectedOther);
+			assertEquals(bitmap.andNotCardinality(other), difference.size());
+			assertEquals(bitmap.andNotCardinality(new ProbeBitmap()), expected.size());
+			assertEquals(bitmap.andNotCardinality(bitmap), 0);
+
+			// Union doesn't modify the other set
+			bitmap.or(other);
+			expected.addAll(expectedOther);
+			assertBitmap(bitmap, expected);
+			assertBitmap(other, expectedOther);
+		}
+	}
+
+	@Test
+	public void testEncodeRoundTrip() {
+		Random random = new Random(44);
+		for (int idxRandom = 0; idxRandom < NO_OF_RANDOM_SETS; idxRandom++) {
+			TreeSet<Long> expected = new TreeSet<Long>();
+			ProbeBitmap bitmap = createRandom(random, expected);
+			assertBitmap(ProbeBitmap.decode(bitmap.encode()), expected);
+		}
+		assertEquals(new ProbeBitmap().encode().length, 0);
+		assertBitmap(ProbeBitmap.decode(new byte[0]), new TreeSet<Long>());
+	}
+
+	/**
+	 * Two array containers of a class are converted to a bitmap when their union
+	 * exceeds 4096 probes
+	 */
+	@Test
+	public void testArrayToBitmap() {
+		boolean[] evenProbes = new boolean[8000];
+		boolean[] oddProbes = new boolean[8000];
+		TreeSet<Long> expected = new TreeSet<Long>();
+		for (int idxProbe = 0; idxProbe < 8000; idxProbe++) {
+			(idxProbe % 2 == 0 ? evenProbes : oddProbes)[idxProbe] = true;
+			expected.add(65536L * 3 + idxProbe);
+		}
+		ProbeBitmap bitmap = new ProbeBitmap();
+		bitmap.add(3, evenProbes);
+		bitmap.add(3, oddProbes);
+		assertBitmap(bitmap, expected);
+		assertEquals(bitmap.getNoOfClasses(), 1);
+		assertBitmap(ProbeBitmap.decode(bitmap.encode()), expected);
+	}
+
+	/**
+	 * Create a random set of probes, small and large classes
+	 */
+	private static ProbeBitmap createRandom(Random random, TreeSet<Long> expected) {
+		ProbeBitmap bitmap = new ProbeBitmap();
+		int noOfAdds = 1 + random.nextInt(6);
+		for (int idxAdd = 0; idxAdd < noOfAdds; idxAdd++) {
+			int classIdx = random.nextInt(8);
+			boolean[] probes = new boolean[random.nextBoolean() ? 1 + random.nextInt(100) : 5000 + random.nextInt(20000)];
+			double density = random.nextDouble();
+			for (int idxProbe = 0; idxProbe < probes.length; idxProbe++) {
+				if (random.nextDouble() < density) {
+					probes[idxProbe] = true;
+					expected.add((long) classIdx * 65536 + idxProbe);
+				}
+			}
+			bitmap.add(classIdx, probes);
+		}
+		return bitmap;
+	}
+
+	private static void assertBitmap(ProbeBitmap bitmap, TreeSet<Long> expected) {
+		List<Long> probes = new ArrayList<Long>();
+		bitmap.forEach(probes::add);
+		assertEquals(probes, new ArrayList<Long>(expected));
+		assertEquals(bitmap.getCardinality(), expected.size());
+		TreeSet<Long> classes = new TreeSet<Long>();
+		for (long probe : expected) {
+			classes.add(probe / 65536);
+		}
+		assertEquals(bitmap.getNoOfClasses(), classes.size());
+	}
+}
@@ -0,0 +1,149 @@
+package de.proficom.currantrunner.core;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import de.proficom.currantrunner.metrics.MetricResultHistory;
+import de.proficom.currantrunner.metrics.MetricsBase;
+
+/**
+ * Retention of stored runs: old runs are removed, older runs keep only
+ * failures and the last results of every test.
+ */
+public class TestRunTest {
+	private static final String PARAM_MAX_RUNS_KEPT = "currantRunner.maxRunsKept";
+	private static final String PARAM_DETAIL_RUNS = "currantRunner.detailRuns";
+	private static final int NO_OF_RUNS = 10;
+
+	private File databaseDirectory;
+
+	@BeforeMethod
+	public void createDirectory() throws IOException {
+		databaseDirectory = Files.createTempDirectory("currantrunner").toFile();
+		System.setProperty(PARAM_MAX_RUNS_KEPT, "8");
+		System.setProperty(PARAM_DETAIL_RUNS, "2");
+	}
+
+	@AfterMethod
+	public void deleteDirectory() {
+		System.clearProperty(PARAM_MAX_RUNS_KEPT);
+		System.clearProperty(PARAM_DETAIL_RUNS);
+		DatabaseConnectorTest.deleteRecursively(databaseDirectory);
+	}
+
+	@DataProvider
+	public Object[][] storage() {
+		return new Object[][] { { "h2" }, { "mvstore" } };
+	}
+
+	@Test(dataProvider = "storage")
+	public void testRetention(String storage) throws SQLException {
+		IMetricStore db = openStore(storage);
+		for (int runId = 1; runId <= NO_OF_RUNS; runId++) {
+			db.beginRun();
+			db.recordResult("passing", TestCase.Results.PASSED, Duration.ofMillis(runId));
+			db.recordResult("failing", (runId == 5) ? TestCase.Results.FAILED : TestCase.Results.PASSED, Duration.ofMillis(runId));
+			db.recordResult("skipped", TestCase.Results.SKIPPED, Duration.ZERO);
+			if (runId == 3 || runId == 4) {
+				db.recordResult("rare", (runId == 3) ? TestCase.Results.PASSED : TestCase.Results.FAILED, Duration.ofMillis(runId));
+			}
+			db.endRun();
+		}
+		db.closeDatabase();
+
+		// Runs 1 and 2 exceed the retention, runs 9 and 10 keep all results. Older
+		// runs keep failures and the last 3 results of every test.
+		List<String> expectedResults = Arrays.asList("3 rare PASSED", "4 rare FAILED", "5 failing FAILED", "8 failing PASSED",
+				"8 passing PASSED", "9 failing PASSED", "9 passing PASSED", "9 skipped SKIPPED", "10 failing PASSED",
+				"10 passing PASSED", "10 skipped SKIPPED");
+		List<Long> expectedRuns = Arrays.asList(3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L);
+		if (storage.equals("h2")) {
+			assertEquals(readRunsOfDatabase(), expectedRuns);
+			assertEquals(readResultsOfDatabase(), expectedResults);
+		} else {
+			MVStore store = new MVStore.Builder().fileName(databaseDirectory.getPath() + "/MetricStore.mv").readOnly().open();
+			MVMap<Long, long[]> runs = store.openMap(MVStoreConnector.MAP_RUNS);
+			MVMap<Long, byte[]> results = store.openMap(MVStoreConnector.MAP_RESULTS);
+			assertEquals(new ArrayList<Long>(runs.keySet()), expectedRuns);
+			List<String> storedResults = new ArrayList<String>();
+			for (Map.Entry<Long, byte[]> entry : results.entrySet()) {
+				for (String result : new TreeSet<String>(toStrings(entry.getKey(), MVStoreConnector.decodeResults(entry.getValue())))) {
+					storedResults.add(result);
+				}
+			}
+			store.close();
+			assertEquals(storedResults, expectedResults);
+		}
+
+		// The history is read from the kept results
+		db = openStore(storage);
+		assertEquals(db.getTestCaseFromDB("rare").getAllMetrics().get(0).getMetricValue(), "0,1");
+		db.closeDatabase();
+	}
+
+	private IMetricStore openStore(String storage) {
+		List<MetricsBase<?>> metrics = new ArrayList<MetricsBase<?>>();
+		metrics.add(new MetricResultHistory(3));
+		if (storage.equals("h2")) {
+			return new DatabaseConnector(databaseDirectory.getPath(), metrics, name -> new TestCase(name, Arrays.asList(new MetricResultHistory(3))));
+		}
+		return new MVStoreConnector(databaseDirectory.getPath(), metrics, name -> new TestCase(name, Arrays.asList(new MetricResultHistory(3))));
+	}
+
+	private static List<String> toStrings(long runId, List<TestRun.Result> results) {
+		List<String> strResults = new ArrayList<String>();
+		for (TestRun.Result result : results) {
+			strResults.add(runId + " " + result.getTestname() + " " + result.getResult());
+		}
+		return strResults;
+	}
+
+	private List<Long> readRunsOfDatabase() throws SQLException {
+		List<Long> runIds = new ArrayList<Long>();
+		try (Connection conn = openConnection();
+				Statement stmt = conn.createStatement();
+				ResultSet results = stmt.executeQuery("SELECT run_id FROM RUNS ORDER BY run_id")) {
+			while (results.next()) {
+				runIds.add(results.getLong(1));
+			}
+		}
+		return runIds;
+	}
+
+	private List<String> readResultsOfDatabase() throws SQLException {
+		List<String> storedResults = new ArrayList<String>();
+		try (Connection conn = openConnection();
+				Statement stmt = conn.createStatement();
+				ResultSet results = stmt.executeQuery("SELECT run_id, testname, result FROM RESULTS ORDER BY run_id, testname")) {
+			while (results.next()) {
+				storedResults.add(results.getLong(1) + " " + results.getString(2) + " " + TestCase.Results.values()[results.getInt(3)]);
+			}
+		}
+		return storedResults;
+	}
+
+	private Connection openConnection() throws SQLException {
+		return DriverManager.getConnection("jdbc:h2:" + databaseDirectory.getPath() + "/Database", "currantrunner", "!proficomMLTestNG!");
+	}
+}
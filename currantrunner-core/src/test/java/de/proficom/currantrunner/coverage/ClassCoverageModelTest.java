@@ -0,0 +1,133 @@
+package de.proficom.currantrunner.coverage;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.jacoco.core.JaCoCo;
+import org.jacoco.core.analysis.Analyzer;
+import org.jacoco.core.analysis.CoverageBuilder;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.internal.InputStreams;
+import org.jacoco.core.internal.data.CRC64;
+import org.jacoco.core.internal.flow.ClassProbesAdapter;
+import org.jacoco.core.internal.flow.ClassProbesVisitor;
+import org.jacoco.core.internal.flow.MethodProbesVisitor;
+import org.jacoco.core.internal.instr.InstrSupport;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import de.proficom.currantrunner.core.CurrantRunner;
+import de.proficom.currantrunner.core.DatabaseConnector;
+import de.proficom.currantrunner.core.MVStoreConnector;
+import de.proficom.currantrunner.core.ResultHistory;
+import de.proficom.currantrunner.handler.CoverageCounters;
+import de.proficom.currantrunner.handler.HandlerCodeCoverage;
+
+/**
+ * Regression check of {@link ClassCoverageModelBuilder}: the coverage replayed
+ * by the model must be identical to JaCoCo's analyzer for any probe array. The
+ * model copies JaCoCo's internal analysis, so this fails if JaCoCo is updated
+ * without checking the builder.
+ */
+public class ClassCoverageModelTest {
+	private static final int NO_OF_RANDOM_PROBES = 50;
+
+	@Test
+	public void testSupportedVersion() {
+		assertTrue(ClassCoverageModelBuilder.isSupported(),
+				"ClassCoverageModelBuilder has to be checked against JaCoCo " + JaCoCo.VERSION);
+	}
+
+	@DataProvider
+	public Object[][] analyzedClasses() {
+		// Classes with lambdas, try-with-resources, synchronized blocks and switches
+		return new Object[][] { { CurrantRunner.class }, { DatabaseConnector.class }, { MVStoreConnector.class },
+				{ ResultHistory.class }, { HandlerCodeCoverage.class }, { ClassCoverageModelBuilder.class },
+				{ CoverageAnalysisCache.class } };
+	}
+
+	@Test(dataProvider = "analyzedClasses")
+	public void testReplayEqualsAnalyzer(Class<?> analyzedClass) throws IOException {
+		String className = analyzedClass.getName().replace('.', '/');
+		byte[] classBytes = readClass(className);
+		ClassCoverageModel model = ClassCoverageModelBuilder.build(classBytes);
+
+		for (boolean[] probes : createProbes(getNoOfProbes(classBytes))) {
+			CoverageCounters replayed = new CoverageCounters();
+			model.addCoverage(probes, replayed);
+
+			CoverageCounters analyzed = new CoverageCounters();
+			ExecutionDataStore dataStore = new ExecutionDataStore();
+			dataStore.put(new ExecutionData(CRC64.classId(classBytes), className, probes));
+			CoverageBuilder coverageBuilder = new CoverageBuilder();
+			new Analyzer(dataStore, coverageBuilder).analyzeClass(classBytes, className);
+			analyzed.updateCounters(coverageBuilder);
+
+			String message = className + " with probes " + Arrays.toString(probes);
+			assertEquals(replayed.getCoveredInstructions(), analyzed.getCoveredInstructions(), message);
+			assertEquals(replayed.getCoveredBranches(), analyzed.getCoveredBranches(), message);
+			assertEquals(replayed.getCoveredComplexity(), analyzed.getCoveredComplexity(), message);
+		}
+	}
+
+	/**
+	 * Create probe arrays with every single probe, all probes and random probes
+	 *
+	 * @param noOfProbes number of probes of class
+	 * @return probe arrays with at least one executed probe
+	 */
+	private static List<boolean[]> createProbes(int noOfProbes) {
+		List<boolean[]> allProbes = new ArrayList<boolean[]>();
+		for (int idxProbe = 0; idxProbe < noOfProbes; idxProbe++) {
+			boolean[] probes = new boolean[noOfProbes];
+			probes[idxProbe] = true;
+			allProbes.add(probes);
+		}
+
+		boolean[] probes = new boolean[noOfProbes];
+		Arrays.fill(probes, true);
+		allProbes.add(probes);
+
+		Random random = new Random(noOfProbes);
+		for (int idxRandom = 0; idxRandom < NO_OF_RANDOM_PROBES; idxRandom++) {
+			probes = new boolean[noOfProbes];
+			for (int idxProbe = 0; idxProbe < noOfProbes; idxProbe++) {
+				probes[idxProbe] = random.nextBoolean();
+			}
+			probes[random.nextInt(noOfProbes)] = true;
+			allProbes.add(probes);
+		}
+		return allProbes;
+	}
+
+	private static int getNoOfProbes(byte[] classBytes) {
+		final int[] noOfProbes = new int[1];
+		ClassProbesVisitor counter = new ClassProbesVisitor() {
+			@Override
+			public MethodProbesVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+				return null;
+			}
+
+			@Override
+			public void visitTotalProbeCount(int count) {
+				noOfProbes[0] = count;
+			}
+		};
+		InstrSupport.classReaderFor(classBytes).accept(new ClassProbesAdapter(counter, false), 0);
+		return noOfProbes[0];
+	}
+
+	private static byte[] readClass(String className) throws IOException {
+		try (InputStream classResource = ClassCoverageModelTest.class.getResourceAsStream('/' + className + ".class")) {
+			return InputStreams.readFully(classResource);
+		}
+	}
+}
@@ -0,0 +1,248 @@
+package de.proficom.currantrunner.handler;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.testng.annotations.Test;
+
+import de.proficom.currantrunner.core.IMetricStore;
+import de.proficom.currantrunner.core.MVStoreConnector;
+import de.proficom.currantrunner.core.TestCase;
+import de.proficom.currantrunner.metrics.MetricUniqueness;
+import de.proficom.currantrunner.metrics.MetricsBase;
+
+/**
+ * Compare {@link UniquenessCalculation} with the pairwise cosine similarity of
+ * dense vectors, as it was calculated before
+ */
+public class UniquenessCalculationTest {
+	private final static String[] WORDS = { "Order", "Customer", "Parser", "Json", "Http", "Client", "Valid", "Invalid",
+			"Empty", "Read", "Write", "Equals", "Same", "Fail", "Exception", "Testing", "Check", "Value", "Value", "URL" };
+
+	private final static double DELTA = 1e-12;
+
+	@Test
+	public void testTokenizeCamelCase() {
+		UniquenessCalculation uniqueness = new UniquenessCalculation();
+		assertEquals(uniqueness.tokenizeCamelCase("test_case_number12Package"), Arrays.asList("test", "case", "number", "12", "package"));
+		assertEquals(uniqueness.tokenizeCamelCase("thisTestCaseName"), Arrays.asList("this", "test", "case", "name"));
+		assertEquals(uniqueness.tokenizeCamelCase("checkSameFailure"), Arrays.asList("test", "equal", "error"));
+		assertEquals(uniqueness.tokenizeCamelCase("de.example.HTTPClient"), Arrays.asList("de", "example", "http", "client"));
+		assertEquals(uniqueness.tokenizeCamelCase("__"), Collections.emptyList());
+	}
+
+	@Test
+	public void testSmallSuites() {
+		assertUniqueness(new HashSet<String>());
+		assertUniqueness(new HashSet<String>(Arrays.asList("testOrder")));
+		assertUniqueness(new HashSet<String>(Arrays.asList("testOrder", "testOrderParser")));
+		// Names without tokens and with repeated tokens
+		assertUniqueness(new HashSet<String>(Arrays.asList("testOrder", "__", "orderOrderOrder", "test_order_Order", "...")));
+	}
+
+	@Test
+	public void testRandomSuites() {
+		Random random = new Random(42);
+		for (int noOfTests = 3; noOfTests <= 300; noOfTests *= 2) {
+			assertUniqueness(createTestnames(random, noOfTests));
+		}
+	}
+
+	/**
+	 * An instance only processes added and removed names, the uniqueness must be
+	 * the same as of a new calculation
+	 */
+	@Test
+	public void testIncrementalUpdates() {
+		Random random = new Random(43);
+		UniquenessCalculation uniqueness = new UniquenessCalculation();
+		Set<String> testnames = createTestnames(random, 200);
+		assertEquals(uniqueness.updateTestcaseNames(testnames), 200);
+		assertUniqueness(uniqueness, testnames);
+		assertEquals(uniqueness.updateTestcaseNames(testnames), 0);
+
+		for (int idxSuite = 0; idxSuite < 20; idxSuite++) {
+			Set<String> nextTestnames = new HashSet<String>();
+			for (String testname : testnames) {
+				if (random.nextInt(10) > 0) {
+					nextTestnames.add(testname);
+				}
+			}
+			Set<String> addedTestnames = createTestnames(random, random.nextInt(30));
+			nextTestnames.addAll(addedTestnames);
+			int expectedChanges = 0;
+			for (String testname : testnames) {
+				expectedChanges += nextTestnames.contains(testname) ? 0 : 1;
+			}
+			for (String testname : nextTestnames) {
+				expectedChanges += testnames.contains(testname) ? 0 : 1;
+			}
+
+			assertEquals(uniqueness.updateTestcaseNames(nextTestnames), expectedChanges);
+			assertUniqueness(uniqueness, nextTestnames);
+			testnames = nextTestnames;
+		}
+
+		// Down to a single name and back again
+		uniqueness.updateTestcaseNames(Collections.singleton("testOrder"));
+		assertUniqueness(uniqueness, Collections.singleton("testOrder"));
+		uniqueness.updateTestcaseNames(testnames);
+		assertUniqueness(uniqueness, testnames);
+	}
+
+	/**
+	 * The handler takes the tokens from the store, the stored tokens are used by
+	 * the next process
+	 */
+	@Test
+	public void testHandlerWithStoredTokens() throws IOException {
+		Random random = new Random(44);
+		File databaseDirectory = Files.createTempDirectory("currantrunner").toFile();
+		try {
+			List<String> testnames = new ArrayList<String>(createTestnames(random, 100));
+			IMetricStore db = openStore(databaseDirectory);
+			HandlerUniqueness handler = new HandlerUniqueness();
+			handler.onTestsetStarted(testnames, db);
+			assertHandler(handler, testnames);
+			for (String testname : testnames) {
+				assertEquals(db.getNameTokenIndex().getTokens(testname).length,
+						new UniquenessCalculation().tokenizeCamelCase(testname).size(), testname);
+			}
+
+			List<String> nextTestnames = new ArrayList<String>(testnames.subList(20, testnames.size()));
+			nextTestnames.addAll(createTestnames(random, 10));
+			handler.onTestsetStarted(nextTestnames, db);
+			assertHandler(handler, nextTestnames);
+			db.flush();
+			db.closeDatabase();
+
+			db = openStore(databaseDirectory);
+			handler.onTestsetStarted(testnames, db);
+			assertHandler(handler, testnames);
+			db.closeDatabase();
+		} finally {
+			for (File file : databaseDirectory.listFiles()) {
+				file.delete();
+			}
+			databaseDirectory.delete();
+		}
+	}
+
+	/**
+	 * Create distinct test names of random words
+	 */
+	static Set<String> createTestnames(Random random, int noOfTests) {
+		Set<String> testnames = new LinkedHashSet<String>();
+		while (testnames.size() < noOfTests) {
+			StringBuilder testname = new StringBuilder("pkg" + random.nextInt(5) + ".");
+			int noOfWords = random.nextInt(6);
+			for (int idxWord = 0; idxWord < noOfWords; idxWord++) {
+				testname.append(WORDS[random.nextInt(WORDS.length)]);
+				if (random.nextInt(4) == 0) {
+					testname.append('_');
+				}
+			}
+			testnames.add(testname.toString());
+		}
+		return testnames;
+	}
+
+	private static void assertUniqueness(UniquenessCalculation uniqueness, Set<String> testnames) {
+		Map<String, Double> expected = calculateReference(testnames);
+		assertEquals(uniqueness.getNoOfTestcaseNames(), testnames.size());
+		for (Map.Entry<String, Double> entry : expected.entrySet()) {
+			assertNotNull(uniqueness.getUniqueness(entry.getKey()), entry.getKey());
+			assertEquals(uniqueness.getUniqueness(entry.getKey()), entry.getValue(), DELTA, entry.getKey());
+		}
+	}
+
+	private static void assertHandler(HandlerUniqueness handler, List<String> testnames) {
+		Map<String, Double> expected = calculateReference(new HashSet<String>(testnames));
+		for (String testname : testnames) {
+			List<MetricsBase<?>> metrics = new ArrayList<MetricsBase<?>>(handler.getRunnersMetrics());
+			TestCase tc = new TestCase(testname, metrics);
+			handler.onTestsetStarted(tc, testnames);
+			assertEquals(((MetricUniqueness) metrics.get(0)).getDoubleValue(), expected.get(testname), DELTA, testname);
+		}
+	}
+
+	private static IMetricStore openStore(File databaseDirectory) {
+		return new MVStoreConnector(databaseDirectory.getPath(), new ArrayList<MetricsBase<?>>(),
+				name -> new TestCase(name, new ArrayList<MetricsBase<?>>()));
+	}
+
+	private static void assertUniqueness(Set<String> testnames) {
+		Map<String, Double> expected = calculateReference(testnames);
+		HashMap<String, Double> actual = UniquenessCalculation.calculateUniqueness(testnames);
+		assertEquals(actual.keySet(), expected.keySet());
+		for (Map.Entry<String, Double> entry : expected.entrySet()) {
+			assertNotNull(actual.get(entry.getKey()), entry.getKey());
+			assertEquals(actual.get(entry.getKey()), entry.getValue(), DELTA, entry.getKey());
+		}
+	}
+
+	/**
+	 * Mean of 1 - cosine similarity to all other names with dense vectors over
+	 * all tokens of all names
+	 */
+	static Map<String, Double> calculateReference(Set<String> testnames) {
+		UniquenessCalculation tokenizer = new UniquenessCalculation();
+		Map<String, List<String>> tokensOfNames = new HashMap<String, List<String>>();
+		Set<String> tokenSet = new HashSet<String>();
+		for (String testname : testnames) {
+			tokensOfNames.put(testname, tokenizer.tokenizeCamelCase(testname));
+			tokenSet.addAll(tokensOfNames.get(testname));
+		}
+		List<String> allTokens = new ArrayList<String>(tokenSet);
+		Map<String, int[]> vectors = new HashMap<String, int[]>();
+		for (Map.Entry<String, List<String>> entry : tokensOfNames.entrySet()) {
+			int[] vector = new int[allTokens.size()];
+			for (int idxToken = 0; idxToken < vector.length; idxToken++) {
+				vector[idxToken] = Collections.frequency(entry.getValue(), allTokens.get(idxToken));
+			}
+			vectors.put(entry.getKey(), vector);
+		}
+
+		Map<String, Double> uniquenesses = new HashMap<String, Double>();
+		for (Map.Entry<String, int[]> vector1 : vectors.entrySet()) {
+			double sumOfSimilarity = 0;
+			for (Map.Entry<String, int[]> vector2 : vectors.entrySet()) {
+				if (!vector1.getKey().equals(vector2.getKey())) {
+					sumOfSimilarity += 1.0 - cosineSimilarity(vector1.getValue(), vector2.getValue());
+				}
+			}
+			if (vectors.size() > 2) {
+				sumOfSimilarity /= vectors.size() - 1.0;
+			}
+			uniquenesses.put(vector1.getKey(), sumOfSimilarity);
+		}
+		return uniquenesses;
+	}
+
+	private static double cosineSimilarity(int[] v1, int[] v2) {
+		double dotProduct = 0;
+		double squaredLength1 = 0;
+		double squaredLength2 = 0;
+		for (int idx = 0; idx < v1.length; idx++) {
+			dotProduct += v1[idx] * v2[idx];
+			squaredLength1 += v1[idx] * v1[idx];
+			squaredLength2 += v2[idx] * v2[idx];
+		}
+		double denominator = Math.sqrt(squaredLength1) * Math.sqrt(squaredLength2);
+		return (denominator == 0) ? 0.0 : dotProduct / denominator;
+	}
+}
@@ -0,0 +1,110 @@
+package de.proficom.currantrunner.prioritization;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import de.proficom.currantrunner.core.ProbeBitmap;
+import de.proficom.currantrunner.core.TestCase;
+
+public class AdditionalCoverageStrategyTest {
+	private CoverageStore store;
+
+	@BeforeMethod
+	public void openStore() throws IOException {
+		store = new CoverageStore();
+	}
+
+	@AfterMethod
+	public void closeStore() {
+		store.close();
+	}
+
+	@Test
+	public void testOrder() {
+		store.addCoverage("test1", "A", new int[] { 0, 1, 2, 3 });
+		store.addCoverage("test2", "A", new int[] { 0, 1, 2, 3 });
+		store.addCoverage("test3", "B", new int[] { 0, 1 });
+		store.addCoverage("test4", "A", new int[] { 3 }, "B", new int[] { 2 });
+		List<TestCase> testcases = CoverageStore.createTestcases("test1", "test2", "test3", "test4", "test5");
+		Map<TestCase, Double> failureProbability = new HashMap<TestCase, Double>();
+		double[] probabilities = { 0.1, 0.9, 0.1, 0.5, 0.3 };
+		for (int idxTest = 0; idxTest < testcases.size(); idxTest++) {
+			failureProbability.put(testcases.get(idxTest), probabilities[idxTest]);
+		}
+
+		// test1 is a duplicate of test2, test5 has no probes. Both are ordered by
+		// their probability after the tests adding coverage.
+		List<TestCase> orderedTests = new AdditionalCoverageStrategy().prioritize(testcases, failureProbability, store.getStore());
+		assertEquals(CoverageStore.getTestnames(orderedTests), Arrays.asList("test2", "test4", "test3", "test5", "test1"));
+	}
+
+	/**
+	 * The lazy greedy selection must schedule the same tests as the plain greedy
+	 * one that calculates the additional coverage of all tests in every round
+	 */
+	@Test
+	public void testEqualsPlainGreedy() {
+		Random random = new Random(7);
+		List<String> testnames = new ArrayList<String>();
+		for (int idxTest = 0; idxTest < 60; idxTest++) {
+			String testname = "test" + idxTest;
+			testnames.add(testname);
+			int noOfClasses = random.nextInt(4);
+			Object[] classProbes = new Object[2 * noOfClasses];
+			for (int idxClass = 0; idxClass < noOfClasses; idxClass++) {
+				classProbes[2 * idxClass] = "C" + random.nextInt(6);
+				classProbes[2 * idxClass + 1] = random.ints(1 + random.nextInt(20), 0, 100).toArray();
+			}
+			store.addCoverage(testname, classProbes);
+		}
+		List<TestCase> testcases = CoverageStore.createTestcases(testnames.toArray(new String[0]));
+		Map<TestCase, Double> failureProbability = new HashMap<TestCase, Double>();
+		for (TestCase tc : testcases) {
+			failureProbability.put(tc, (double) random.nextInt(5) / 4);
+		}
+
+		List<TestCase> orderedTests = new AdditionalCoverageStrategy().prioritize(testcases, failureProbability, store.getStore());
+		List<TestCase> expectedTests = orderByPlainGreedy(testcases, failureProbability, store.getStore().getProbeBitmaps(testnames));
+		assertEquals(CoverageStore.getTestnames(orderedTests).subList(0, expectedTests.size()), CoverageStore.getTestnames(expectedTests));
+		assertEquals(orderedTests.size(), testcases.size());
+	}
+
+	/**
+	 * @return tests adding coverage, in the order of the greedy selection
+	 */
+	private static List<TestCase> orderByPlainGreedy(List<TestCase> testcases, Map<TestCase, Double> failureProbability,
+			Map<String, ProbeBitmap> probesOfTests) {
+		List<TestCase> remainingTests = new ArrayList<TestCase>(testcases);
+		List<TestCase> orderedTests = new ArrayList<TestCase>();
+		ProbeBitmap coveredProbes = new ProbeBitmap();
+		while (true) {
+			TestCase bestTest = null;
+			double bestScore = 0.0;
+			for (TestCase tc : remainingTests) {
+				ProbeBitmap probes = probesOfTests.get(tc.getTestname());
+				double score = (probes != null) ? (failureProbability.get(tc) + 0.01) * probes.andNotCardinality(coveredProbes) : 0.0;
+				if (score > bestScore) {
+					bestTest = tc;
+					bestScore = score;
+				}
+			}
+			if (bestTest == null) {
+				return orderedTests;
+			}
+			orderedTests.add(bestTest);
+			remainingTests.remove(bestTest);
+			coveredProbes.or(probesOfTests.get(bestTest.getTestname()));
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package de.proficom.currantrunner.prioritization;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import de.proficom.currantrunner.core.MVStoreConnector;
+import de.proficom.currantrunner.core.TestCase;
+import de.proficom.currantrunner.metrics.MetricsBase;
+
+/**
+ * Store in a temporary directory with the coverage of tests, used by the tests
+ * of the strategies
+ */
+class CoverageStore {
+	private final File databaseDirectory;
+	private final MVStoreConnector db;
+
+	CoverageStore() throws IOException {
+		databaseDirectory = Files.createTempDirectory("currantrunner").toFile();
+		db = new MVStoreConnector(databaseDirectory.getPath(), new ArrayList<MetricsBase<?>>(),
+				name -> new TestCase(name, new ArrayList<MetricsBase<?>>()));
+	}
+
+	MVStoreConnector getStore() {
+		return db;
+	}
+
+	/**
+	 * Store the probes of a test
+	 *
+	 * @param testname    name of test case
+	 * @param classProbes class name followed by indices of executed probes, e.g.
+	 *                    <code>"A", new int[] { 0, 1 }</code>
+	 */
+	void addCoverage(String testname, Object... classProbes) {
+		SortedMap<String, Long> touchedClasses = new TreeMap<String, Long>();
+		Map<String, boolean[]> executedProbes = new HashMap<String, boolean[]>();
+		for (int idx = 0; idx < classProbes.length; idx += 2) {
+			String className = (String) classProbes[idx];
+			int[] probeIndices = (int[]) classProbes[idx + 1];
+			boolean[] probes = new boolean[100];
+			for (int probeIdx : probeIndices) {
+				probes[probeIdx] = true;
+			}
+			touchedClasses.put(className, (long) className.hashCode());
+			executedProbes.put(className, probes);
+		}
+		db.updateFootprint(testname, touchedClasses, executedProbes);
+	}
+
+	void close() {
+		db.closeDatabase();
+		deleteRecursively(databaseDirectory);
+	}
+
+	/**
+	 * @param testnames names of test cases
+	 * @return test cases without metrics
+	 */
+	static List<TestCase> createTestcases(String... testnames) {
+		List<TestCase> testcases = new ArrayList<TestCase>();
+		for (String testname : testnames) {
+			testcases.add(new TestCase(testname, new ArrayList<MetricsBase<?>>()));
+		}
+		return testcases;
+	}
+
+	/**
+	 * @param testcases test cases
+	 * @return names of test cases in their order
+	 */
+	static List<String> getTestnames(List<TestCase> testcases) {
+		List<String> testnames = new ArrayList<String>();
+		for (TestCase tc : testcases) {
+			testnames.add(tc.getTestname());
+		}
+		return testnames;
+	}
+
+	private static void deleteRecursively(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				deleteRecursively(child);
+			}
+		}
+		file.delete();
+	}
+}
@@ -0,0 +1,80 @@
+package de.proficom.currantrunner.prioritization;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import de.proficom.currantrunner.core.TestCase;
+
+public class DiversityStrategyTest {
+	private CoverageStore store;
+
+	@BeforeMethod
+	public void openStore() throws IOException {
+		store = new CoverageStore();
+	}
+
+	@AfterMethod
+	public void closeStore() {
+		store.close();
+	}
+
+	/**
+	 * test2 is a duplicate of test1 and drops back, test4 has no sketch and counts
+	 * as distant
+	 */
+	@Test
+	public void testOrder() {
+		store.addCoverage("test1", "A", new int[] { 0, 1, 2, 3, 4, 5, 6, 7 });
+		store.addCoverage("test2", "A", new int[] { 0, 1, 2, 3, 4, 5, 6, 7 });
+		store.addCoverage("test3", "B", new int[] { 0, 1, 2, 3, 4, 5, 6, 7 });
+		List<TestCase> testcases = CoverageStore.createTestcases("test1", "test2", "test3", "test4");
+		Map<TestCase, Double> failureProbability = createProbabilities(testcases, 0.9, 0.8, 0.1, 0.5);
+
+		List<TestCase> orderedTests = new DiversityStrategy().prioritize(testcases, failureProbability, store.getStore());
+		assertEquals(CoverageStore.getTestnames(orderedTests), Arrays.asList("test1", "test4", "test3", "test2"));
+	}
+
+	/**
+	 * A test that is similar to a scheduled test drops behind a distant test with
+	 * a lower probability
+	 */
+	@Test
+	public void testSimilarTest() {
+		int[] probes = new int[64];
+		int[] similarProbes = new int[64];
+		for (int idxProbe = 0; idxProbe < 64; idxProbe++) {
+			probes[idxProbe] = idxProbe;
+			similarProbes[idxProbe] = idxProbe + 2;
+		}
+		store.addCoverage("test1", "A", probes);
+		store.addCoverage("test2", "A", similarProbes);
+		store.addCoverage("test3", "B", probes);
+		List<TestCase> testcases = CoverageStore.createTestcases("test1", "test2", "test3");
+		Map<TestCase, Double> failureProbability = createProbabilities(testcases, 0.9, 0.8, 0.3);
+
+		List<TestCase> orderedTests = new DiversityStrategy().prioritize(testcases, failureProbability, store.getStore());
+		assertEquals(CoverageStore.getTestnames(orderedTests), Arrays.asList("test1", "test3", "test2"));
+
+		// Without coverage the tests are ordered by their probability
+		orderedTests = new DiversityStrategy().prioritize(CoverageStore.createTestcases("test4", "test5"),
+				new HashMap<TestCase, Double>(), store.getStore());
+		assertEquals(CoverageStore.getTestnames(orderedTests), Arrays.asList("test4", "test5"));
+	}
+
+	private static Map<TestCase, Double> createProbabilities(List<TestCase> testcases, double... probabilities) {
+		Map<TestCase, Double> failureProbability = new HashMap<TestCase, Double>();
+		for (int idxTest = 0; idxTest < testcases.size(); idxTest++) {
+			failureProbability.put(testcases.get(idxTest), probabilities[idxTest]);
+		}
+		return failureProbability;
+	}
+}
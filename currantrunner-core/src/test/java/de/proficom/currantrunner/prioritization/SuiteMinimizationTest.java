@@ -0,0 +1,138 @@
+package de.proficom.currantrunner.prioritization;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import de.proficom.currantrunner.core.ProbeBitmap;
+import de.proficom.currantrunner.core.TestCase;
+import de.proficom.currantrunner.metrics.MetricResultLast;
+import de.proficom.currantrunner.metrics.MetricsBase;
+import de.proficom.currantrunner.metrics.MetricsDurationMilliSec;
+
+public class SuiteMinimizationTest {
+	private static final String TEST_CLASS = "com.example.ATest.";
+
+	private CoverageStore store;
+
+	@BeforeMethod
+	public void openStore() throws IOException {
+		store = new CoverageStore();
+	}
+
+	@AfterMethod
+	public void closeStore() {
+		store.close();
+	}
+
+	@Test
+	public void testKeptTests() {
+		// test1 is covered by the faster tests test2 and test3
+		store.addCoverage(TEST_CLASS + "test1", "X", range(0, 10));
+		store.addCoverage(TEST_CLASS + "test2", "X", range(0, 5));
+		store.addCoverage(TEST_CLASS + "test3", "X", range(5, 10));
+		// test4 covers only it's own test class
+		store.addCoverage(TEST_CLASS + "test4", "com/example/ATest", range(0, 3));
+		// test6 is affected by a changed class, test7 has failed last time
+		store.addCoverage(TEST_CLASS + "test6", "X", range(0, 1));
+		store.addCoverage(TEST_CLASS + "test7", "X", range(1, 2));
+		List<TestCase> testcases = new ArrayList<TestCase>();
+		long[] durations = { 100, 10, 10, 5, 5, 5, 5 };
+		for (int idxTest = 0; idxTest < durations.length; idxTest++) {
+			testcases.add(createTestcase(TEST_CLASS + "test" + (idxTest + 1), durations[idxTest], (idxTest == 6) ? "1" : "0"));
+		}
+
+		SuiteMinimization minimization = new SuiteMinimization(testcases, store.getStore(),
+				testname -> testname.equals(TEST_CLASS + "test6"));
+		assertEquals(minimization.getRedundantTests(), Collections.singleton(TEST_CLASS + "test1"));
+		assertEquals(minimization.getKeptTests().size(), 6);
+		assertEquals(minimization.getNoOfCoveredProbes(), 10);
+		assertEquals(minimization.getSavedTime(), Duration.ofMillis(100));
+		assertEquals(minimization.getTotalTime(), Duration.ofMillis(140));
+	}
+
+	/**
+	 * The kept tests cover all probes of the suite and contain all required tests.
+	 * No kept test is covered by the other kept tests, unless it's required.
+	 */
+	@Test
+	public void testRandomSuites() {
+		Random random = new Random(5);
+		for (int idxSuite = 0; idxSuite < 10; idxSuite++) {
+			List<TestCase> testcases = new ArrayList<TestCase>();
+			for (int idxTest = 0; idxTest < 40; idxTest++) {
+				String testname = TEST_CLASS + "suite" + idxSuite + "test" + idxTest;
+				int noOfClasses = 1 + random.nextInt(3);
+				Object[] classProbes = new Object[2 * noOfClasses];
+				for (int idxClass = 0; idxClass < noOfClasses; idxClass++) {
+					classProbes[2 * idxClass] = "C" + random.nextInt(5);
+					classProbes[2 * idxClass + 1] = random.ints(1 + random.nextInt(10), 0, 100).toArray();
+				}
+				store.addCoverage(testname, classProbes);
+				testcases.add(createTestcase(testname, 1 + random.nextInt(100), "0"));
+			}
+			Set<String> requiredTests = new HashSet<String>();
+			for (int idxRequired = 0; idxRequired < 3; idxRequired++) {
+				requiredTests.add(testcases.get(random.nextInt(testcases.size())).getTestname());
+			}
+
+			SuiteMinimization minimization = new SuiteMinimization(testcases, store.getStore(), requiredTests::contains);
+			Map<String, ProbeBitmap> probesOfTests = store.getStore().getProbeBitmaps(CoverageStore.getTestnames(testcases));
+			ProbeBitmap allProbes = new ProbeBitmap();
+			ProbeBitmap keptProbes = new ProbeBitmap();
+			for (TestCase tc : testcases) {
+				allProbes.or(probesOfTests.get(tc.getTestname()));
+				if (minimization.getKeptTests().contains(tc.getTestname())) {
+					keptProbes.or(probesOfTests.get(tc.getTestname()));
+				}
+			}
+			assertEquals(keptProbes.getCardinality(), allProbes.getCardinality());
+			assertEquals(allProbes.andNotCardinality(keptProbes), 0);
+			assertTrue(minimization.getKeptTests().containsAll(requiredTests));
+			assertEquals(minimization.getKeptTests().size() + minimization.getRedundantTests().size(), testcases.size());
+
+			for (String testname : minimization.getKeptTests()) {
+				if (requiredTests.contains(testname)) {
+					continue;
+				}
+				ProbeBitmap otherProbes = new ProbeBitmap();
+				for (String otherTestname : minimization.getKeptTests()) {
+					if (!otherTestname.equals(testname)) {
+						otherProbes.or(probesOfTests.get(otherTestname));
+					}
+				}
+				assertTrue(probesOfTests.get(testname).andNotCardinality(otherProbes) > 0, testname + " is redundant");
+			}
+		}
+	}
+
+	private static int[] range(int from, int to) {
+		int[] probes = new int[to - from];
+		for (int idxProbe = 0; idxProbe < probes.length; idxProbe++) {
+			probes[idxProbe] = from + idxProbe;
+		}
+		return probes;
+	}
+
+	private static TestCase createTestcase(String testname, long duration, String lastResult) {
+		MetricsDurationMilliSec durationMetric = new MetricsDurationMilliSec();
+		durationMetric.setMetricValue((int) duration);
+		MetricResultLast lastResultMetric = new MetricResultLast();
+		lastResultMetric.setMetricValue(lastResult);
+		return new TestCase(testname, new ArrayList<MetricsBase<?>>(Arrays.asList(durationMetric, lastResultMetric)));
+	}
+}